@@ -0,0 +1,92 @@
+package ru.yandex.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.dataset.DatasetGenerator;
+import ru.yandex.practicum.dataset.DatasetSpec;
+import ru.yandex.practicum.dataset.StorageDatasetSink;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.service.FilmService;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути фильмов: популярные фильмы, поиск фильма по ID, лайк.
+ * <p>Набор данных - {@link DatasetGenerator}: фильмов столько же, сколько пользователей, ставящих лайки.
+ * Для 10 млн фильмов нужна куча в несколько гигабайт: {@code -jvmArgsAppend -Xmx8g}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FilmsBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int films;
+    
+    @Param({"10", "100"})
+    int count;
+    
+    FilmStorage filmStorage;
+    FilmService filmService;
+    
+    @Setup
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        filmService = new FilmService(filmStorage, new InMemoryUserStorage());
+        //Пользователи нужны генератору только как ID лайков, в хранилище они не записываются.
+        try (StorageDatasetSink sink = new StorageDatasetSink(filmStorage, null)) {
+            new DatasetGenerator(DatasetSpec.builder().films(films).users(films).build()).generate(sink);
+        }
+    }
+    
+    /**
+     * Случайные ID для каждого потока замера.
+     */
+    @State(Scope.Thread)
+    public static class Ids {
+        final SplittableRandom random = new SplittableRandom(42);
+        
+        int next(int bound) {
+            return random.nextInt(bound) + 1;
+        }
+    }
+    
+    @Benchmark
+    public List<Film> getPopularFilm() {
+        return filmService.getPopularFilm(count);
+    }
+    
+    @Benchmark
+    public Film getFilmById(Ids ids) {
+        return filmStorage.getFilmById(ids.next(films));
+    }
+    
+    /**
+     * Лайк и его отмена: пользователь за пределами набора данных, поэтому лайк всегда новый.
+     * Следующий запрос популярных фильмов пересчитывает позицию фильма, поэтому в замер входит и он.
+     */
+    @Benchmark
+    public List<Film> likeAndGetPopularFilm(Ids ids) {
+        int filmId = ids.next(films);
+        int userId = films + ids.next(films);
+        filmStorage.addLike(filmId, userId);
+        filmStorage.removeLike(filmId, userId);
+        return filmService.getPopularFilm(count);
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.service.UserService;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена лога на пути запроса: синхронная запись в файл против асинхронной очереди и сборка сообщения
+ * конкатенацией (как было в сервисах) против сообщения с параметрами, которое собирается, только если
+ * уровень включён.
+ * <p>{@code addExistingUser} - вызов сервиса, который пишет в лог пользователя. Лог пишется в файл,
+ * а не в консоль, чтобы не смешиваться с выводом JMH.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoggingBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+    
+    /**
+     * SYNC - запись в файл в потоке вызова, ASYNC - через очередь {@link AsyncAppender}.
+     */
+    @Param({"SYNC", "ASYNC"})
+    String appender;
+    
+    /**
+     * INFO - сообщения сервисов пишутся, WARN - отбрасываются по уровню.
+     */
+    @Param({"INFO", "WARN"})
+    String level;
+    
+    UserService userService;
+    User user;
+    Path logFile;
+    ch.qos.logback.classic.Logger logger;
+    
+    @Setup
+    public void setUp() throws IOException {
+        logFile = Files.createTempFile("filmorate-benchmark", ".log");
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %-5level [%thread] %logger{36} - %msg%n");
+        encoder.start();
+        FileAppender<ILoggingEvent> file = new FileAppender<>();
+        file.setContext(context);
+        file.setFile(logFile.toString());
+        file.setEncoder(encoder);
+        file.start();
+        Appender<ILoggingEvent> target = file;
+        if ("ASYNC".equals(appender)) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setNeverBlock(true);
+            async.addAppender(file);
+            async.start();
+            target = async;
+        }
+        logger = context.getLogger("ru.yandex.practicum");
+        logger.detachAndStopAllAppenders();
+        logger.setAdditive(false);
+        logger.setLevel(Level.toLevel(level));
+        logger.addAppender(target);
+        
+        UserStorage userStorage = new InMemoryUserStorage();
+        userService = new UserService(userStorage);
+        user = User.builder().id(1).email("user1@example.com").login("user1").name("Пользователь")
+                .birthday(LocalDate.of(1990, 1, 1)).build();
+        userStorage.addToStorage(user);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        logger.detachAndStopAllAppenders();
+        Files.deleteIfExists(logFile);
+    }
+    
+    /**
+     * Добавление пользователя с занятым логином - обновление, в лог пишется весь пользователь.
+     */
+    @Benchmark
+    public User addExistingUser() {
+        return userService.addToStorage(user.toBuilder().build());
+    }
+    
+    @Benchmark
+    public void eagerMessage() {
+        log.info("В результате добавления пользователя в БД обновлён существующий пользователь "
+                + "с логином = '" + user.getLogin() + "'." + user);
+    }
+    
+    @Benchmark
+    public void lazyMessage() {
+        log.info("В результате добавления пользователя в БД обновлён существующий пользователь "
+                + "с логином = '{}'.{}", user.getLogin(), user);
+    }
+}
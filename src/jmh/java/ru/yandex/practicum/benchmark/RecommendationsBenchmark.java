@@ -0,0 +1,75 @@
+package ru.yandex.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.dataset.DatasetGenerator;
+import ru.yandex.practicum.dataset.DatasetSpec;
+import ru.yandex.practicum.dataset.StorageDatasetSink;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.service.RecommendationService;
+import ru.yandex.practicum.service.UserService;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Рекомендации фильмов GET /users/{id}/recommendations для самых активных пользователей - у них от сотен
+ * до тысяч лайков, а у фильмов, которым они ставили лайк, больше всего лайков других пользователей.
+ * <p>Набор данных - {@link DatasetGenerator}: 100 тыс. пользователей, в среднем 5 лайков на фильм.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RecommendationsBenchmark {
+    private static final int USERS = 100_000;
+    private static final int ACTIVE_USERS = 100;
+    
+    @Param({"100000", "1000000"})
+    int films;
+    
+    RecommendationService recommendationService;
+    int[] activeUserIds;
+    final AtomicInteger next = new AtomicInteger();
+    
+    @Setup
+    public void setUp() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        UserStorage userStorage = new InMemoryUserStorage();
+        try (StorageDatasetSink sink = new StorageDatasetSink(filmStorage, userStorage)) {
+            new DatasetGenerator(DatasetSpec.builder().films(films).users(USERS).friendsPerUser(0).build())
+                    .generate(sink);
+        }
+        recommendationService = new RecommendationService(filmStorage, new UserService(userStorage));
+        activeUserIds = IntStream.rangeClosed(1, USERS).boxed()
+                .sorted(Comparator.comparingInt((Integer id) -> filmStorage.likedFilmIds(id).length).reversed())
+                .limit(ACTIVE_USERS).mapToInt(Integer::intValue).toArray();
+        System.out.printf("%nЛайков у активных пользователей: от %d до %d.%n",
+                filmStorage.likedFilmIds(activeUserIds[ACTIVE_USERS - 1]).length,
+                filmStorage.likedFilmIds(activeUserIds[0]).length);
+    }
+    
+    @Benchmark
+    public List<Film> getRecommendations() {
+        int userId = activeUserIds[Math.floorMod(next.getAndIncrement(), ACTIVE_USERS)];
+        return recommendationService.getRecommendations(userId, 10);
+    }
+}
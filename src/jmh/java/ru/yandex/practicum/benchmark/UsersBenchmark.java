@@ -0,0 +1,143 @@
+package ru.yandex.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.dataset.DatasetGenerator;
+import ru.yandex.practicum.dataset.DatasetSpec;
+import ru.yandex.practicum.dataset.StorageDatasetSink;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.service.UserService;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Горячие пути пользователей: общие друзья, список друзей, рекомендуемые друзья, поиск по ID и логину,
+ * добавление пользователя с проверкой логина.
+ * <p>Набор данных - {@link DatasetGenerator} без фильмов: в среднем 10 друзей на пользователя
+ * со степенным распределением. Для 10 млн пользователей нужна куча в несколько гигабайт:
+ * {@code -jvmArgsAppend -Xmx8g}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UsersBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int users;
+    
+    UserStorage userStorage;
+    UserService userService;
+    /**
+     * Пользователь с наибольшим количеством друзей.
+     */
+    int hubId;
+    /**
+     * Номер следующего добавляемого пользователя: логины добавленных пользователей не совпадают с набором.
+     */
+    final AtomicLong nextNumber = new AtomicLong();
+    /**
+     * Пользователи, добавленные за итерацию: удаляются после неё, чтобы набор не рос от итерации к итерации.
+     */
+    final Queue<User> added = new ConcurrentLinkedQueue<>();
+    
+    @Setup
+    public void setUp() {
+        userStorage = new InMemoryUserStorage();
+        userService = new UserService(userStorage);
+        try (StorageDatasetSink sink = new StorageDatasetSink(null, userStorage)) {
+            new DatasetGenerator(DatasetSpec.builder().films(0).users(users).build()).generate(sink);
+        }
+        nextNumber.set(users + 1L);
+        int[] friendCounts = userStorage.friendCounts(IntStream.rangeClosed(1, users).toArray());
+        for (int i = 0; i < friendCounts.length; i++) {
+            if (friendCounts[i] > friendCounts[hubId]) {
+                hubId = i;
+            }
+        }
+        System.out.printf("%nДрузей у пользователя %d: %d.%n", hubId + 1, friendCounts[hubId]);
+        hubId++;
+    }
+    
+    @TearDown(Level.Iteration)
+    public void removeAdded() {
+        for (User user = added.poll(); user != null; user = added.poll()) {
+            userStorage.removeFromStorage(user);
+        }
+    }
+    
+    /**
+     * Случайные ID для каждого потока замера.
+     */
+    @State(Scope.Thread)
+    public static class Ids {
+        final SplittableRandom random = new SplittableRandom(42);
+        
+        int next(int bound) {
+            return random.nextInt(bound) + 1;
+        }
+    }
+    
+    @Benchmark
+    public List<User> getCommonFriends(Ids ids) {
+        return userService.getCommonFriends(ids.next(users), ids.next(users));
+    }
+    
+    @Benchmark
+    public List<User> getUserFriends(Ids ids) {
+        return userService.getUserFriends(ids.next(users));
+    }
+    
+    @Benchmark
+    public List<User> getFriendSuggestions(Ids ids) {
+        return userService.getFriendSuggestions(ids.next(users), 10);
+    }
+    
+    @Benchmark
+    public List<User> getFriendSuggestionsOfHub() {
+        return userService.getFriendSuggestions(hubId, 10);
+    }
+    
+    @Benchmark
+    public User getUserById(Ids ids) {
+        return userStorage.getUserById(ids.next(users));
+    }
+    
+    @Benchmark
+    public User getUserByLogin(Ids ids) {
+        return userStorage.getUserByLogin("user" + ids.next(users));
+    }
+    
+    /**
+     * Добавление нового пользователя без ID: проверка полей, поиск логина, выдача ID и запись.
+     */
+    @Benchmark
+    public User addToStorage(Ids ids) {
+        String login = "user" + nextNumber.getAndIncrement();
+        User user = userService.addToStorage(User.builder().email(login + "@example.com").login(login)
+                .name("Новый пользователь").birthday(LocalDate.of(1990, 1, 1)).build());
+        added.add(user);
+        return user;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.controller;
+
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Условные запросы GET по версиям хранилища: заголовок {@code ETag} строится из версии,
+ * а на {@code If-None-Match} с той же версией отвечается 304 без чтения и сериализации записей.
+ * <p>Версию нужно прочитать до чтения записей: если записи изменятся во время чтения, клиент получит
+ * устаревший ETag и при следующем запросе - полный ответ.</p>
+ */
+public final class ETags {
+    /**
+     * Метка запуска. Версии хранилища в памяти после перезапуска начинаются заново,
+     * поэтому без метки новый ответ мог бы получить ETag старого.
+     */
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+    
+    private ETags() {
+    }
+    
+    /**
+     * Проверить {@code If-None-Match} и выставить заголовок {@code ETag}.
+     *
+     * @param request запрос.
+     * @param version версия ресурса; меньше 0 - ресурса нет, проверка не выполняется.
+     * @return True - ресурс не изменился: статус 304 выставлен, контроллер возвращает null.
+     */
+    static boolean notModified(WebRequest request, long version) {
+        return version >= 0 && request.checkNotModified(of(version));
+    }
+    
+    /**
+     * Значение {@code ETag} для версии ресурса.
+     *
+     * @param version версия ресурса, не меньше 0.
+     * @return ETag без кавычек.
+     */
+    public static String of(long version) {
+        return EPOCH + "-" + Long.toString(version, 36);
+    }
+}
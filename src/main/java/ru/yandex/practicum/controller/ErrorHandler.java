@@ -1,7 +1,10 @@
 package ru.yandex.practicum.controller;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -14,10 +17,22 @@ import ru.yandex.practicum.exception.ValidateException;
 @Slf4j
 @Getter
 public class ErrorHandler {
+    /**
+     * Ответы каждого обработчика: filmorate_errors_total{handler="not_found|bad_request"}.
+     */
+    private final Counter notFound;
+    private final Counter badRequest;
+    
+    @Autowired
+    public ErrorHandler(MeterRegistry registry) {
+        this.notFound = registry.counter("filmorate.errors", "handler", "not_found");
+        this.badRequest = registry.counter("filmorate.errors", "handler", "bad_request");
+    }
     
     @ExceptionHandler
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public ResponseEntity<?> handleForNotFound(final NotFoundRecordInBD ex) {
+        notFound.increment();
         String error = "Error 404. Not Found.";
         String message = ex.getMessage();
         log.error(error + " — " + message);
@@ -28,6 +43,7 @@ public class ErrorHandler {
     @ExceptionHandler
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<?> handleForBadRequest(final ValidateException ex) {
+        badRequest.increment();
         String error = "Error 400. Bad Request.";
         String message = ex.getMessage();
         log.error(error + " — " + message);
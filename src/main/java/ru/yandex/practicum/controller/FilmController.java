@@ -1,15 +1,26 @@
 package ru.yandex.practicum.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.model.BatchReport;
 import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.FilmLike;
+import ru.yandex.practicum.service.FilmImportService;
 import ru.yandex.practicum.service.FilmService;
+import ru.yandex.practicum.service.PopularFilmsCache;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -23,13 +34,21 @@ import java.util.List;
 @Slf4j
 @Component
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class FilmController {
     FilmService filmService;
+    FilmImportService filmImportService;
+    PopularFilmsCache popularFilmsCache;
+    ObjectMapper objectMapper;
     
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, FilmImportService filmImportService,
+                          PopularFilmsCache popularFilmsCache, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.filmImportService = filmImportService;
+        this.popularFilmsCache = popularFilmsCache;
+        this.objectMapper = objectMapper;
     }
     
     static final String PATH_FOR_FILMS = "/films";
@@ -40,14 +59,42 @@ public class FilmController {
     
     
     /**
-     * Получение списка всех фильмов.
+     * Получение списка всех фильмов или, если задан параметр after или limit, одной страницы фильмов
+     * по возрастанию ID. Если страница заполнена целиком, в заголовке Link передаётся адрес следующей страницы.
+     * ETag - версия библиотеки: пока фильмы не менялись, на If-None-Match отвечается 304.
      *
+     * @param after   ID последнего фильма предыдущей страницы.
+     * @param limit   размер страницы.
+     * @param request запрос с заголовком If-None-Match.
      * @return список фильмов.
      */
     @GetMapping("/films")
-    public List<Film> getAllFilms() {
-        log.info("Выдан ответ на запрос всех фильмов.");
-        return filmService.getAllFilms();
+    public ResponseEntity<List<Film>> getAllFilms(@RequestParam(required = false) Integer after,
+                                                  @RequestParam(required = false) Integer limit,
+                                                  WebRequest request) {
+        if (ETags.notModified(request, filmService.getFilmsVersion())) {
+            return null;
+        }
+        if (after == null && limit == null) {
+            log.info("Выдан ответ на запрос всех фильмов.");
+            return ResponseEntity.ok(filmService.getAllFilms());
+        }
+        List<Film> page = filmService.getFilmsPage(after, limit);
+        log.info("Выдан ответ на запрос страницы фильмов после ID = {}.", after);
+        return PageLinks.withNextLink(page, limit, page.isEmpty() ? 0 : page.get(page.size() - 1).getId());
+    }
+    
+    /**
+     * Выгрузка всех фильмов в формате NDJSON (заголовок {@code Accept: application/x-ndjson}).
+     * Фильмы пишутся в ответ по мере чтения из хранилища, поэтому память и время до первого байта
+     * не зависят от размера библиотеки.
+     *
+     * @return поток фильмов, по одному на строку.
+     */
+    @GetMapping(value = "/films", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        log.info("Начата выгрузка всех фильмов в формате NDJSON.");
+        return NdjsonBody.of(objectMapper, filmService::streamAllFilms);
     }
     
     /**
@@ -61,6 +108,30 @@ public class FilmController {
         return ResponseEntity.ok(filmService.createFilm(film));
     }
     
+    /**
+     * POST /films/import — пакетная загрузка фильмов из потока NDJSON (по фильму на строку).
+     * Тело читается по мере поступления, фильмы записываются пачками.
+     *
+     * @param body тело запроса.
+     * @return отчёт: количество загруженных фильмов, ошибки по номерам строк, скорость загрузки.
+     */
+    @PostMapping(value = "/films/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BatchReport importFilmsFromNdjson(InputStream body) throws IOException {
+        return filmImportService.importNdjson(body);
+    }
+    
+    /**
+     * POST /films/import — пакетная загрузка фильмов из массива JSON.
+     * Тело читается по мере поступления, фильмы записываются пачками.
+     *
+     * @param body тело запроса.
+     * @return отчёт: количество загруженных фильмов, ошибки по номерам элементов массива, скорость загрузки.
+     */
+    @PostMapping(value = "/films/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BatchReport importFilmsFromJsonArray(InputStream body) throws IOException {
+        return filmImportService.importJsonArray(body);
+    }
+    
     /**
      * Обновление информации о существующем фильме.
      *
@@ -73,13 +144,17 @@ public class FilmController {
     }
     
     /**
-     * PUT /films/{id}/like/{userId}
+     * GET /films/{id}. ETag - версия фильма: пока фильм не менялся, на If-None-Match отвечается 304.
      *
-     * @param id ID запрашиваемого фильма.
+     * @param id      ID запрашиваемого фильма.
+     * @param request запрос с заголовком If-None-Match.
      * @return фильм или исключение 'NotFoundRecordInBD'.
      */
     @GetMapping("/films" + "/{id}")
-    public Film getFilmById(@PathVariable Integer id) {
+    public Film getFilmById(@PathVariable Integer id, WebRequest request) {
+        if (ETags.notModified(request, filmService.getFilmVersion(id))) {
+            return null;
+        }
         log.info("Выдан ответ на запрос фильма по ID.");
         return filmService.getFilmByID(id);
     }
@@ -100,6 +175,30 @@ public class FilmController {
     }
     
     
+    /**
+     * GET /films/{id}/likes/count — количество лайков фильма.
+     *
+     * @param id ID фильма.
+     * @return количество лайков или исключение 'NotFoundRecordInBD'.
+     */
+    @GetMapping("/films/{id}/likes/count")
+    public int getLikeCount(@PathVariable Integer id) {
+        log.info("Выдан ответ на запрос количества лайков фильма (ID = {}).", id);
+        return filmService.getLikeCount(id);
+    }
+    
+    /**
+     * PUT /films/likes — пакетная установка лайков: тело - массив пар {@code {"filmId": 1, "userId": 2}}.
+     *
+     * @param likes пары (фильм, пользователь).
+     * @return отчёт: количество поставленных лайков и отклонённые пары по номерам элементов массива.
+     */
+    @PutMapping("/films/likes")
+    public BatchReport addLikes(@RequestBody List<FilmLike> likes) {
+        return filmService.addLikes(likes);
+    }
+    
+    
     /**
      * Метод для удаления лайка фильму.
      * DELETE /films/{id}/like/{userId} — пользователь удаляет лайк.
@@ -118,14 +217,25 @@ public class FilmController {
     /**
      * GET /films/popular?count={count} — возвращает список из первых count фильмов по количеству лайков.
      * Если значение параметра count не задано, верните первые 10.
+     * Ответ берётся из {@link PopularFilmsCache} уже сериализованным.
      *
      * @param count необязательный параметр - размер возвращаемого списка фильмов. (если нет, то 10).
      * @return список популярных фильмов.
      */
     @GetMapping("/films/popular")
-    public List<Film> getPopularFilms(@RequestParam(required = false) Integer count) {
-        List<Film> popularFilms = filmService.getPopularFilm(count);
+    public ResponseEntity<byte[]> getPopularFilms(@RequestParam(required = false) Integer count) {
+        byte[] popularFilms = popularFilmsCache.getPopularFilms(count);
         log.info("Выдан ответ на запрос о выдаче списка популярных фильмов.");
-        return popularFilms;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(popularFilms);
+    }
+    
+    /**
+     * GET /films/popular/cache — статистика кеша популярных фильмов.
+     *
+     * @return попадания, промахи и запросы в обход кеша.
+     */
+    @GetMapping("/films/popular/cache")
+    public PopularFilmsCache.Stats getPopularFilmsCacheStats() {
+        return popularFilmsCache.getStats();
     }
 }
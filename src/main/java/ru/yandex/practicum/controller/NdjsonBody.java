@@ -0,0 +1,55 @@
+package ru.yandex.practicum.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Ответ в формате NDJSON ({@code application/x-ndjson}): по одному JSON-объекту на строку.
+ * <p>Записи пишутся в выходной поток ответа по мере перебора, без сборки списка и без буферизации всего тела:
+ * память не зависит от количества записей, а первая запись отправляется клиенту сразу.</p>
+ */
+final class NdjsonBody {
+    
+    private NdjsonBody() {
+    }
+    
+    /**
+     * Ответ с записями потока.
+     *
+     * @param mapper  настроенный в приложении {@link ObjectMapper}.
+     * @param records поток записей; открывается при записи ответа и закрывается после неё.
+     * @return ответ со статусом 200.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> of(ObjectMapper mapper, Supplier<Stream<T>> records) {
+        //Сброс после каждой записи превратил бы каждую строку в отдельный пакет HTTP.
+        //Разделитель записей - перевод строки после каждой, а не пробел Jackson между ними.
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+        StreamingResponseBody body = out -> {
+            try (Stream<T> stream = records.get();
+                 JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                Iterator<T> iterator = stream.iterator();
+                boolean first = true;
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                    if (first) {
+                        generator.flush();
+                        first = false;
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ru.yandex.practicum.service.Paging;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Ответ со страницей записей и ссылкой на следующую страницу в заголовке {@code Link} (RFC 8288).
+ */
+final class PageLinks {
+    
+    private PageLinks() {
+    }
+    
+    /**
+     * Ответ со страницей. Ссылка на следующую страницу добавляется, только если страница заполнена целиком:
+     * адрес текущего запроса с курсором {@code after}, равным ID последней записи страницы.
+     *
+     * @param page   страница записей.
+     * @param limit  запрошенный размер страницы.
+     * @param lastId ID последней записи страницы.
+     * @return ответ со страницей.
+     */
+    static <T> ResponseEntity<List<T>> withNextLink(List<T> page, Integer limit, int lastId) {
+        if (page.isEmpty() || page.size() < Objects.requireNonNullElse(limit, Paging.DEFAULT_LIMIT)) {
+            return ResponseEntity.ok(page);
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", lastId)
+                .toUriString();
+        return ResponseEntity.ok().header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"").body(page);
+    }
+}
@@ -1,15 +1,24 @@
 package ru.yandex.practicum.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.model.BatchReport;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.Friendship;
 import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.service.RecommendationService;
 import ru.yandex.practicum.service.UserService;
 
 import java.util.List;
@@ -27,13 +36,19 @@ import java.util.List;
 @Slf4j
 @RestController
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class UserController {
     UserService userService;
+    RecommendationService recommendationService;
+    ObjectMapper objectMapper;
     
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService,
+                          ObjectMapper objectMapper) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.objectMapper = objectMapper;
     }
     
     static final String PATH_FOR_USERS = "/users";
@@ -44,13 +59,44 @@ public class UserController {
     private static final String PATH_FOR_OTHER_ID_VARIABLE = "/{otherId}";
     
     /**
-     * Получение списка всех пользователей.
+     * Получение списка всех пользователей или, если задан параметр after или limit, одной страницы
+     * пользователей по возрастанию ID. Если страница заполнена целиком, в заголовке Link передаётся адрес
+     * следующей страницы. ETag - версия пользователей: пока пользователи не менялись, на If-None-Match
+     * отвечается 304.
+     *
+     * @param after   ID последнего пользователя предыдущей страницы.
+     * @param limit   размер страницы.
+     * @param request запрос с заголовком If-None-Match.
+     * @return список пользователей.
      */
 //    @Override
     @GetMapping("/users")
-    public List<User> getAllUsers() {
-        log.info("Выдан ответ на запрос всех пользователей.");
-        return userService.getAllUsers();
+    public ResponseEntity<List<User>> getAllUsers(@RequestParam(required = false) Integer after,
+                                                  @RequestParam(required = false) Integer limit,
+                                                  WebRequest request) {
+        if (ETags.notModified(request, userService.getUsersVersion())) {
+            return null;
+        }
+        if (after == null && limit == null) {
+            log.info("Выдан ответ на запрос всех пользователей.");
+            return ResponseEntity.ok(userService.getAllUsers());
+        }
+        List<User> page = userService.getUsersPage(after, limit);
+        log.info("Выдан ответ на запрос страницы пользователей после ID = {}.", after);
+        return PageLinks.withNextLink(page, limit, page.isEmpty() ? 0 : page.get(page.size() - 1).getId());
+    }
+    
+    /**
+     * Выгрузка всех пользователей в формате NDJSON (заголовок {@code Accept: application/x-ndjson}).
+     * Пользователи пишутся в ответ по мере чтения из хранилища, поэтому память и время до первого байта
+     * не зависят от количества пользователей.
+     *
+     * @return поток пользователей, по одному на строку.
+     */
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        log.info("Начата выгрузка всех пользователей в формате NDJSON.");
+        return NdjsonBody.of(objectMapper, userService::streamAllUsers);
     }
     
     /**
@@ -87,7 +133,7 @@ public class UserController {
      */
     @GetMapping("/users" + "/{id}")
     public User getUser(@PathVariable Integer id) {
-        log.info("Выдан ответ на запрос пользователя по ID = " + id + ".");
+        log.info("Выдан ответ на запрос пользователя по ID = {}.", id);
         return userService.getUserById(id);
     }
     
@@ -101,11 +147,22 @@ public class UserController {
     @PutMapping("/users" + "/{id}" + "/friends" + "/{friendId}")
     public ResponseEntity<?> addEachOtherAsFriends(@PathVariable Integer id, @PathVariable Integer friendId) {
         userService.addEachOtherAsFriends(id, friendId);
-        log.info("Пользователь (ID = " + id + ") подружился с пользователем (ID = " + friendId + ").");
+        log.info("Пользователь (ID = {}) подружился с пользователем (ID = {}).", id, friendId);
         return ResponseEntity.status(HttpStatus.OK).body("Запрос на дружбу с пользователем (ID = "
                 + friendId + ") успешно обработан.");
     }
     
+    /**
+     * PUT /users/friends — пакетное добавление в друзья: тело - массив пар {@code {"userId": 1, "friendId": 2}}.
+     *
+     * @param friendships пары пользователей.
+     * @return отчёт: количество добавленных дружб и отклонённые пары по номерам элементов массива.
+     */
+    @PutMapping("/users" + "/friends")
+    public BatchReport addFriendships(@RequestBody List<Friendship> friendships) {
+        return userService.addFriendships(friendships);
+    }
+    
     /**
      * DELETE /users/{id}/friends/{friendId} — удаление из друзей.
      *
@@ -116,21 +173,26 @@ public class UserController {
     @DeleteMapping("/users" + "/{id}" + "/friends" + "/{friendId}")
     public ResponseEntity<?> deleteFromFriends(@PathVariable Integer id, @PathVariable Integer friendId) {
         userService.deleteFromFriends(id, friendId);
-        log.info("Грусть. Дружба пользователя (ID = " + id + ") с пользователем (ID = " + friendId + ") завершена )-;");
+        log.info("Грусть. Дружба пользователя (ID = {}) с пользователем (ID = {}) завершена )-;", id, friendId);
         return ResponseEntity.status(HttpStatus.OK).body("Запрос на завершение дружбы с пользователем (ID = "
                 + friendId + ") успешно обработан.");
     }
     
     /**
      * GET /users/{id}/friends — возвращаем список пользователей, являющихся его друзьями.
+     * ETag - версия списка друзей: пока список не менялся, на If-None-Match отвечается 304.
      *
-     * @param id ID пользователя, для которого необходимо найти список друзей.
+     * @param id      ID пользователя, для которого необходимо найти список друзей.
+     * @param request запрос с заголовком If-None-Match.
      * @return список друзей.
      */
     @GetMapping("/users" + "/{id}" + "/friends")
-    public List<User> getUserFriends(@PathVariable Integer id) {
+    public List<User> getUserFriends(@PathVariable Integer id, WebRequest request) {
+        if (ETags.notModified(request, userService.getFriendsVersion(id))) {
+            return null;
+        }
         List<User> result = userService.getUserFriends(id);
-        log.info("Выдан ответ на запрос информации о друзьях пользователя с ID = " + id);
+        log.info("Выдан ответ на запрос информации о друзьях пользователя с ID = {}", id);
         return result;
     }
     
@@ -144,7 +206,35 @@ public class UserController {
     @GetMapping("/users" + "/{id}" + "/friends" + "/common" + "/{otherId}")
     public List<User> getCommonFriends(@PathVariable Integer id, @PathVariable Integer otherId) {
         List<User> result = userService.getCommonFriends(id, otherId);
-        log.info("Выдан ответ на запрос информации об общих друзьях пользователя с ID = " + otherId);
+        log.info("Выдан ответ на запрос информации об общих друзьях пользователя с ID = {}", otherId);
+        return result;
+    }
+    
+    /**
+     * GET /users/{id}/friends/suggestions?count={count} — друзья друзей по убыванию количества общих друзей.
+     *
+     * @param id    ID пользователя.
+     * @param count размер списка (если нет, то 10).
+     * @return рекомендуемые друзья.
+     */
+    @GetMapping("/users" + "/{id}" + "/friends" + "/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable Integer id, @RequestParam(required = false) Integer count) {
+        List<User> result = userService.getFriendSuggestions(id, count);
+        log.info("Выдан ответ на запрос рекомендуемых друзей пользователя с ID = {}", id);
+        return result;
+    }
+    
+    /**
+     * GET /users/{id}/recommendations?count={count} — фильмы, которым ставили лайк пользователи с похожими лайками.
+     *
+     * @param id    ID пользователя.
+     * @param count размер списка (если нет, то 10).
+     * @return рекомендованные фильмы.
+     */
+    @GetMapping("/users" + "/{id}" + "/recommendations")
+    public List<Film> getRecommendations(@PathVariable Integer id, @RequestParam(required = false) Integer count) {
+        List<Film> result = recommendationService.getRecommendations(id, count);
+        log.info("Выдан ответ на запрос рекомендаций фильмов для пользователя с ID = {}", id);
         return result;
     }
 }
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.logging;
+
+import org.springframework.util.AntPathMatcher;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Выборка HTTP-обменов для журнала Logbook: обмен попадает в журнал с вероятностью, заданной для его пути.
+ * <p>Доля задаётся шаблонами путей в стиле Ant ({@code /films/*}{@code /like/**}); действует первый подошедший
+ * шаблон в порядке задания, для остальных путей - общая доля. Обмены, не попавшие в выборку, Logbook
+ * пропускает целиком: их тела не буферизуются и не форматируются.</p>
+ * <p>Выгрузки всех фильмов и пользователей ({@code GET /films} и {@code GET /users} без параметров
+ * {@code after} и {@code limit} - массивом JSON или NDJSON) в журнал не попадают никогда: тело записываемого
+ * обмена Logbook читает в память целиком, и каждая выгрузка из выборки держала бы в куче копию библиотеки.</p>
+ */
+public class ExchangeSampling implements Predicate<HttpRequest> {
+    /**
+     * Пути списков, которые без параметров страницы выгружаются целиком.
+     */
+    static final Set<String> FULL_EXPORT_PATHS = Set.of("/films", "/users");
+    
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final double sampleRate;
+    private final Map<String, Double> sampleRates;
+    
+    /**
+     * @param sampleRate  доля обменов по путям без своей доли: 0 - ни одного, 1 - все.
+     * @param sampleRates доли по шаблонам путей.
+     */
+    public ExchangeSampling(double sampleRate, Map<String, Double> sampleRates) {
+        this.sampleRate = sampleRate;
+        this.sampleRates = new LinkedHashMap<>(sampleRates);
+    }
+    
+    @Override
+    public boolean test(HttpRequest request) {
+        return !isFullExport(request) && sampled(rateFor(request.getPath()));
+    }
+    
+    /**
+     * Запрос выгрузки всего списка: GET пути из {@link #FULL_EXPORT_PATHS} без параметров страницы.
+     */
+    static boolean isFullExport(HttpRequest request) {
+        if (!"GET".equals(request.getMethod()) || !FULL_EXPORT_PATHS.contains(request.getPath())) {
+            return false;
+        }
+        for (String parameter : request.getQuery().split("&")) {
+            String name = parameter.split("=", 2)[0];
+            if (name.equals("after") || name.equals("limit")) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Доля обменов для пути запроса.
+     *
+     * @param path путь без параметров запроса.
+     * @return доля от 0 до 1.
+     */
+    double rateFor(String path) {
+        for (Map.Entry<String, Double> rate : sampleRates.entrySet()) {
+            if (matcher.match(rate.getKey(), path)) {
+                return rate.getValue();
+            }
+        }
+        return sampleRate;
+    }
+    
+    private static boolean sampled(double rate) {
+        if (rate >= 1) {
+            return true;
+        }
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.logging;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Настройки журнала HTTP-обменов Logbook.
+ * <p>Logbook пишет обмены на уровне TRACE логгера {@code org.zalando.logbook.Logbook}. В журнал попадает
+ * выборка обменов ({@link ExchangeSampling}), тела обрезаются до {@code logbook.write.max-body-size} байт,
+ * а сами записи, как и весь остальной лог, уходят в консоль через appender {@code filmorate.logging.appender}
+ * (см. {@code logback-spring.xml}).</p>
+ */
+@Configuration
+public class LoggingConfiguration {
+    
+    /**
+     * Условие записи обмена в журнал. Имя бина заменяет условие Logbook по умолчанию,
+     * исключения {@code logbook.exclude} применяются поверх него.
+     *
+     * @param sampleRate доля обменов по путям без своей доли.
+     */
+    @Bean
+    public Predicate<HttpRequest> requestCondition(
+            @Value("${filmorate.logging.exchanges.sample-rate:1}") double sampleRate,
+            Environment environment) {
+        Map<String, Double> sampleRates = Binder.get(environment)
+                .bind("filmorate.logging.exchanges.sample-rates", Bindable.mapOf(String.class, Double.class))
+                .orElse(Map.of());
+        return new ExchangeSampling(sampleRate, sampleRates);
+    }
+}
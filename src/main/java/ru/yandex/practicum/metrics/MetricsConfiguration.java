@@ -0,0 +1,50 @@
+package ru.yandex.practicum.metrics;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+/**
+ * Метрики приложения, доступные в формате Prometheus на GET /actuator/prometheus:
+ * <p>* http_server_requests_seconds - задержки запросов к контроллерам по URI, методу и статусу
+ * (гистограмма, по ней считаются процентили);</p>
+ * <p>* filmorate_service_seconds, filmorate_storage_seconds - задержки методов сервисов и хранилищ
+ * с аннотацией {@link io.micrometer.core.annotation.Timed} по классу и методу;</p>
+ * <p>* filmorate_errors_total - ответы {@link ru.yandex.practicum.controller.ErrorHandler} по обработчику;</p>
+ * <p>* filmorate_likes_total, filmorate_friendships_total - поставленные и удалённые лайки и дружбы;</p>
+ * <p>* filmorate_storage_size - количество фильмов и пользователей;</p>
+ * <p>* filmorate_popular_cache_* - обращения к кешу популярных фильмов.</p>
+ */
+@Configuration
+public class MetricsConfiguration {
+    
+    /**
+     * Таймеры для классов и методов с аннотацией {@link io.micrometer.core.annotation.Timed}.
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+    
+    /**
+     * Размеры хранилищ. Значения читаются при каждом запросе метрик.
+     */
+    @Bean
+    public MeterBinder storageSizeMetrics(FilmStorage filmStorage, UserStorage userStorage) {
+        return registry -> {
+            Gauge.builder("filmorate.storage.size", filmStorage, FilmStorage::filmCount)
+                    .description("Количество записей в хранилище")
+                    .tag("entity", "films")
+                    .register(registry);
+            Gauge.builder("filmorate.storage.size", userStorage, UserStorage::userCount)
+                    .description("Количество записей в хранилище")
+                    .tag("entity", "users")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Отчёт о пакетной операции: сколько записей обработано, сколько из них выполнено,
+ * ошибки по номерам записей и скорость обработки.
+ * <p>Отчёт хранит не больше {@value #MAX_ERRORS} ошибок, чтобы загрузка с ошибкой в каждой строке
+ * не собирала в памяти миллионы сообщений; остальные ошибки только считаются.</p>
+ */
+@Getter
+@ToString
+public class BatchReport {
+    public static final int MAX_ERRORS = 1000;
+    
+    /**
+     * Обработано записей.
+     */
+    private long processed;
+    /**
+     * Выполнено записей.
+     */
+    private long succeeded;
+    /**
+     * Записей с ошибкой.
+     */
+    private long failed;
+    /**
+     * В отчёт попали не все ошибки.
+     */
+    private boolean errorsTruncated;
+    private long elapsedMillis;
+    /**
+     * Выполнено записей в секунду.
+     */
+    private long perSecond;
+    private final List<RecordError> errors = new ArrayList<>();
+    
+    /**
+     * Время начала операции для расчёта скорости.
+     */
+    @Getter(AccessLevel.NONE)
+    private final long startNanos = System.nanoTime();
+    
+    /**
+     * Учесть выполненные записи.
+     *
+     * @param count количество записей.
+     */
+    public void succeeded(int count) {
+        processed += count;
+        succeeded += count;
+    }
+    
+    /**
+     * Учесть запись с ошибкой.
+     *
+     * @param record  номер записи: строка NDJSON или элемент массива, начиная с единицы.
+     * @param message описание ошибки.
+     */
+    public void failed(long record, String message) {
+        processed++;
+        failed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RecordError(record, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+    
+    /**
+     * Завершить операцию: рассчитать время и скорость.
+     *
+     * @return этот отчёт.
+     */
+    public BatchReport finish() {
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        elapsedMillis = elapsedNanos / 1_000_000;
+        perSecond = succeeded * 1_000_000_000L / elapsedNanos;
+        return this;
+    }
+    
+    /**
+     * Ошибка в записи пакета.
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class RecordError {
+        /**
+         * Номер записи, начиная с единицы.
+         */
+        private final long record;
+        private final String message;
+    }
+}
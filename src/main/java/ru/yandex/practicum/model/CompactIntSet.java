@@ -0,0 +1,617 @@
+package ru.yandex.practicum.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Компактное множество целых чисел для ID друзей и лайков.
+ * <p>{@code HashSet<Integer>} тратит на один элемент больше 40 байт (узел таблицы и объект Integer).
+ * Здесь элементы хранятся без упаковки:</p>
+ * <p>* небольшое множество (до {@value #ARRAY_LIMIT} элементов) - отсортированный массив int, 4 байта на элемент;</p>
+ * <p>* большое множество - контейнеры в стиле Roaring: элементы делятся по старшим 16 битам на блоки,
+ * блок хранит младшие 16 бит в отсортированном массиве char (2 байта на элемент), а при заполнении больше
+ * {@value #CONTAINER_ARRAY_LIMIT} элементов - в битовой карте на 8 КБ.</p>
+ * <p>Элементы всегда перебираются по возрастанию. Класс реализует {@code Set<Integer>}, поэтому равен любому
+ * множеству с теми же элементами и сериализуется в JSON так же, как {@code HashSet}.</p>
+ * <p>Класс не потокобезопасен: хранилища меняют множества под своими блокировками.</p>
+ */
+public class CompactIntSet extends AbstractSet<Integer> {
+    static final int ARRAY_LIMIT = 1024;
+    static final int CONTAINER_ARRAY_LIMIT = 4096;
+    /**
+     * Во сколько раз один массив должен быть больше другого, чтобы пересекать их галопирующим поиском.
+     */
+    private static final int GALLOP_RATIO = 32;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final int[] EMPTY = new int[0];
+    
+    /**
+     * Элементы небольшого множества; null - множество хранится в контейнерах.
+     */
+    private int[] values = EMPTY;
+    private int size;
+    
+    /**
+     * Старшие 16 бит элементов каждого блока по возрастанию.
+     */
+    private int[] keys;
+    /**
+     * Контейнеры блоков: char[] - отсортированный массив, long[] - битовая карта.
+     */
+    private Object[] containers;
+    private int[] cardinalities;
+    private int chunkCount;
+    
+    public CompactIntSet() {
+    }
+    
+    /**
+     * Копия множества.
+     *
+     * @param elements исходные элементы.
+     */
+    public CompactIntSet(Collection<Integer> elements) {
+        if (elements instanceof CompactIntSet) {
+            ((CompactIntSet) elements).forEachInt(this::add);
+        } else {
+            for (Integer element : elements) {
+                add((int) element);
+            }
+        }
+    }
+    
+    /**
+     * Множество из перечисленных элементов.
+     *
+     * @param elements элементы.
+     * @return множество.
+     */
+    public static CompactIntSet of(int... elements) {
+        CompactIntSet result = new CompactIntSet();
+        for (int element : elements) {
+            result.add(element);
+        }
+        return result;
+    }
+    
+    /**
+     * Привести множество к компактному виду. Компактное множество возвращается как есть, без копирования.
+     *
+     * @param elements множество или null.
+     * @return компактное множество или null.
+     */
+    public static CompactIntSet from(Set<Integer> elements) {
+        if (elements == null || elements instanceof CompactIntSet) {
+            return (CompactIntSet) elements;
+        }
+        return new CompactIntSet(elements);
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+    
+    @Override
+    public boolean add(Integer element) {
+        return add((int) element);
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && remove((int) (Integer) o);
+    }
+    
+    @Override
+    public void clear() {
+        values = EMPTY;
+        size = 0;
+        keys = null;
+        containers = null;
+        cardinalities = null;
+        chunkCount = 0;
+    }
+    
+    public boolean contains(int value) {
+        if (values != null) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+        int chunk = Arrays.binarySearch(keys, 0, chunkCount, value >> 16);
+        return chunk >= 0 && containerContains(chunk, (char) value);
+    }
+    
+    public boolean add(int value) {
+        if (values != null) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return false;
+            }
+            if (size < ARRAY_LIMIT) {
+                index = -index - 1;
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, size + (size >> 1))));
+                }
+                System.arraycopy(values, index, values, index + 1, size - index);
+                values[index] = value;
+                size++;
+                return true;
+            }
+            convertToContainers();
+        }
+        int chunk = Arrays.binarySearch(keys, 0, chunkCount, value >> 16);
+        if (chunk < 0) {
+            chunk = -chunk - 1;
+            insertChunk(chunk, value >> 16);
+        }
+        if (containerAdd(chunk, (char) value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+    
+    public boolean remove(int value) {
+        if (values != null) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return true;
+        }
+        int chunk = Arrays.binarySearch(keys, 0, chunkCount, value >> 16);
+        if (chunk < 0 || !containerRemove(chunk, (char) value)) {
+            return false;
+        }
+        size--;
+        if (cardinalities[chunk] == 0) {
+            removeChunk(chunk);
+        }
+        //Обратно в массив - с запасом, чтобы множество на границе не переключалось на каждой операции.
+        if (size <= ARRAY_LIMIT / 2) {
+            convertToArray();
+        }
+        return true;
+    }
+    
+    /**
+     * Перебрать элементы по возрастанию без упаковки в Integer.
+     *
+     * @param action действие над элементом.
+     */
+    public void forEachInt(IntConsumer action) {
+        if (values != null) {
+            for (int i = 0; i < size; i++) {
+                action.accept(values[i]);
+            }
+            return;
+        }
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int high = keys[chunk] << 16;
+            Object container = containers[chunk];
+            if (container instanceof long[]) {
+                long[] bitmap = (long[]) container;
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long bits = bitmap[word];
+                    while (bits != 0) {
+                        action.accept(high | (word << 6) + Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            } else {
+                char[] array = (char[]) container;
+                for (int i = 0; i < cardinalities[chunk]; i++) {
+                    action.accept(high | array[i]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Элементы множества по возрастанию.
+     *
+     * @return новый массив.
+     */
+    public int[] toIntArray() {
+        if (values != null) {
+            return Arrays.copyOf(values, size);
+        }
+        int[] result = new int[size];
+        int[] position = new int[1];
+        forEachInt(value -> result[position[0]++] = value);
+        return result;
+    }
+    
+    /**
+     * Равномерная выборка элементов: если элементов не больше limit - все элементы, иначе каждый n-й по
+     * возрастанию, где n - наименьший шаг, при котором выборка не длиннее limit. Элементы берутся по номеру
+     * внутри блоков, без перебора остальных, поэтому время зависит от размера выборки и числа блоков,
+     * а не от размера множества.
+     *
+     * @param limit наибольший размер выборки, больше 0.
+     * @return элементы выборки по возрастанию.
+     */
+    public int[] sample(int limit) {
+        if (size <= limit) {
+            return toIntArray();
+        }
+        int step = (size + limit - 1) / limit;
+        int[] result = new int[(size + step - 1) / step];
+        if (values != null) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = values[i * step];
+            }
+            return result;
+        }
+        int count = 0;
+        int chunkStart = 0;
+        for (int chunk = 0; chunk < chunkCount && count < result.length; chunk++) {
+            int high = keys[chunk] << 16;
+            int chunkEnd = chunkStart + cardinalities[chunk];
+            Object container = containers[chunk];
+            if (container instanceof long[]) {
+                long[] bitmap = (long[]) container;
+                int word = 0;
+                int wordStart = 0;
+                for (int rank = count * step; rank < chunkEnd; rank = ++count * step) {
+                    int local = rank - chunkStart;
+                    while (wordStart + Long.bitCount(bitmap[word]) <= local) {
+                        wordStart += Long.bitCount(bitmap[word++]);
+                    }
+                    long bits = bitmap[word];
+                    for (int skip = local - wordStart; skip > 0; skip--) {
+                        bits &= bits - 1;
+                    }
+                    result[count] = high | (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+            } else {
+                char[] array = (char[]) container;
+                for (int rank = count * step; rank < chunkEnd; rank = ++count * step) {
+                    result[count] = high | array[rank - chunkStart];
+                }
+            }
+            chunkStart = chunkEnd;
+        }
+        return result;
+    }
+    
+    /**
+     * Пересечение двух множеств.
+     * <p>Элементы обоих множеств отсортированы, поэтому пересечение строится без хеширования:</p>
+     * <p>* два массива сравниваются линейным слиянием, а при сильно разных размерах - галопирующим поиском
+     * элементов меньшего массива в большем;</p>
+     * <p>* элементы небольшого множества ищутся в контейнерах большого;</p>
+     * <p>* у двух больших множеств пересекаются только блоки с общими старшими битами,
+     * битовые карты - поразрядным И.</p>
+     *
+     * @param first  множество №1.
+     * @param second множество №2.
+     * @return общие элементы по возрастанию.
+     */
+    public static int[] intersect(CompactIntSet first, CompactIntSet second) {
+        CompactIntSet smaller = first.size <= second.size ? first : second;
+        CompactIntSet larger = smaller == first ? second : first;
+        if (smaller.size == 0) {
+            return EMPTY;
+        }
+        if (smaller.values != null && larger.values != null) {
+            return intersectArrays(smaller.values, smaller.size, larger.values, larger.size);
+        }
+        if (smaller.values != null) {
+            int[] result = new int[smaller.size];
+            int count = 0;
+            for (int i = 0; i < smaller.size; i++) {
+                if (larger.contains(smaller.values[i])) {
+                    result[count++] = smaller.values[i];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        return intersectContainers(smaller, larger);
+    }
+    
+    /**
+     * Итератор по снимку элементов: множество можно менять во время перебора, в том числе через
+     * {@link Iterator#remove()}.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        int[] snapshot = toIntArray();
+        return new Iterator<>() {
+            private int position;
+            private boolean canRemove;
+            
+            @Override
+            public boolean hasNext() {
+                return position < snapshot.length;
+            }
+            
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                canRemove = true;
+                return snapshot[position++];
+            }
+            
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                canRemove = false;
+                CompactIntSet.this.remove(snapshot[position - 1]);
+            }
+        };
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof CompactIntSet) {
+            CompactIntSet other = (CompactIntSet) o;
+            return size == other.size && Arrays.equals(toIntArray(), other.toIntArray());
+        }
+        return super.equals(o);
+    }
+    
+    @Override
+    public int hashCode() {
+        //Как у Set<Integer>: сумма хеш-кодов элементов.
+        int[] hash = new int[1];
+        forEachInt(value -> hash[0] += value);
+        return hash[0];
+    }
+    
+    /**
+     * Пересечение отсортированных массивов; массив №1 не больше массива №2.
+     */
+    private static int[] intersectArrays(int[] smaller, int smallerSize, int[] larger, int largerSize) {
+        int[] result = new int[smallerSize];
+        int count = 0;
+        if (largerSize / smallerSize >= GALLOP_RATIO) {
+            int from = 0;
+            for (int i = 0; i < smallerSize && from < largerSize; i++) {
+                int value = smaller[i];
+                //Экспоненциально увеличиваем шаг, пока не перепрыгнем искомое значение.
+                int step = 1;
+                while (from + step < largerSize && larger[from + step] < value) {
+                    step <<= 1;
+                }
+                int index = Arrays.binarySearch(larger, from + (step >> 1), Math.min(from + step + 1, largerSize),
+                        value);
+                if (index >= 0) {
+                    result[count++] = value;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < smallerSize && j < largerSize) {
+                if (smaller[i] < larger[j]) {
+                    i++;
+                } else if (smaller[i] > larger[j]) {
+                    j++;
+                } else {
+                    result[count++] = smaller[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    private static int[] intersectContainers(CompactIntSet smaller, CompactIntSet larger) {
+        int[] result = new int[smaller.size];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < smaller.chunkCount && j < larger.chunkCount) {
+            if (smaller.keys[i] < larger.keys[j]) {
+                i++;
+            } else if (smaller.keys[i] > larger.keys[j]) {
+                j++;
+            } else {
+                int high = smaller.keys[i] << 16;
+                Object first = smaller.containers[i];
+                Object second = larger.containers[j];
+                if (first instanceof long[] && second instanceof long[]) {
+                    long[] firstBitmap = (long[]) first;
+                    long[] secondBitmap = (long[]) second;
+                    for (int word = 0; word < BITMAP_WORDS; word++) {
+                        long bits = firstBitmap[word] & secondBitmap[word];
+                        while (bits != 0) {
+                            result[count++] = high | (word << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                        }
+                    }
+                } else if (first instanceof long[] || second instanceof long[]) {
+                    boolean firstIsBitmap = first instanceof long[];
+                    long[] bitmap = (long[]) (firstIsBitmap ? first : second);
+                    char[] array = (char[]) (firstIsBitmap ? second : first);
+                    int cardinality = firstIsBitmap ? larger.cardinalities[j] : smaller.cardinalities[i];
+                    for (int k = 0; k < cardinality; k++) {
+                        char low = array[k];
+                        if ((bitmap[low >>> 6] & (1L << low)) != 0) {
+                            result[count++] = high | low;
+                        }
+                    }
+                } else {
+                    char[] firstArray = (char[]) first;
+                    char[] secondArray = (char[]) second;
+                    int a = 0;
+                    int b = 0;
+                    while (a < smaller.cardinalities[i] && b < larger.cardinalities[j]) {
+                        if (firstArray[a] < secondArray[b]) {
+                            a++;
+                        } else if (firstArray[a] > secondArray[b]) {
+                            b++;
+                        } else {
+                            result[count++] = high | firstArray[a];
+                            a++;
+                            b++;
+                        }
+                    }
+                }
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    private boolean containerContains(int chunk, char low) {
+        Object container = containers[chunk];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[chunk], low) >= 0;
+    }
+    
+    private boolean containerAdd(int chunk, char low) {
+        Object container = containers[chunk];
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= bit;
+            cardinalities[chunk]++;
+            return true;
+        }
+        char[] array = (char[]) container;
+        int cardinality = cardinalities[chunk];
+        int index = Arrays.binarySearch(array, 0, cardinality, low);
+        if (index >= 0) {
+            return false;
+        }
+        if (cardinality == CONTAINER_ARRAY_LIMIT) {
+            long[] bitmap = toBitmap(array, cardinality);
+            bitmap[low >>> 6] |= 1L << low;
+            containers[chunk] = bitmap;
+            cardinalities[chunk]++;
+            return true;
+        }
+        index = -index - 1;
+        if (cardinality == array.length) {
+            array = Arrays.copyOf(array, Math.min(CONTAINER_ARRAY_LIMIT, cardinality + (cardinality >> 1) + 1));
+            containers[chunk] = array;
+        }
+        System.arraycopy(array, index, array, index + 1, cardinality - index);
+        array[index] = low;
+        cardinalities[chunk]++;
+        return true;
+    }
+    
+    private boolean containerRemove(int chunk, char low) {
+        Object container = containers[chunk];
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~bit;
+            if (--cardinalities[chunk] == CONTAINER_ARRAY_LIMIT) {
+                containers[chunk] = toArray(bitmap, CONTAINER_ARRAY_LIMIT);
+            }
+            return true;
+        }
+        char[] array = (char[]) container;
+        int cardinality = cardinalities[chunk];
+        int index = Arrays.binarySearch(array, 0, cardinality, low);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(array, index + 1, array, index, cardinality - index - 1);
+        cardinalities[chunk]--;
+        return true;
+    }
+    
+    private void insertChunk(int chunk, int key) {
+        if (chunkCount == keys.length) {
+            int capacity = chunkCount + (chunkCount >> 1) + 1;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, chunk, keys, chunk + 1, chunkCount - chunk);
+        System.arraycopy(containers, chunk, containers, chunk + 1, chunkCount - chunk);
+        System.arraycopy(cardinalities, chunk, cardinalities, chunk + 1, chunkCount - chunk);
+        keys[chunk] = key;
+        containers[chunk] = new char[4];
+        cardinalities[chunk] = 0;
+        chunkCount++;
+    }
+    
+    private void removeChunk(int chunk) {
+        System.arraycopy(keys, chunk + 1, keys, chunk, chunkCount - chunk - 1);
+        System.arraycopy(containers, chunk + 1, containers, chunk, chunkCount - chunk - 1);
+        System.arraycopy(cardinalities, chunk + 1, cardinalities, chunk, chunkCount - chunk - 1);
+        chunkCount--;
+        containers[chunkCount] = null;
+    }
+    
+    private void convertToContainers() {
+        int[] elements = values;
+        int count = size;
+        values = null;
+        size = 0;
+        keys = new int[4];
+        containers = new Object[4];
+        cardinalities = new int[4];
+        chunkCount = 0;
+        for (int i = 0; i < count; i++) {
+            add(elements[i]);
+        }
+    }
+    
+    private void convertToArray() {
+        int[] elements = toIntArray();
+        keys = null;
+        containers = null;
+        cardinalities = null;
+        chunkCount = 0;
+        values = Arrays.copyOf(elements, Math.max(4, elements.length));
+    }
+    
+    private static long[] toBitmap(char[] array, int cardinality) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int i = 0; i < cardinality; i++) {
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        return bitmap;
+    }
+    
+    private static char[] toArray(long[] bitmap, int cardinality) {
+        char[] array = new char[cardinality];
+        int position = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                array[position++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,271 @@
+package ru.yandex.practicum.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Потокобезопасное компактное множество целых чисел для лайков фильма.
+ * <p>Элементы разложены по {@value #STRIPES} полосам {@link CompactIntSet} по младшим битам, у каждой полосы
+ * своя блокировка: лайки разных пользователей одному фильму ставятся параллельно, пока не попадут в одну полосу.
+ * Полоса создаётся при первом элементе, поэтому множество без элементов почти не занимает памяти.
+ * Размер хранится в {@link LongAdder} и читается без блокировок.</p>
+ * <p>Перебор и {@link #toIntArray()} читают полосы по очереди под их блокировками: каждая полоса читается
+ * согласованно, а множество целиком - только если его не меняют во время чтения.</p>
+ */
+public class ConcurrentIntSet extends AbstractSet<Integer> {
+    static final int STRIPES = 8;
+    
+    private final AtomicReferenceArray<CompactIntSet> stripes = new AtomicReferenceArray<>(STRIPES);
+    private final LongAdder size = new LongAdder();
+    /**
+     * Множество закрыто методом {@link #close()}: новые элементы не добавляются.
+     */
+    private volatile boolean closed;
+    
+    public ConcurrentIntSet() {
+    }
+    
+    /**
+     * Множество из перечисленных элементов.
+     *
+     * @param elements элементы.
+     * @return множество.
+     */
+    public static ConcurrentIntSet of(int... elements) {
+        ConcurrentIntSet result = new ConcurrentIntSet();
+        for (int element : elements) {
+            result.add(element);
+        }
+        return result;
+    }
+    
+    /**
+     * Привести множество к потокобезопасному виду. Потокобезопасное множество возвращается как есть.
+     *
+     * @param elements множество или null.
+     * @return потокобезопасное множество или null.
+     */
+    public static ConcurrentIntSet from(Set<Integer> elements) {
+        if (elements == null || elements instanceof ConcurrentIntSet) {
+            return (ConcurrentIntSet) elements;
+        }
+        ConcurrentIntSet result = new ConcurrentIntSet();
+        for (Integer element : elements) {
+            result.add((int) element);
+        }
+        return result;
+    }
+    
+    @Override
+    public int size() {
+        //Сумма читается без блокировок и во время изменений может на мгновение уйти ниже нуля.
+        return (int) Math.max(0, size.sum());
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) o);
+    }
+    
+    @Override
+    public boolean add(Integer element) {
+        return add((int) element);
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && remove((int) o);
+    }
+    
+    public boolean contains(int value) {
+        CompactIntSet stripe = stripes.get(stripeIndex(value));
+        if (stripe == null) {
+            return false;
+        }
+        synchronized (stripe) {
+            return stripe.contains(value);
+        }
+    }
+    
+    /**
+     * Добавить элемент.
+     *
+     * @param value элемент.
+     * @return True - элемент добавлен. False - элемент уже был или множество закрыто.
+     */
+    public boolean add(int value) {
+        CompactIntSet stripe = createdStripe(value);
+        synchronized (stripe) {
+            if (closed || !stripe.add(value)) {
+                return false;
+            }
+            size.increment();
+            return true;
+        }
+    }
+    
+    public boolean remove(int value) {
+        CompactIntSet stripe = stripes.get(stripeIndex(value));
+        if (stripe == null) {
+            return false;
+        }
+        synchronized (stripe) {
+            if (!stripe.remove(value)) {
+                return false;
+            }
+            size.decrement();
+            return true;
+        }
+    }
+    
+    @Override
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            CompactIntSet stripe = stripes.get(i);
+            if (stripe != null) {
+                synchronized (stripe) {
+                    size.add(-stripe.size());
+                    stripe.clear();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Блокировка полосы элемента. Под ней изменение элемента объединяется с другим действием,
+     * например с записью в журнал, так что изменения одного элемента идут в журнал в том же порядке,
+     * что и в множество.
+     *
+     * @param value элемент.
+     * @return объект блокировки.
+     */
+    public Object lockFor(int value) {
+        return createdStripe(value);
+    }
+    
+    /**
+     * Закрыть множество: дождаться изменений, начатых под блокировками полос, и запретить добавление
+     * новых элементов. Хранилище закрывает лайки удаляемого фильма, чтобы лайк, поставленный одновременно
+     * с удалением, не попал в журнал после удаления.
+     */
+    public void close() {
+        closed = true;
+        for (int i = 0; i < STRIPES; i++) {
+            CompactIntSet stripe = stripes.get(i);
+            if (stripe != null) {
+                synchronized (stripe) {
+                    //Блокировка берётся только для ожидания изменения, начатого до закрытия.
+                }
+            }
+        }
+    }
+    
+    /**
+     * Перебрать элементы по возрастанию без упаковки в Integer.
+     *
+     * @param action действие над элементом.
+     */
+    public void forEachInt(IntConsumer action) {
+        for (int value : toIntArray()) {
+            action.accept(value);
+        }
+    }
+    
+    /**
+     * Элементы множества по возрастанию.
+     *
+     * @return новый массив.
+     */
+    public int[] toIntArray() {
+        int[][] parts = new int[STRIPES][];
+        int total = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            CompactIntSet stripe = stripes.get(i);
+            if (stripe == null) {
+                parts[i] = new int[0];
+            } else {
+                synchronized (stripe) {
+                    parts[i] = stripe.toIntArray();
+                }
+            }
+            total += parts[i].length;
+        }
+        int[] result = new int[total];
+        int position = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+    
+    /**
+     * Итератор по снимку элементов: множество можно менять во время перебора, в том числе через
+     * {@link Iterator#remove()}.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        int[] snapshot = toIntArray();
+        return new Iterator<>() {
+            private int position;
+            private boolean canRemove;
+            
+            @Override
+            public boolean hasNext() {
+                return position < snapshot.length;
+            }
+            
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                canRemove = true;
+                return snapshot[position++];
+            }
+            
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                canRemove = false;
+                ConcurrentIntSet.this.remove(snapshot[position - 1]);
+            }
+        };
+    }
+    
+    @Override
+    public int hashCode() {
+        //Как у Set<Integer>: сумма хеш-кодов элементов.
+        int hash = 0;
+        for (int value : toIntArray()) {
+            hash += value;
+        }
+        return hash;
+    }
+    
+    /**
+     * Полоса элемента; создаётся, если её ещё нет.
+     */
+    private CompactIntSet createdStripe(int value) {
+        int index = stripeIndex(value);
+        CompactIntSet stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new CompactIntSet());
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+    
+    private static int stripeIndex(int value) {
+        return value & (STRIPES - 1);
+    }
+}
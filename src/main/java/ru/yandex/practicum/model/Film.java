@@ -5,7 +5,6 @@ import lombok.*;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 
@@ -18,7 +17,6 @@ import java.util.Set;
 @AllArgsConstructor
 
 public class Film {
-    static Integer count = 1;
     
     @NotNull
     @NotBlank
@@ -37,14 +35,20 @@ public class Film {
     @Positive
     Integer duration;
     
-    @JsonIgnore
-    Set<Integer> likes = new HashSet<>();
-    
     /**
-     * Метод генерации счётчика.
-     * @return целое число.
+     * ID пользователей, поставивших лайк.
      */
-    public static Integer getCount() {
-        return count++;
+    @JsonIgnore
+    ConcurrentIntSet likes = new ConcurrentIntSet();
+    
+    public void setLikes(Set<Integer> likes) {
+        this.likes = ConcurrentIntSet.from(likes);
+    }
+    
+    public static class FilmBuilder {
+        public FilmBuilder likes(Set<Integer> likes) {
+            this.likes = ConcurrentIntSet.from(likes);
+            return this;
+        }
     }
 }
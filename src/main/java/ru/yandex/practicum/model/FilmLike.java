@@ -0,0 +1,19 @@
+package ru.yandex.practicum.model;
+
+import lombok.*;
+
+/**
+ * Лайк фильму: пара (ID фильма, ID пользователя) для пакетной установки лайков.
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilmLike {
+    
+    Integer filmId;
+    
+    Integer userId;
+}
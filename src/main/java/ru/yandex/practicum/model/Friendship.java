@@ -0,0 +1,20 @@
+package ru.yandex.practicum.model;
+
+import lombok.*;
+
+/**
+ * Дружба: пара (ID пользователя, ID друга) для пакетного добавления в друзья.
+ * Дружба взаимная, поэтому порядок ID в паре не важен.
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class Friendship {
+    
+    Integer userId;
+    
+    Integer friendId;
+}
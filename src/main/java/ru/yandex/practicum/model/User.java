@@ -4,7 +4,6 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -23,9 +22,6 @@ import java.util.Set;
 @AllArgsConstructor
 public class User {
     
-    @JsonIgnore
-    static Integer count = 1;
-    
     Integer id;
     
     String email;
@@ -38,9 +34,16 @@ public class User {
     
     //ID друзей
     @JsonIgnore
-    Set<Integer> idsFriends = new HashSet<>();
+    CompactIntSet idsFriends = new CompactIntSet();
+    
+    public void setIdsFriends(Set<Integer> idsFriends) {
+        this.idsFriends = CompactIntSet.from(idsFriends);
+    }
     
-    public static Integer getCount() {
-        return count++;
+    public static class UserBuilder {
+        public UserBuilder idsFriends(Set<Integer> idsFriends) {
+            this.idsFriends = CompactIntSet.from(idsFriends);
+            return this;
+        }
     }
 }
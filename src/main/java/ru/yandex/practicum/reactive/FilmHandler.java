@@ -0,0 +1,145 @@
+package ru.yandex.practicum.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.service.FilmService;
+import ru.yandex.practicum.service.PopularFilmsCache;
+
+import static ru.yandex.practicum.reactive.ReactiveErrors.pathId;
+import static ru.yandex.practicum.reactive.ReactiveErrors.queryInt;
+
+/**
+ * Реактивные обработчики запросов к фильмам: те же адреса, параметры и ответы, что у
+ * {@link ru.yandex.practicum.controller.FilmController}, и та же логика {@link FilmService}.
+ */
+@Slf4j
+class FilmHandler {
+    private final FilmService filmService;
+    private final PopularFilmsCache popularFilmsCache;
+    private final ObjectMapper objectMapper;
+    private final StorageCalls storage;
+    
+    FilmHandler(FilmService filmService, PopularFilmsCache popularFilmsCache, ObjectMapper objectMapper,
+                StorageCalls storage) {
+        this.filmService = filmService;
+        this.popularFilmsCache = popularFilmsCache;
+        this.objectMapper = objectMapper;
+        this.storage = storage;
+    }
+    
+    /**
+     * GET /films - все фильмы массивом JSON, страница фильмов ({@code after}, {@code limit}) со ссылкой
+     * на следующую страницу или, с заголовком {@code Accept: application/x-ndjson}, выгрузка всех фильмов.
+     * Весь список пишется в ответ по мере чтения из хранилища. ETag - версия библиотеки.
+     */
+    Mono<ServerResponse> getAllFilms(ServerRequest request) {
+        Integer after = queryInt(request, "after");
+        Integer limit = queryInt(request, "limit");
+        if (RecordBodies.isNdjson(request)) {
+            log.info("Начата выгрузка всех фильмов в формате NDJSON.");
+            return RecordBodies.ndjson(ServerResponse.ok(), objectMapper, storage.stream(filmService::streamAllFilms));
+        }
+        return storage.read(filmService::getFilmsVersion).flatMap(version ->
+                ReactiveETags.ifModified(request, version, response -> {
+                    if (after == null && limit == null) {
+                        log.info("Выдан ответ на запрос всех фильмов.");
+                        return RecordBodies.jsonArray(response, objectMapper,
+                                storage.stream(filmService::streamAllFilms));
+                    }
+                    return storage.read(() -> filmService.getFilmsPage(after, limit)).flatMap(page -> {
+                        log.info("Выдан ответ на запрос страницы фильмов после ID = {}.", after);
+                        return RecordBodies.page(request, response, page, limit,
+                                page.isEmpty() ? 0 : page.get(page.size() - 1).getId());
+                    });
+                }));
+    }
+    
+    /**
+     * POST /films - создание фильма.
+     */
+    Mono<ServerResponse> createFilm(ServerRequest request) {
+        return request.bodyToMono(Film.class)
+                .flatMap(film -> storage.write(() -> filmService.createFilm(film)))
+                .flatMap(film -> ServerResponse.ok().bodyValue(film));
+    }
+    
+    /**
+     * PUT /films - обновление фильма.
+     */
+    Mono<ServerResponse> updateFilm(ServerRequest request) {
+        return request.bodyToMono(Film.class)
+                .flatMap(film -> storage.write(() -> filmService.updateFilm(film)))
+                .flatMap(film -> ServerResponse.ok().bodyValue(film));
+    }
+    
+    /**
+     * GET /films/{id}. ETag - версия фильма.
+     */
+    Mono<ServerResponse> getFilmById(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        return storage.read(() -> filmService.getFilmVersion(id)).flatMap(version ->
+                ReactiveETags.ifModified(request, version, response ->
+                        storage.read(() -> filmService.getFilmByID(id)).flatMap(film -> {
+                            log.info("Выдан ответ на запрос фильма по ID.");
+                            return response.bodyValue(film);
+                        })));
+    }
+    
+    /**
+     * PUT /films/{id}/like/{userId} - пользователь ставит лайк фильму.
+     */
+    Mono<ServerResponse> addLikeForFilm(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        Integer userId = pathId(request, "userId");
+        return storage.write(() -> {
+            filmService.addLikeForFilm(id, userId);
+            return "Лайк фильму (ID = " + id + ") установлен пользователем (ID = " + userId + ").";
+        }).flatMap(message -> {
+            log.info(message);
+            return ServerResponse.ok().bodyValue(message);
+        });
+    }
+    
+    /**
+     * DELETE /films/{id}/like/{userId} - пользователь удаляет лайк.
+     */
+    Mono<ServerResponse> deleteLikeForFilm(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        Integer userId = pathId(request, "userId");
+        return storage.write(() -> {
+            filmService.deleteLikeForFilm(id, userId);
+            return "Пользователем (ID = " + userId + ") выполнено удаление лайка фильму (ID = " + id + ").";
+        }).flatMap(message -> {
+            log.info(message);
+            return ServerResponse.status(HttpStatus.NO_CONTENT).bodyValue(message);
+        });
+    }
+    
+    /**
+     * GET /films/{id}/likes/count - количество лайков фильма.
+     */
+    Mono<ServerResponse> getLikeCount(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        return storage.read(() -> filmService.getLikeCount(id)).flatMap(count -> {
+            log.info("Выдан ответ на запрос количества лайков фильма (ID = {}).", id);
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(count);
+        });
+    }
+    
+    /**
+     * GET /films/popular?count={count} - первые count фильмов по количеству лайков из {@link PopularFilmsCache}.
+     */
+    Mono<ServerResponse> getPopularFilms(ServerRequest request) {
+        Integer count = queryInt(request, "count");
+        return storage.read(() -> popularFilmsCache.getPopularFilms(count)).flatMap(popularFilms -> {
+            log.info("Выдан ответ на запрос о выдаче списка популярных фильмов.");
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(popularFilms);
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import ru.yandex.practicum.controller.ErrorHandler;
+import ru.yandex.practicum.service.FilmService;
+import ru.yandex.practicum.service.PopularFilmsCache;
+import ru.yandex.practicum.service.RecommendationService;
+import ru.yandex.practicum.service.UserService;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.DELETE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Реактивный вариант API фильмов и пользователей на Netty: {@code spring.main.web-application-type=reactive}.
+ * <p>Адреса, параметры, ответы и ошибки те же, что у сервлетных контроллеров, а логика - те же
+ * {@link FilmService} и {@link UserService}. Запросы обслуживают несколько потоков цикла событий Netty,
+ * вызовы хранилища, которые могут ждать, уходят в отдельные потоки ({@link StorageCalls}), а полные списки
+ * пишутся в ответ по мере готовности клиента их принять ({@link RecordBodies}).</p>
+ * <p>В реактивном варианте нет пакетных операций ({@code /films/import}, {@code PUT /films/likes},
+ * {@code PUT /users/friends}) и статистики кеша популярных фильмов: они остаются в сервлетном варианте.</p>
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfiguration {
+    
+    /**
+     * Netty: без этого бина Spring Boot выбрал бы Tomcat, который тоже есть в зависимостях.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+    
+    @Bean
+    public StorageCalls storageCalls(@Value("${filmorate.storage.type:memory}") String storageType,
+                                     @Value("${filmorate.storage.dir:}") String storageDir,
+                                     @Value("${filmorate.storage.wal.fsync:always}") String fsync) {
+        return StorageCalls.forStorage(storageType, storageDir, fsync);
+    }
+    
+    @Bean
+    public RouterFunction<ServerResponse> filmRoutes(FilmService filmService, PopularFilmsCache popularFilmsCache,
+                                                     ObjectMapper objectMapper, StorageCalls storageCalls,
+                                                     ErrorHandler errorHandler) {
+        FilmHandler films = new FilmHandler(filmService, popularFilmsCache, objectMapper, storageCalls);
+        //Путь /films/popular проверяется раньше /films/{id}.
+        return route(GET("/films/popular"), films::getPopularFilms)
+                .andRoute(GET("/films"), films::getAllFilms)
+                .andRoute(POST("/films"), films::createFilm)
+                .andRoute(PUT("/films"), films::updateFilm)
+                .andRoute(GET("/films/{id}"), films::getFilmById)
+                .andRoute(GET("/films/{id}/likes/count"), films::getLikeCount)
+                .andRoute(PUT("/films/{id}/like/{userId}"), films::addLikeForFilm)
+                .andRoute(DELETE("/films/{id}/like/{userId}"), films::deleteLikeForFilm)
+                .filter(new ReactiveErrors(errorHandler));
+    }
+    
+    @Bean
+    public RouterFunction<ServerResponse> userRoutes(UserService userService,
+                                                     RecommendationService recommendationService,
+                                                     ObjectMapper objectMapper, StorageCalls storageCalls,
+                                                     ErrorHandler errorHandler) {
+        UserHandler users = new UserHandler(userService, recommendationService, objectMapper, storageCalls);
+        return route(GET("/users"), users::getAllUsers)
+                .andRoute(POST("/users"), users::createUser)
+                .andRoute(PUT("/users"), users::updateUser)
+                .andRoute(GET("/users/{id}"), users::getUser)
+                .andRoute(GET("/users/{id}/friends"), users::getUserFriends)
+                .andRoute(GET("/users/{id}/friends/common/{otherId}"), users::getCommonFriends)
+                .andRoute(GET("/users/{id}/friends/suggestions"), users::getFriendSuggestions)
+                .andRoute(PUT("/users/{id}/friends/{friendId}"), users::addEachOtherAsFriends)
+                .andRoute(DELETE("/users/{id}/friends/{friendId}"), users::deleteFromFriends)
+                .andRoute(GET("/users/{id}/recommendations"), users::getRecommendations)
+                .filter(new ReactiveErrors(errorHandler));
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.reactive;
+
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.controller.ETags;
+
+import java.util.function.Function;
+
+/**
+ * Условные запросы GET реактивного API - те же ETag, что у сервлетных контроллеров ({@link ETags}).
+ */
+final class ReactiveETags {
+    
+    private ReactiveETags() {
+    }
+    
+    /**
+     * Ответ 304, если {@code If-None-Match} совпадает с версией ресурса, иначе полный ответ с заголовком
+     * {@code ETag}. Полный ответ строится, только если ресурс изменился.
+     *
+     * @param request  запрос.
+     * @param version  версия ресурса; меньше 0 - ресурса нет, проверка не выполняется.
+     * @param response полный ответ по заготовке со статусом 200 и заголовком ETag.
+     */
+    static Mono<ServerResponse> ifModified(ServerRequest request, long version,
+                                           Function<ServerResponse.BodyBuilder, Mono<ServerResponse>> response) {
+        if (version < 0) {
+            return response.apply(ServerResponse.ok());
+        }
+        String eTag = ETags.of(version);
+        return request.checkNotModified(eTag)
+                .switchIfEmpty(Mono.defer(() -> response.apply(ServerResponse.ok().eTag(eTag))));
+    }
+}
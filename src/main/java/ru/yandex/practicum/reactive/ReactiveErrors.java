@@ -0,0 +1,74 @@
+package ru.yandex.practicum.reactive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.controller.ErrorHandler;
+import ru.yandex.practicum.exception.NotFoundRecordInBD;
+import ru.yandex.practicum.exception.ValidateException;
+
+/**
+ * Ответы на исключения реактивных обработчиков - те же статусы, тела и счётчики, что у {@link ErrorHandler}
+ * сервлетных контроллеров ({@code @RestControllerAdvice} к функциональным маршрутам не применяется).
+ */
+@Slf4j
+class ReactiveErrors implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+    private final ErrorHandler errorHandler;
+    
+    ReactiveErrors(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+    
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        return Mono.defer(() -> next.handle(request))
+                .onErrorResume(NotFoundRecordInBD.class, ex -> {
+                    errorHandler.getNotFound().increment();
+                    return respond(HttpStatus.NOT_FOUND, "Error 404. Not Found. — " + ex.getMessage());
+                })
+                .onErrorResume(ValidateException.class, ex -> {
+                    errorHandler.getBadRequest().increment();
+                    return respond(HttpStatus.BAD_REQUEST, "Error 400. Bad Request. — " + ex.getMessage());
+                });
+    }
+    
+    /**
+     * ID из пути запроса.
+     *
+     * @throws ValidateException значение не число.
+     */
+    static Integer pathId(ServerRequest request, String name) throws ValidateException {
+        String value = request.pathVariable(name);
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException ex) {
+            throw new ValidateException("Параметр " + name + " должен быть целым числом: " + value + ".");
+        }
+    }
+    
+    /**
+     * Необязательный целочисленный параметр запроса.
+     *
+     * @throws ValidateException значение не число.
+     */
+    static Integer queryInt(ServerRequest request, String name) throws ValidateException {
+        String value = request.queryParam(name).orElse(null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException ex) {
+            throw new ValidateException("Параметр " + name + " должен быть целым числом: " + value + ".");
+        }
+    }
+    
+    private static Mono<ServerResponse> respond(HttpStatus status, String message) {
+        log.error(message);
+        return ServerResponse.status(status).bodyValue(message);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.reactive;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.service.Paging;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Ответы реактивного API со списками записей.
+ * <p>Полные списки пишутся в ответ по мере чтения из хранилища. Записи сериализуются пачками
+ * по {@value #BATCH} в один буфер: кодек WebFlux для NDJSON сбрасывает ответ после каждой записи,
+ * и каждая строка ушла бы отдельным пакетом. Следующая пачка читается,
+ * только когда Netty готов её отправить, поэтому ответ медленному клиенту не накапливается в памяти.</p>
+ */
+final class RecordBodies {
+    static final int BATCH = 128;
+    private static final byte[] NEW_LINE = {'\n'};
+    private static final byte[] COMMA = {','};
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_END = {']'};
+    
+    private RecordBodies() {
+    }
+    
+    /**
+     * Ответ в формате NDJSON ({@code application/x-ndjson}): по одной записи на строку.
+     *
+     * @param response статус и заголовки ответа.
+     */
+    static <T> Mono<ServerResponse> ndjson(ServerResponse.BodyBuilder response, ObjectMapper mapper,
+                                           Flux<T> records) {
+        ObjectWriter writer = mapper.writer();
+        Flux<DataBuffer> body = records.buffer(BATCH)
+                .map(batch -> encode(writer, batch, null, null, NEW_LINE));
+        return response.contentType(MediaType.APPLICATION_NDJSON).body(BodyInserters.fromDataBuffers(body));
+    }
+    
+    /**
+     * Ответ с массивом JSON.
+     *
+     * @param response статус и заголовки ответа.
+     */
+    static <T> Mono<ServerResponse> jsonArray(ServerResponse.BodyBuilder response, ObjectMapper mapper,
+                                              Flux<T> records) {
+        ObjectWriter writer = mapper.writer();
+        Flux<DataBuffer> body = Flux.concat(
+                Mono.fromSupplier(() -> wrap(ARRAY_START)),
+                records.buffer(BATCH).index()
+                        .map(batch -> encode(writer, batch.getT2(), batch.getT1() == 0 ? null : COMMA, COMMA, null)),
+                Mono.fromSupplier(() -> wrap(ARRAY_END)));
+        return response.contentType(MediaType.APPLICATION_JSON).body(BodyInserters.fromDataBuffers(body));
+    }
+    
+    /**
+     * Запрошена ли выгрузка в формате NDJSON (заголовок {@code Accept: application/x-ndjson}).
+     */
+    static boolean isNdjson(ServerRequest request) {
+        return request.headers().accept().stream()
+                .anyMatch(type -> type.isCompatibleWith(MediaType.APPLICATION_NDJSON) && !type.isWildcardType());
+    }
+    
+    /**
+     * Ответ со страницей и ссылкой на следующую страницу в заголовке {@code Link}, если страница заполнена
+     * целиком (как {@code PageLinks} сервлетных контроллеров).
+     */
+    static <T> Mono<ServerResponse> page(ServerRequest request, ServerResponse.BodyBuilder response, List<T> page,
+                                         Integer limit, int lastId) {
+        if (!page.isEmpty() && page.size() >= Objects.requireNonNullElse(limit, Paging.DEFAULT_LIMIT)) {
+            String next = UriComponentsBuilder.fromUri(request.uri())
+                    .replaceQueryParam("after", lastId)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.contentType(MediaType.APPLICATION_JSON).bodyValue(page);
+    }
+    
+    /**
+     * Пачка записей в одном буфере.
+     *
+     * @param leading   перед первой записью пачки.
+     * @param separator между записями пачки.
+     * @param trailing  после каждой записи.
+     */
+    private static <T> DataBuffer encode(ObjectWriter writer, List<T> records, byte[] leading, byte[] separator,
+                                         byte[] trailing) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(records.size() * 256);
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                byte[] prefix = i == 0 ? leading : separator;
+                if (prefix != null) {
+                    out.writeBytes(prefix);
+                }
+                out.writeBytes(writer.writeValueAsBytes(records.get(i)));
+                if (trailing != null) {
+                    out.writeBytes(trailing);
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            throw new EncodingException("Не удалось сериализовать запись.", ex);
+        }
+        return wrap(out.toByteArray());
+    }
+    
+    private static DataBuffer wrap(byte[] bytes) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.reactive;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Вызовы сервисов и хранилищ из реактивных обработчиков.
+ * <p>Поток цикла событий Netty нельзя занимать ожиданием, поэтому вызовы, которые могут ждать ввода-вывода,
+ * выполняются в {@link Schedulers#boundedElastic()}. Переключение потока стоит микросекунды - столько же,
+ * сколько сам вызов хранилища в памяти, поэтому неблокирующие вызовы выполняются сразу в потоке запроса:</p>
+ * <p>* хранилище в БД ({@code filmorate.storage.type=jdbc}) - чтение и запись ждут ответа БД;</p>
+ * <p>* хранилище в памяти - чтение не ждёт никогда, запись ждёт сброса журнала на диск, только если журнал
+ * ведётся ({@code filmorate.storage.dir}) и сбрасывается перед ответом
+ * ({@code filmorate.storage.wal.fsync=always}).</p>
+ * <p>Вычисления, которые занимают процессор дольше нескольких микросекунд, выполняются в
+ * {@link Schedulers#boundedElastic()} при любом хранилище.</p>
+ */
+@Slf4j
+public class StorageCalls {
+    private final Scheduler reads;
+    private final Scheduler writes;
+    
+    StorageCalls(Scheduler reads, Scheduler writes) {
+        this.reads = reads;
+        this.writes = writes;
+    }
+    
+    /**
+     * Выбрать потоки по настройкам хранилища.
+     *
+     * @param storageType {@code filmorate.storage.type}.
+     * @param storageDir  {@code filmorate.storage.dir}.
+     * @param fsync       {@code filmorate.storage.wal.fsync}.
+     */
+    public static StorageCalls forStorage(String storageType, String storageDir, String fsync) {
+        boolean jdbc = "jdbc".equalsIgnoreCase(storageType);
+        boolean durableWrites = !storageDir.isBlank() && "always".equalsIgnoreCase(fsync);
+        Scheduler reads = jdbc ? Schedulers.boundedElastic() : Schedulers.immediate();
+        Scheduler writes = jdbc || durableWrites ? Schedulers.boundedElastic() : Schedulers.immediate();
+        log.info("Реактивный API: чтение из хранилища - {}, запись - {}.", reads, writes);
+        return new StorageCalls(reads, writes);
+    }
+    
+    /**
+     * Чтение: результат вызова или пустой Mono, если вызов вернул null.
+     */
+    public <T> Mono<T> read(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(reads);
+    }
+    
+    /**
+     * Изменение: результат вызова или пустой Mono, если вызов вернул null.
+     */
+    public <T> Mono<T> write(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(writes);
+    }
+    
+    /**
+     * Долгое вычисление: результат вызова или пустой Mono, если вызов вернул null.
+     */
+    public <T> Mono<T> compute(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    /**
+     * Записи потока по запросу подписчика: следующая запись читается из хранилища, только когда
+     * подписчик готов её принять. Поток закрывается после последней записи, ошибки или отмены.
+     */
+    public <T> Flux<T> stream(Supplier<Stream<? extends T>> records) {
+        return Flux.fromStream(records).subscribeOn(reads);
+    }
+}
@@ -0,0 +1,173 @@
+package ru.yandex.practicum.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.service.RecommendationService;
+import ru.yandex.practicum.service.UserService;
+
+import static ru.yandex.practicum.reactive.ReactiveErrors.pathId;
+import static ru.yandex.practicum.reactive.ReactiveErrors.queryInt;
+
+/**
+ * Реактивные обработчики запросов к пользователям: те же адреса, параметры и ответы, что у
+ * {@link ru.yandex.practicum.controller.UserController}, и та же логика {@link UserService}.
+ */
+@Slf4j
+class UserHandler {
+    private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final ObjectMapper objectMapper;
+    private final StorageCalls storage;
+    
+    UserHandler(UserService userService, RecommendationService recommendationService, ObjectMapper objectMapper,
+                StorageCalls storage) {
+        this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.objectMapper = objectMapper;
+        this.storage = storage;
+    }
+    
+    /**
+     * GET /users - все пользователи массивом JSON, страница пользователей ({@code after}, {@code limit})
+     * со ссылкой на следующую страницу или, с заголовком {@code Accept: application/x-ndjson}, выгрузка всех
+     * пользователей. Весь список пишется в ответ по мере чтения из хранилища. ETag - версия пользователей.
+     */
+    Mono<ServerResponse> getAllUsers(ServerRequest request) {
+        Integer after = queryInt(request, "after");
+        Integer limit = queryInt(request, "limit");
+        if (RecordBodies.isNdjson(request)) {
+            log.info("Начата выгрузка всех пользователей в формате NDJSON.");
+            return RecordBodies.ndjson(ServerResponse.ok(), objectMapper, storage.stream(userService::streamAllUsers));
+        }
+        return storage.read(userService::getUsersVersion).flatMap(version ->
+                ReactiveETags.ifModified(request, version, response -> {
+                    if (after == null && limit == null) {
+                        log.info("Выдан ответ на запрос всех пользователей.");
+                        return RecordBodies.jsonArray(response, objectMapper,
+                                storage.stream(userService::streamAllUsers));
+                    }
+                    return storage.read(() -> userService.getUsersPage(after, limit)).flatMap(page -> {
+                        log.info("Выдан ответ на запрос страницы пользователей после ID = {}.", after);
+                        return RecordBodies.page(request, response, page, limit,
+                                page.isEmpty() ? 0 : page.get(page.size() - 1).getId());
+                    });
+                }));
+    }
+    
+    /**
+     * POST /users - создание пользователя.
+     */
+    Mono<ServerResponse> createUser(ServerRequest request) {
+        return request.bodyToMono(User.class)
+                .flatMap(user -> storage.write(() -> userService.addToStorage(user)))
+                .flatMap(createdUser -> {
+                    log.info("Выдан ответ на запрос создания пользователя: {}", createdUser);
+                    return ServerResponse.ok().bodyValue(createdUser);
+                });
+    }
+    
+    /**
+     * PUT /users - обновление пользователя.
+     */
+    Mono<ServerResponse> updateUser(ServerRequest request) {
+        return request.bodyToMono(User.class)
+                .flatMap(user -> storage.write(() -> userService.updateInStorage(user)))
+                .flatMap(updatedUser -> ServerResponse.ok().bodyValue(updatedUser));
+    }
+    
+    /**
+     * GET /users/{id}.
+     */
+    Mono<ServerResponse> getUser(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        return storage.read(() -> userService.getUserById(id)).flatMap(user -> {
+            log.info("Выдан ответ на запрос пользователя по ID = {}.", id);
+            return ServerResponse.ok().bodyValue(user);
+        });
+    }
+    
+    /**
+     * PUT /users/{id}/friends/{friendId} - добавление в друзья.
+     */
+    Mono<ServerResponse> addEachOtherAsFriends(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        Integer friendId = pathId(request, "friendId");
+        return storage.write(() -> {
+            userService.addEachOtherAsFriends(id, friendId);
+            return "Запрос на дружбу с пользователем (ID = " + friendId + ") успешно обработан.";
+        }).flatMap(message -> {
+            log.info("Пользователь (ID = {}) подружился с пользователем (ID = {}).", id, friendId);
+            return ServerResponse.ok().bodyValue(message);
+        });
+    }
+    
+    /**
+     * DELETE /users/{id}/friends/{friendId} - удаление из друзей.
+     */
+    Mono<ServerResponse> deleteFromFriends(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        Integer friendId = pathId(request, "friendId");
+        return storage.write(() -> {
+            userService.deleteFromFriends(id, friendId);
+            return "Запрос на завершение дружбы с пользователем (ID = " + friendId + ") успешно обработан.";
+        }).flatMap(message -> {
+            log.info("Грусть. Дружба пользователя (ID = {}) с пользователем (ID = {}) завершена )-;", id, friendId);
+            return ServerResponse.ok().bodyValue(message);
+        });
+    }
+    
+    /**
+     * GET /users/{id}/friends - друзья пользователя. ETag - версия списка друзей.
+     */
+    Mono<ServerResponse> getUserFriends(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        return storage.read(() -> userService.getFriendsVersion(id)).flatMap(version ->
+                ReactiveETags.ifModified(request, version, response ->
+                        storage.read(() -> userService.getUserFriends(id)).flatMap(friends -> {
+                            log.info("Выдан ответ на запрос информации о друзьях пользователя с ID = {}", id);
+                            return response.bodyValue(friends);
+                        })));
+    }
+    
+    /**
+     * GET /users/{id}/friends/common/{otherId} - общие друзья двух пользователей.
+     */
+    Mono<ServerResponse> getCommonFriends(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        Integer otherId = pathId(request, "otherId");
+        return storage.read(() -> userService.getCommonFriends(id, otherId)).flatMap(friends -> {
+            log.info("Выдан ответ на запрос информации об общих друзьях пользователя с ID = {}", otherId);
+            return ServerResponse.ok().bodyValue(friends);
+        });
+    }
+    
+    /**
+     * GET /users/{id}/friends/suggestions?count={count} - рекомендуемые друзья. Перебор дружб друзей занимает
+     * процессор, поэтому, как и рекомендации фильмов, всегда выполняется вне цикла событий.
+     */
+    Mono<ServerResponse> getFriendSuggestions(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        Integer count = queryInt(request, "count");
+        return storage.compute(() -> userService.getFriendSuggestions(id, count)).flatMap(suggestions -> {
+            log.info("Выдан ответ на запрос рекомендуемых друзей пользователя с ID = {}", id);
+            return ServerResponse.ok().bodyValue(suggestions);
+        });
+    }
+    
+    /**
+     * GET /users/{id}/recommendations?count={count} - рекомендации фильмов. Поиск соседей занимает процессор
+     * на миллисекунды, поэтому всегда выполняется вне цикла событий.
+     */
+    Mono<ServerResponse> getRecommendations(ServerRequest request) {
+        Integer id = pathId(request, "id");
+        Integer count = queryInt(request, "count");
+        return storage.compute(() -> recommendationService.getRecommendations(id, count)).flatMap(films -> {
+            log.info("Выдан ответ на запрос рекомендаций фильмов для пользователя с ID = {}", id);
+            return ServerResponse.ok().bodyValue(films);
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package ru.yandex.practicum.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.exception.ValidateException;
+import ru.yandex.practicum.model.BatchReport;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.storage.film.FilmStorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетная загрузка фильмов из потока NDJSON или массива JSON.
+ * <p>Тело запроса читается по одной записи, без сборки всего тела в памяти. Каждый фильм проверяется так же,
+ * как в {@link FilmService#createFilm(Film)}, но без записи в лог на каждый фильм; фильмы без ID получают
+ * новый ID. Проверенные фильмы записываются в хранилище пачками по {@value #BATCH_SIZE}
+ * через {@link FilmStorage#putAll(List)}.</p>
+ * <p>Ошибка в записи не прерывает загрузку: она попадает в отчёт с номером строки NDJSON или элемента массива.
+ * Прерывает загрузку только нарушенный синтаксис массива JSON, после которого следующий элемент не найти.</p>
+ */
+@Slf4j
+@Service
+public class FilmImportService {
+    static final int BATCH_SIZE = 1000;
+    
+    private final FilmService filmService;
+    private final FilmStorage filmStorage;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader filmReader;
+    
+    @Autowired
+    public FilmImportService(FilmService filmService, FilmStorage filmStorage, ObjectMapper objectMapper) {
+        this.filmService = filmService;
+        this.filmStorage = filmStorage;
+        this.objectMapper = objectMapper;
+        this.filmReader = objectMapper.readerFor(Film.class);
+    }
+    
+    /**
+     * Загрузить фильмы из потока NDJSON: по одному объекту JSON на строку, пустые строки пропускаются.
+     *
+     * @param in тело запроса.
+     * @return отчёт о загрузке; номер записи - номер строки.
+     */
+    public BatchReport importNdjson(InputStream in) throws IOException {
+        Batch batch = new Batch();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        long line = 0;
+        for (String text = reader.readLine(); text != null; text = reader.readLine()) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            try {
+                batch.add(line, filmReader.readValue(text));
+            } catch (JsonProcessingException ex) {
+                batch.report.failed(line, "Ошибка разбора JSON: " + ex.getOriginalMessage());
+            }
+        }
+        return batch.finish();
+    }
+    
+    /**
+     * Загрузить фильмы из массива JSON.
+     *
+     * @param in тело запроса.
+     * @return отчёт о загрузке; номер записи - номер элемента массива.
+     * @throws ValidateException тело запроса - не массив JSON.
+     */
+    public BatchReport importJsonArray(InputStream in) throws IOException, ValidateException {
+        Batch batch = new Batch();
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                String error = "Для загрузки фильмов тело запроса должно быть массивом JSON.";
+                log.error(error);
+                throw new ValidateException(error);
+            }
+            long record = 0;
+            while (true) {
+                JsonNode node;
+                try {
+                    if (parser.nextToken() == JsonToken.END_ARRAY) {
+                        break;
+                    }
+                    record++;
+                    //Элемент читается деревом целиком, поэтому ошибка в значении поля не сбивает разбор массива.
+                    node = parser.readValueAsTree();
+                } catch (JsonProcessingException ex) {
+                    batch.report.failed(record, "Нарушен синтаксис JSON, загрузка прервана: "
+                            + ex.getOriginalMessage());
+                    break;
+                }
+                if (node == null) {
+                    batch.report.failed(record, "Массив JSON не закрыт, загрузка прервана.");
+                    break;
+                }
+                try {
+                    batch.add(record, filmReader.readValue(node));
+                } catch (JsonProcessingException ex) {
+                    batch.report.failed(record, "Ошибка разбора JSON: " + ex.getOriginalMessage());
+                }
+            }
+        }
+        return batch.finish();
+    }
+    
+    /**
+     * Пачка проверенных фильмов, ожидающих записи в хранилище.
+     */
+    private class Batch {
+        private final BatchReport report = new BatchReport();
+        private final List<Film> films = new ArrayList<>(BATCH_SIZE);
+        private final List<Long> records = new ArrayList<>(BATCH_SIZE);
+        
+        /**
+         * Проверить фильм и добавить его в пачку; полная пачка записывается в хранилище.
+         *
+         * @param record номер записи.
+         * @param film   фильм.
+         */
+        void add(long record, Film film) {
+            if (film == null) {
+                report.failed(record, "Вместо фильма передан null.");
+                return;
+            }
+            //ID выдаётся до проверки: иначе проверка пишет в лог о каждом фильме без ID.
+            if (film.getId() == null) {
+                film.setId(filmStorage.generateId());
+            }
+            try {
+                filmService.checkFilm(film);
+            } catch (ValidateException ex) {
+                report.failed(record, ex.getMessage());
+                return;
+            }
+            films.add(film);
+            records.add(record);
+            if (films.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+        
+        void flush() {
+            if (films.isEmpty()) {
+                return;
+            }
+            try {
+                filmStorage.putAll(films);
+                report.succeeded(films.size());
+            } catch (RuntimeException ex) {
+                log.error("Не удалось записать пачку фильмов.", ex);
+                for (Long record : records) {
+                    report.failed(record, "Ошибка записи в хранилище: " + ex.getMessage());
+                }
+            }
+            films.clear();
+            records.clear();
+        }
+        
+        BatchReport finish() {
+            flush();
+            report.finish();
+            log.info("Загрузка фильмов: обработано {}, загружено {}, с ошибками {}, {} мс, {} фильмов/с.",
+                    report.getProcessed(), report.getSucceeded(), report.getFailed(), report.getElapsedMillis(),
+                    report.getPerSecond());
+            return report;
+        }
+    }
+}
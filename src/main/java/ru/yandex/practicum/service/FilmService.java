@@ -1,35 +1,64 @@
 package ru.yandex.practicum.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.exception.NotFoundRecordInBD;
 import ru.yandex.practicum.exception.ValidateException;
+import ru.yandex.practicum.model.BatchReport;
 import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.FilmLike;
 import ru.yandex.practicum.model.User;
 import ru.yandex.practicum.storage.film.FilmStorage;
 import ru.yandex.practicum.storage.user.UserStorage;
 
 import java.time.LocalDate;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@Timed("filmorate.service")
 public class FilmService {
+    /**
+     * Размер пачки, которыми пары пакетной установки лайков передаются в хранилище.
+     */
+    static final int BULK_BATCH_SIZE = 1000;
+    /**
+     * Наибольшая длина названия фильма.
+     */
+    static final int MAX_NAME_LENGTH = 255;
+    
     private final FilmStorage inMemoryFilmStorage;
     private final UserStorage inMemoryUserStorage;
+    /**
+     * Поставленные и удалённые лайки: filmorate_likes_total{change="added|removed"}.
+     */
+    private final Counter likesAdded;
+    private final Counter likesRemoved;
     
     @Value("23245")
     Integer x;
     
-    @Autowired
     public FilmService(FilmStorage inMemoryFilmStorage, UserStorage inMemoryUserStorage) {
+        this(inMemoryFilmStorage, inMemoryUserStorage, new SimpleMeterRegistry());
+    }
+    
+    @Autowired
+    public FilmService(FilmStorage inMemoryFilmStorage, UserStorage inMemoryUserStorage, MeterRegistry registry) {
         this.inMemoryFilmStorage = inMemoryFilmStorage;
         this.inMemoryUserStorage = inMemoryUserStorage;
+        this.likesAdded = registry.counter("filmorate.likes", "change", "added");
+        this.likesRemoved = registry.counter("filmorate.likes", "change", "removed");
     }
     
     /**
@@ -41,6 +70,26 @@ public class FilmService {
         return inMemoryFilmStorage.getAllFilms();
     }
     
+    /**
+     * Перебор всех фильмов библиотеки по возрастанию ID без сборки в список. Поток нужно закрыть.
+     *
+     * @return поток фильмов.
+     */
+    public Stream<Film> streamAllFilms() {
+        return inMemoryFilmStorage.streamAllFilms();
+    }
+    
+    /**
+     * Получение страницы фильмов по возрастанию ID.
+     *
+     * @param after ID последнего фильма предыдущей страницы (если нет, то с начала библиотеки).
+     * @param limit размер страницы (если нет, то {@value Paging#DEFAULT_LIMIT}).
+     * @return страница фильмов.
+     */
+    public List<Film> getFilmsPage(Integer after, Integer limit) throws ValidateException {
+        return inMemoryFilmStorage.getFilmsPage(after, Paging.limit(limit));
+    }
+    
     /**
      * Создание фильма.
      *
@@ -60,15 +109,15 @@ public class FilmService {
         
         if (setUniqueIdForFilmFromCount(film)) {
             //Если ID входящего фильма был присвоен, значит фильма нет в библиотеке
-            log.info("Создана новая запись в библиотеке о фильме с названием: '"
-                    + film.getName() + "' и ID = " + film.getId() + ".");
+            log.info("Создана новая запись в библиотеке о фильме с названием: '{}' и ID = {}.",
+                    film.getName(), film.getId());
             return inMemoryFilmStorage.createInStorage(film);
-            
-        } else if (inMemoryFilmStorage.getFilmById(film.getId()) != null) {
+        }
+        Film stored = inMemoryFilmStorage.getFilmById(film.getId());
+        if (stored != null) {
             //В библиотеке есть фильм с ID входящего фильма.
-            log.info("При создании выполнено обновление существующей записи о фильме с ID = '"
-                    + getFilmByIDPrivate(film.getId()).getId() + "' и названием '"
-                    + inMemoryFilmStorage.getFilmById(film.getId()).getName() + "'.");
+            log.info("При создании выполнено обновление существующей записи о фильме с ID = '{}' и названием '{}'.",
+                    stored.getId(), stored.getName());
             return inMemoryFilmStorage.updateInStorage(film);
             
         } else {
@@ -93,15 +142,15 @@ public class FilmService {
             
             if (setUniqueIdForFilmFromCount(film)) {
                 //Если ID входящего фильма был присвоен, значит фильма нет в библиотеке
-                log.info("При обновлении создана новая запись в библиотеке о фильме с названием: '"
-                        + film.getName() + "'.");
+                log.info("При обновлении создана новая запись в библиотеке о фильме с названием: '{}'.",
+                        film.getName());
                 return inMemoryFilmStorage.createInStorage(film);
-                
-            } else if (inMemoryFilmStorage.getFilmById(film.getId()) != null) {
+            }
+            Film stored = inMemoryFilmStorage.getFilmById(film.getId());
+            if (stored != null) {
                 //В библиотеке есть фильм с ID входящего фильма.
-                log.info("При обновлении выполнено обновление существующей записи о фильме с ID = '"
-                        + getFilmByIDPrivate(film.getId()).getId() + "' и названием '"
-                        + inMemoryFilmStorage.getFilmById(film.getId()).getName() + "'.");
+                log.info("При обновлении выполнено обновление существующей записи о фильме с ID = '{}' "
+                        + "и названием '{}'.", stored.getId(), stored.getName());
                 return inMemoryFilmStorage.updateInStorage(film);
             }
             //Во входящем фильме есть ID, но этого ID нет в библиотеке.
@@ -129,8 +178,9 @@ public class FilmService {
         Film film = inMemoryFilmStorage.getFilmById(idFilm);
         
         if (user != null && film != null) {
-            film.getLikes().add(id);
-            inMemoryFilmStorage.updateInStorage(film);
+            if (inMemoryFilmStorage.addLike(idFilm, id)) {
+                likesAdded.increment();
+            }
         } else {
             String error = "При установке лайка фильму в БД не найден(ы) пользователь и/или фильм."
                     + "Проверьте передаваемые значения ID фильма и пользователя.";
@@ -139,6 +189,26 @@ public class FilmService {
         }
     }
     
+    /**
+     * Пакетная установка лайков. Пары передаются в хранилище пачками по {@value #BULK_BATCH_SIZE}:
+     * пользователи пачки проверяются одним запросом, лайки ставятся за один проход по хранилищу.
+     * Отклонённая пара не прерывает установку остальных, а попадает в отчёт с номером элемента списка.
+     *
+     * @param likes пары (фильм, пользователь).
+     * @return отчёт: количество поставленных лайков и отклонённые пары.
+     */
+    public BatchReport addLikes(List<FilmLike> likes) {
+        BatchReport report = new BatchReport();
+        for (int from = 0; from < likes.size(); from += BULK_BATCH_SIZE) {
+            addLikesBatch(likes.subList(from, Math.min(from + BULK_BATCH_SIZE, likes.size())), from, report);
+        }
+        report.finish();
+        likesAdded.increment(report.getSucceeded());
+        log.info("Пакетная установка лайков: обработано {}, поставлено {}, отклонено {}, {} мс.",
+                report.getProcessed(), report.getSucceeded(), report.getFailed(), report.getElapsedMillis());
+        return report;
+    }
+    
     /**
      * Метод для удаления лайка фильму.
      *
@@ -150,11 +220,10 @@ public class FilmService {
         Film film = inMemoryFilmStorage.getFilmById(idFilm);
         
         if (film != null && user != null) {
-            if (film.getLikes().contains(id)) {
-                //Если в лайках есть ID пользователя.
-                film.getLikes().remove(id);
-                inMemoryFilmStorage.updateInStorage(film);
-                log.info("Лайк фильму (ID = " + idFilm + ") установлен пользователем (ID = " + id + ").");
+            if (inMemoryFilmStorage.removeLike(idFilm, id)) {
+                //Если в лайках был ID пользователя.
+                likesRemoved.increment();
+                log.info("Лайк фильму (ID = {}) удалён пользователем (ID = {}).", idFilm, id);
             } else {
                 String error = "При удалении лайка фильму (ID = " + idFilm
                         + ") выяснилось, что пользователь (ID = " + id + ") не ставил лайк этому фильму.";
@@ -169,6 +238,22 @@ public class FilmService {
         }
     }
     
+    /**
+     * Количество лайков фильма.
+     *
+     * @param id ID фильма.
+     * @return количество лайков.
+     */
+    public int getLikeCount(Integer id) {
+        int count = inMemoryFilmStorage.likeCount(id);
+        if (count < 0) {
+            String error = "Отсутствует фильм в БД при запросе количества лайков фильма с ID = " + id + ".";
+            log.error(error);
+            throw new NotFoundRecordInBD(error);
+        }
+        return count;
+    }
+    
     /**
      * Получить список самых популярных фильмов (больше лайков).
      *
@@ -177,15 +262,13 @@ public class FilmService {
      */
     public List<Film> getPopularFilm(Integer count) {
         int size = Objects.requireNonNullElse(count, 10); //Если count = null, тогда size = 10
-        return inMemoryFilmStorage.getAllFilms().stream()
-                .sorted(Comparator.comparing(f -> -f.getLikes().size()))
-                .limit(size)
-                .collect(Collectors.toList());
+        return inMemoryFilmStorage.getPopularFilms(size);
     }
     
     /**
      * Проверка удовлетворения полей объекта Film требуемым параметрам:
      * <p>* название не может быть пустым;</p>
+     * <p>* максимальная длина названия — {@value #MAX_NAME_LENGTH} символов (столбец {@code films.name} в БД);</p>
      * <p>* максимальная длина описания — 200 символов;</p>
      * <p>* дата релиза — не раньше 28 декабря 1895 года;</p>
      * <p>* продолжительность фильма должна быть положительной.</p>
@@ -193,7 +276,7 @@ public class FilmService {
      * @param film фильм, который необходимо проверить.
      * @throws ValidateException в объекте фильма есть ошибки.
      */
-    private void checkFilm(Film film) throws ValidateException {
+    void checkFilm(Film film) throws ValidateException {
         final Integer ID = film.getId();
         final String NAME = film.getName();
         final String DESCRIPTION = film.getDescription();
@@ -207,6 +290,10 @@ public class FilmService {
         if (NAME == null || NAME.isEmpty() || NAME.isBlank()) {
             throw new ValidateException("checkFilm(): Отсутствует название фильма.");
         }
+        if (NAME.length() > MAX_NAME_LENGTH) {
+            throw new ValidateException("checkFilm(): Максимальная длина названия фильма должна быть не более "
+                    + MAX_NAME_LENGTH + " символов.");
+        }
         //максимальная длина описания — 200 символов;
         if (DESCRIPTION != null && DESCRIPTION.length() > 200) {
             throw new ValidateException("checkFilm(): Максимальная длина описания фильма должна быть не более" +
@@ -224,14 +311,69 @@ public class FilmService {
     
     
     /**
-     * ПРИВАТНЫЙ метод получения фильма из библиотеки по его ID.
+     * Поставить одну пачку лайков и учесть результат в отчёте.
      *
-     * @param id ID фильма, наличие которого необходимо проверить в библиотеке.
-     * @return Film - фильм присутствует в библиотеке.
-     * <p>null - фильма нет в библиотеке.</p>
+     * @param batch  пары (фильм, пользователь).
+     * @param offset количество пар перед пачкой в исходном списке.
+     * @param report отчёт пакетной операции.
      */
-    private Film getFilmByIDPrivate(Integer id) {
-        return inMemoryFilmStorage.getFilmById(id);
+    private void addLikesBatch(List<FilmLike> batch, int offset, BatchReport report) {
+        Set<Integer> userIds = inMemoryUserStorage.getUsersByIds(batch.stream()
+                        .filter(like -> like != null && like.getUserId() != null)
+                        .mapToInt(FilmLike::getUserId).distinct().toArray())
+                .stream().map(User::getId).collect(Collectors.toSet());
+        List<FilmLike> accepted = new ArrayList<>(batch.size());
+        List<Long> records = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            FilmLike like = batch.get(i);
+            long record = offset + i + 1;
+            if (like == null || like.getFilmId() == null || like.getUserId() == null) {
+                report.failed(record, "Не задан ID фильма или пользователя.");
+            } else if (!userIds.contains(like.getUserId())) {
+                report.failed(record, "В БД не найден пользователь (ID = " + like.getUserId() + ").");
+            } else {
+                accepted.add(like);
+                records.add(record);
+            }
+        }
+        boolean[] added;
+        try {
+            added = inMemoryFilmStorage.addLikes(accepted);
+        } catch (RuntimeException ex) {
+            log.error("Не удалось записать пачку лайков.", ex);
+            records.forEach(record -> report.failed(record, "Ошибка записи в хранилище: " + ex.getMessage()));
+            return;
+        }
+        int succeeded = 0;
+        for (int i = 0; i < added.length; i++) {
+            if (added[i]) {
+                succeeded++;
+            } else {
+                FilmLike like = accepted.get(i);
+                report.failed(records.get(i), "В БД не найден фильм (ID = " + like.getFilmId()
+                        + ") или пользователь (ID = " + like.getUserId() + ") уже поставил ему лайк.");
+            }
+        }
+        report.succeeded(succeeded);
+    }
+    
+    /**
+     * Версия библиотеки для заголовка ETag.
+     *
+     * @return версия.
+     */
+    public long getFilmsVersion() {
+        return inMemoryFilmStorage.filmsVersion();
+    }
+    
+    /**
+     * Версия фильма для заголовка ETag.
+     *
+     * @param id ID фильма.
+     * @return версия; -1 - фильма нет в библиотеке.
+     */
+    public long getFilmVersion(Integer id) {
+        return inMemoryFilmStorage.filmVersion(id);
     }
     
     /**
@@ -262,16 +404,11 @@ public class FilmService {
      */
     private boolean setUniqueIdForFilmFromCount(Film film) {
         if (film.getId() != null) {
-            log.info("Уникальный ID фильму не нужен. Изначальный ID = " + film.getId());
+            log.info("Уникальный ID фильму не нужен. Изначальный ID = {}", film.getId());
             return false;
         }
-        while (true) {
-            Integer count = Film.getCount();
-            if (inMemoryFilmStorage.getFilmById(count) == null) {
-                film.setId(count);
-                log.info("Уникальный ID фильму присвоен. ID = " + film.getId());
-                return true;
-            }
-        }
+        film.setId(inMemoryFilmStorage.generateId());
+        log.info("Уникальный ID фильму присвоен. ID = {}", film.getId());
+        return true;
     }
 }
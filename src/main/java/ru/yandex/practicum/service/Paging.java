@@ -0,0 +1,45 @@
+package ru.yandex.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.exception.ValidateException;
+
+import java.util.Objects;
+
+/**
+ * Параметры постраничной выдачи по курсору: {@code ?after=<ID>&limit=<размер страницы>}.
+ * Курсор - ID последней записи предыдущей страницы, поэтому страница не сдвигается,
+ * если между запросами добавляются или удаляются записи. Без курсора выдача начинается с наименьшего ID.
+ * ID записей задаются и клиентом, поэтому бывают нулевыми и отрицательными: курсором может быть любое число,
+ * в том числе {@code Integer.MIN_VALUE}.
+ */
+@Slf4j
+public final class Paging {
+    /**
+     * Размер страницы, если параметр limit не задан.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+    /**
+     * Наибольший размер страницы.
+     */
+    public static final int MAX_LIMIT = 1000;
+    
+    private Paging() {
+    }
+    
+    /**
+     * Размер страницы.
+     *
+     * @param limit размер страницы (если нет, то {@value #DEFAULT_LIMIT}).
+     * @return размер страницы.
+     * @throws ValidateException размер страницы не от 1 до {@value #MAX_LIMIT}.
+     */
+    static int limit(Integer limit) throws ValidateException {
+        int result = Objects.requireNonNullElse(limit, DEFAULT_LIMIT);
+        if (result <= 0 || result > MAX_LIMIT) {
+            String error = "Параметр limit должен быть от 1 до " + MAX_LIMIT + ": " + limit + ".";
+            log.error(error);
+            throw new ValidateException(error);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.storage.film.FilmStorage;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кеш готовых ответов GET /films/popular по значению count.
+ * <p>Ответ хранится сериализованным в JSON вместе с {@link FilmStorage#popularityVersion()}, при которой он
+ * построен. Пока версия не изменилась, запрос отдаёт готовые байты без обращения к фильмам. Хранилище меняет
+ * версию, только когда меняется порядок или содержимое первых {@value FilmStorage#POPULAR_VERSION_DEPTH}
+ * фильмов, поэтому лайки фильмам за пределами первых мест и лайки, не меняющие порядок, кеш не сбрасывают.</p>
+ * <p>Версия читается до построения ответа: если фильмы изменились во время построения, ответ запишется
+ * со старой версией и следующий запрос построит его заново. Значения count больше
+ * {@value FilmStorage#POPULAR_VERSION_DEPTH} не кешируются.</p>
+ * <p>Статистика кеша публикуется в метриках: filmorate_popular_cache_requests_total{result="hit|miss|bypass"}
+ * и filmorate_popular_cache_entries.</p>
+ */
+@Service
+public class PopularFilmsCache implements MeterBinder {
+    /**
+     * Размер списка, если count не задан.
+     */
+    static final int DEFAULT_COUNT = 10;
+    
+    private final FilmStorage filmStorage;
+    private final ObjectWriter filmsWriter;
+    private final ConcurrentMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+    
+    @Autowired
+    public PopularFilmsCache(FilmStorage filmStorage, ObjectMapper objectMapper) {
+        this.filmStorage = filmStorage;
+        this.filmsWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, Film.class));
+    }
+    
+    /**
+     * Получить список самых популярных фильмов в виде JSON.
+     *
+     * @param count размер списка (если нет, то {@value #DEFAULT_COUNT}).
+     * @return массив JSON с фильмами.
+     */
+    public byte[] getPopularFilms(Integer count) {
+        return getPopularFilms(Objects.requireNonNullElse(count, DEFAULT_COUNT).intValue());
+    }
+    
+    private byte[] getPopularFilms(int count) {
+        if (count < 1 || count > FilmStorage.POPULAR_VERSION_DEPTH) {
+            bypasses.increment();
+            return serialize(filmStorage.getPopularFilms(count));
+        }
+        long version = filmStorage.popularityVersion();
+        Entry entry = entries.get(count);
+        if (entry != null && entry.version == version) {
+            hits.increment();
+            return entry.body;
+        }
+        misses.increment();
+        byte[] body = serialize(filmStorage.getPopularFilms(count));
+        entries.put(count, new Entry(version, body));
+        return body;
+    }
+    
+    /**
+     * Статистика обращений к кешу.
+     *
+     * @return попадания, промахи и запросы в обход кеша.
+     */
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), bypasses.sum(), entries.size());
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindRequests(registry, "hit", hits);
+        bindRequests(registry, "miss", misses);
+        bindRequests(registry, "bypass", bypasses);
+        Gauge.builder("filmorate.popular.cache.entries", entries, ConcurrentMap::size)
+                .description("Количество закешированных значений count")
+                .register(registry);
+    }
+    
+    private static void bindRequests(MeterRegistry registry, String result, LongAdder counter) {
+        FunctionCounter.builder("filmorate.popular.cache.requests", counter, LongAdder::sum)
+                .description("Запросы популярных фильмов по результату обращения к кешу")
+                .tag("result", result)
+                .register(registry);
+    }
+    
+    private byte[] serialize(List<Film> films) {
+        try {
+            return filmsWriter.writeValueAsBytes(films);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Не удалось сериализовать список популярных фильмов.", ex);
+        }
+    }
+    
+    /**
+     * Готовый ответ и версия популярных фильмов, при которой он построен.
+     */
+    @RequiredArgsConstructor
+    private static final class Entry {
+        private final long version;
+        private final byte[] body;
+    }
+    
+    /**
+     * Статистика кеша популярных фильмов.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        /**
+         * Запросы с count за пределами кешируемых значений.
+         */
+        private final long bypasses;
+        /**
+         * Количество закешированных значений count.
+         */
+        private final int entries;
+    }
+}
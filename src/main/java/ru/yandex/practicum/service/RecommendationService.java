@@ -0,0 +1,216 @@
+package ru.yandex.practicum.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.exception.NotFoundRecordInBD;
+import ru.yandex.practicum.exception.ValidateException;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.storage.film.FilmStorage;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Рекомендации фильмов по лайкам пользователей с похожими вкусами (коллаборативная фильтрация по соседям).
+ * <p>1. Фильмы пользователя читаются из обратного индекса лайков {@link FilmStorage#likedFilmIds(int)}, а для
+ * каждого из них - список лайков {@link FilmStorage#likerIds(int)}. Перебираются только пользователи, у которых
+ * есть хотя бы один общий фильм, поэтому время не зависит от размера библиотеки.</p>
+ * <p>2. {@link SimilarUsers} параллельно выбирает первых {@value #NEIGHBOURS} соседей по сходству среди
+ * пользователей хотя бы с {@value #MIN_COMMON_FILMS} общими фильмами. Общий фильм
+ * весит тем меньше, чем больше у него лайков: лайк популярному фильму мало говорит о вкусе. По той же причине
+ * перебираются лайки сначала самых редких фильмов пользователя, и не больше {@value #MAX_SCANNED_LIKES}:
+ * фильмы с сотнями тысяч лайков почти не меняют сходство, но определяли бы время ответа.</p>
+ * <p>3. Каждый фильм соседа, которому пользователь ещё не поставил лайк, получает сходство соседа.
+ * Рекомендации - фильмы с наибольшей суммой, при равенстве - по возрастанию ID.</p>
+ * <p>Части поиска выполняются в собственном пуле из потоков по числу ядер, а не в общем
+ * {@link ForkJoinPool#commonPool()}: с хранилищем {@code jdbc} каждая часть ждёт запроса к БД и не должна
+ * занимать потоки, общие для всей JVM.</p>
+ */
+@Slf4j
+@Service
+@Timed("filmorate.service")
+public class RecommendationService {
+    /**
+     * Размер списка, если count не задан.
+     */
+    static final int DEFAULT_COUNT = 10;
+    /**
+     * Наибольший размер списка.
+     */
+    static final int MAX_COUNT = 100;
+    /**
+     * Сколько самых похожих пользователей рекомендуют фильмы.
+     */
+    static final int NEIGHBOURS = 50;
+    /**
+     * Сколько общих фильмов должно быть у соседа. Если таких соседей нет, подходит и один общий фильм.
+     */
+    static final int MIN_COMMON_FILMS = 2;
+    /**
+     * Сколько лайков фильмов пользователя перебирается при поиске соседей.
+     */
+    static final int MAX_SCANNED_LIKES = 50_000;
+    
+    private final FilmStorage filmStorage;
+    private final UserService userService;
+    private final ForkJoinPool pool;
+    
+    @Autowired
+    public RecommendationService(FilmStorage filmStorage, UserService userService) {
+        this(filmStorage, userService, new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("recommendations-" + thread.getPoolIndex());
+            return thread;
+        }, null, false));
+    }
+    
+    RecommendationService(FilmStorage filmStorage, UserService userService, ForkJoinPool pool) {
+        this.filmStorage = filmStorage;
+        this.userService = userService;
+        this.pool = pool;
+    }
+    
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+    
+    /**
+     * Рекомендовать пользователю фильмы, которым ставили лайк пользователи с похожими лайками.
+     *
+     * @param id    ID пользователя.
+     * @param count размер списка (если нет, то {@value #DEFAULT_COUNT}).
+     * @return фильмы по убыванию оценки; пустой список - пользователь не ставил лайков или у него нет соседей.
+     * @throws NotFoundRecordInBD пользователя нет.
+     * @throws ValidateException  размер списка не от 1 до {@value #MAX_COUNT}.
+     */
+    public List<Film> getRecommendations(Integer id, Integer count) throws NotFoundRecordInBD, ValidateException {
+        int size = Objects.requireNonNullElse(count, DEFAULT_COUNT);
+        if (size < 1 || size > MAX_COUNT) {
+            String error = "Параметр count должен быть от 1 до " + MAX_COUNT + ": " + count + ".";
+            log.error(error);
+            throw new ValidateException(error);
+        }
+        userService.getUserById(id);
+        int[] liked = filmStorage.likedFilmIds(id);
+        if (liked.length == 0) {
+            return List.of();
+        }
+        SimilarUsers.Neighbours neighbours = pool.invoke(similarUsers(id, liked, MIN_COMMON_FILMS));
+        if (neighbours.top.length == 0) {
+            neighbours = pool.invoke(similarUsers(id, liked, 1));
+        }
+        return topFilms(scoreFilms(neighbours, liked), size);
+    }
+    
+    /**
+     * Задача поиска соседей: списки лайков фильмов пользователя и их веса. Фильмы берутся по возрастанию
+     * количества лайков, пока сумма лайков не превысит {@value #MAX_SCANNED_LIKES}. Если в эту границу не
+     * помещается даже первый фильм, из его лайков берётся каждый n-й с весом, умноженным на n.
+     */
+    private SimilarUsers similarUsers(int userId, int[] liked, int minCommonFilms) {
+        long[] byLikeCount = new long[liked.length];
+        for (int i = 0; i < liked.length; i++) {
+            byLikeCount[i] = (long) Math.max(filmStorage.likeCount(liked[i]), 0) << 32 | liked[i] & 0xFFFFFFFFL;
+        }
+        Arrays.sort(byLikeCount);
+        List<int[]> likers = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        long scanned = 0;
+        for (long filmWithCount : byLikeCount) {
+            int likeCount = (int) (filmWithCount >>> 32);
+            if (!likers.isEmpty() && scanned + likeCount > MAX_SCANNED_LIKES) {
+                break;
+            }
+            int[] ids = filmStorage.likerIds((int) filmWithCount);
+            //Обратная частота: 1 у фильма с одним лайком, медленно убывает с ростом числа лайков.
+            double weight = 1 / (Math.log(1 + ids.length) / Math.log(2));
+            if (ids.length > MAX_SCANNED_LIKES) {
+                int step = (ids.length + MAX_SCANNED_LIKES - 1) / MAX_SCANNED_LIKES;
+                int[] sample = new int[(ids.length + step - 1) / step];
+                for (int j = 0; j < sample.length; j++) {
+                    sample[j] = ids[j * step];
+                }
+                ids = sample;
+                weight *= step;
+            }
+            likers.add(ids);
+            weights.add(weight);
+            scanned += ids.length;
+        }
+        return new SimilarUsers(filmStorage, likers.toArray(new int[0][]),
+                weights.stream().mapToDouble(Double::doubleValue).toArray(), userId, NEIGHBOURS, minCommonFilms);
+    }
+    
+    /**
+     * Оценки фильмов соседей, которым пользователь ещё не ставил лайк.
+     *
+     * @param neighbours соседи.
+     * @param liked      фильмы пользователя по возрастанию ID.
+     * @return оценки по ID фильма.
+     */
+    private Scores scoreFilms(SimilarUsers.Neighbours neighbours, int[] liked) {
+        int[][] neighbourFilms = new int[neighbours.top.length][];
+        int total = 0;
+        for (int i = 0; i < neighbourFilms.length; i++) {
+            neighbourFilms[i] = filmStorage.likedFilmIds(neighbours.top[i].userId);
+            total += neighbourFilms[i].length;
+        }
+        Scores scores = new Scores(total);
+        for (int i = 0; i < neighbourFilms.length; i++) {
+            SimilarUsers.Neighbour neighbour = neighbours.top[i];
+            //Оба списка по возрастанию ID, поэтому фильмы пользователя пропускаются одним проходом.
+            int position = 0;
+            for (int filmId : neighbourFilms[i]) {
+                while (position < liked.length && liked[position] < filmId) {
+                    position++;
+                }
+                if (position == liked.length || liked[position] != filmId) {
+                    scores.add(filmId, neighbour.similarity);
+                }
+            }
+        }
+        return scores;
+    }
+    
+    /**
+     * Первые фильмы по убыванию оценки, при равенстве - по возрастанию ID. Выбираются в очереди размером
+     * со список, без сортировки всех фильмов соседей. Фильм, удалённый после чтения лайков, пропускается.
+     */
+    private List<Film> topFilms(Scores scores, int size) {
+        int[] filmIds = scores.keys();
+        double[] values = Arrays.stream(filmIds).mapToDouble(scores::get).toArray();
+        Comparator<Integer> worstFirst = (a, b) -> {
+            int byScore = Double.compare(values[a], values[b]);
+            return byScore != 0 ? byScore : Integer.compare(filmIds[b], filmIds[a]);
+        };
+        PriorityQueue<Integer> top = new PriorityQueue<>(size + 1, worstFirst);
+        for (int i = 0; i < filmIds.length; i++) {
+            if (top.size() < size) {
+                top.add(i);
+            } else if (worstFirst.compare(i, top.peek()) > 0) {
+                top.poll();
+                top.add(i);
+            }
+        }
+        Integer[] best = top.toArray(new Integer[0]);
+        Arrays.sort(best, worstFirst.reversed());
+        List<Film> result = new ArrayList<>(best.length);
+        for (Integer i : best) {
+            Film film = filmStorage.getFilmById(filmIds[i]);
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+}
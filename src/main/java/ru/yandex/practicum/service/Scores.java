@@ -0,0 +1,99 @@
+package ru.yandex.practicum.service;
+
+import java.util.Arrays;
+
+/**
+ * Суммы по ID без упаковки в объекты: открытая адресация с линейным пробированием.
+ * Слот занят, если к нему прибавляли хотя бы раз (счётчик больше 0): ключом может быть любой ID,
+ * в том числе {@link Integer#MIN_VALUE}, поэтому пустой слот не обозначается особым ключом.
+ * Не потокобезопасна - у каждой части поиска соседей и каждого запроса своя.
+ */
+final class Scores {
+    private int[] keys;
+    private double[] values;
+    private int[] counts;
+    private int size;
+    
+    Scores(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new double[capacity];
+        counts = new int[capacity];
+    }
+    
+    /**
+     * Прибавить значение к сумме ключа.
+     */
+    void add(int key, double value) {
+        int slot = slot(key);
+        if (counts[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] += value;
+        counts[slot]++;
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+    
+    /**
+     * Сумма ключа; 0 - ключа нет.
+     */
+    double get(int key) {
+        int slot = slot(key);
+        return counts[slot] == 0 ? 0 : values[slot];
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Ключи в порядке таблицы.
+     */
+    int[] keys() {
+        return keys(1);
+    }
+    
+    /**
+     * Ключи, к сумме которых прибавляли не меньше заданного количества раз, в порядке таблицы.
+     */
+    int[] keys(int minCount) {
+        int[] result = new int[size];
+        int position = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (counts[slot] > 0 && counts[slot] >= minCount) {
+                result[position++] = keys[slot];
+            }
+        }
+        return position == size ? result : Arrays.copyOf(result, position);
+    }
+    
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = slot + 1 & mask;
+        }
+        return slot;
+    }
+    
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        values = new double[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
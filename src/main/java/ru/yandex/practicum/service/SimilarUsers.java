@@ -0,0 +1,227 @@
+package ru.yandex.practicum.service;
+
+import ru.yandex.practicum.storage.film.FilmStorage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Поиск пользователей с похожими лайками: первые K соседей по сходству в диапазоне ID пользователей.
+ * <p>На входе - списки лайков (ID пользователей по возрастанию) каждого фильма, которому поставил лайк
+ * исходный пользователь, и вес каждого фильма. Сходство с пользователем - сумма весов общих фильмов,
+ * делённая на корень из количества его лайков (косинусная мера без постоянного множителя исходного
+ * пользователя). Пользователи, у которых нет ни одного общего фильма, не перебираются вовсе, а сходство
+ * считается только с теми, у кого общих фильмов не меньше заданного: случайное совпадение одного фильма
+ * о вкусе почти ничего не говорит, а количество лайков каждого такого пользователя пришлось бы читать.</p>
+ * <p>Диапазон ID делится пополам, пока в него попадает больше {@value #LEAF_LIKES} лайков (по оценке
+ * из равномерного распределения ID), половины считаются параллельно в {@link java.util.concurrent.ForkJoinPool}.
+ * Части списков лайков в диапазоне находятся двоичным поиском, а суммы копятся в массиве по ID или, если
+ * ID в диапазоне редкие, в {@link Scores}. Диапазоны
+ * не пересекаются, поэтому каждая часть сама выбирает своих первых K соседей, а результаты частей
+ * только сливаются.</p>
+ */
+class SimilarUsers extends RecursiveTask<SimilarUsers.Neighbours> {
+    /**
+     * Сколько лайков обрабатывает одна часть без деления.
+     */
+    static final int LEAF_LIKES = 50_000;
+    /**
+     * Суммы части копятся в массиве по ID, если в диапазон ID не больше чем в {@value} раза больше лайков,
+     * иначе - в {@link Scores}.
+     */
+    static final int DENSE_RANGE_PER_LIKE = 4;
+    
+    private final FilmStorage filmStorage;
+    private final int[][] likers;
+    private final double[] weights;
+    private final int excludedUserId;
+    private final int neighbours;
+    private final int minCommonFilms;
+    private final long fromUserId;
+    private final long toUserId;
+    private final long estimatedLikes;
+    
+    /**
+     * @param filmStorage    хранилище фильмов: количество лайков каждого найденного пользователя.
+     * @param likers         ID пользователей, поставивших лайк, по возрастанию для каждого фильма.
+     * @param weights        вес каждого фильма.
+     * @param excludedUserId исходный пользователь: в соседи не попадает.
+     * @param neighbours     сколько соседей выбрать.
+     * @param minCommonFilms сколько общих фильмов должно быть у соседа.
+     */
+    SimilarUsers(FilmStorage filmStorage, int[][] likers, double[] weights, int excludedUserId, int neighbours,
+                 int minCommonFilms) {
+        this(filmStorage, likers, weights, excludedUserId, neighbours, minCommonFilms, minUserId(likers),
+                maxUserId(likers) + 1L, Arrays.stream(likers).mapToLong(ids -> ids.length).sum());
+    }
+    
+    private SimilarUsers(FilmStorage filmStorage, int[][] likers, double[] weights, int excludedUserId,
+                         int neighbours, int minCommonFilms, long fromUserId, long toUserId, long estimatedLikes) {
+        this.filmStorage = filmStorage;
+        this.likers = likers;
+        this.weights = weights;
+        this.excludedUserId = excludedUserId;
+        this.neighbours = neighbours;
+        this.minCommonFilms = minCommonFilms;
+        this.fromUserId = fromUserId;
+        this.toUserId = toUserId;
+        this.estimatedLikes = estimatedLikes;
+    }
+    
+    @Override
+    protected Neighbours compute() {
+        if (estimatedLikes <= LEAF_LIKES || toUserId - fromUserId < 2) {
+            return computeLeaf();
+        }
+        long middle = (fromUserId + toUserId) >>> 1;
+        SimilarUsers left = new SimilarUsers(filmStorage, likers, weights, excludedUserId, neighbours,
+                minCommonFilms, fromUserId, middle, estimatedLikes / 2);
+        SimilarUsers right = new SimilarUsers(filmStorage, likers, weights, excludedUserId, neighbours,
+                minCommonFilms, middle, toUserId, estimatedLikes - estimatedLikes / 2);
+        left.fork();
+        Neighbours result = right.compute();
+        return Neighbours.merge(left.join(), result, neighbours);
+    }
+    
+    private Neighbours computeLeaf() {
+        int[] userIds;
+        double[] overlaps;
+        long range = toUserId - fromUserId;
+        if (range <= DENSE_RANGE_PER_LIKE * estimatedLikes + DENSE_RANGE_PER_LIKE) {
+            //Лайки фильма идут по возрастанию ID, поэтому суммы в массиве по ID читаются и пишутся подряд.
+            double[] sums = new double[(int) range];
+            int[] common = new int[(int) range];
+            for (int film = 0; film < likers.length; film++) {
+                int[] ids = likers[film];
+                for (int i = lowerBound(ids, fromUserId); i < ids.length && ids[i] < toUserId; i++) {
+                    int index = (int) (ids[i] - fromUserId);
+                    sums[index] += weights[film];
+                    common[index]++;
+                }
+            }
+            int found = 0;
+            for (int index = 0; index < common.length; index++) {
+                if (common[index] >= minCommonFilms && index + fromUserId != excludedUserId) {
+                    found++;
+                }
+            }
+            userIds = new int[found];
+            overlaps = new double[found];
+            found = 0;
+            for (int index = 0; index < common.length; index++) {
+                if (common[index] >= minCommonFilms && index + fromUserId != excludedUserId) {
+                    userIds[found] = (int) (index + fromUserId);
+                    overlaps[found++] = sums[index];
+                }
+            }
+        } else {
+            Scores scores = new Scores(16);
+            for (int film = 0; film < likers.length; film++) {
+                int[] ids = likers[film];
+                for (int i = lowerBound(ids, fromUserId); i < ids.length && ids[i] < toUserId; i++) {
+                    if (ids[i] != excludedUserId) {
+                        scores.add(ids[i], weights[film]);
+                    }
+                }
+            }
+            userIds = scores.keys(minCommonFilms);
+            overlaps = Arrays.stream(userIds).mapToDouble(scores::get).toArray();
+        }
+        if (userIds.length == 0) {
+            return Neighbours.EMPTY;
+        }
+        int[] likeCounts = filmStorage.likedFilmCounts(userIds);
+        PriorityQueue<Neighbour> top = new PriorityQueue<>(neighbours + 1, Neighbour.BY_SIMILARITY);
+        for (int i = 0; i < userIds.length; i++) {
+            //Лайк могли удалить после чтения списков: такой пользователь считается поставившим один лайк.
+            Neighbour candidate = new Neighbour(userIds[i], overlaps[i] / Math.sqrt(Math.max(likeCounts[i], 1)));
+            if (top.size() < neighbours) {
+                top.add(candidate);
+            } else if (Neighbour.BY_SIMILARITY.compare(candidate, top.peek()) > 0) {
+                top.poll();
+                top.add(candidate);
+            }
+        }
+        return Neighbours.of(top.toArray(new Neighbour[0]), neighbours);
+    }
+    
+    private static int lowerBound(int[] ids, long value) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ids[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    private static int minUserId(int[][] likers) {
+        int min = Integer.MAX_VALUE;
+        for (int[] ids : likers) {
+            if (ids.length > 0) {
+                min = Math.min(min, ids[0]);
+            }
+        }
+        return min == Integer.MAX_VALUE ? 0 : min;
+    }
+    
+    private static int maxUserId(int[][] likers) {
+        int max = -1;
+        for (int[] ids : likers) {
+            if (ids.length > 0) {
+                max = Math.max(max, ids[ids.length - 1]);
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * Сосед исходного пользователя.
+     */
+    static final class Neighbour {
+        /**
+         * По возрастанию сходства, при равенстве - по убыванию ID: первым в очереди стоит худший сосед.
+         */
+        static final Comparator<Neighbour> BY_SIMILARITY = (a, b) -> a.similarity != b.similarity
+                ? Double.compare(a.similarity, b.similarity) : Integer.compare(b.userId, a.userId);
+        
+        final int userId;
+        final double similarity;
+        
+        Neighbour(int userId, double similarity) {
+            this.userId = userId;
+            this.similarity = similarity;
+        }
+    }
+    
+    /**
+     * Первые соседи по убыванию сходства.
+     */
+    static final class Neighbours {
+        static final Neighbours EMPTY = new Neighbours(new Neighbour[0]);
+        
+        final Neighbour[] top;
+        
+        private Neighbours(Neighbour[] top) {
+            this.top = top;
+        }
+        
+        static Neighbours of(Neighbour[] candidates, int limit) {
+            Neighbour[] sorted = candidates.clone();
+            Arrays.sort(sorted, Neighbour.BY_SIMILARITY.reversed());
+            return new Neighbours(sorted.length <= limit ? sorted : Arrays.copyOf(sorted, limit));
+        }
+        
+        static Neighbours merge(Neighbours first, Neighbours second, int limit) {
+            Neighbour[] all = Arrays.copyOf(first.top, first.top.length + second.top.length);
+            System.arraycopy(second.top, 0, all, first.top.length, second.top.length);
+            return of(all, limit);
+        }
+    }
+}
@@ -1,26 +1,71 @@
 package ru.yandex.practicum.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.exception.NotFoundRecordInBD;
 import ru.yandex.practicum.exception.ValidateException;
+import ru.yandex.practicum.model.BatchReport;
+import ru.yandex.practicum.model.Friendship;
 import ru.yandex.practicum.model.User;
 import ru.yandex.practicum.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@Timed("filmorate.service")
 public class UserService {
+    /**
+     * Размер пачки, которыми пары пакетного добавления в друзья передаются в хранилище.
+     */
+    static final int BULK_BATCH_SIZE = 1000;
+    /**
+     * Наибольшая длина почты, логина и имени пользователя.
+     */
+    static final int MAX_TEXT_LENGTH = 255;
+    /**
+     * Размер списка рекомендуемых друзей, если count не задан.
+     */
+    static final int SUGGESTIONS_DEFAULT_COUNT = 10;
+    /**
+     * Наибольший размер списка рекомендуемых друзей.
+     */
+    static final int SUGGESTIONS_MAX_COUNT = 100;
+    /**
+     * Сколько друзей пользователя перебирается при поиске рекомендуемых друзей.
+     */
+    static final int MAX_SAMPLED_FRIENDS = 1000;
+    /**
+     * Сколько дружб друзей пользователя перебирается при поиске рекомендуемых друзей.
+     */
+    static final int MAX_SCANNED_FRIENDSHIPS = 50_000;
+    
     private final UserStorage inMemoryUStorage;
+    /**
+     * Добавленные и удалённые дружбы: filmorate_friendships_total{change="added|removed"}.
+     */
+    private final Counter friendshipsAdded;
+    private final Counter friendshipsRemoved;
     
-    @Autowired
     public UserService(UserStorage inMemoryUserStorage) {
+        this(inMemoryUserStorage, new SimpleMeterRegistry());
+    }
+    
+    @Autowired
+    public UserService(UserStorage inMemoryUserStorage, MeterRegistry registry) {
         this.inMemoryUStorage = inMemoryUserStorage;
+        this.friendshipsAdded = registry.counter("filmorate.friendships", "change", "added");
+        this.friendshipsRemoved = registry.counter("filmorate.friendships", "change", "removed");
     }
     
     /**
@@ -37,7 +82,7 @@ public class UserService {
             log.error(error);
             throw new NotFoundRecordInBD(error);
         }
-        return inMemoryUStorage.getUserById(id);
+        return result;
     }
     
     /**
@@ -49,6 +94,26 @@ public class UserService {
         return inMemoryUStorage.getAllUsersFromStorage();
     }
     
+    /**
+     * Перебор всех пользователей по возрастанию ID без сборки в список. Поток нужно закрыть.
+     *
+     * @return поток пользователей.
+     */
+    public Stream<User> streamAllUsers() {
+        return inMemoryUStorage.streamAllUsers();
+    }
+    
+    /**
+     * Получение страницы пользователей по возрастанию ID.
+     *
+     * @param after ID последнего пользователя предыдущей страницы (если нет, то с начала списка).
+     * @param limit размер страницы (если нет, то {@value Paging#DEFAULT_LIMIT}).
+     * @return страница пользователей.
+     */
+    public List<User> getUsersPage(Integer after, Integer limit) throws ValidateException {
+        return inMemoryUStorage.getUsersPage(after, Paging.limit(limit));
+    }
+    
     
     /**
      * Добавить юзера в БД.
@@ -72,9 +137,8 @@ public class UserService {
                 //Проверяем ID входящего пользователя. Если он null или равен ID, найденному в БД по логину:
                 //будет обновление существующего пользователя.
                 user.setId(idFromDB);       //операция необходима при user.getId() == null.
-                String message = "В результате добавления пользователя в БД обновлён существующий пользователь " +
-                        "с логином = '" + user.getLogin() + "'." + user;
-                log.info(message);
+                log.info("В результате добавления пользователя в БД обновлён существующий пользователь "
+                        + "с логином = '{}'.{}", user.getLogin(), user);
                 return inMemoryUStorage.updateInStorage(user);
             } else {
                 //Если ID входящего пользователя не null и не равен ID из БД,
@@ -93,8 +157,7 @@ public class UserService {
         //И, если с пустым ID, то, сразу же его заполним.
         setUniqueIdForUserFromCount(user);
         
-        String message = "В результате добавления пользователя в БД добавлен новый пользователь:\t" + user;
-        log.info(message);
+        log.info("В результате добавления пользователя в БД добавлен новый пользователь:\t{}", user);
         return inMemoryUStorage.addToStorage(user);
         
     }
@@ -118,9 +181,8 @@ public class UserService {
                 //ID входящего пользователя равен null или ID, найденному из БД по логину.
                 //Присваиваем входящему пользователю ID из БД.
                 userTemp.setId(idFromDB); //данная операция нужна только при ID входящего пользователя == null
-                String message = "Выполнено обновление существующей записи о пользователе с логином: '"
-                        + userTemp.getLogin() + "'.";
-                log.info(message);
+                log.info("Выполнено обновление существующей записи о пользователе с логином: '{}'.",
+                        userTemp.getLogin());
                 return inMemoryUStorage.updateInStorage(userTemp);
             } else {
                 String error = "Login пользователя есть в БД, но ID в БД (" + idFromDB
@@ -133,10 +195,9 @@ public class UserService {
         //********** Пользователь по логину отсутствует в БД.******************
         if (userTemp.getId() == null) {
             //Генерируем для входящего пользователя ID и добавляем нового пользователя в БД.
-            userTemp.setId(User.getCount());
+            userTemp.setId(inMemoryUStorage.generateId());
             
-            String message = "В результате обновления пользователя в БД добавлен новый пользователь:\t" + user;
-            log.info(message);
+            log.info("В результате обновления пользователя в БД добавлен новый пользователь:\t{}", user);
             return inMemoryUStorage.addToStorage(userTemp);
         } else if (inMemoryUStorage.getUserById(userTemp.getId()) != null) {
             // иначе если ID пользователя есть в БД {
@@ -144,8 +205,8 @@ public class UserService {
             //старый логин:
             String oldLogin = inMemoryUStorage.getUserById(userTemp.getId()).getLogin();
             String newLogin = userTemp.getLogin();
-            log.info("Выполнено обновление учётной записи с изменением логина. " +
-                    "Был логин = '" + oldLogin + "', а стал - '" + newLogin + "'.");
+            log.info("Выполнено обновление учётной записи с изменением логина. Был логин = '{}', а стал - '{}'.",
+                    oldLogin, newLogin);
             return inMemoryUStorage.updateInStorage(userTemp);
         } else {
             //ID и Логина нет в БД. -> Не верный запрос.
@@ -189,12 +250,31 @@ public class UserService {
             log.error(error);
             throw new NotFoundRecordInBD(error);
         }
-        friend1.getIdsFriends().add(id2);
-        friend2.getIdsFriends().add(id1);
-        
-        addToStorage(friend1);
-        addToStorage(friend2);
-        log.info("Пользователь с ID = " + id1 + " подружился с пользователем с ID = " + id2 + ".");
+        if (inMemoryUStorage.addFriendship(id1, id2)) {
+            friendshipsAdded.increment();
+        }
+        log.info("Пользователь с ID = {} подружился с пользователем с ID = {}.", id1, id2);
+    }
+    
+    /**
+     * Пакетное добавление в друзья. Пары передаются в хранилище пачками по {@value #BULK_BATCH_SIZE}
+     * и добавляются за один проход по хранилищу. Отклонённая пара не прерывает добавление остальных,
+     * а попадает в отчёт с номером элемента списка.
+     *
+     * @param friendships пары пользователей.
+     * @return отчёт: количество добавленных дружб и отклонённые пары.
+     */
+    public BatchReport addFriendships(List<Friendship> friendships) {
+        BatchReport report = new BatchReport();
+        for (int from = 0; from < friendships.size(); from += BULK_BATCH_SIZE) {
+            addFriendshipsBatch(friendships.subList(from, Math.min(from + BULK_BATCH_SIZE, friendships.size())),
+                    from, report);
+        }
+        report.finish();
+        friendshipsAdded.increment(report.getSucceeded());
+        log.info("Пакетное добавление в друзья: обработано {}, добавлено {}, отклонено {}, {} мс.",
+                report.getProcessed(), report.getSucceeded(), report.getFailed(), report.getElapsedMillis());
+        return report;
     }
     
     /**
@@ -213,18 +293,55 @@ public class UserService {
             log.error(error);
             throw new NotFoundRecordInBD(error);
         }
-        if (!friend1.getIdsFriends().contains(id2) || !friend2.getIdsFriends().contains(id1)) {
+        if (!inMemoryUStorage.removeFriendship(id1, id2)) {
             String error = "При удалении из друзей БД пользователь(и) не является(ются) " +
                     "другом (друзьями). Проверьте передаваемые значения ID.";
             log.error(error);
             throw new NotFoundRecordInBD(error);
         }
-        friend1.getIdsFriends().remove(id2);
-        friend2.getIdsFriends().remove(id1);
-        
-        addToStorage(friend1);
-        addToStorage(friend2);
-        log.info("Дружба пользователя (ID = " + id1 + ") с пользователем (ID = " + id2 + ") завершена )-;");
+        friendshipsRemoved.increment();
+        log.info("Дружба пользователя (ID = {}) с пользователем (ID = {}) завершена )-;", id1, id2);
+    }
+    
+    /**
+     * Добавить в друзья одну пачку пар и учесть результат в отчёте.
+     *
+     * @param batch  пары пользователей.
+     * @param offset количество пар перед пачкой в исходном списке.
+     * @param report отчёт пакетной операции.
+     */
+    private void addFriendshipsBatch(List<Friendship> batch, int offset, BatchReport report) {
+        List<Friendship> accepted = new ArrayList<>(batch.size());
+        List<Long> records = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Friendship friendship = batch.get(i);
+            long record = offset + i + 1;
+            if (friendship == null || friendship.getUserId() == null || friendship.getFriendId() == null) {
+                report.failed(record, "Не задан ID пользователя или друга.");
+            } else {
+                accepted.add(friendship);
+                records.add(record);
+            }
+        }
+        boolean[] added;
+        try {
+            added = inMemoryUStorage.addFriendships(accepted);
+        } catch (RuntimeException ex) {
+            log.error("Не удалось записать пачку дружб.", ex);
+            records.forEach(record -> report.failed(record, "Ошибка записи в хранилище: " + ex.getMessage()));
+            return;
+        }
+        int succeeded = 0;
+        for (int i = 0; i < added.length; i++) {
+            if (added[i]) {
+                succeeded++;
+            } else {
+                Friendship friendship = accepted.get(i);
+                report.failed(records.get(i), "В БД не найден(ы) пользователь(и) (ID = " + friendship.getUserId()
+                        + ", ID = " + friendship.getFriendId() + ") или они уже друзья.");
+            }
+        }
+        report.succeeded(succeeded);
     }
     
     /**
@@ -232,6 +349,7 @@ public class UserService {
      * <p>электронная почта не может быть пустой и должна содержать символ @;</p>
      * <p>логин не может быть пустым и содержать пробелы;</p>
      * <p>имя для отображения может быть пустым — в таком случае будет использован логин;</p>
+     * <p>почта, логин и имя - не длиннее {@value #MAX_TEXT_LENGTH} символов (столбцы таблицы {@code users} в БД);</p>
      * <p>дата рождения не может быть в будущем.</p>
      *
      * @param user пользователь, которого необходимо проверить.
@@ -265,6 +383,13 @@ public class UserService {
             throw new ValidateException("В логине не должно быть пробелов.");
         }
         
+        if (email.length() > MAX_TEXT_LENGTH || login.length() > MAX_TEXT_LENGTH
+                || user.getName() != null && user.getName().length() > MAX_TEXT_LENGTH) {
+            log.info("checkUser(): Не пройдена проверка длины почты, логина и имени.");
+            throw new ValidateException("Адрес электронной почты, логин и имя должны быть не длиннее "
+                    + MAX_TEXT_LENGTH + " символов.");
+        }
+        
         //дата рождения не может быть в будущем
         if (birthday != null) {
             if (birthday.isAfter(LocalDate.now())) {
@@ -285,10 +410,11 @@ public class UserService {
      * <p>null - пользователя нет в базе данных.</p>
      */
     private Integer idFromDBByLogin(User user) {
-        String login = user.getLogin();
-        return inMemoryUStorage.getAllUsersFromStorage().stream().filter(u -> u.getLogin().equals(login))
-                .findFirst().map(User::getId)
-                .orElse(null);
+        User userFromDB = inMemoryUStorage.getUserByLogin(user.getLogin());
+        if (userFromDB == null) {
+            return null;
+        }
+        return userFromDB.getId();
     }
     
     /**
@@ -311,18 +437,133 @@ public class UserService {
         }
         
         if (friend1.getIdsFriends() == null || friend1.getIdsFriends().isEmpty()) {
-            log.info("Список друзей пользователя с ID = " + id1 + "пуст.");
+            log.info("Список друзей пользователя с ID = {} пуст.", id1);
         } else if (friend2.getIdsFriends() == null || friend2.getIdsFriends().isEmpty()) {
-            log.info("Список друзей пользователя с ID = " + id2 + "пуст.");
+            log.info("Список друзей пользователя с ID = {} пуст.", id2);
         } else {
-            //ищем общих друзей.
-            result = friend1.getIdsFriends().stream()
-                    .filter(id -> friend2.getIdsFriends().contains(id))
-                    .map(this::getUserById).collect(Collectors.toList());
+            //ищем общих друзей пересечением отсортированных списков друзей.
+            result = inMemoryUStorage.getUsersByIds(inMemoryUStorage.getCommonFriendIds(id1, id2));
         }
         return result;
     }
     
+    /**
+     * Рекомендовать пользователю друзей друзей по убыванию количества общих друзей, при равенстве -
+     * по возрастанию ID.
+     * <p>Время ответа не зависит от количества друзей: перебирается не больше {@value #MAX_SAMPLED_FRIENDS}
+     * друзей пользователя и не больше {@value #MAX_SCANNED_FRIENDSHIPS} их дружб. Друзья берутся по возрастанию
+     * количества друзей, и каждому достаётся равная доля оставшегося запаса: списки обычных друзей читаются
+     * целиком, а из списка друга с тысячами друзей - каждый n-й друг с весом n. Поэтому для пользователей без
+     * таких друзей количество общих друзей точное, а иначе - оценка по равномерной выборке.</p>
+     *
+     * @param id    ID пользователя.
+     * @param count размер списка (если нет, то {@value #SUGGESTIONS_DEFAULT_COUNT}).
+     * @return рекомендуемые друзья; пустой список - у пользователя нет друзей или у друзей нет других друзей.
+     * @throws NotFoundRecordInBD пользователя нет.
+     * @throws ValidateException  размер списка не от 1 до {@value #SUGGESTIONS_MAX_COUNT}.
+     */
+    public List<User> getFriendSuggestions(Integer id, Integer count) throws NotFoundRecordInBD, ValidateException {
+        int size = Objects.requireNonNullElse(count, SUGGESTIONS_DEFAULT_COUNT);
+        if (size < 1 || size > SUGGESTIONS_MAX_COUNT) {
+            String error = "Параметр count должен быть от 1 до " + SUGGESTIONS_MAX_COUNT + ": " + count + ".";
+            log.error(error);
+            throw new ValidateException(error);
+        }
+        getUserById(id);
+        int[] friends = inMemoryUStorage.sampleFriendIds(id, MAX_SAMPLED_FRIENDS);
+        if (friends.length == 0) {
+            return new ArrayList<>();
+        }
+        //Если выборка прорежена, дружба кандидата проверяется в хранилище, а не в выборке. Выборка короче
+        //MAX_SAMPLED_FRIENDS тоже может быть прорежена: при 1500 друзьях берётся каждый второй.
+        boolean allFriends = inMemoryUStorage.friendCounts(new int[]{id})[0] <= friends.length;
+        Scores mutual = countMutualFriends(id, friends);
+        //Первые кандидаты по возрастанию ключа: в старших битах - обратное количество общих друзей, в младших - ID
+        //со сдвигом на Integer.MIN_VALUE, чтобы отрицательные ID шли раньше положительных.
+        //Биты положительного float растут вместе с числом, поэтому ключи сравниваются без объектов. Все кандидаты
+        //не сортируются, а дружба проверяется только у тех, кто попадает в первые.
+        long[] top = new long[size];
+        int found = 0;
+        for (int candidate : mutual.keys()) {
+            int bits = Float.floatToIntBits((float) mutual.get(candidate));
+            long key = (long) (Integer.MAX_VALUE - bits) << 32 | (candidate ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+            if (found == size && key >= top[size - 1]) {
+                continue;
+            }
+            boolean isFriend = allFriends ? Arrays.binarySearch(friends, candidate) >= 0
+                    : inMemoryUStorage.areFriends(id, candidate);
+            if (isFriend) {
+                continue;
+            }
+            int position = found < size ? found++ : size - 1;
+            while (position > 0 && top[position - 1] > key) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = key;
+        }
+        int[] result = new int[found];
+        for (int i = 0; i < found; i++) {
+            result[i] = (int) top[i] ^ Integer.MIN_VALUE;
+        }
+        return inMemoryUStorage.getUsersByIds(result);
+    }
+    
+    /**
+     * Количество общих друзей у друзей друзей пользователя.
+     *
+     * @param id      ID пользователя: в кандидаты не попадает.
+     * @param friends ID друзей пользователя или их выборка.
+     * @return количество общих друзей (или его оценка) по ID кандидата.
+     */
+    private Scores countMutualFriends(Integer id, int[] friends) {
+        int[] friendCounts = inMemoryUStorage.friendCounts(friends);
+        long[] byFriendCount = new long[friends.length];
+        for (int i = 0; i < friends.length; i++) {
+            byFriendCount[i] = (long) friendCounts[i] << 32 | friends[i] & 0xFFFFFFFFL;
+        }
+        Arrays.sort(byFriendCount);
+        Scores mutual = new Scores(
+                (int) Math.min(MAX_SCANNED_FRIENDSHIPS, Arrays.stream(friendCounts).asLongStream().sum()));
+        long remaining = MAX_SCANNED_FRIENDSHIPS;
+        for (int i = 0; i < byFriendCount.length && remaining > 0; i++) {
+            int limit = (int) Math.max(remaining / (byFriendCount.length - i), 1);
+            int[] friendsOfFriend = inMemoryUStorage.sampleFriendIds((int) byFriendCount[i], limit);
+            if (friendsOfFriend.length == 0) {
+                continue;
+            }
+            //Каждый друг из выборки каждого n-го друга представляет n друзей.
+            double weight = (double) Math.max((int) (byFriendCount[i] >>> 32), friendsOfFriend.length)
+                    / friendsOfFriend.length;
+            for (int candidate : friendsOfFriend) {
+                if (candidate != id) {
+                    mutual.add(candidate, weight);
+                }
+            }
+            remaining -= friendsOfFriend.length;
+        }
+        return mutual;
+    }
+    
+    /**
+     * Версия пользователей для заголовка ETag.
+     *
+     * @return версия.
+     */
+    public long getUsersVersion() {
+        return inMemoryUStorage.usersVersion();
+    }
+    
+    /**
+     * Версия списка друзей пользователя для заголовка ETag.
+     *
+     * @param id ID пользователя.
+     * @return версия; -1 - пользователя нет в БД.
+     */
+    public long getFriendsVersion(Integer id) {
+        return inMemoryUStorage.friendsVersion(id);
+    }
+    
     /**
      * Вывести список друзей пользователя с ID.
      *
@@ -337,38 +578,9 @@ public class UserService {
             log.error(error);
             throw new NotFoundRecordInBD(error);
         }
-        List<User> result = new ArrayList<>();
-        for (Integer idFriend : user.getIdsFriends()) {
-            User friend = getUserById(idFriend);
-            if (friend == null) {
-                String error = "При выдаче списка друзей пользователя в БД не найден друг с ID = " + idFriend + ".";
-                log.error(error);
-                throw new NotFoundRecordInBD(error);
-            }
-            result.add(getUserById(idFriend));
-        }
-        return result;
+        return inMemoryUStorage.getUsersByIds(inMemoryUStorage.getFriendIds(id));
     }
     
-    // TODO: 2022.09.04 17:37:19 В будущем удалить дублирующий метод. Ещё к тому же
-    //  недоделанный и плохо названный. - @Dmitriy_Gaju
-    /**
-     * Метод проверки наличия пользователя в базе данных по ID.
-     *
-     * @param id пользователь, наличие логина которого необходимо проверить в базе данных.
-     * @return ID, найденный в БД по логину.
-     * Если возвращается не null, то после этой проверки можно обновлять пользователя,
-     * присвоив ему ID из базы данных.
-     * <p>null - пользователя нет в базе данных.</p>
-     */
-    private Integer idFromDBByID(Integer id) {
-        
-        return inMemoryUStorage.getAllUsersFromStorage().stream().filter(u -> u.getId().equals(id))
-                .findFirst().map(User::getId)
-                .orElse(null);
-    }
-    
-    
     /**
      * Метод присвоения имени пользователя при его отсутствии.
      * Если имя пустое, то оно равно логину.
@@ -390,16 +602,11 @@ public class UserService {
      */
     private boolean setUniqueIdForUserFromCount(User user) {
         if (user.getId() != null) {
-            log.info("Уникальный ID пользователю не нужен. Изначальный ID = " + user.getId());
+            log.info("Уникальный ID пользователю не нужен. Изначальный ID = {}", user.getId());
             return false;
         }
-        while (true) {
-            Integer count = User.getCount();
-            if (inMemoryUStorage.getUserById(count) == null) {
-                user.setId(count);
-                log.info("Уникальный ID фильму присвоен. ID = " + user.getId());
-                return true;
-            }
-        }
+        user.setId(inMemoryUStorage.generateId());
+        log.info("Уникальный ID пользователю присвоен. ID = {}", user.getId());
+        return true;
     }
 }
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Генератор уникальных ID по схеме hi/lo.
+ * <p>Очередной ID выдаётся одной атомарной операцией {@link AtomicInteger#incrementAndGet()}.
+ * ID резервируются блоками: верхняя граница блока (hi) сохраняется в файл до того, как из блока будет выдан
+ * хотя бы один ID. После перезапуска выдача продолжается с сохранённой границы, поэтому ID не повторяются,
+ * а часть последнего блока просто пропускается.</p>
+ * <p>ID, записанные в хранилище в обход генератора (пришедшие в теле запроса), передаются в {@link #seed(int)},
+ * и генератор перескакивает через них.</p>
+ */
+@Slf4j
+public class IdGenerator {
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+    
+    /**
+     * Последний выданный или занятый ID.
+     */
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final int blockSize;
+    /**
+     * Файл с верхней границей зарезервированного блока. null - граница не сохраняется.
+     */
+    private final Path hiFile;
+    /**
+     * Верхняя граница зарезервированного блока (включительно).
+     */
+    private volatile int reservedUntil;
+    
+    /**
+     * Генератор без сохранения границы блока: выдача ID начинается с единицы при каждом запуске.
+     */
+    public IdGenerator() {
+        this(null, DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Генератор с сохранением границы блока в файл.
+     *
+     * @param hiFile    файл с верхней границей блока; null - граница не сохраняется.
+     * @param blockSize размер резервируемого блока ID.
+     */
+    public IdGenerator(Path hiFile, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Размер блока ID должен быть положительным: " + blockSize);
+        }
+        this.hiFile = hiFile;
+        this.blockSize = blockSize;
+        int hi = readHi();
+        lastId.set(hi);
+        reservedUntil = hi;
+    }
+    
+    /**
+     * Генератор для хранилища: при заданном каталоге граница блока сохраняется в файл {@code <name>.hi}.
+     *
+     * @param storageDir каталог хранилища; пустая строка - граница не сохраняется.
+     * @param name       имя последовательности ID.
+     * @return генератор ID.
+     */
+    public static IdGenerator inDirectory(String storageDir, String name) {
+        if (storageDir == null || storageDir.isBlank()) {
+            return new IdGenerator();
+        }
+        return new IdGenerator(Path.of(storageDir, name + ".hi"), DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Выдать следующий уникальный ID.
+     *
+     * @return ID.
+     */
+    public int nextId() {
+        int id = lastId.incrementAndGet();
+        if (id <= 0) {
+            throw new IllegalStateException("Исчерпан диапазон ID.");
+        }
+        if (id > reservedUntil) {
+            reserve(id);
+        }
+        return id;
+    }
+    
+    /**
+     * Сообщить генератору о занятом ID, чтобы он больше не выдавался.
+     *
+     * @param usedId ID, записанный в хранилище.
+     */
+    public void seed(int usedId) {
+        lastId.accumulateAndGet(usedId, Math::max);
+        if (usedId > reservedUntil) {
+            reserve(usedId);
+        }
+    }
+    
+    /**
+     * Последний выданный или занятый ID.
+     *
+     * @return ID.
+     */
+    public int getLastId() {
+        return lastId.get();
+    }
+    
+    /**
+     * Зарезервировать блок, содержащий ID. Вызывается один раз на блок.
+     *
+     * @param id ID, вышедший за границу текущего блока.
+     */
+    private synchronized void reserve(int id) {
+        if (id <= reservedUntil) {
+            return;
+        }
+        int hi = (int) Math.min((long) id + blockSize - 1, Integer.MAX_VALUE);
+        writeHi(hi);
+        reservedUntil = hi;
+    }
+    
+    private int readHi() {
+        if (hiFile == null || !Files.exists(hiFile)) {
+            return 0;
+        }
+        try {
+            int hi = Integer.parseInt(Files.readString(hiFile, StandardCharsets.UTF_8).trim());
+            log.info("Выдача ID продолжается после границы {} из файла '{}'.", hi, hiFile);
+            return hi;
+        } catch (IOException | NumberFormatException ex) {
+            throw new IllegalStateException("Не удалось прочитать границу блока ID из файла '" + hiFile + "'.", ex);
+        }
+    }
+    
+    /**
+     * Сохранить границу блока: запись во временный файл, сброс на диск и атомарное переименование.
+     *
+     * @param hi верхняя граница блока.
+     */
+    private void writeHi(int hi) {
+        if (hiFile == null) {
+            return;
+        }
+        Path tmp = hiFile.resolveSibling(hiFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(hiFile.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(Integer.toString(hi).getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+            Files.move(tmp, hiFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось сохранить границу блока ID в файл '" + hiFile + "'.", ex);
+        }
+    }
+}
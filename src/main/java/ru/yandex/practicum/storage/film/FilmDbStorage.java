@@ -0,0 +1,619 @@
+package ru.yandex.practicum.storage.film;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.model.ConcurrentIntSet;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.FilmLike;
+import ru.yandex.practicum.storage.IdGenerator;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище фильмов в БД. Включается свойством {@code filmorate.storage.type=jdbc}, схема - {@code schema.sql}.
+ * <p>Все запросы - подготовленные выражения {@link JdbcTemplate}, соединения берутся из пула HikariCP.
+ * Количество лайков хранится в столбце {@code like_count} и меняется в одной транзакции с таблицей {@code likes},
+ * поэтому популярные фильмы читаются по индексу {@code films_popularity_idx} без подсчёта лайков.</p>
+ * <p>Лайки нескольких фильмов загружаются одним запросом, а лайки нового фильма записываются одним пакетом.</p>
+ * <p>Версия популярных фильмов меняется после каждой записи через это хранилище; изменения, сделанные в БД
+ * в обход хранилища, версию не меняют.</p>
+ */
+@Component
+@Timed("filmorate.storage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "jdbc")
+public class FilmDbStorage implements FilmStorage {
+    private static final String SELECT_FILMS = "SELECT film_id, name, description, release_date, duration FROM films";
+    private static final String UPDATE_FILM = "UPDATE films SET name = ?, description = ?, release_date = ?, "
+            + "duration = ? WHERE film_id = ?";
+    private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration, "
+            + "film_id, like_count) VALUES (?, ?, ?, ?, ?, ?)";
+    /**
+     * Размер пакета JDBC при записи пачки фильмов.
+     */
+    private static final int BATCH_SIZE = 500;
+    private static final RowMapper<Film> FILM_MAPPER = (rs, rowNum) -> Film.builder()
+            .id(rs.getInt("film_id"))
+            .name(rs.getString("name"))
+            .description(rs.getString("description"))
+            .releaseDate(rs.getObject("release_date", LocalDate.class))
+            .duration(rs.getObject("duration", Integer.class))
+            .likes(new ConcurrentIntSet())
+            .build();
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final IdGenerator idGenerator = new IdGenerator();
+    /**
+     * Версия популярных фильмов. Меняется после фиксации транзакции, чтобы по новой версии не прочитать
+     * незафиксированные данные.
+     */
+    private final AtomicLong popularityVersion = new AtomicLong();
+    /**
+     * Версия библиотеки и версии фильмов, записанных после запуска; версия остальных фильмов - 0.
+     * Меняются после фиксации транзакции, как и версия популярных фильмов.
+     */
+    private final AtomicLong filmsVersion = new AtomicLong();
+    private final ConcurrentMap<Integer, Long> filmVersions = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transaction = new TransactionTemplate(
+                new DataSourceTransactionManager(Objects.requireNonNull(jdbcTemplate.getDataSource())));
+        idGenerator.seed(jdbcTemplate.queryForObject("SELECT COALESCE(MAX(film_id), 0) FROM films", Integer.class));
+    }
+    
+    /**
+     * Получить список всех фильмов.
+     *
+     * @return список фильмов.
+     */
+    @Override
+    public List<Film> getAllFilms() {
+        Map<Integer, Film> films = new LinkedHashMap<>();
+        jdbcTemplate.query(SELECT_FILMS + " ORDER BY film_id", FILM_MAPPER)
+                .forEach(film -> films.put(film.getId(), film));
+        jdbcTemplate.query("SELECT film_id, user_id FROM likes ORDER BY film_id, user_id", rs -> {
+            Film film = films.get(rs.getInt("film_id"));
+            if (film != null) {
+                film.getLikes().add(rs.getInt("user_id"));
+            }
+        });
+        return new ArrayList<>(films.values());
+    }
+    
+    @Override
+    public int filmCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class);
+    }
+    
+    /**
+     * Получить страницу фильмов по возрастанию ID. Страница читается по первичному ключу с курсора.
+     *
+     * @param afterId ID, после которого начинается страница; null - с начала библиотеки.
+     * @param limit   наибольший размер страницы.
+     * @return фильмы с ID больше afterId по возрастанию ID.
+     */
+    @Override
+    public List<Film> getFilmsPage(Integer afterId, int limit) {
+        return withLikes(jdbcTemplate.query(SELECT_FILMS + " WHERE film_id > ? ORDER BY film_id LIMIT ?",
+                FILM_MAPPER, afterId == null ? Long.MIN_VALUE : afterId, limit));
+    }
+    
+    /**
+     * Добавить фильм в библиотеку.
+     *
+     * @param film фильм.
+     * @return добавленный фильм.
+     */
+    @Override
+    public Film createInStorage(Film film) {
+        return putInStorage(film);
+    }
+    
+    /**
+     * Обновление фильма в библиотеке.
+     *
+     * @param film обновляемый фильм.
+     * @return обновлённый фильм.
+     */
+    @Override
+    public Film updateInStorage(Film film) {
+        return putInStorage(film);
+    }
+    
+    /**
+     * Записать пачку фильмов одной транзакцией: существующие фильмы находятся одним запросом,
+     * затем обновления, новые фильмы и их лайки записываются пакетами JDBC.
+     *
+     * @param batch фильмы с заданными ID.
+     */
+    @Override
+    public void putAll(List<Film> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batch.forEach(film -> idGenerator.seed(film.getId()));
+        transaction.executeWithoutResult(status -> {
+            Set<Integer> existing = new HashSet<>(namedJdbcTemplate.queryForList(
+                    "SELECT film_id FROM films WHERE film_id IN (:ids)",
+                    Map.of("ids", batch.stream().map(Film::getId).collect(Collectors.toSet())), Integer.class));
+            List<Film> updated = new ArrayList<>();
+            //Фильм, дважды встретившийся в пачке, записывается в последней версии.
+            Map<Integer, Film> created = new LinkedHashMap<>();
+            for (Film film : batch) {
+                if (existing.contains(film.getId())) {
+                    updated.add(film);
+                } else {
+                    created.put(film.getId(), film);
+                }
+            }
+            jdbcTemplate.batchUpdate(UPDATE_FILM, updated, BATCH_SIZE, this::setFilmColumns);
+            jdbcTemplate.batchUpdate(INSERT_FILM, created.values(), BATCH_SIZE, (ps, film) -> {
+                setFilmColumns(ps, film);
+                ps.setInt(6, film.getLikes() != null ? film.getLikes().size() : 0);
+            });
+            created.values().stream()
+                    .filter(film -> film.getLikes() != null && !film.getLikes().isEmpty())
+                    .forEach(film -> insertLikes(film.getId(), film.getLikes().toIntArray()));
+        });
+        popularityVersion.incrementAndGet();
+        batch.forEach(film -> filmVersions.put(film.getId(), filmsVersion.incrementAndGet()));
+    }
+    
+    /**
+     * Удалить фильм из библиотеки. Лайки фильма удаляются каскадно.
+     *
+     * @param film фильм.
+     * @return удалённый фильм.
+     */
+    @Override
+    public Film removeFromLibrary(Film film) {
+        Film removed = transaction.execute(status -> {
+            Film stored = lockFilm(film.getId());
+            if (stored == null || !stored.equals(film)) {
+                return null;
+            }
+            jdbcTemplate.update("DELETE FROM films WHERE film_id = ?", film.getId());
+            return film;
+        });
+        if (removed != null) {
+            popularityVersion.incrementAndGet();
+            filmVersions.remove(film.getId());
+            filmsVersion.incrementAndGet();
+        }
+        return removed;
+    }
+    
+    /**
+     * Метод получения фильма из библиотеки по его ID.
+     *
+     * @param id ID фильма, наличие которого необходимо проверить в библиотеке.
+     * @return Film - фильм присутствует в библиотеке.
+     * <p>null - фильма нет в библиотеке.</p>
+     */
+    @Override
+    public Film getFilmById(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        return withLikes(jdbcTemplate.query(SELECT_FILMS + " WHERE film_id = ?", FILM_MAPPER, id))
+                .stream().findFirst().orElse(null);
+    }
+    
+    /**
+     * Получить фильм по названию.
+     *
+     * @param name название фильма.
+     * @return фильм Film или null.
+     */
+    @Override
+    public Film getFilmByName(String name) {
+        return withLikes(jdbcTemplate.query(SELECT_FILMS + " WHERE name = ? ORDER BY film_id LIMIT 1",
+                FILM_MAPPER, name)).stream().findFirst().orElse(null);
+    }
+    
+    /**
+     * Сгенерировать уникальный ID для нового фильма.
+     *
+     * @return ID, не занятый в хранилище.
+     */
+    @Override
+    public int generateId() {
+        return idGenerator.nextId();
+    }
+    
+    /**
+     * Поставить лайк фильму. Строка фильма блокируется на время транзакции,
+     * поэтому лайк и счётчик лайков не расходятся при одновременных запросах.
+     *
+     * @param filmId ID фильма.
+     * @param userId ID пользователя, ставящего лайк.
+     * @return True - лайк поставлен. False - фильма нет в библиотеке или лайк уже стоял.
+     */
+    @Override
+    public boolean addLike(Integer filmId, Integer userId) {
+        return changedPopularity(transaction.execute(status -> {
+            if (!lockFilmRow(filmId)) {
+                return false;
+            }
+            int inserted = jdbcTemplate.update("INSERT INTO likes (film_id, user_id) SELECT ?, ? "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)",
+                    filmId, userId, filmId, userId);
+            if (inserted == 0) {
+                return false;
+            }
+            jdbcTemplate.update("UPDATE films SET like_count = like_count + 1 WHERE film_id = ?", filmId);
+            return true;
+        }));
+    }
+    
+    /**
+     * Поставить пачку лайков одной транзакцией. Строки фильмов пачки блокируются одним запросом, уже стоящие
+     * лайки читаются одним запросом, новые лайки и приращения {@code like_count} записываются пакетами.
+     *
+     * @param likes пары (фильм, пользователь) с заданными ID.
+     * @return результат по каждой паре в порядке списка: True - лайк поставлен.
+     * False - фильма нет в библиотеке или лайк уже стоял.
+     */
+    @Override
+    public boolean[] addLikes(List<FilmLike> likes) {
+        boolean[] added = new boolean[likes.size()];
+        if (likes.isEmpty()) {
+            return added;
+        }
+        Set<Integer> filmIds = likes.stream().map(FilmLike::getFilmId).collect(Collectors.toSet());
+        Set<Integer> userIds = likes.stream().map(FilmLike::getUserId).collect(Collectors.toSet());
+        transaction.executeWithoutResult(status -> {
+            Set<Integer> existing = new HashSet<>(namedJdbcTemplate.queryForList(
+                    "SELECT film_id FROM films WHERE film_id IN (:ids) ORDER BY film_id FOR UPDATE",
+                    Map.of("ids", filmIds), Integer.class));
+            if (existing.isEmpty()) {
+                return;
+            }
+            Set<Long> liked = new HashSet<>();
+            namedJdbcTemplate.query("SELECT film_id, user_id FROM likes WHERE film_id IN (:films) "
+                            + "AND user_id IN (:users)", Map.of("films", existing, "users", userIds),
+                    rs -> {
+                        liked.add(likeKey(rs.getInt("film_id"), rs.getInt("user_id")));
+                    });
+            List<FilmLike> inserted = new ArrayList<>();
+            Map<Integer, Integer> increments = new HashMap<>();
+            for (int i = 0; i < likes.size(); i++) {
+                FilmLike like = likes.get(i);
+                if (existing.contains(like.getFilmId()) && liked.add(likeKey(like.getFilmId(), like.getUserId()))) {
+                    added[i] = true;
+                    inserted.add(like);
+                    increments.merge(like.getFilmId(), 1, Integer::sum);
+                }
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", inserted, BATCH_SIZE,
+                    (ps, like) -> {
+                        ps.setInt(1, like.getFilmId());
+                        ps.setInt(2, like.getUserId());
+                    });
+            jdbcTemplate.batchUpdate("UPDATE films SET like_count = like_count + ? WHERE film_id = ?",
+                    increments.entrySet(), BATCH_SIZE, (ps, increment) -> {
+                        ps.setInt(1, increment.getValue());
+                        ps.setInt(2, increment.getKey());
+                    });
+        });
+        popularityVersion.incrementAndGet();
+        return added;
+    }
+    
+    /**
+     * Удалить лайк фильму.
+     *
+     * @param filmId ID фильма.
+     * @param userId ID пользователя, удаляющего лайк.
+     * @return True - лайк удалён. False - фильма нет в библиотеке или пользователь не ставил лайк.
+     */
+    @Override
+    public boolean removeLike(Integer filmId, Integer userId) {
+        return changedPopularity(transaction.execute(status -> {
+            if (!lockFilmRow(filmId)) {
+                return false;
+            }
+            if (jdbcTemplate.update("DELETE FROM likes WHERE film_id = ? AND user_id = ?", filmId, userId) == 0) {
+                return false;
+            }
+            jdbcTemplate.update("UPDATE films SET like_count = like_count - 1 WHERE film_id = ?", filmId);
+            return true;
+        }));
+    }
+    
+    /**
+     * ID пользователей, поставивших лайк фильму, по первичному ключу таблицы лайков.
+     *
+     * @param filmId ID фильма.
+     * @return ID пользователей по возрастанию.
+     */
+    @Override
+    public int[] likerIds(int filmId) {
+        return jdbcTemplate.queryForList("SELECT user_id FROM likes WHERE film_id = ? ORDER BY user_id",
+                Integer.class, filmId).stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * ID фильмов, которым пользователь поставил лайк, по индексу {@code likes_user_idx}.
+     *
+     * @param userId ID пользователя.
+     * @return ID фильмов по возрастанию.
+     */
+    @Override
+    public int[] likedFilmIds(int userId) {
+        return jdbcTemplate.queryForList("SELECT film_id FROM likes WHERE user_id = ? ORDER BY film_id",
+                Integer.class, userId).stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * Количество лайков пользователей: один запрос по индексу {@code likes_user_idx} на каждые
+     * {@value #BATCH_SIZE} пользователей.
+     *
+     * @param userIds ID пользователей.
+     * @return количество лайков в порядке userIds.
+     */
+    @Override
+    public int[] likedFilmCounts(int[] userIds) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int from = 0; from < userIds.length; from += BATCH_SIZE) {
+            List<Integer> ids = new ArrayList<>(Math.min(BATCH_SIZE, userIds.length - from));
+            for (int i = from; i < Math.min(from + BATCH_SIZE, userIds.length); i++) {
+                ids.add(userIds[i]);
+            }
+            namedJdbcTemplate.query("SELECT user_id, COUNT(*) AS likes FROM likes WHERE user_id IN (:ids) "
+                    + "GROUP BY user_id", Map.of("ids", ids), rs -> {
+                        counts.put(rs.getInt("user_id"), rs.getInt("likes"));
+                    });
+        }
+        int[] result = new int[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            result[i] = counts.getOrDefault(userIds[i], 0);
+        }
+        return result;
+    }
+    
+    /**
+     * Количество лайков фильма из столбца {@code like_count}, без чтения таблицы лайков.
+     *
+     * @param filmId ID фильма.
+     * @return количество лайков; -1 - фильма нет в библиотеке.
+     */
+    @Override
+    public int likeCount(Integer filmId) {
+        List<Integer> count = jdbcTemplate.queryForList("SELECT like_count FROM films WHERE film_id = ?",
+                Integer.class, filmId);
+        return count.isEmpty() ? -1 : count.get(0);
+    }
+    
+    /**
+     * Версия популярных фильмов. Меняется после любой записи фильмов или лайков через это хранилище.
+     *
+     * @return версия.
+     */
+    @Override
+    public long popularityVersion() {
+        return popularityVersion.get();
+    }
+    
+    /**
+     * Версия библиотеки: меняется после каждой записи или удаления фильма.
+     *
+     * @return версия.
+     */
+    @Override
+    public long filmsVersion() {
+        return filmsVersion.get();
+    }
+    
+    /**
+     * Версия фильма: номер последней записи фильма после запуска или 0, если фильм с тех пор не менялся.
+     *
+     * @param id ID фильма.
+     * @return версия; -1 - фильма нет в библиотеке.
+     */
+    @Override
+    public long filmVersion(Integer id) {
+        if (id == null) {
+            return -1;
+        }
+        Long version = filmVersions.get(id);
+        if (jdbcTemplate.queryForList("SELECT film_id FROM films WHERE film_id = ?", Integer.class, id).isEmpty()) {
+            return -1;
+        }
+        return version == null ? 0 : version;
+    }
+    
+    /**
+     * Получить список самых популярных фильмов по индексу количества лайков.
+     *
+     * @param count размер возвращаемого списка фильмов.
+     * @return список популярных фильмов.
+     */
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        return withLikes(jdbcTemplate.query(SELECT_FILMS + " ORDER BY like_count DESC, film_id LIMIT ?",
+                FILM_MAPPER, count));
+    }
+    
+    /**
+     * Записать фильм в библиотеку.
+     * Лайки не приходят в теле запроса, поэтому при обновлении существующего фильма они сохраняются,
+     * а у нового фильма записываются одним пакетом.
+     * <p>Если фильм с тем же ID одновременно создал другой запрос, обе транзакции не находят строку для
+     * обновления, и вставка одной из них нарушает первичный ключ. Такая транзакция откатывается и повторяется:
+     * строка уже есть, поэтому повтор обновляет её, как {@code compute} в хранилище в памяти.</p>
+     *
+     * @param film фильм.
+     * @return записанный фильм.
+     */
+    private Film putInStorage(Film film) {
+        idGenerator.seed(film.getId());
+        Film stored;
+        try {
+            stored = transaction.execute(status -> writeFilm(film));
+        } catch (DuplicateKeyException e) {
+            stored = transaction.execute(status -> writeFilm(film));
+        }
+        popularityVersion.incrementAndGet();
+        filmVersions.put(film.getId(), filmsVersion.incrementAndGet());
+        return stored;
+    }
+    
+    /**
+     * Обновить строку фильма или, если её нет, вставить фильм с лайками. Выполняется внутри транзакции.
+     *
+     * @param film фильм.
+     * @return записанный фильм.
+     */
+    private Film writeFilm(Film film) {
+        int updated = jdbcTemplate.update(UPDATE_FILM,
+                film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getId());
+        if (updated > 0) {
+            film.setLikes(loadLikes(film.getId()));
+            return film;
+        }
+        ConcurrentIntSet likes = film.getLikes() != null ? film.getLikes() : new ConcurrentIntSet();
+        jdbcTemplate.update(INSERT_FILM,
+                film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getId(),
+                likes.size());
+        insertLikes(film.getId(), likes.toIntArray());
+        film.setLikes(likes);
+        return film;
+    }
+    
+    /**
+     * Заполнить параметры {@link #UPDATE_FILM} и первые пять параметров {@link #INSERT_FILM}.
+     */
+    private void setFilmColumns(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setObject(3, film.getReleaseDate());
+        ps.setObject(4, film.getDuration());
+        ps.setInt(5, film.getId());
+    }
+    
+    /**
+     * Записать лайки фильма одним пакетом.
+     *
+     * @param filmId  ID фильма.
+     * @param userIds ID пользователей, поставивших лайк.
+     */
+    private void insertLikes(int filmId, int[] userIds) {
+        if (userIds.length == 0) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setInt(1, filmId);
+                        ps.setInt(2, userIds[i]);
+                    }
+            
+                    @Override
+                    public int getBatchSize() {
+                        return userIds.length;
+                    }
+                });
+    }
+    
+    private ConcurrentIntSet loadLikes(int filmId) {
+        ConcurrentIntSet likes = new ConcurrentIntSet();
+        jdbcTemplate.query("SELECT user_id FROM likes WHERE film_id = ?", rs -> {
+            likes.add(rs.getInt("user_id"));
+        }, filmId);
+        return likes;
+    }
+    
+    /**
+     * Загрузить лайки фильмов одним запросом.
+     *
+     * @param films фильмы без лайков.
+     * @return те же фильмы с лайками.
+     */
+    private List<Film> withLikes(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Integer, Film> byId = new LinkedHashMap<>();
+        films.forEach(film -> byId.put(film.getId(), film));
+        namedJdbcTemplate.query("SELECT film_id, user_id FROM likes WHERE film_id IN (:ids)",
+                Map.of("ids", byId.keySet()), rs -> {
+                    byId.get(rs.getInt("film_id")).getLikes().add(rs.getInt("user_id"));
+                });
+        return films;
+    }
+    
+    /**
+     * Заблокировать строку фильма до конца транзакции.
+     *
+     * @param filmId ID фильма.
+     * @return True - фильм есть в библиотеке.
+     */
+    private boolean lockFilmRow(Integer filmId) {
+        return !jdbcTemplate.queryForList("SELECT film_id FROM films WHERE film_id = ? FOR UPDATE", Integer.class,
+                filmId).isEmpty();
+    }
+    
+    /**
+     * Заблокировать строку фильма до конца транзакции и прочитать фильм с лайками.
+     *
+     * @param filmId ID фильма.
+     * @return фильм или null.
+     */
+    private Film lockFilm(Integer filmId) {
+        return withLikes(jdbcTemplate.query(SELECT_FILMS + " WHERE film_id = ? FOR UPDATE", FILM_MAPPER, filmId))
+                .stream().findFirst().orElse(null);
+    }
+    
+    /**
+     * Сменить версию популярных фильмов, если транзакция изменила лайки.
+     *
+     * @param changed результат транзакции.
+     * @return True - лайки изменены.
+     */
+    private boolean changedPopularity(Boolean changed) {
+        if (Boolean.TRUE.equals(changed)) {
+            popularityVersion.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Ключ пары (фильм, пользователь) для поиска в множестве.
+     */
+    private static long likeKey(int filmId, int userId) {
+        return (long) filmId << 32 | userId & 0xFFFFFFFFL;
+    }
+}
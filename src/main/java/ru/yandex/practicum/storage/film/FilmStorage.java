@@ -1,10 +1,21 @@
 package ru.yandex.practicum.storage.film;
 
 import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.FilmLike;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface FilmStorage {
+    /**
+     * Размер страницы, которыми читаются фильмы в {@link #streamAllFilms()}.
+     */
+    int STREAM_PAGE_SIZE = 1000;
+    
+    /**
+     * Сколько первых популярных фильмов отслеживает {@link #popularityVersion()}.
+     */
+    int POPULAR_VERSION_DEPTH = 100;
     
     /**
      * Создание фильма
@@ -22,6 +33,14 @@ public interface FilmStorage {
      */
     Film updateInStorage(Film film);
     
+    /**
+     * Записать пачку фильмов: новые фильмы добавляются, существующие обновляются с сохранением лайков.
+     * Пачка записывается дешевле, чем те же фильмы по одному: одной транзакцией или одним ожиданием сброса журнала.
+     *
+     * @param batch фильмы с заданными ID.
+     */
+    void putAll(List<Film> batch);
+    
     /**
      * Удалить фильм из библиотеки.
      * @param film - фильм.
@@ -35,6 +54,38 @@ public interface FilmStorage {
      */
     List<Film> getAllFilms();
     
+    /**
+     * Количество фильмов в библиотеке.
+     *
+     * @return количество фильмов.
+     */
+    int filmCount();
+    
+    /**
+     * Получить страницу фильмов по возрастанию ID (пагинация по курсору).
+     * Следующая страница запрашивается с ID последнего фильма текущей страницы.
+     *
+     * @param afterId ID, после которого начинается страница; null - с начала библиотеки (с наименьшего ID,
+     *                в том числе {@code Integer.MIN_VALUE}).
+     * @param limit   наибольший размер страницы.
+     * @return фильмы с ID больше afterId по возрастанию ID.
+     */
+    List<Film> getFilmsPage(Integer afterId, int limit);
+    
+    /**
+     * Перебрать все фильмы по возрастанию ID, не собирая их в один список.
+     * Фильмы читаются страницами {@link #getFilmsPage(Integer, int)} по мере перебора, поэтому занятая память
+     * не зависит от размера библиотеки, а первый фильм доступен сразу после чтения первой страницы.
+     *
+     * @return поток фильмов.
+     */
+    default Stream<Film> streamAllFilms() {
+        return Stream.iterate(getFilmsPage(null, STREAM_PAGE_SIZE), page -> !page.isEmpty(),
+                        page -> page.size() < STREAM_PAGE_SIZE ? List.of()
+                                : getFilmsPage(page.get(page.size() - 1).getId(), STREAM_PAGE_SIZE))
+                .flatMap(List::stream);
+    }
+    
     /**
      * Метод получения фильма из библиотеки по его ID.
      *
@@ -46,4 +97,103 @@ public interface FilmStorage {
     Film getFilmById(Integer id);
     
     Film getFilmByName(String name);
+    
+    /**
+     * Сгенерировать уникальный ID для нового фильма.
+     *
+     * @return ID, не занятый в хранилище.
+     */
+    int generateId();
+    
+    /**
+     * Поставить лайк фильму.
+     *
+     * @param filmId ID фильма.
+     * @param userId ID пользователя, ставящего лайк.
+     * @return True - лайк поставлен. False - фильма нет в библиотеке или лайк уже стоял.
+     */
+    boolean addLike(Integer filmId, Integer userId);
+    
+    /**
+     * Поставить пачку лайков за один проход по хранилищу: одной транзакцией или одним ожиданием сброса журнала.
+     *
+     * @param likes пары (фильм, пользователь) с заданными ID.
+     * @return результат по каждой паре в порядке списка: True - лайк поставлен.
+     * False - фильма нет в библиотеке или лайк уже стоял.
+     */
+    boolean[] addLikes(List<FilmLike> likes);
+    
+    /**
+     * Удалить лайк фильму.
+     *
+     * @param filmId ID фильма.
+     * @param userId ID пользователя, удаляющего лайк.
+     * @return True - лайк удалён. False - фильма нет в библиотеке или пользователь не ставил лайк.
+     */
+    boolean removeLike(Integer filmId, Integer userId);
+    
+    /**
+     * ID пользователей, поставивших лайк фильму, по возрастанию.
+     *
+     * @param filmId ID фильма.
+     * @return ID пользователей; пустой массив - фильма нет в библиотеке или у него нет лайков.
+     */
+    int[] likerIds(int filmId);
+    
+    /**
+     * ID фильмов, которым пользователь поставил лайк, по возрастанию (обратный индекс лайков).
+     *
+     * @param userId ID пользователя.
+     * @return ID фильмов; пустой массив - пользователь не ставил лайков.
+     */
+    int[] likedFilmIds(int userId);
+    
+    /**
+     * Количество лайков, поставленных каждым из пользователей, без чтения самих лайков.
+     *
+     * @param userIds ID пользователей.
+     * @return количество лайков в порядке userIds.
+     */
+    int[] likedFilmCounts(int[] userIds);
+    
+    /**
+     * Количество лайков фильма без чтения самих лайков.
+     *
+     * @param filmId ID фильма.
+     * @return количество лайков; -1 - фильма нет в библиотеке.
+     */
+    int likeCount(Integer filmId);
+    
+    /**
+     * Получить список самых популярных фильмов.
+     * Фильмы упорядочены по убыванию количества лайков, при равенстве лайков - по возрастанию ID.
+     *
+     * @param count размер возвращаемого списка фильмов.
+     * @return список популярных фильмов.
+     */
+    List<Film> getPopularFilms(int count);
+    
+    /**
+     * Версия первых {@value #POPULAR_VERSION_DEPTH} популярных фильмов. Пока версия не изменилась, список из
+     * {@link #getPopularFilms(int)} длиной не больше {@value #POPULAR_VERSION_DEPTH} остаётся прежним.
+     *
+     * @return версия.
+     */
+    long popularityVersion();
+    
+    /**
+     * Версия библиотеки: меняется после каждой записи или удаления фильма. Лайки в фильм при выдаче
+     * не входят, поэтому версию не меняют.
+     *
+     * @return версия.
+     */
+    long filmsVersion();
+    
+    /**
+     * Версия фильма: меняется после каждой записи фильма. Пока версия не изменилась, фильм выдаётся прежним.
+     *
+     * @param id ID фильма.
+     * @return версия; -1 - фильма нет в библиотеке.
+     */
+    long filmVersion(Integer id);
 }
@@ -1,17 +1,164 @@
 package ru.yandex.practicum.storage.film;
 
+import io.micrometer.core.annotation.Timed;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.model.ConcurrentIntSet;
 import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.FilmLike;
+import ru.yandex.practicum.storage.IdGenerator;
+import ru.yandex.practicum.storage.persistence.EntityCodec;
+import ru.yandex.practicum.storage.persistence.PersistenceSettings;
+import ru.yandex.practicum.storage.persistence.SnapshotStore;
+import ru.yandex.practicum.storage.persistence.Snapshottable;
+import ru.yandex.practicum.storage.persistence.WriteAheadLog;
 
+import javax.annotation.PreDestroy;
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Хранилище фильмов в памяти.
+ * <p>Хранилище разделяется между всеми потоками Tomcat, поэтому фильмы лежат в {@link ConcurrentHashMap}:
+ * чтение выполняется без блокировок, а запись блокирует только одну корзину таблицы.</p>
+ * <p>Для запроса популярных фильмов поддерживается индекс популярности - отсортированный по количеству
+ * лайков {@link ConcurrentSkipListSet}, поэтому первые K фильмов читаются за O(K) без сортировки всей
+ * библиотеки. Так же поддерживается упорядоченный индекс ID, по которому страница из K фильмов читается за O(K).</p>
+ * <p>Лайки фильма хранятся в {@link ConcurrentIntSet} и меняются под блокировкой полосы этого множества,
+ * а не внутри {@code compute} по ID фильма: лайки популярного фильма от разных пользователей не ждут друг друга.
+ * Изменённые фильмы только отмечаются, а их позиции в индексе популярности пересчитываются при запросе
+ * популярных фильмов.</p>
+ * <p>Обратный индекс лайков {@link #likedFilms} хранит для каждого пользователя ID фильмов, которым он поставил
+ * лайк. Индекс меняется под той же блокировкой полосы, что и лайки фильма, поэтому после закрытия лайков
+ * удаляемого фильма его можно убрать из индекса по списку лайков.</p>
+ * <p>Если задан каталог хранилища, каждое изменение записывается в журнал {@link WriteAheadLog} под той же
+ * блокировкой, что и само изменение, а при запуске журнал применяется заново.</p>
+ */
 @Component
-public class InMemoryFilmStorage implements FilmStorage {
+@Timed("filmorate.storage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryFilmStorage implements FilmStorage, Snapshottable {
+    private static final byte FILM_PUT = 1;
+    private static final byte FILM_REMOVE = 2;
+    private static final byte LIKE = 3;
+    private static final byte UNLIKE = 4;
     
-    private final Map<Integer, Film> films = new HashMap<>();
+    private final ConcurrentMap<Integer, Film> films = new ConcurrentHashMap<>();
+    
+    /**
+     * Индекс популярности: по убыванию количества лайков, при равенстве - по возрастанию ID.
+     */
+    private final ConcurrentSkipListSet<FilmRank> popularity = new ConcurrentSkipListSet<>();
+    
+    /**
+     * Текущая позиция каждого фильма в индексе популярности.
+     */
+    private final ConcurrentMap<Integer, FilmRank> ranks = new ConcurrentHashMap<>();
+    
+    /**
+     * ID фильмов по возрастанию для постраничной выдачи. Меняется внутри {@code compute} по ID фильма.
+     */
+    private final ConcurrentSkipListSet<Integer> filmIds = new ConcurrentSkipListSet<>();
+    
+    /**
+     * Обратный индекс лайков: ID пользователя - ID фильмов, которым он поставил лайк.
+     */
+    private final ConcurrentMap<Integer, ConcurrentIntSet> likedFilms = new ConcurrentHashMap<>();
+    
+    /**
+     * ID фильмов, у которых менялись лайки после последнего пересчёта их позиции в индексе популярности.
+     */
+    private final Set<Integer> staleRanks = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Версия первых {@value FilmStorage#POPULAR_VERSION_DEPTH} популярных фильмов. Меняется под блокировкой
+     * {@link #ranks}.
+     */
+    private volatile long popularityVersion;
+    /**
+     * Позиция последнего из первых {@value FilmStorage#POPULAR_VERSION_DEPTH} популярных фильмов;
+     * null - фильмов меньше. Вычисляется под блокировкой {@link #ranks}, когда нужна.
+     */
+    private FilmRank popularBoundary;
+    private boolean popularBoundaryKnown;
+    
+    /**
+     * Версия библиотеки. Меняется после записи фильма, поэтому по новой версии читается уже записанный фильм.
+     */
+    private final AtomicLong filmsVersion = new AtomicLong();
+    /**
+     * Версии фильмов, записанных после запуска. Версия фильма, которого здесь нет, - 0.
+     */
+    private final ConcurrentMap<Integer, Long> filmVersions = new ConcurrentHashMap<>();
+    
+    private final IdGenerator idGenerator;
+    private final WriteAheadLog wal;
+    private final SnapshotStore snapshots;
+    /**
+     * Номер последней записи журнала на момент последнего снимка. -1 - снимок ещё не записывался.
+     */
+    private long snapshotLsn = -1;
+    
+    public InMemoryFilmStorage() {
+        this(PersistenceSettings.inMemory());
+    }
+    
+    /**
+     * @param settings настройки сохранения: каталог хранилища для снимков, журнала изменений
+     *                 и границы выданных ID.
+     */
+    @Autowired
+    public InMemoryFilmStorage(PersistenceSettings settings) {
+        this.idGenerator = IdGenerator.inDirectory(settings.getStorageDir(), "films");
+        this.wal = settings.createLog("films");
+        this.snapshots = settings.createSnapshots("films");
+        long segment = snapshots.load(this::applyLogRecord);
+        wal.open(segment, this::applyLogRecord);
+    }
+    
+    /**
+     * Записать оставшиеся изменения на диск при остановке приложения.
+     */
+    @PreDestroy
+    public void close() {
+        wal.close();
+    }
+    
+    /**
+     * Записать снимок библиотеки. Журнал переключается на новый сегмент, после чего каждый фильм записывается
+     * внутри {@code compute} по его ID. Изменения, попавшие в новый сегмент, могут уже быть в снимке:
+     * записи журнала задают итоговое состояние, поэтому их повторное применение ничего не портит.
+     */
+    @Override
+    public synchronized void writeSnapshot() {
+        long lastLsn = wal.getLastLsn();
+        if (lastLsn == snapshotLsn) {
+            return;
+        }
+        long segment = wal.rotate();
+        snapshots.write(segment, writer -> {
+            for (Integer filmId : films.keySet()) {
+                films.computeIfPresent(filmId, (id, film) -> {
+                    writer.record(FILM_PUT, out -> EntityCodec.writeFilm(out, film, true));
+                    return film;
+                });
+            }
+        });
+        wal.deleteSegmentsBefore(segment);
+        snapshotLsn = lastLsn;
+    }
     
     
     /**
@@ -24,6 +171,34 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
     
+    @Override
+    public int filmCount() {
+        return films.size();
+    }
+    
+    /**
+     * Получить страницу фильмов по возрастанию ID: перебор индекса ID начинается сразу после курсора,
+     * поэтому страница не зависит от размера библиотеки.
+     *
+     * @param afterId ID, после которого начинается страница; null - с начала библиотеки.
+     * @param limit   наибольший размер страницы.
+     * @return фильмы с ID больше afterId по возрастанию ID.
+     */
+    @Override
+    public List<Film> getFilmsPage(Integer afterId, int limit) {
+        List<Film> result = new ArrayList<>(Math.min(limit, films.size()));
+        for (Integer filmId : afterId == null ? filmIds : filmIds.tailSet(afterId, false)) {
+            if (result.size() >= limit) {
+                break;
+            }
+            //Фильм мог быть удалён после того, как итератор прошёл его позицию в индексе.
+            Film film = films.get(filmId);
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
     
     /**
      * Добавить фильм в библиотеку.
@@ -33,8 +208,7 @@ public class InMemoryFilmStorage implements FilmStorage {
      */
     @Override
     public Film createInStorage(Film film) {
-        films.put(film.getId(), film);
-        return film;
+        return putInStorage(film);
     }
     
     /**
@@ -45,8 +219,22 @@ public class InMemoryFilmStorage implements FilmStorage {
      */
     @Override
     public Film updateInStorage(Film film) {
-        films.put(film.getId(), film);
-        return films.get(film.getId());
+        return putInStorage(film);
+    }
+    
+    /**
+     * Записать пачку фильмов. Каждый фильм записывается в журнал отдельно, но сброса журнала на диск
+     * пачка ждёт один раз - после последнего фильма.
+     *
+     * @param batch фильмы.
+     */
+    @Override
+    public void putAll(List<Film> batch) {
+        long lsn = 0;
+        for (Film film : batch) {
+            lsn = Math.max(lsn, putFilm(film));
+        }
+        wal.awaitDurable(lsn);
     }
     
     /**
@@ -57,10 +245,7 @@ public class InMemoryFilmStorage implements FilmStorage {
      */
     @Override
     public Film removeFromLibrary(Film film) {
-        if (films.remove(film.getId(), film)) {
-            return film;
-        }
-        return null;
+        return removeFilm(film.getId(), film) != null ? film : null;
     }
     
     /**
@@ -72,7 +257,10 @@ public class InMemoryFilmStorage implements FilmStorage {
      */
     @Override
     public Film getFilmById(Integer id) {
-        return films.getOrDefault(id, null);
+        if (id == null) {
+            return null;
+        }
+        return films.get(id);
     }
     
     /**
@@ -85,4 +273,472 @@ public class InMemoryFilmStorage implements FilmStorage {
     public Film getFilmByName(String name) {
         return films.values().stream().filter(f -> f.getName().equals(name)).findFirst().orElse(null);
     }
+    
+    /**
+     * Сгенерировать уникальный ID для нового фильма.
+     *
+     * @return ID, не занятый в хранилище.
+     */
+    @Override
+    public int generateId() {
+        return idGenerator.nextId();
+    }
+    
+    /**
+     * Поставить лайк фильму.
+     *
+     * @param filmId ID фильма.
+     * @param userId ID пользователя, ставящего лайк.
+     * @return True - лайк поставлен. False - фильма нет в библиотеке или лайк уже стоял.
+     */
+    @Override
+    public boolean addLike(Integer filmId, Integer userId) {
+        long lsn = changeLike(LIKE, filmId, userId);
+        wal.awaitDurable(lsn);
+        return lsn >= 0;
+    }
+    
+    /**
+     * Поставить пачку лайков. Каждый лайк записывается в журнал отдельно, но сброса журнала на диск
+     * пачка ждёт один раз - после последнего лайка.
+     *
+     * @param likes пары (фильм, пользователь) с заданными ID.
+     * @return результат по каждой паре в порядке списка: True - лайк поставлен.
+     * False - фильма нет в библиотеке или лайк уже стоял.
+     */
+    @Override
+    public boolean[] addLikes(List<FilmLike> likes) {
+        boolean[] added = new boolean[likes.size()];
+        long lsn = 0;
+        for (int i = 0; i < likes.size(); i++) {
+            long likeLsn = changeLike(LIKE, likes.get(i).getFilmId(), likes.get(i).getUserId());
+            added[i] = likeLsn >= 0;
+            lsn = Math.max(lsn, likeLsn);
+        }
+        wal.awaitDurable(lsn);
+        return added;
+    }
+    
+    /**
+     * Удалить лайк фильму.
+     *
+     * @param filmId ID фильма.
+     * @param userId ID пользователя, удаляющего лайк.
+     * @return True - лайк удалён. False - фильма нет в библиотеке или пользователь не ставил лайк.
+     */
+    @Override
+    public boolean removeLike(Integer filmId, Integer userId) {
+        long lsn = changeLike(UNLIKE, filmId, userId);
+        wal.awaitDurable(lsn);
+        return lsn >= 0;
+    }
+    
+    /**
+     * ID пользователей, поставивших лайк фильму, по возрастанию.
+     *
+     * @param filmId ID фильма.
+     * @return ID пользователей; пустой массив - фильма нет в библиотеке или у него нет лайков.
+     */
+    @Override
+    public int[] likerIds(int filmId) {
+        Film film = films.get(filmId);
+        return film == null || film.getLikes() == null ? new int[0] : film.getLikes().toIntArray();
+    }
+    
+    /**
+     * ID фильмов, которым пользователь поставил лайк, из обратного индекса лайков.
+     *
+     * @param userId ID пользователя.
+     * @return ID фильмов по возрастанию; пустой массив - пользователь не ставил лайков.
+     */
+    @Override
+    public int[] likedFilmIds(int userId) {
+        ConcurrentIntSet filmIds = likedFilms.get(userId);
+        return filmIds == null ? new int[0] : filmIds.toIntArray();
+    }
+    
+    /**
+     * Количество лайков пользователей из счётчиков обратного индекса, без блокировок.
+     *
+     * @param userIds ID пользователей.
+     * @return количество лайков в порядке userIds.
+     */
+    @Override
+    public int[] likedFilmCounts(int[] userIds) {
+        int[] counts = new int[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            ConcurrentIntSet filmIds = likedFilms.get(userIds[i]);
+            counts[i] = filmIds == null ? 0 : filmIds.size();
+        }
+        return counts;
+    }
+    
+    /**
+     * Количество лайков фильма из счётчика множества лайков, без блокировок.
+     *
+     * @param filmId ID фильма.
+     * @return количество лайков; -1 - фильма нет в библиотеке.
+     */
+    @Override
+    public int likeCount(Integer filmId) {
+        Film film = getFilmById(filmId);
+        if (film == null) {
+            return -1;
+        }
+        return film.getLikes() == null ? 0 : film.getLikes().size();
+    }
+    
+    /**
+     * Получить список самых популярных фильмов.
+     * Фильмы упорядочены по убыванию количества лайков, при равенстве лайков - по возрастанию ID.
+     *
+     * @param count размер возвращаемого списка фильмов.
+     * @return список популярных фильмов.
+     */
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        refreshStaleRanks();
+        List<Film> result = new ArrayList<>(Math.min(count, films.size()));
+        for (FilmRank rank : popularity) {
+            if (result.size() >= count) {
+                break;
+            }
+            //Фильм мог быть удалён после того, как итератор прошёл его позицию в индексе.
+            Film film = films.get(rank.getFilmId());
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Версия первых {@value FilmStorage#POPULAR_VERSION_DEPTH} популярных фильмов. Перед чтением версии
+     * пересчитываются позиции фильмов, у которых менялись лайки.
+     *
+     * @return версия.
+     */
+    @Override
+    public long popularityVersion() {
+        refreshStaleRanks();
+        return popularityVersion;
+    }
+    
+    /**
+     * Версия библиотеки: меняется после каждой записи или удаления фильма.
+     *
+     * @return версия.
+     */
+    @Override
+    public long filmsVersion() {
+        return filmsVersion.get();
+    }
+    
+    /**
+     * Версия фильма: номер последней записи фильма после запуска или 0, если фильм с тех пор не менялся.
+     *
+     * @param id ID фильма.
+     * @return версия; -1 - фильма нет в библиотеке.
+     */
+    @Override
+    public long filmVersion(Integer id) {
+        if (id == null) {
+            return -1;
+        }
+        Long version = filmVersions.get(id);
+        if (!films.containsKey(id)) {
+            return -1;
+        }
+        return version == null ? 0 : version;
+    }
+    
+    /**
+     * Записать фильм в библиотеку с обновлением индекса популярности.
+     *
+     * @param film фильм.
+     * @return записанный фильм.
+     */
+    private Film putInStorage(Film film) {
+        wal.awaitDurable(putFilm(film));
+        return film;
+    }
+    
+    /**
+     * Записать фильм в библиотеку, не дожидаясь сброса журнала на диск.
+     * Лайки не приходят в теле запроса, поэтому при обновлении существующего фильма они сохраняются.
+     * По той же причине в журнал лайки попадают только у нового фильма.
+     *
+     * @param film фильм.
+     * @return номер записи журнала.
+     */
+    private long putFilm(Film film) {
+        idGenerator.seed(film.getId());
+        long[] lsn = new long[1];
+        films.compute(film.getId(), (id, stored) -> {
+            lsn[0] = wal.append(FILM_PUT, out -> EntityCodec.writeFilm(out, film, stored == null));
+            if (stored != null) {
+                film.setLikes(stored.getLikes());
+            } else if (film.getLikes() != null) {
+                film.getLikes().forEachInt(userId -> likedFilmsOf(userId).add((int) id));
+            }
+            updateRank(film, true);
+            filmIds.add(id);
+            return film;
+        });
+        filmVersions.put(film.getId(), filmsVersion.incrementAndGet());
+        return lsn[0];
+    }
+    
+    /**
+     * Удалить фильм из библиотеки вместе с его позицией в индексе популярности.
+     *
+     * @param filmId   ID фильма.
+     * @param expected удаляемый фильм; фильм не удаляется, если в библиотеке записан другой.
+     *                 null - удаляется любой фильм с этим ID.
+     * @return удалённый фильм или null.
+     */
+    private Film removeFilm(Integer filmId, Film expected) {
+        Film[] removed = new Film[1];
+        long[] lsn = new long[1];
+        films.computeIfPresent(filmId, (id, stored) -> {
+            if (expected != null && !stored.equals(expected)) {
+                return stored;
+            }
+            if (stored.getLikes() != null) {
+                stored.getLikes().close();
+                stored.getLikes().forEachInt(userId -> unindexLike(id, userId));
+            }
+            synchronized (ranks) {
+                FilmRank rank = ranks.remove(id);
+                if (rank != null) {
+                    boolean wasPopular = isPopular(rank);
+                    popularity.remove(rank);
+                    if (wasPopular) {
+                        changePopularityVersion();
+                    }
+                }
+            }
+            filmIds.remove(id);
+            lsn[0] = wal.append(FILM_REMOVE, out -> out.writeInt(id));
+            removed[0] = stored;
+            return null;
+        });
+        if (removed[0] != null) {
+            filmVersions.remove(filmId);
+            filmsVersion.incrementAndGet();
+        }
+        wal.awaitDurable(lsn[0]);
+        return removed[0];
+    }
+    
+    /**
+     * Поставить или удалить лайк, не дожидаясь сброса журнала на диск.
+     * Лайк меняется и пишется в журнал под блокировкой полосы множества лайков, а не под блокировкой фильма:
+     * лайки разных пользователей одному фильму не ждут друг друга. Позиция фильма в индексе популярности
+     * пересчитывается позже, при запросе популярных фильмов.
+     *
+     * @param type   {@link #LIKE} или {@link #UNLIKE}.
+     * @param filmId ID фильма.
+     * @param userId ID пользователя.
+     * @return номер записи журнала; -1 - фильма нет в библиотеке или лайк уже стоял (не стоял).
+     */
+    private long changeLike(byte type, Integer filmId, Integer userId) {
+        ConcurrentIntSet likes = likesOf(filmId);
+        if (likes == null) {
+            return -1;
+        }
+        long lsn;
+        synchronized (likes.lockFor(userId)) {
+            boolean changed = type == LIKE ? likes.add((int) userId) : likes.remove((int) userId);
+            if (!changed) {
+                return -1;
+            }
+            if (type == LIKE) {
+                likedFilmsOf(userId).add((int) filmId);
+            } else {
+                unindexLike(filmId, userId);
+            }
+            lsn = logLike(type, filmId, userId);
+        }
+        //Проверка без блокировки: пока фильм отмечен, лайки популярного фильма не пишут в общее множество.
+        if (!staleRanks.contains(filmId)) {
+            staleRanks.add(filmId);
+        }
+        return lsn;
+    }
+    
+    /**
+     * Множество лайков фильма. У фильма без лайков множество создаётся внутри {@code compute} по его ID,
+     * один раз за жизнь фильма.
+     *
+     * @param filmId ID фильма.
+     * @return множество лайков или null, если фильма нет в библиотеке.
+     */
+    private ConcurrentIntSet likesOf(Integer filmId) {
+        Film film = getFilmById(filmId);
+        if (film == null) {
+            return null;
+        }
+        if (film.getLikes() != null) {
+            return film.getLikes();
+        }
+        Film stored = films.computeIfPresent(filmId, (id, current) -> {
+            if (current.getLikes() == null) {
+                current.setLikes(new ConcurrentIntSet());
+            }
+            return current;
+        });
+        return stored == null ? null : stored.getLikes();
+    }
+    
+    /**
+     * Фильмы, которым пользователь поставил лайк, в обратном индексе лайков.
+     *
+     * @param userId ID пользователя.
+     * @return множество ID фильмов; создаётся при первом лайке пользователя.
+     */
+    private ConcurrentIntSet likedFilmsOf(int userId) {
+        return likedFilms.computeIfAbsent(userId, id -> new ConcurrentIntSet());
+    }
+    
+    private void unindexLike(int filmId, int userId) {
+        ConcurrentIntSet filmIds = likedFilms.get(userId);
+        if (filmIds != null) {
+            filmIds.remove(filmId);
+        }
+    }
+    
+    private long logLike(byte type, int filmId, int userId) {
+        return wal.append(type, out -> {
+            out.writeInt(filmId);
+            out.writeInt(userId);
+        });
+    }
+    
+    /**
+     * Пересчитать позиции в индексе популярности фильмов, у которых менялись лайки. Фильм снимается с отметки
+     * до чтения счётчика лайков, поэтому лайк, поставленный во время пересчёта, отметит фильм снова.
+     */
+    private void refreshStaleRanks() {
+        for (Integer filmId : staleRanks) {
+            staleRanks.remove(filmId);
+            synchronized (ranks) {
+                //Фильм без позиции в индексе удалён или удаляется прямо сейчас.
+                Film film = films.get(filmId);
+                if (film != null && ranks.containsKey(filmId)) {
+                    updateRank(film, false);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Применить запись журнала при запуске.
+     *
+     * @param type тип записи.
+     * @param in   данные записи.
+     */
+    private void applyLogRecord(byte type, DataInput in) throws IOException {
+        switch (type) {
+            case FILM_PUT:
+                putInStorage(EntityCodec.readFilm(in));
+                break;
+            case FILM_REMOVE:
+                removeFilm(in.readInt(), null);
+                break;
+            case LIKE:
+                addLike(in.readInt(), in.readInt());
+                break;
+            case UNLIKE:
+                removeLike(in.readInt(), in.readInt());
+                break;
+            default:
+                throw new IOException("Неизвестный тип записи журнала фильмов: " + type);
+        }
+    }
+    
+    /**
+     * Переставить фильм в индексе популярности.
+     * Позиции меняются под блокировкой {@link #ranks}, поэтому позиции одного фильма не перемешиваются.
+     * Версия популярных фильмов меняется, только если фильм среди первых
+     * {@value FilmStorage#POPULAR_VERSION_DEPTH} (до или после перестановки) и при этом сменил соседей
+     * в индексе или изменился сам. Лайк фильму, который не обогнал соседа, версию не меняет.
+     *
+     * @param film           фильм.
+     * @param contentChanged True - изменились поля фильма, а не только лайки.
+     */
+    private void updateRank(Film film, boolean contentChanged) {
+        synchronized (ranks) {
+            FilmRank rank = new FilmRank(film.getLikes() == null ? 0 : film.getLikes().size(), film.getId());
+            FilmRank oldRank = ranks.put(film.getId(), rank);
+            boolean wasPopular = false;
+            FilmRank before = null;
+            FilmRank after = null;
+            if (oldRank != null) {
+                wasPopular = isPopular(oldRank);
+                before = popularity.lower(oldRank);
+                after = popularity.higher(oldRank);
+                popularity.remove(oldRank);
+                if (oldRank.equals(popularBoundary)) {
+                    popularBoundaryKnown = false;
+                }
+            }
+            popularity.add(rank);
+            boolean moved = oldRank == null || !Objects.equals(before, popularity.lower(rank))
+                    || !Objects.equals(after, popularity.higher(rank));
+            if ((moved || contentChanged) && (wasPopular || isPopular(rank))) {
+                changePopularityVersion();
+            }
+        }
+    }
+    
+    /**
+     * Позиция среди первых {@value FilmStorage#POPULAR_VERSION_DEPTH} популярных фильмов.
+     * Вызывается под блокировкой {@link #ranks}.
+     *
+     * @param rank позиция фильма.
+     * @return True - позиция не дальше последнего из первых популярных фильмов.
+     */
+    private boolean isPopular(FilmRank rank) {
+        if (!popularBoundaryKnown) {
+            popularBoundary = null;
+            int position = 0;
+            for (FilmRank current : popularity) {
+                if (++position == POPULAR_VERSION_DEPTH) {
+                    popularBoundary = current;
+                    break;
+                }
+            }
+            popularBoundaryKnown = true;
+        }
+        return popularBoundary == null || rank.compareTo(popularBoundary) <= 0;
+    }
+    
+    /**
+     * Сменить версию популярных фильмов. Вызывается под блокировкой {@link #ranks}.
+     */
+    private void changePopularityVersion() {
+        popularityVersion++;
+        popularBoundaryKnown = false;
+    }
+    
+    /**
+     * Позиция фильма в индексе популярности.
+     */
+    @Getter
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class FilmRank implements Comparable<FilmRank> {
+        private final int likes;
+        private final int filmId;
+        
+        @Override
+        public int compareTo(FilmRank other) {
+            int result = Integer.compare(other.likes, likes);
+            if (result != 0) {
+                return result;
+            }
+            return Integer.compare(filmId, other.filmId);
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.storage.persistence;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DataInput} поверх {@link ByteBuffer}: позволяет читать отображённый в память файл
+ * тем же {@link EntityCodec}, что и журнал, без копирования в промежуточный поток.
+ */
+class ByteBufferDataInput implements DataInput {
+    private final ByteBuffer buffer;
+    
+    ByteBufferDataInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    
+    int position() {
+        return buffer.position();
+    }
+    
+    @Override
+    public void readFully(byte[] bytes) {
+        buffer.get(bytes);
+    }
+    
+    @Override
+    public void readFully(byte[] bytes, int off, int len) {
+        buffer.get(bytes, off, len);
+    }
+    
+    @Override
+    public int skipBytes(int n) {
+        int skipped = Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+    
+    @Override
+    public boolean readBoolean() {
+        return buffer.get() != 0;
+    }
+    
+    @Override
+    public byte readByte() {
+        return buffer.get();
+    }
+    
+    @Override
+    public int readUnsignedByte() {
+        return buffer.get() & 0xFF;
+    }
+    
+    @Override
+    public short readShort() {
+        return buffer.getShort();
+    }
+    
+    @Override
+    public int readUnsignedShort() {
+        return buffer.getShort() & 0xFFFF;
+    }
+    
+    @Override
+    public char readChar() {
+        return buffer.getChar();
+    }
+    
+    @Override
+    public int readInt() {
+        return buffer.getInt();
+    }
+    
+    @Override
+    public long readLong() {
+        return buffer.getLong();
+    }
+    
+    @Override
+    public float readFloat() {
+        return buffer.getFloat();
+    }
+    
+    @Override
+    public double readDouble() {
+        return buffer.getDouble();
+    }
+    
+    @Override
+    public String readLine() {
+        throw new UnsupportedOperationException("Файлы хранилища не содержат строк текста.");
+    }
+    
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+}
@@ -0,0 +1,148 @@
+package ru.yandex.practicum.storage.persistence;
+
+import ru.yandex.practicum.model.CompactIntSet;
+import ru.yandex.practicum.model.ConcurrentIntSet;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Двоичное представление фильмов и пользователей в файлах хранилища.
+ * <p>Необязательные поля записываются с признаком отсутствия: строки и множества - длиной -1,
+ * числа и даты - байтом-флагом.</p>
+ */
+public final class EntityCodec {
+    private static final int NULL_LENGTH = -1;
+    
+    private EntityCodec() {
+    }
+    
+    /**
+     * Записать фильм.
+     *
+     * @param out       поток записи.
+     * @param film      фильм.
+     * @param withLikes True - записать лайки. False - лайки записываются как отсутствующие.
+     */
+    public static void writeFilm(DataOutput out, Film film, boolean withLikes) throws IOException {
+        out.writeInt(film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        writeInteger(out, film.getDuration());
+        writeIntSet(out, withLikes && film.getLikes() != null ? film.getLikes().toIntArray() : null);
+    }
+    
+    public static Film readFilm(DataInput in) throws IOException {
+        Film film = new Film();
+        film.setId(in.readInt());
+        film.setName(readString(in));
+        film.setDescription(readString(in));
+        film.setReleaseDate(readDate(in));
+        film.setDuration(readInteger(in));
+        int[] likes = readIntSet(in);
+        film.setLikes(likes != null ? ConcurrentIntSet.of(likes) : null);
+        return film;
+    }
+    
+    /**
+     * Записать пользователя.
+     *
+     * @param out         поток записи.
+     * @param user        пользователь.
+     * @param withFriends True - записать друзей. False - друзья записываются как отсутствующие.
+     */
+    public static void writeUser(DataOutput out, User user, boolean withFriends) throws IOException {
+        out.writeInt(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+        writeIntSet(out, withFriends && user.getIdsFriends() != null ? user.getIdsFriends().toIntArray() : null);
+    }
+    
+    public static User readUser(DataInput in) throws IOException {
+        User user = new User();
+        user.setId(in.readInt());
+        user.setEmail(readString(in));
+        user.setLogin(readString(in));
+        user.setName(readString(in));
+        user.setBirthday(readDate(in));
+        int[] friends = readIntSet(in);
+        user.setIdsFriends(friends != null ? CompactIntSet.of(friends) : null);
+        return user;
+    }
+    
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void writeDate(DataOutput out, LocalDate value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochDay());
+        }
+    }
+    
+    private static LocalDate readDate(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    }
+    
+    private static void writeInteger(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+    
+    private static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+    
+    /**
+     * Множество записывается как размер и элементы по возрастанию.
+     */
+    private static void writeIntSet(DataOutput out, int[] elements) throws IOException {
+        if (elements == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(elements.length);
+        for (int element : elements) {
+            out.writeInt(element);
+        }
+    }
+    
+    private static int[] readIntSet(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size == NULL_LENGTH) {
+            return null;
+        }
+        int[] elements = new int[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = in.readInt();
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.storage.persistence;
+
+/**
+ * Политика сброса журнала изменений на диск.
+ */
+public enum FsyncPolicy {
+    /**
+     * Изменение подтверждается только после сброса на диск. Одновременные изменения
+     * сбрасываются одним вызовом {@code fsync} (групповая фиксация).
+     */
+    ALWAYS,
+    /**
+     * Журнал сбрасывается на диск не реже заданного интервала. При сбое теряются изменения
+     * за последний интервал.
+     */
+    INTERVAL,
+    /**
+     * Журнал записывается в файл без сброса на диск: данные переживают падение приложения,
+     * но не падение операционной системы.
+     */
+    NEVER
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.storage.persistence;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Настройки сохранения хранилищ в памяти на диск.
+ * <p>Если каталог хранилища не задан, данные живут только в памяти и теряются при перезапуске.</p>
+ */
+@Getter
+@Component
+public class PersistenceSettings {
+    /**
+     * Каталог файлов хранилища. Пустая строка - данные не сохраняются.
+     */
+    private final String storageDir;
+    private final FsyncPolicy fsyncPolicy;
+    /**
+     * Интервал сброса журнала на диск для политики {@link FsyncPolicy#INTERVAL}.
+     */
+    private final long fsyncIntervalMillis;
+    /**
+     * Пауза между записями снимков таблиц. 0 - снимки не пишутся.
+     */
+    private final long snapshotIntervalSeconds;
+    
+    @Autowired
+    public PersistenceSettings(@Value("${filmorate.storage.dir:}") String storageDir,
+                               @Value("${filmorate.storage.wal.fsync:always}") FsyncPolicy fsyncPolicy,
+                               @Value("${filmorate.storage.wal.fsync-interval-ms:100}") long fsyncIntervalMillis,
+                               @Value("${filmorate.storage.snapshot-interval-seconds:300}")
+                               long snapshotIntervalSeconds) {
+        this.storageDir = storageDir == null ? "" : storageDir.trim();
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+    
+    /**
+     * Настройки хранилища без сохранения на диск.
+     *
+     * @return настройки.
+     */
+    public static PersistenceSettings inMemory() {
+        return new PersistenceSettings("", FsyncPolicy.NEVER, 0, 0);
+    }
+    
+    /**
+     * @return True - данные хранилища сохраняются на диск.
+     */
+    public boolean isPersistent() {
+        return !storageDir.isEmpty();
+    }
+    
+    /**
+     * Создать журнал изменений таблицы. Журнал нужно открыть методом {@link WriteAheadLog#open}.
+     *
+     * @param name имя таблицы.
+     * @return журнал; без каталога хранилища - отключённый журнал, который ничего не записывает.
+     */
+    public WriteAheadLog createLog(String name) {
+        if (!isPersistent()) {
+            return WriteAheadLog.disabled();
+        }
+        return new WriteAheadLog(Path.of(storageDir), name, fsyncPolicy, fsyncIntervalMillis);
+    }
+    
+    /**
+     * Создать хранилище снимков таблицы.
+     *
+     * @param name имя таблицы.
+     * @return хранилище снимков; без каталога хранилища - отключённое.
+     */
+    public SnapshotStore createSnapshots(String name) {
+        if (!isPersistent()) {
+            return SnapshotStore.disabled();
+        }
+        return new SnapshotStore(Path.of(storageDir), name);
+    }
+}
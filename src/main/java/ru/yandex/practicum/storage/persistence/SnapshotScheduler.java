@@ -0,0 +1,62 @@
+package ru.yandex.practicum.storage.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая запись снимков таблиц. Снимки пишутся по очереди одним потоком с паузой
+ * {@code filmorate.storage.snapshot-interval-seconds} между циклами.
+ */
+@Slf4j
+@Component
+public class SnapshotScheduler {
+    private final PersistenceSettings settings;
+    private final List<Snapshottable> tables;
+    private ScheduledExecutorService executor;
+    
+    @Autowired
+    public SnapshotScheduler(PersistenceSettings settings, List<Snapshottable> tables) {
+        this.settings = settings;
+        this.tables = tables;
+    }
+    
+    @PostConstruct
+    public void start() {
+        long interval = settings.getSnapshotIntervalSeconds();
+        if (!settings.isPersistent() || interval <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::writeSnapshots, interval, interval, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+    
+    private void writeSnapshots() {
+        for (Snapshottable table : tables) {
+            try {
+                table.writeSnapshot();
+            } catch (RuntimeException ex) {
+                log.error("Ошибка записи снимка таблицы {}.", table.getClass().getSimpleName(), ex);
+            }
+        }
+    }
+}
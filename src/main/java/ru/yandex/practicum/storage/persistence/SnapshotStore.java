@@ -0,0 +1,243 @@
+package ru.yandex.practicum.storage.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимки таблицы хранилища в памяти.
+ * <p>Снимок - файл {@code <имя>-<номер сегмента>.snapshot}: заголовок, записи таблицы в формате
+ * {@link EntityCodec}, признак конца, количество записей и CRC32 всего файла. Номер сегмента - первый сегмент
+ * {@link WriteAheadLog}, который нужно применить поверх снимка.</p>
+ * <p>Снимок пишется во временный файл, сбрасывается на диск и атомарно переименовывается, поэтому
+ * при сбое остаётся предыдущий целый снимок. Загружается снимок через {@link MappedByteBuffer}: файл
+ * отображается в память и разбирается без копирования через буферы потоков.</p>
+ */
+@Slf4j
+public class SnapshotStore {
+    private static final int MAGIC = 0x464D5350;
+    private static final int VERSION = 1;
+    private static final byte END = 0;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int TRAILER_SIZE = 1 + 2 * Integer.BYTES;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    
+    /**
+     * Каталог снимков. null - снимки отключены.
+     */
+    private final Path dir;
+    private final String name;
+    private final Pattern snapshotPattern;
+    
+    /**
+     * @param dir  каталог снимков.
+     * @param name имя таблицы.
+     */
+    public SnapshotStore(Path dir, String name) {
+        this.dir = dir;
+        this.name = name;
+        this.snapshotPattern = Pattern.compile(Pattern.quote(name) + "-(\\d{20})" + Pattern.quote(SNAPSHOT_SUFFIX));
+    }
+    
+    /**
+     * Отключённые снимки: ничего не записывается и не загружается.
+     *
+     * @return хранилище снимков.
+     */
+    public static SnapshotStore disabled() {
+        return new SnapshotStore(null, "disabled");
+    }
+    
+    /**
+     * Загрузить последний снимок.
+     *
+     * @param handler обработчик записи снимка; записи передаются с типом, с которым были записаны.
+     * @return сегмент журнала, с которого нужно продолжить восстановление; 0 - снимка нет.
+     */
+    public long load(WriteAheadLog.RecordHandler handler) {
+        if (dir == null || !Files.isDirectory(dir)) {
+            return 0;
+        }
+        try {
+            Files.deleteIfExists(tmpFile());
+            List<Long> snapshots = listSnapshots();
+            if (snapshots.isEmpty()) {
+                return 0;
+            }
+            long segment = snapshots.get(snapshots.size() - 1);
+            long start = System.nanoTime();
+            int count = load(snapshotFile(segment), handler);
+            log.info("Загружен снимок '{}': записей {}, {} мс.", snapshotFile(segment), count,
+                    (System.nanoTime() - start) / 1_000_000);
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось загрузить снимок таблицы '" + name + "'.", ex);
+        }
+    }
+    
+    /**
+     * Записать снимок и удалить предыдущие снимки. Когда метод вернул управление, переименование снимка
+     * сброшено на диск вместе с каталогом, поэтому после него можно удалять сегменты журнала, вошедшие в снимок.
+     *
+     * @param segment первый сегмент журнала, не вошедший в снимок целиком.
+     * @param body    записи снимка.
+     */
+    public void write(long segment, SnapshotBody body) {
+        if (dir == null) {
+            return;
+        }
+        Path tmp = tmpFile();
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment);
+            SnapshotWriter writer = new SnapshotWriter(out);
+            body.write(writer);
+            out.writeByte(END);
+            out.writeInt(writer.count);
+            out.flush();
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            file.getChannel().force(true);
+        } catch (IOException | UncheckedIOException ex) {
+            deleteQuietly(tmp);
+            IOException cause = ex instanceof UncheckedIOException ? ((UncheckedIOException) ex).getCause()
+                    : (IOException) ex;
+            throw new UncheckedIOException("Не удалось записать снимок таблицы '" + name + "'.", cause);
+        }
+        try {
+            Files.move(tmp, snapshotFile(segment), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            //Без сброса каталога после сбоя может пропасть переименование, но остаться удаление старых файлов.
+            try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+                directory.force(true);
+            }
+            for (long older : listSnapshots()) {
+                if (older < segment) {
+                    Files.deleteIfExists(snapshotFile(older));
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось сохранить снимок таблицы '" + name + "'.", ex);
+        }
+    }
+    
+    private int load(Path file, WriteAheadLog.RecordHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Снимок '" + file + "' больше 2 ГБ и не может быть отображён в память целиком.");
+            }
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Снимок '" + file + "' обрезан.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit((int) size - Integer.BYTES));
+            if ((int) crc.getValue() != buffer.getInt((int) size - Integer.BYTES)) {
+                throw new IOException("Не совпадает контрольная сумма снимка '" + file + "'.");
+            }
+            ByteBufferDataInput in = new ByteBufferDataInput(buffer);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат снимка '" + file + "'.");
+            }
+            in.readLong();
+            int count = 0;
+            for (byte type = in.readByte(); type != END; type = in.readByte()) {
+                handler.apply(type, in);
+                count++;
+            }
+            if (in.readInt() != count || in.position() != size - Integer.BYTES) {
+                throw new IOException("Нарушена структура снимка '" + file + "'.");
+            }
+            return count;
+        }
+    }
+    
+    private List<Long> listSnapshots() throws IOException {
+        List<Long> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                Matcher matcher = snapshotPattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    snapshots.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        snapshots.sort(null);
+        return snapshots;
+    }
+    
+    private Path snapshotFile(long segment) {
+        return dir.resolve(String.format("%s-%020d%s", name, segment, SNAPSHOT_SUFFIX));
+    }
+    
+    private Path tmpFile() {
+        return dir.resolve(name + SNAPSHOT_SUFFIX + ".tmp");
+    }
+    
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Не удалось удалить файл '{}'.", file, ex);
+        }
+    }
+    
+    /**
+     * Записи снимка.
+     */
+    @FunctionalInterface
+    public interface SnapshotBody {
+        void write(SnapshotWriter writer) throws IOException;
+    }
+    
+    /**
+     * Запись записей в снимок. Может вызываться внутри {@code compute} таблицы,
+     * поэтому ошибки записи передаются как {@link UncheckedIOException}.
+     */
+    public static final class SnapshotWriter {
+        private final DataOutputStream out;
+        private int count;
+        
+        private SnapshotWriter(DataOutputStream out) {
+            this.out = out;
+        }
+        
+        /**
+         * Записать запись таблицы.
+         *
+         * @param type тип записи, отличный от нуля.
+         * @param body данные записи.
+         */
+        public void record(byte type, WriteAheadLog.RecordBody body) {
+            try {
+                out.writeByte(type);
+                body.write(out);
+                count++;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
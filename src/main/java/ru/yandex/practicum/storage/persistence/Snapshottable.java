@@ -0,0 +1,12 @@
+package ru.yandex.practicum.storage.persistence;
+
+/**
+ * Таблица хранилища, которая умеет записывать свой снимок.
+ */
+public interface Snapshottable {
+    
+    /**
+     * Записать снимок таблицы и удалить сегменты журнала, вошедшие в снимок.
+     */
+    void writeSnapshot();
+}
@@ -0,0 +1,516 @@
+package ru.yandex.practicum.storage.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений (write-ahead log) таблицы хранилища в памяти.
+ * <p>Каждое изменение записывается в конец файла записью вида «длина, CRC32, тип, данные».
+ * При запуске журнал читается с начала и изменения применяются к пустой таблице заново.
+ * Недописанная или повреждённая запись в конце файла (сбой во время записи) отбрасывается.</p>
+ * <p>Запись на диск выполняет один фоновый поток: изменения, пришедшие из разных потоков, пока шла
+ * предыдущая запись, записываются и сбрасываются на диск одним вызовом (групповая фиксация).
+ * Когда изменение считается сохранённым, определяет {@link FsyncPolicy}.</p>
+ * <p>Порядок записей в журнале совпадает с порядком изменений, если запись добавляется в журнал
+ * под той же блокировкой, под которой меняется таблица.</p>
+ * <p>Журнал состоит из пронумерованных сегментов {@code <имя>-<номер>.wal}. Перед записью снимка таблицы
+ * журнал переключается на новый сегмент ({@link #rotate()}); после записи снимка старые сегменты удаляются,
+ * а при запуске применяются только сегменты, начиная с сегмента снимка.</p>
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    
+    /**
+     * Каталог журнала. null - журнал отключён.
+     */
+    private final Path dir;
+    private final String name;
+    private final Pattern segmentPattern;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    
+    private final Object lock = new Object();
+    /**
+     * Записи, ожидающие записи в файл.
+     */
+    private RecordBuffer pending = new RecordBuffer();
+    /**
+     * Свободный буфер, с которым меняется {@link #pending} при записи в файл.
+     */
+    private RecordBuffer spare = new RecordBuffer();
+    /**
+     * Последние записи закрываемого сегмента при переключении на новый сегмент. null - переключения нет.
+     */
+    private RecordBuffer sealed;
+    private long sealedLsn;
+    /**
+     * Номер сегмента, в который попадают новые записи.
+     */
+    private long segment;
+    /**
+     * Номер последней добавленной записи.
+     */
+    private long appendedLsn;
+    /**
+     * Номер последней записи, переданной в файл.
+     */
+    private long writtenLsn;
+    /**
+     * Номер последней записи, сброшенной на диск.
+     */
+    private long durableLsn;
+    private boolean closed;
+    private IOException failure;
+    
+    private volatile boolean logging;
+    private FileChannel channel;
+    private Thread writer;
+    private long lastFsyncNanos;
+    
+    /**
+     * @param dir                 каталог журнала.
+     * @param name                имя журнала (таблицы).
+     * @param fsyncPolicy         политика сброса на диск.
+     * @param fsyncIntervalMillis интервал сброса на диск для политики {@link FsyncPolicy#INTERVAL}.
+     */
+    public WriteAheadLog(Path dir, String name, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this.dir = dir;
+        this.name = name;
+        this.segmentPattern = Pattern.compile(Pattern.quote(name) + "-(\\d{20})" + Pattern.quote(SEGMENT_SUFFIX));
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMillis));
+    }
+    
+    /**
+     * Отключённый журнал: записи не сохраняются.
+     *
+     * @return журнал.
+     */
+    public static WriteAheadLog disabled() {
+        return new WriteAheadLog(null, "disabled", FsyncPolicy.NEVER, 0);
+    }
+    
+    /**
+     * Применить записи журнала и начать запись новых изменений.
+     * Пока записи применяются, новые изменения в журнал не добавляются.
+     *
+     * @param fromSegment первый применяемый сегмент (сегмент снимка таблицы); более старые сегменты удаляются.
+     * @param handler     обработчик записи журнала.
+     * @return количество применённых записей.
+     */
+    public int open(long fromSegment, RecordHandler handler) {
+        if (dir == null) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            Files.createDirectories(dir);
+            deleteSegmentsBefore(fromSegment);
+            List<Long> segments = listSegments();
+            long validSize = 0;
+            for (long number : segments) {
+                long[] size = new long[1];
+                count += replay(segmentFile(number), handler, size);
+                validSize = size[0];
+            }
+            segment = segments.isEmpty() ? Math.max(fromSegment, 1) : segments.get(segments.size() - 1);
+            channel = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.size() > validSize) {
+                log.warn("Отброшен недописанный конец журнала '{}': {} байт.", segmentFile(segment),
+                        channel.size() - validSize);
+                channel.truncate(validSize);
+                channel.force(true);
+            }
+            channel.position(validSize);
+            log.info("Из журнала '{}' применено записей: {}.", dir.resolve(name), count);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось открыть журнал '" + dir.resolve(name) + "'.", ex);
+        }
+        lastFsyncNanos = System.nanoTime();
+        writer = new Thread(this::runWriter, "wal-writer-" + name);
+        writer.setDaemon(true);
+        writer.start();
+        logging = true;
+        return count;
+    }
+    
+    /**
+     * Добавить запись в журнал. Данные записи формируются сразу, в вызывающем потоке.
+     *
+     * @param type тип записи.
+     * @param body данные записи.
+     * @return номер записи для {@link #awaitDurable(long)}; 0 - журнал не ведётся.
+     */
+    public long append(byte type, RecordBody body) {
+        if (!logging) {
+            return 0;
+        }
+        RecordBuffer record = new RecordBuffer();
+        try {
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeByte(type);
+            body.write(out);
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось сформировать запись журнала '" + name + "'.", ex);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.size());
+        synchronized (lock) {
+            checkWritable();
+            pending.writeInt(record.size());
+            pending.writeInt((int) crc.getValue());
+            pending.write(record.array(), 0, record.size());
+            appendedLsn++;
+            lock.notifyAll();
+            return appendedLsn;
+        }
+    }
+    
+    /**
+     * Дождаться сохранения записи. Ожидание есть только при политике {@link FsyncPolicy#ALWAYS};
+     * вызывается после снятия блокировок таблицы, чтобы ожидающие потоки фиксировались одной группой.
+     *
+     * @param lsn номер записи из {@link #append}.
+     */
+    public void awaitDurable(long lsn) {
+        if (lsn <= 0 || fsyncPolicy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        synchronized (lock) {
+            while (durableLsn < lsn) {
+                checkFailure();
+                awaitUninterruptibly();
+            }
+        }
+    }
+    
+    /**
+     * Переключить журнал на новый сегмент. Все записи, добавленные до вызова, сохраняются в старых сегментах,
+     * все последующие - в новом. Метод возвращает управление, когда старый сегмент записан и закрыт.
+     *
+     * @return номер нового сегмента; 0 - журнал не ведётся.
+     */
+    public long rotate() {
+        if (!logging) {
+            return 0;
+        }
+        synchronized (lock) {
+            while (sealed != null) {
+                checkFailure();
+                awaitUninterruptibly();
+            }
+            checkWritable();
+            sealed = pending;
+            sealedLsn = appendedLsn;
+            pending = new RecordBuffer();
+            long newSegment = segment + 1;
+            lock.notifyAll();
+            while (segment != newSegment) {
+                checkFailure();
+                awaitUninterruptibly();
+            }
+            return newSegment;
+        }
+    }
+    
+    /**
+     * Номер последней добавленной записи за время работы приложения.
+     *
+     * @return номер записи; 0 - записей не было.
+     */
+    public long getLastLsn() {
+        synchronized (lock) {
+            return appendedLsn;
+        }
+    }
+    
+    /**
+     * Удалить сегменты, записи которых уже сохранены в снимке таблицы.
+     *
+     * @param firstKept первый сегмент, который нужно оставить.
+     */
+    public void deleteSegmentsBefore(long firstKept) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            for (long number : listSegments()) {
+                if (number < firstKept) {
+                    Files.deleteIfExists(segmentFile(number));
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Не удалось удалить старые сегменты журнала '{}'.", dir.resolve(name), ex);
+        }
+    }
+    
+    /**
+     * Записать оставшиеся изменения, сбросить их на диск и закрыть файл журнала.
+     */
+    @Override
+    public void close() {
+        if (!logging) {
+            return;
+        }
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            log.error("Ошибка закрытия журнала '{}'.", dir.resolve(name), ex);
+        }
+    }
+    
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                Matcher matcher = segmentPattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        segments.sort(null);
+        return segments;
+    }
+    
+    private Path segmentFile(long number) {
+        return dir.resolve(String.format("%s-%020d%s", name, number, SEGMENT_SUFFIX));
+    }
+    
+    /**
+     * Применить записи одного сегмента.
+     *
+     * @param file      файл сегмента.
+     * @param handler   обработчик записи журнала.
+     * @param validSize размер целой части сегмента.
+     * @return количество применённых записей.
+     */
+    private int replay(Path file, RecordHandler handler, long[] validSize) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] record;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    checksum = in.readInt();
+                    record = new byte[length];
+                    in.readFully(record);
+                } catch (EOFException ex) {
+                    break;
+                }
+                crc.reset();
+                crc.update(record, 0, record.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                DataInputStream body = new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+                handler.apply(record[0], body);
+                validSize[0] += HEADER_SIZE + record.length;
+                count++;
+            }
+        }
+        if (validSize[0] < Files.size(file)) {
+            log.warn("Сегмент журнала '{}' прочитан до позиции {} из {}: дальше запись повреждена.",
+                    file, validSize[0], Files.size(file));
+        }
+        return count;
+    }
+    
+    private void runWriter() {
+        try {
+            while (true) {
+                RecordBuffer batch;
+                long batchLsn;
+                boolean rotation;
+                synchronized (lock) {
+                    while (pending.size() == 0 && sealed == null && !closed && !isFsyncDue()) {
+                        waitForRecords();
+                    }
+                    rotation = sealed != null;
+                    if (rotation) {
+                        batch = sealed;
+                        batchLsn = sealedLsn;
+                    } else if (pending.size() == 0 && closed) {
+                        break;
+                    } else {
+                        batch = pending;
+                        pending = spare;
+                        spare = null;
+                        batchLsn = appendedLsn;
+                    }
+                }
+                batch.writeTo(channel);
+                boolean fsync = fsyncPolicy == FsyncPolicy.ALWAYS || rotation && fsyncPolicy != FsyncPolicy.NEVER
+                        || fsyncPolicy == FsyncPolicy.INTERVAL
+                        && System.nanoTime() - lastFsyncNanos >= fsyncIntervalNanos;
+                if (fsync) {
+                    channel.force(false);
+                    lastFsyncNanos = System.nanoTime();
+                }
+                if (rotation) {
+                    channel.close();
+                    channel = FileChannel.open(segmentFile(segment + 1), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                }
+                synchronized (lock) {
+                    if (rotation) {
+                        sealed = null;
+                        segment++;
+                    } else {
+                        batch.reset();
+                        spare = batch;
+                    }
+                    writtenLsn = batchLsn;
+                    if (fsync) {
+                        durableLsn = batchLsn;
+                    }
+                    lock.notifyAll();
+                }
+            }
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                channel.force(false);
+            }
+            synchronized (lock) {
+                durableLsn = writtenLsn;
+                lock.notifyAll();
+            }
+        } catch (IOException ex) {
+            log.error("Ошибка записи журнала '{}'. Изменения больше не сохраняются.", dir.resolve(name), ex);
+            synchronized (lock) {
+                failure = ex;
+                lock.notifyAll();
+            }
+        } catch (InterruptedException ex) {
+            synchronized (lock) {
+                failure = new InterruptedIOException("Прерван поток записи журнала '" + dir.resolve(name) + "'.");
+                lock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * При политике {@link FsyncPolicy#INTERVAL} записанные, но не сброшенные изменения
+     * сбрасываются на диск по истечении интервала, даже если новых записей нет.
+     */
+    private boolean isFsyncDue() {
+        return fsyncPolicy == FsyncPolicy.INTERVAL && durableLsn < writtenLsn
+                && System.nanoTime() - lastFsyncNanos >= fsyncIntervalNanos;
+    }
+    
+    private void waitForRecords() throws InterruptedException {
+        if (fsyncPolicy == FsyncPolicy.INTERVAL && durableLsn < writtenLsn) {
+            long remaining = fsyncIntervalNanos - (System.nanoTime() - lastFsyncNanos);
+            TimeUnit.NANOSECONDS.timedWait(lock, Math.max(remaining, 1));
+        } else {
+            lock.wait();
+        }
+    }
+    
+    private void awaitUninterruptibly() {
+        try {
+            lock.wait();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Прервано ожидание записи журнала."));
+        }
+    }
+    
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Журнал '" + dir.resolve(name) + "' недоступен для записи.", failure);
+        }
+    }
+    
+    private void checkWritable() {
+        checkFailure();
+        if (closed) {
+            throw new IllegalStateException("Журнал '" + dir.resolve(name) + "' закрыт.");
+        }
+    }
+    
+    /**
+     * Данные записи журнала.
+     */
+    @FunctionalInterface
+    public interface RecordBody {
+        void write(DataOutput out) throws IOException;
+    }
+    
+    /**
+     * Обработчик записи журнала при его чтении.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void apply(byte type, DataInput in) throws IOException;
+    }
+    
+    /**
+     * Буфер записей с доступом к массиву без копирования.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(256);
+        }
+        
+        byte[] array() {
+            return buf;
+        }
+        
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+        
+        void writeTo(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(buf, 0, count);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -1,18 +1,130 @@
 package ru.yandex.practicum.storage.user;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.model.CompactIntSet;
+import ru.yandex.practicum.model.Friendship;
 import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.IdGenerator;
+import ru.yandex.practicum.storage.persistence.EntityCodec;
+import ru.yandex.practicum.storage.persistence.PersistenceSettings;
+import ru.yandex.practicum.storage.persistence.SnapshotStore;
+import ru.yandex.practicum.storage.persistence.Snapshottable;
+import ru.yandex.practicum.storage.persistence.WriteAheadLog;
 
+import javax.annotation.PreDestroy;
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
 
+/**
+ * Хранилище пользователей в памяти.
+ * <p>Как и в {@code InMemoryFilmStorage}, пользователи лежат в {@link ConcurrentHashMap}:
+ * чтение выполняется без блокировок, а запись блокирует только одну корзину таблицы.</p>
+ * <p>Для поиска по логину и почте поддерживаются индексы «логин → ID» и «почта → ID».
+ * Индексы меняются внутри {@code compute} по ID пользователя, поэтому запись одного пользователя
+ * не может разойтись с его индексами. Упорядоченный индекс ID позволяет читать страницу пользователей
+ * за время, пропорциональное размеру страницы.</p>
+ * <p>Граф дружбы - списки смежности {@link CompactIntSet} в поле {@code idsFriends} пользователей.
+ * Списки отсортированы, поэтому общие друзья находятся слиянием списков, а не поиском в хеш-таблице.
+ * Список создаётся один раз на пользователя и переходит к новой версии пользователя при обновлении,
+ * поэтому сам список служит блокировкой: дружба меняется под блокировками обоих списков,
+ * которые берутся по возрастанию ID.</p>
+ * <p>Изменения записываются в журнал {@link WriteAheadLog} под теми же блокировками, под которыми выполняются,
+ * поэтому порядок записей в журнале совпадает с порядком изменений.</p>
+ */
 @Slf4j
 @Component
-public class InMemoryUserStorage implements UserStorage {
-     private final HashMap<Integer, User> users = new HashMap<>();
+@Timed("filmorate.storage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryUserStorage implements UserStorage, Snapshottable {
+    private static final byte USER_PUT = 1;
+    private static final byte USER_REMOVE = 2;
+    private static final byte FRIEND = 3;
+    private static final byte UNFRIEND = 4;
+    
+    private final ConcurrentMap<Integer, User> users = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> idsByLogin = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    /**
+     * ID пользователей по возрастанию для постраничной выдачи. Меняется внутри {@code compute} по ID пользователя.
+     */
+    private final ConcurrentSkipListSet<Integer> userIds = new ConcurrentSkipListSet<>();
+    
+    /**
+     * Версия пользователей и версии списков друзей, изменённых после запуска; версия остальных списков - 0.
+     * Версии меняются после изменения, поэтому по новой версии читаются уже изменённые данные.
+     */
+    private final AtomicLong usersVersion = new AtomicLong();
+    private final ConcurrentMap<Integer, Long> friendsVersions = new ConcurrentHashMap<>();
+    
+    private final IdGenerator idGenerator;
+    private final WriteAheadLog wal;
+    private final SnapshotStore snapshots;
+    /**
+     * Номер последней записи журнала на момент последнего снимка. -1 - снимок ещё не записывался.
+     */
+    private long snapshotLsn = -1;
+    
+    public InMemoryUserStorage() {
+        this(PersistenceSettings.inMemory());
+    }
+    
+    /**
+     * @param settings настройки сохранения: каталог хранилища для снимков, журнала изменений
+     *                 и границы выданных ID.
+     */
+    @Autowired
+    public InMemoryUserStorage(PersistenceSettings settings) {
+        this.idGenerator = IdGenerator.inDirectory(settings.getStorageDir(), "users");
+        this.wal = settings.createLog("users");
+        this.snapshots = settings.createSnapshots("users");
+        long segment = snapshots.load(this::applyLogRecord);
+        pruneOneWayFriends();
+        wal.open(segment, this::applyLogRecord);
+    }
+    
+    /**
+     * Записать оставшиеся изменения на диск при остановке приложения.
+     */
+    @PreDestroy
+    public void close() {
+        wal.close();
+    }
+    
+    /**
+     * Записать снимок пользователей. Журнал переключается на новый сегмент, после чего каждый пользователь
+     * записывается под блокировками, под которыми меняются его данные и друзья. Изменения, попавшие в новый
+     * сегмент, могут уже быть в снимке: записи журнала задают итоговое состояние, поэтому их повторное
+     * применение ничего не портит.
+     */
+    @Override
+    public synchronized void writeSnapshot() {
+        long lastLsn = wal.getLastLsn();
+        if (lastLsn == snapshotLsn) {
+            return;
+        }
+        long segment = wal.rotate();
+        snapshots.write(segment, writer -> {
+            for (Integer userId : users.keySet()) {
+                computeLocked(userId, user -> {
+                    writer.record(USER_PUT, out -> EntityCodec.writeUser(out, user, true));
+                    return user;
+                });
+            }
+        });
+        wal.deleteSegmentsBefore(segment);
+        snapshotLsn = lastLsn;
+    }
     
     /**
      * Получить список всех пользователей.
@@ -24,6 +136,35 @@ public class InMemoryUserStorage implements UserStorage {
         return new ArrayList<>(users.values());
     }
     
+    @Override
+    public int userCount() {
+        return users.size();
+    }
+    
+    /**
+     * Получить страницу пользователей по возрастанию ID: перебор индекса ID начинается сразу после курсора,
+     * поэтому страница не зависит от количества пользователей.
+     *
+     * @param afterId ID, после которого начинается страница; null - с начала списка.
+     * @param limit   наибольший размер страницы.
+     * @return пользователи с ID больше afterId по возрастанию ID.
+     */
+    @Override
+    public List<User> getUsersPage(Integer afterId, int limit) {
+        List<User> result = new ArrayList<>(Math.min(limit, users.size()));
+        for (Integer userId : afterId == null ? userIds : userIds.tailSet(afterId, false)) {
+            if (result.size() >= limit) {
+                break;
+            }
+            //Пользователь мог быть удалён после того, как итератор прошёл его позицию в индексе.
+            User user = users.get(userId);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+    
     /**
      * Добавить пользователя в БД.
      *
@@ -32,8 +173,7 @@ public class InMemoryUserStorage implements UserStorage {
      */
     @Override
     public User addToStorage(User user) {
-        users.put(user.getId(), user);
-        return user;
+        return putInStorage(user);
     }
     
     
@@ -45,9 +185,7 @@ public class InMemoryUserStorage implements UserStorage {
      */
     @Override
     public User updateInStorage(User user) {
-        
-        users.put(user.getId(), user);
-        return users.get(user.getId());
+        return putInStorage(user);
     }
     
     /**
@@ -58,10 +196,7 @@ public class InMemoryUserStorage implements UserStorage {
      */
     @Override
     public User removeFromStorage(User user) {
-        if (users.remove(user.getId(), user)) {
-            return user;
-        }
-        return null;
+        return removeUser(user.getId(), user) != null ? user : null;
     }
     
     /**
@@ -73,7 +208,10 @@ public class InMemoryUserStorage implements UserStorage {
      */
     @Override
     public User getUserById(Integer id) {
-        return users.getOrDefault(id, null);
+        if (id == null) {
+            return null;
+        }
+        return users.get(id);
     }
     
     /**
@@ -85,9 +223,547 @@ public class InMemoryUserStorage implements UserStorage {
      */
     @Override
     public User getUserByLogin(String login) {
-        return users.values().stream().filter(u -> u.getLogin().equals(login)).findFirst().orElse(null);
+        if (login == null) {
+            return null;
+        }
+        return getUserById(idsByLogin.get(login));
+    }
+    
+    /**
+     * Получить пользователя по адресу электронной почты.
+     *
+     * @param email адрес электронной почты.
+     * @return User - пользователь присутствует в библиотеке.
+     * <p>null - пользователя нет в библиотеке.</p>
+     */
+    @Override
+    public User getUserByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return getUserById(idsByEmail.get(email));
+    }
+    
+    /**
+     * Сгенерировать уникальный ID для нового пользователя.
+     *
+     * @return ID, не занятый в хранилище.
+     */
+    @Override
+    public int generateId() {
+        return idGenerator.nextId();
     }
     
+    /**
+     * Получить пользователей по списку ID одним запросом.
+     *
+     * @param ids ID пользователей.
+     * @return найденные пользователи в порядке ID из списка; отсутствующие в БД пропускаются.
+     */
+    @Override
+    public List<User> getUsersByIds(int[] ids) {
+        List<User> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
     
+    /**
+     * Добавить пользователей в друзья друг к другу.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - дружба добавлена. False - пользователей нет в БД или они уже друзья.
+     */
+    @Override
+    public boolean addFriendship(Integer id1, Integer id2) {
+        long lsn = linkFriends(id1, id2);
+        wal.awaitDurable(lsn);
+        return lsn >= 0;
+    }
     
+    /**
+     * Добавить в друзья пачку пар пользователей. Каждая дружба записывается в журнал отдельно,
+     * но сброса журнала на диск пачка ждёт один раз - после последней пары.
+     *
+     * @param friendships пары пользователей с заданными ID.
+     * @return результат по каждой паре в порядке списка: True - дружба добавлена.
+     * False - пользователей нет в БД или они уже друзья.
+     */
+    @Override
+    public boolean[] addFriendships(List<Friendship> friendships) {
+        boolean[] added = new boolean[friendships.size()];
+        long lsn = 0;
+        for (int i = 0; i < friendships.size(); i++) {
+            Friendship friendship = friendships.get(i);
+            long pairLsn = linkFriends(friendship.getUserId(), friendship.getFriendId());
+            added[i] = pairLsn >= 0;
+            lsn = Math.max(lsn, pairLsn);
+        }
+        wal.awaitDurable(lsn);
+        return added;
+    }
+    
+    /**
+     * Удалить пользователей из друзей друг друга.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - дружба удалена. False - пользователей нет в БД или они не друзья.
+     */
+    @Override
+    public boolean removeFriendship(Integer id1, Integer id2) {
+        CompactIntSet friends1 = friendsOf(id1);
+        CompactIntSet friends2 = friendsOf(id2);
+        if (friends1 == null || friends2 == null) {
+            return false;
+        }
+        Object firstLock = id1 <= id2 ? friends1 : friends2;
+        Object secondLock = id1 <= id2 ? friends2 : friends1;
+        long lsn;
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                if (!friends1.contains((int) id2) || !friends2.contains((int) id1)) {
+                    return false;
+                }
+                friends1.remove((int) id2);
+                friends2.remove((int) id1);
+                lsn = logFriendship(UNFRIEND, id1, id2);
+                changeFriendsVersions(id1, id2);
+            }
+        }
+        wal.awaitDurable(lsn);
+        return true;
+    }
+    
+    /**
+     * Версия пользователей: меняется после каждой записи или удаления пользователя и каждого изменения дружбы.
+     *
+     * @return версия.
+     */
+    @Override
+    public long usersVersion() {
+        return usersVersion.get();
+    }
+    
+    /**
+     * Версия списка друзей: номер последнего изменения списка после запуска или 0, если список с тех пор
+     * не менялся.
+     *
+     * @param id ID пользователя.
+     * @return версия; -1 - пользователя нет в БД.
+     */
+    @Override
+    public long friendsVersion(Integer id) {
+        if (id == null) {
+            return -1;
+        }
+        Long version = friendsVersions.get(id);
+        if (!users.containsKey(id)) {
+            return -1;
+        }
+        return version == null ? 0 : version;
+    }
+    
+    /**
+     * Получить ID друзей пользователя.
+     *
+     * @param id ID пользователя.
+     * @return ID друзей по возрастанию.
+     */
+    @Override
+    public int[] getFriendIds(Integer id) {
+        User user = getUserById(id);
+        if (user == null || user.getIdsFriends() == null) {
+            return new int[0];
+        }
+        CompactIntSet friends = user.getIdsFriends();
+        synchronized (friends) {
+            return friends.toIntArray();
+        }
+    }
+    
+    /**
+     * Получить ID общих друзей двух пользователей.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return ID общих друзей по возрастанию.
+     */
+    @Override
+    public int[] getCommonFriendIds(Integer id1, Integer id2) {
+        User user1 = getUserById(id1);
+        User user2 = getUserById(id2);
+        if (user1 == null || user2 == null || user1.getIdsFriends() == null || user2.getIdsFriends() == null) {
+            return new int[0];
+        }
+        CompactIntSet friends1 = user1.getIdsFriends();
+        CompactIntSet friends2 = user2.getIdsFriends();
+        if (friends1 == friends2) {
+            return getFriendIds(id1);
+        }
+        Object firstLock = id1 <= id2 ? friends1 : friends2;
+        Object secondLock = id1 <= id2 ? friends2 : friends1;
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                return CompactIntSet.intersect(friends1, friends2);
+            }
+        }
+    }
+    
+    /**
+     * Получить ID друзей пользователя, но не больше заданного количества: выборка {@link CompactIntSet#sample(int)}
+     * берёт элементы по номеру и не перебирает весь список друзей.
+     *
+     * @param id    ID пользователя.
+     * @param limit наибольший размер выборки, больше 0.
+     * @return ID друзей по возрастанию.
+     */
+    @Override
+    public int[] sampleFriendIds(Integer id, int limit) {
+        User user = getUserById(id);
+        if (user == null || user.getIdsFriends() == null) {
+            return new int[0];
+        }
+        CompactIntSet friends = user.getIdsFriends();
+        synchronized (friends) {
+            return friends.sample(limit);
+        }
+    }
+    
+    /**
+     * Количество друзей пользователей из размера их списков друзей.
+     *
+     * @param ids ID пользователей.
+     * @return количество друзей в порядке ids; 0 - пользователя нет в БД.
+     */
+    @Override
+    public int[] friendCounts(int[] ids) {
+        int[] counts = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            User user = getUserById(ids[i]);
+            CompactIntSet friends = user == null ? null : user.getIdsFriends();
+            if (friends != null) {
+                synchronized (friends) {
+                    counts[i] = friends.size();
+                }
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Проверить дружбу двух пользователей. Дружба всегда взаимная, поэтому достаточно списка первого.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - пользователи друзья.
+     */
+    @Override
+    public boolean areFriends(Integer id1, Integer id2) {
+        User user = getUserById(id1);
+        if (user == null || user.getIdsFriends() == null) {
+            return false;
+        }
+        CompactIntSet friends = user.getIdsFriends();
+        synchronized (friends) {
+            return friends.contains((int) id2);
+        }
+    }
+    
+    /**
+     * Список друзей пользователя, который служит и блокировкой для изменения дружбы.
+     * Если пользователь создан без списка, список создаётся внутри {@code compute}, чтобы не разойтись
+     * с одновременным обновлением пользователя.
+     *
+     * @param id ID пользователя.
+     * @return список друзей или null, если пользователя нет в БД.
+     */
+    private CompactIntSet friendsOf(Integer id) {
+        User user = getUserById(id);
+        if (user == null) {
+            return null;
+        }
+        if (user.getIdsFriends() != null) {
+            return user.getIdsFriends();
+        }
+        user = users.computeIfPresent(id, (key, stored) -> {
+            if (stored.getIdsFriends() == null) {
+                stored.setIdsFriends(new CompactIntSet());
+            }
+            return stored;
+        });
+        return user == null ? null : user.getIdsFriends();
+    }
+    
+    private boolean isFriendsOf(Integer id, CompactIntSet friends) {
+        User user = users.get(id);
+        return user != null && user.getIdsFriends() == friends;
+    }
+    
+    /**
+     * Записать пользователя в БД с обновлением индексов.
+     * Если у пользователя сменился логин или почта, старые значения удаляются из индексов.
+     * Список друзей не приходит в теле запроса, поэтому при обновлении он переходит от записанного пользователя.
+     *
+     * @param user пользователь.
+     * @return записанный пользователь.
+     */
+    private User putInStorage(User user) {
+        idGenerator.seed(user.getId());
+        long[] lsn = new long[1];
+        users.compute(user.getId(), (id, stored) -> {
+            boolean keepFriends = stored != null && stored.getIdsFriends() != null;
+            lsn[0] = wal.append(USER_PUT, out -> EntityCodec.writeUser(out, user, !keepFriends));
+            if (stored != null) {
+                removeFromIndexes(stored);
+            }
+            if (keepFriends) {
+                user.setIdsFriends(stored.getIdsFriends());
+            }
+            addToIndexes(user);
+            userIds.add(id);
+            return user;
+        });
+        //Пользователь есть в списках друзей своих друзей.
+        changeFriendsVersions(getFriendIds(user.getId()));
+        wal.awaitDurable(lsn[0]);
+        return user;
+    }
+    
+    /**
+     * Удалить пользователя из БД и из списков друзей его друзей.
+     * <p>Пользователь удаляется под блокировкой своего списка друзей. Поэтому одновременное добавление в друзья
+     * либо завершается раньше, и новый друг очищается вместе с остальными, либо видит, что пользователя уже нет.</p>
+     *
+     * @param userId   ID пользователя.
+     * @param expected удаляемый пользователь; пользователь не удаляется, если в БД записан другой.
+     *                 null - удаляется любой пользователь с этим ID.
+     * @return удалённый пользователь или null.
+     */
+    private User removeUser(Integer userId, User expected) {
+        User[] removed = new User[1];
+        int[][] friendIds = new int[1][];
+        long[] lsn = new long[1];
+        computeLocked(userId, stored -> {
+            if (expected != null && !stored.equals(expected)) {
+                return stored;
+            }
+            removeFromIndexes(stored);
+            if (stored.getIdsFriends() != null) {
+                friendIds[0] = stored.getIdsFriends().toIntArray();
+                stored.getIdsFriends().clear();
+            }
+            userIds.remove(userId);
+            lsn[0] = wal.append(USER_REMOVE, out -> out.writeInt(userId));
+            removed[0] = stored;
+            return null;
+        });
+        if (friendIds[0] != null) {
+            for (int friendId : friendIds[0]) {
+                unlinkRemovedFriend(friendId, userId);
+            }
+        }
+        if (removed[0] != null) {
+            friendsVersions.remove(userId);
+            changeFriendsVersions(friendIds[0] != null ? friendIds[0] : new int[0]);
+        }
+        wal.awaitDurable(lsn[0]);
+        return removed[0];
+    }
+    
+    /**
+     * Убрать удалённого пользователя из списка друзей его бывшего друга.
+     * Пока список не очищен, пользователя с тем же ID могли создать заново и снова добавить в друзья.
+     * Поэтому ссылка удаляется под блокировками обоих списков и только если она односторонняя.
+     *
+     * @param friendId  ID бывшего друга.
+     * @param removedId ID удалённого пользователя.
+     */
+    private void unlinkRemovedFriend(int friendId, int removedId) {
+        while (true) {
+            User friend = users.get(friendId);
+            CompactIntSet friends = friend == null ? null : friend.getIdsFriends();
+            if (friends == null) {
+                return;
+            }
+            User recreated = users.get(removedId);
+            CompactIntSet recreatedFriends = recreated == null ? null : recreated.getIdsFriends();
+            Object firstLock = recreatedFriends == null || friendId <= removedId ? friends : recreatedFriends;
+            Object secondLock = recreatedFriends == null ? new Object()
+                    : friendId <= removedId ? recreatedFriends : friends;
+            synchronized (firstLock) {
+                synchronized (secondLock) {
+                    if (!isFriendsOf(friendId, friends) || users.get(removedId) != recreated
+                            || recreated != null && recreated.getIdsFriends() != recreatedFriends) {
+                        continue;
+                    }
+                    if (recreatedFriends == null || !recreatedFriends.contains(friendId)) {
+                        friends.remove(removedId);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Изменить пользователя под блокировкой его списка друзей и внутри {@code compute} по его ID.
+     * Блокировки берутся в этом порядке везде, где нужны обе.
+     *
+     * @param userId ID пользователя.
+     * @param action получает записанного пользователя и возвращает новое значение; null - удалить пользователя.
+     */
+    private void computeLocked(Integer userId, UnaryOperator<User> action) {
+        while (true) {
+            User current = getUserById(userId);
+            if (current == null) {
+                return;
+            }
+            CompactIntSet friends = current.getIdsFriends();
+            boolean[] retry = new boolean[1];
+            synchronized (friends != null ? friends : new Object()) {
+                users.computeIfPresent(userId, (id, stored) -> {
+                    if (stored.getIdsFriends() != friends) {
+                        //Список друзей создан, пока ждали блокировку: повторяем под блокировкой нового списка.
+                        retry[0] = true;
+                        return stored;
+                    }
+                    return action.apply(stored);
+                });
+            }
+            if (!retry[0]) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Удалить односторонние ссылки из списков друзей после загрузки снимка.
+     * Снимок пишется без остановки изменений, поэтому дружба может попасть в снимок только у одного из друзей,
+     * а друг, удалённый во время записи снимка, может остаться в списках. Изменения дружбы после переключения
+     * сегмента журнала применяются заново, а односторонней дружбы в хранилище не бывает, поэтому такие
+     * ссылки просто удаляются.
+     */
+    private void pruneOneWayFriends() {
+        for (User user : users.values()) {
+            CompactIntSet friends = user.getIdsFriends();
+            if (friends == null) {
+                continue;
+            }
+            for (int friendId : friends.toIntArray()) {
+                User friend = users.get(friendId);
+                if (friend == null || friend.getIdsFriends() == null
+                        || !friend.getIdsFriends().contains(user.getId())) {
+                    friends.remove(friendId);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Добавить пользователей в друзья друг к другу, не дожидаясь сброса журнала на диск.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return номер записи журнала; -1 - пользователей нет в БД или они уже друзья.
+     */
+    private long linkFriends(Integer id1, Integer id2) {
+        CompactIntSet friends1 = friendsOf(id1);
+        CompactIntSet friends2 = friendsOf(id2);
+        if (friends1 == null || friends2 == null) {
+            return -1;
+        }
+        Object firstLock = id1 <= id2 ? friends1 : friends2;
+        Object secondLock = id1 <= id2 ? friends2 : friends1;
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                //Пользователь мог быть удалён, пока ждали блокировку.
+                if (!isFriendsOf(id1, friends1) || !isFriendsOf(id2, friends2)) {
+                    return -1;
+                }
+                boolean added = friends1.add(id2);
+                added = friends2.add(id1) || added;
+                if (!added) {
+                    return -1;
+                }
+                long lsn = logFriendship(FRIEND, id1, id2);
+                changeFriendsVersions(id1, id2);
+                return lsn;
+            }
+        }
+    }
+    
+    /**
+     * Сменить версию пользователей и версии списков друзей пользователей.
+     *
+     * @param ids ID пользователей, у которых изменились списки друзей.
+     */
+    private void changeFriendsVersions(int... ids) {
+        long version = usersVersion.incrementAndGet();
+        for (int id : ids) {
+            friendsVersions.put(id, version);
+        }
+    }
+    
+    private long logFriendship(byte type, int id1, int id2) {
+        return wal.append(type, out -> {
+            out.writeInt(id1);
+            out.writeInt(id2);
+        });
+    }
+    
+    /**
+     * Применить запись журнала при запуске.
+     *
+     * @param type тип записи.
+     * @param in   данные записи.
+     */
+    private void applyLogRecord(byte type, DataInput in) throws IOException {
+        switch (type) {
+            case USER_PUT:
+                putInStorage(EntityCodec.readUser(in));
+                break;
+            case USER_REMOVE:
+                removeUser(in.readInt(), null);
+                break;
+            case FRIEND:
+                addFriendship(in.readInt(), in.readInt());
+                break;
+            case UNFRIEND:
+                removeFriendship(in.readInt(), in.readInt());
+                break;
+            default:
+                throw new IOException("Неизвестный тип записи журнала пользователей: " + type);
+        }
+    }
+    
+    private void addToIndexes(User user) {
+        if (user.getLogin() != null) {
+            idsByLogin.put(user.getLogin(), user.getId());
+        }
+        if (user.getEmail() != null) {
+            idsByEmail.put(user.getEmail(), user.getId());
+        }
+    }
+    
+    /**
+     * Удалить пользователя из индексов.
+     * Значение удаляется, только если индекс указывает именно на этого пользователя:
+     * логин или почту мог уже занять другой пользователь.
+     *
+     * @param user пользователь.
+     */
+    private void removeFromIndexes(User user) {
+        if (user.getLogin() != null) {
+            idsByLogin.remove(user.getLogin(), user.getId());
+        }
+        if (user.getEmail() != null) {
+            idsByEmail.remove(user.getEmail(), user.getId());
+        }
+    }
 }
@@ -0,0 +1,582 @@
+package ru.yandex.practicum.storage.user;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.model.CompactIntSet;
+import ru.yandex.practicum.model.Friendship;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.IdGenerator;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище пользователей в БД. Включается свойством {@code filmorate.storage.type=jdbc}, схема - {@code schema.sql}.
+ * <p>Все запросы - подготовленные выражения {@link JdbcTemplate}, соединения берутся из пула HikariCP.
+ * Поиск по логину и почте идёт по индексам {@code users_login_idx} и {@code users_email_idx}.</p>
+ * <p>Дружба хранится двумя строками таблицы {@code friendships}, которые записываются одним пакетом.
+ * При удалении пользователя его дружба удаляется каскадно.</p>
+ * <p>Версия пользователей меняется после каждой записи через это хранилище и служит версией любого списка
+ * друзей; изменения, сделанные в БД в обход хранилища, версию не меняют.</p>
+ */
+@Component
+@Timed("filmorate.storage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "jdbc")
+public class UserDbStorage implements UserStorage {
+    private static final String SELECT_USERS = "SELECT user_id, email, login, name, birthday FROM users";
+    private static final String INSERT_FRIEND = "INSERT INTO friendships (user_id, friend_id) SELECT ?, ? "
+            + "WHERE NOT EXISTS (SELECT 1 FROM friendships WHERE user_id = ? AND friend_id = ?)";
+    /**
+     * Размер пакета JDBC при записи пачки дружб.
+     */
+    private static final int BATCH_SIZE = 500;
+    private static final RowMapper<User> USER_MAPPER = (rs, rowNum) -> User.builder()
+            .id(rs.getInt("user_id"))
+            .email(rs.getString("email"))
+            .login(rs.getString("login"))
+            .name(rs.getString("name"))
+            .birthday(rs.getObject("birthday", LocalDate.class))
+            .idsFriends(new CompactIntSet())
+            .build();
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final IdGenerator idGenerator = new IdGenerator();
+    /**
+     * Версия пользователей. Меняется после фиксации транзакции, чтобы по новой версии не прочитать
+     * незафиксированные данные.
+     */
+    private final AtomicLong usersVersion = new AtomicLong();
+    
+    @Autowired
+    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transaction = new TransactionTemplate(
+                new DataSourceTransactionManager(Objects.requireNonNull(jdbcTemplate.getDataSource())));
+        idGenerator.seed(jdbcTemplate.queryForObject("SELECT COALESCE(MAX(user_id), 0) FROM users", Integer.class));
+    }
+    
+    /**
+     * Получить список всех пользователей.
+     *
+     * @return список пользователей.
+     */
+    @Override
+    public List<User> getAllUsersFromStorage() {
+        Map<Integer, User> users = new LinkedHashMap<>();
+        jdbcTemplate.query(SELECT_USERS + " ORDER BY user_id", USER_MAPPER)
+                .forEach(user -> users.put(user.getId(), user));
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friendships ORDER BY user_id, friend_id", rs -> {
+            users.get(rs.getInt("user_id")).getIdsFriends().add(rs.getInt("friend_id"));
+        });
+        return new ArrayList<>(users.values());
+    }
+    
+    @Override
+    public int userCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class);
+    }
+    
+    /**
+     * Получить страницу пользователей по возрастанию ID. Страница читается по первичному ключу с курсора.
+     *
+     * @param afterId ID, после которого начинается страница; null - с начала списка.
+     * @param limit   наибольший размер страницы.
+     * @return пользователи с ID больше afterId по возрастанию ID.
+     */
+    @Override
+    public List<User> getUsersPage(Integer afterId, int limit) {
+        return withFriends(jdbcTemplate.query(SELECT_USERS + " WHERE user_id > ? ORDER BY user_id LIMIT ?",
+                USER_MAPPER, afterId == null ? Long.MIN_VALUE : afterId, limit));
+    }
+    
+    /**
+     * Добавить пользователя в БД.
+     *
+     * @param user пользователь.
+     * @return добавленный пользователь.
+     */
+    @Override
+    public User addToStorage(User user) {
+        return putInStorage(user);
+    }
+    
+    /**
+     * Обновить юзера в БД.
+     *
+     * @param user пользователь
+     * @return обновлённый пользователь.
+     */
+    @Override
+    public User updateInStorage(User user) {
+        return putInStorage(user);
+    }
+    
+    /**
+     * Удалить пользователя из БД. Его дружба удаляется каскадно.
+     *
+     * @param user пользователь
+     * @return True - удалён. False - не выполнено.
+     */
+    @Override
+    public User removeFromStorage(User user) {
+        return changedUsers(transaction.execute(status -> {
+            User stored = withFriends(jdbcTemplate.query(SELECT_USERS + " WHERE user_id = ? FOR UPDATE",
+                    USER_MAPPER, user.getId())).stream().findFirst().orElse(null);
+            if (stored == null || !stored.equals(user)) {
+                return null;
+            }
+            jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", user.getId());
+            return user;
+        }));
+    }
+    
+    /**
+     * Получить пользователя по ID.
+     *
+     * @param id ID пользователя.
+     * @return User - пользователь присутствует в библиотеке.
+     * <p>null - пользователя нет в библиотеке.</p>
+     */
+    @Override
+    public User getUserById(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        return findFirst(SELECT_USERS + " WHERE user_id = ?", id);
+    }
+    
+    /**
+     * Получить пользователя по логину.
+     *
+     * @param login логин пользователя.
+     * @return User - пользователь присутствует в библиотеке.
+     * <p>null - пользователя нет в библиотеке.</p>
+     */
+    @Override
+    public User getUserByLogin(String login) {
+        if (login == null) {
+            return null;
+        }
+        return findFirst(SELECT_USERS + " WHERE login = ? ORDER BY user_id LIMIT 1", login);
+    }
+    
+    /**
+     * Получить пользователя по адресу электронной почты.
+     *
+     * @param email адрес электронной почты.
+     * @return User - пользователь присутствует в библиотеке.
+     * <p>null - пользователя нет в библиотеке.</p>
+     */
+    @Override
+    public User getUserByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return findFirst(SELECT_USERS + " WHERE email = ? ORDER BY user_id LIMIT 1", email);
+    }
+    
+    /**
+     * Сгенерировать уникальный ID для нового пользователя.
+     *
+     * @return ID, не занятый в хранилище.
+     */
+    @Override
+    public int generateId() {
+        return idGenerator.nextId();
+    }
+    
+    /**
+     * Получить пользователей по списку ID одним запросом.
+     *
+     * @param ids ID пользователей.
+     * @return найденные пользователи в порядке ID из списка; отсутствующие в БД пропускаются.
+     */
+    @Override
+    public List<User> getUsersByIds(int[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Map<Integer, User> found = new HashMap<>();
+        withFriends(namedJdbcTemplate.query(SELECT_USERS + " WHERE user_id IN (:ids)",
+                Map.of("ids", Arrays.stream(ids).boxed().collect(Collectors.toList())), USER_MAPPER))
+                .forEach(user -> found.put(user.getId(), user));
+        List<User> result = new ArrayList<>(found.size());
+        for (int id : ids) {
+            User user = found.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Добавить пользователей в друзья друг к другу. Строки обоих пользователей блокируются по возрастанию ID,
+     * а обе строки дружбы записываются одним пакетом.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - дружба добавлена. False - пользователей нет в БД или они уже друзья.
+     */
+    @Override
+    public boolean addFriendship(Integer id1, Integer id2) {
+        return Boolean.TRUE.equals(changedUsers(transaction.execute(status -> {
+            if (!lockUsers(id1, id2)) {
+                return false;
+            }
+            int[] pairs = id1.equals(id2) ? new int[]{id1, id2} : new int[]{id1, id2, id2, id1};
+            int[] inserted = jdbcTemplate.batchUpdate(INSERT_FRIEND, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setInt(1, pairs[2 * i]);
+                    ps.setInt(2, pairs[2 * i + 1]);
+                    ps.setInt(3, pairs[2 * i]);
+                    ps.setInt(4, pairs[2 * i + 1]);
+                }
+                
+                @Override
+                public int getBatchSize() {
+                    return pairs.length / 2;
+                }
+            });
+            return Arrays.stream(inserted).anyMatch(count -> count > 0);
+        })));
+    }
+    
+    /**
+     * Добавить в друзья пачку пар пользователей одной транзакцией. Строки пользователей пачки блокируются
+     * одним запросом по возрастанию ID, уже существующая дружба между ними читается одним запросом,
+     * недостающие строки дружбы записываются пакетами.
+     *
+     * @param friendships пары пользователей с заданными ID.
+     * @return результат по каждой паре в порядке списка: True - дружба добавлена.
+     * False - пользователей нет в БД или они уже друзья.
+     */
+    @Override
+    public boolean[] addFriendships(List<Friendship> friendships) {
+        boolean[] added = new boolean[friendships.size()];
+        if (friendships.isEmpty()) {
+            return added;
+        }
+        Set<Integer> ids = new HashSet<>();
+        friendships.forEach(friendship -> {
+            ids.add(friendship.getUserId());
+            ids.add(friendship.getFriendId());
+        });
+        transaction.executeWithoutResult(status -> {
+            Set<Integer> existing = new HashSet<>(namedJdbcTemplate.queryForList(
+                    "SELECT user_id FROM users WHERE user_id IN (:ids) ORDER BY user_id FOR UPDATE",
+                    Map.of("ids", ids), Integer.class));
+            if (existing.isEmpty()) {
+                return;
+            }
+            Set<Long> linked = new HashSet<>();
+            namedJdbcTemplate.query("SELECT user_id, friend_id FROM friendships WHERE user_id IN (:ids) "
+                    + "AND friend_id IN (:ids)", Map.of("ids", existing), rs -> {
+                linked.add(friendKey(rs.getInt("user_id"), rs.getInt("friend_id")));
+            });
+            List<int[]> inserted = new ArrayList<>();
+            for (int i = 0; i < friendships.size(); i++) {
+                int id1 = friendships.get(i).getUserId();
+                int id2 = friendships.get(i).getFriendId();
+                if (!existing.contains(id1) || !existing.contains(id2)) {
+                    continue;
+                }
+                if (linked.add(friendKey(id1, id2))) {
+                    inserted.add(new int[]{id1, id2});
+                    added[i] = true;
+                }
+                if (linked.add(friendKey(id2, id1))) {
+                    inserted.add(new int[]{id2, id1});
+                    added[i] = true;
+                }
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)", inserted,
+                    BATCH_SIZE, (ps, pair) -> {
+                        ps.setInt(1, pair[0]);
+                        ps.setInt(2, pair[1]);
+                    });
+        });
+        usersVersion.incrementAndGet();
+        return added;
+    }
+    
+    /**
+     * Удалить пользователей из друзей друг друга.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - дружба удалена. False - пользователей нет в БД или они не друзья.
+     */
+    @Override
+    public boolean removeFriendship(Integer id1, Integer id2) {
+        return Boolean.TRUE.equals(changedUsers(jdbcTemplate.update("DELETE FROM friendships "
+                + "WHERE user_id = ? AND friend_id = ? OR user_id = ? AND friend_id = ?", id1, id2, id2, id1) > 0));
+    }
+    
+    /**
+     * Версия пользователей: меняется после каждой записи пользователей или дружбы через это хранилище.
+     *
+     * @return версия.
+     */
+    @Override
+    public long usersVersion() {
+        return usersVersion.get();
+    }
+    
+    /**
+     * Версия списка друзей. Отдельных версий списков в БД нет, поэтому это версия пользователей.
+     *
+     * @param id ID пользователя.
+     * @return версия; -1 - пользователя нет в БД.
+     */
+    @Override
+    public long friendsVersion(Integer id) {
+        long version = usersVersion.get();
+        if (id == null || jdbcTemplate.queryForList("SELECT user_id FROM users WHERE user_id = ?", Integer.class,
+                id).isEmpty()) {
+            return -1;
+        }
+        return version;
+    }
+    
+    /**
+     * Получить ID друзей пользователя.
+     *
+     * @param id ID пользователя.
+     * @return ID друзей по возрастанию.
+     */
+    @Override
+    public int[] getFriendIds(Integer id) {
+        return jdbcTemplate.queryForList("SELECT friend_id FROM friendships WHERE user_id = ? ORDER BY friend_id",
+                Integer.class, id).stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * Получить ID общих друзей двух пользователей.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return ID общих друзей по возрастанию.
+     */
+    @Override
+    public int[] getCommonFriendIds(Integer id1, Integer id2) {
+        return jdbcTemplate.queryForList("SELECT f1.friend_id FROM friendships f1 "
+                        + "JOIN friendships f2 ON f2.user_id = ? AND f2.friend_id = f1.friend_id "
+                        + "WHERE f1.user_id = ? ORDER BY f1.friend_id",
+                Integer.class, id2, id1).stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * Получить ID друзей пользователя, но не больше заданного количества. Если друзей больше, каждый n-й друг
+     * выбирается в БД по номеру строки, и в приложение передаётся только выборка.
+     *
+     * @param id    ID пользователя.
+     * @param limit наибольший размер выборки, больше 0.
+     * @return ID друзей по возрастанию.
+     */
+    @Override
+    public int[] sampleFriendIds(Integer id, int limit) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friendships WHERE user_id = ?",
+                Integer.class, id);
+        if (count == null || count <= limit) {
+            return getFriendIds(id);
+        }
+        int step = (count + limit - 1) / limit;
+        return jdbcTemplate.queryForList("SELECT friend_id FROM (SELECT friend_id, "
+                        + "ROW_NUMBER() OVER (ORDER BY friend_id) AS rn FROM friendships WHERE user_id = ?) "
+                        + "WHERE MOD(rn - 1, ?) = 0 ORDER BY friend_id",
+                Integer.class, id, step).stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * Количество друзей пользователей: один запрос по первичному ключу дружбы на каждые
+     * {@value #BATCH_SIZE} пользователей.
+     *
+     * @param ids ID пользователей.
+     * @return количество друзей в порядке ids; 0 - пользователя нет в БД.
+     */
+    @Override
+    public int[] friendCounts(int[] ids) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int from = 0; from < ids.length; from += BATCH_SIZE) {
+            List<Integer> batch = new ArrayList<>(Math.min(BATCH_SIZE, ids.length - from));
+            for (int i = from; i < Math.min(from + BATCH_SIZE, ids.length); i++) {
+                batch.add(ids[i]);
+            }
+            namedJdbcTemplate.query("SELECT user_id, COUNT(*) AS friends FROM friendships WHERE user_id IN (:ids) "
+                    + "GROUP BY user_id", Map.of("ids", batch), rs -> {
+                        counts.put(rs.getInt("user_id"), rs.getInt("friends"));
+                    });
+        }
+        int[] result = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = counts.getOrDefault(ids[i], 0);
+        }
+        return result;
+    }
+    
+    /**
+     * Проверить дружбу двух пользователей поиском по первичному ключу.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - пользователи друзья.
+     */
+    @Override
+    public boolean areFriends(Integer id1, Integer id2) {
+        return !jdbcTemplate.queryForList("SELECT 1 FROM friendships WHERE user_id = ? AND friend_id = ?",
+                Integer.class, id1, id2).isEmpty();
+    }
+    
+    /**
+     * Записать пользователя в БД.
+     * Список друзей не приходит в теле запроса, поэтому при обновлении он переходит от записанного пользователя.
+     * Друзья нового пользователя записываются одним пакетом в обе стороны: односторонней дружбы в БД не бывает.
+     * <p>Если пользователя с тем же ID одновременно создал другой запрос, вставка одной из транзакций нарушает
+     * первичный ключ. Она откатывается и повторяется уже как обновление, как {@code compute} в хранилище в памяти.</p>
+     *
+     * @param user пользователь.
+     * @return записанный пользователь.
+     */
+    private User putInStorage(User user) {
+        idGenerator.seed(user.getId());
+        try {
+            return changedUsers(transaction.execute(status -> writeUser(user)));
+        } catch (DuplicateKeyException e) {
+            return changedUsers(transaction.execute(status -> writeUser(user)));
+        }
+    }
+    
+    /**
+     * Обновить строку пользователя или, если её нет, вставить пользователя с друзьями. Выполняется внутри
+     * транзакции.
+     *
+     * @param user пользователь.
+     * @return записанный пользователь.
+     */
+    private User writeUser(User user) {
+        int updated = jdbcTemplate.update("UPDATE users SET email = ?, login = ?, name = ?, birthday = ? "
+                + "WHERE user_id = ?", user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(),
+                user.getId());
+        if (updated > 0) {
+            user.setIdsFriends(CompactIntSet.of(getFriendIds(user.getId())));
+            return user;
+        }
+        jdbcTemplate.update("INSERT INTO users (user_id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)",
+                user.getId(), user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
+        int[] friendIds = existingIds(user.getId(), user.getIdsFriends());
+        user.setIdsFriends(CompactIntSet.of(friendIds));
+        jdbcTemplate.batchUpdate("INSERT INTO friendships (user_id, friend_id) VALUES (?, ?), (?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setInt(1, user.getId());
+                        ps.setInt(2, friendIds[i]);
+                        ps.setInt(3, friendIds[i]);
+                        ps.setInt(4, user.getId());
+                    }
+            
+                    @Override
+                    public int getBatchSize() {
+                        return friendIds.length;
+                    }
+                });
+        return user;
+    }
+    
+    /**
+     * Оставить только ID пользователей, которые есть в БД, кроме самого пользователя.
+     *
+     * @param userId ID пользователя.
+     * @param ids    ID пользователей или null.
+     * @return ID найденных пользователей по возрастанию.
+     */
+    private int[] existingIds(int userId, CompactIntSet ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new int[0];
+        }
+        return namedJdbcTemplate.queryForList("SELECT user_id FROM users WHERE user_id IN (:ids) "
+                        + "AND user_id <> :userId ORDER BY user_id", Map.of("ids", ids, "userId", userId),
+                Integer.class).stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    private User findFirst(String sql, Object... args) {
+        return withFriends(jdbcTemplate.query(sql, USER_MAPPER, args)).stream().findFirst().orElse(null);
+    }
+    
+    /**
+     * Загрузить друзей пользователей одним запросом.
+     *
+     * @param users пользователи без друзей.
+     * @return те же пользователи с друзьями.
+     */
+    private List<User> withFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        Map<Integer, User> byId = new HashMap<>();
+        users.forEach(user -> byId.put(user.getId(), user));
+        namedJdbcTemplate.query("SELECT user_id, friend_id FROM friendships WHERE user_id IN (:ids)",
+                Map.of("ids", byId.keySet()), rs -> {
+                    byId.get(rs.getInt("user_id")).getIdsFriends().add(rs.getInt("friend_id"));
+                });
+        return users;
+    }
+    
+    /**
+     * Заблокировать строки пользователей до конца транзакции. Строки блокируются по возрастанию ID,
+     * чтобы встречные запросы дружбы не ждали друг друга по кругу.
+     *
+     * @return True - оба пользователя есть в БД.
+     */
+    private boolean lockUsers(Integer id1, Integer id2) {
+        List<Integer> locked = jdbcTemplate.queryForList("SELECT user_id FROM users WHERE user_id IN (?, ?) "
+                + "ORDER BY user_id FOR UPDATE", Integer.class, id1, id2);
+        return locked.size() == (id1.equals(id2) ? 1 : 2);
+    }
+    
+    /**
+     * Сменить версию пользователей, если транзакция что-то изменила.
+     *
+     * @param result результат транзакции; null или False - ничего не изменено.
+     * @return результат транзакции.
+     */
+    private <T> T changedUsers(T result) {
+        if (result != null && !Boolean.FALSE.equals(result)) {
+            usersVersion.incrementAndGet();
+        }
+        return result;
+    }
+    
+    /**
+     * Ключ пары (пользователь, друг) для поиска в множестве.
+     */
+    private static long friendKey(int userId, int friendId) {
+        return (long) userId << 32 | friendId & 0xFFFFFFFFL;
+    }
+}
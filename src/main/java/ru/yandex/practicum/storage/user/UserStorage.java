@@ -1,10 +1,16 @@
 package ru.yandex.practicum.storage.user;
 
+import ru.yandex.practicum.model.Friendship;
 import ru.yandex.practicum.model.User;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface UserStorage {
+    /**
+     * Размер страницы, которыми читаются пользователи в {@link #streamAllUsers()}.
+     */
+    int STREAM_PAGE_SIZE = 1000;
     
     /**
      * Добавить юзера в БД.
@@ -37,6 +43,38 @@ public interface UserStorage {
      */
     List<User> getAllUsersFromStorage();
     
+    /**
+     * Количество пользователей.
+     *
+     * @return количество пользователей.
+     */
+    int userCount();
+    
+    /**
+     * Получить страницу пользователей по возрастанию ID (пагинация по курсору).
+     * Следующая страница запрашивается с ID последнего пользователя текущей страницы.
+     *
+     * @param afterId ID, после которого начинается страница; null - с начала списка (с наименьшего ID,
+     *                в том числе {@code Integer.MIN_VALUE}).
+     * @param limit   наибольший размер страницы.
+     * @return пользователи с ID больше afterId по возрастанию ID.
+     */
+    List<User> getUsersPage(Integer afterId, int limit);
+    
+    /**
+     * Перебрать всех пользователей по возрастанию ID, не собирая их в один список.
+     * Пользователи читаются страницами {@link #getUsersPage(Integer, int)} по мере перебора, поэтому занятая память
+     * не зависит от количества пользователей, а первый пользователь доступен сразу после чтения первой страницы.
+     *
+     * @return поток пользователей.
+     */
+    default Stream<User> streamAllUsers() {
+        return Stream.iterate(getUsersPage(null, STREAM_PAGE_SIZE), page -> !page.isEmpty(),
+                        page -> page.size() < STREAM_PAGE_SIZE ? List.of()
+                                : getUsersPage(page.get(page.size() - 1).getId(), STREAM_PAGE_SIZE))
+                .flatMap(List::stream);
+    }
+    
     /**
      * Получить пользователя по ID.
      *
@@ -54,4 +92,116 @@ public interface UserStorage {
      * <p>null - пользователя нет в библиотеке.</p>
      */
     User getUserByLogin(String login);
+    
+    /**
+     * Получить пользователя по адресу электронной почты.
+     *
+     * @param email адрес электронной почты.
+     * @return User - пользователь присутствует в библиотеке.
+     * <p>null - пользователя нет в библиотеке.</p>
+     */
+    User getUserByEmail(String email);
+    
+    /**
+     * Сгенерировать уникальный ID для нового пользователя.
+     *
+     * @return ID, не занятый в хранилище.
+     */
+    int generateId();
+    
+    /**
+     * Получить пользователей по списку ID одним запросом.
+     *
+     * @param ids ID пользователей.
+     * @return найденные пользователи в порядке ID из списка; отсутствующие в БД пропускаются.
+     */
+    List<User> getUsersByIds(int[] ids);
+    
+    /**
+     * Добавить пользователей в друзья друг к другу.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - дружба добавлена. False - пользователей нет в БД или они уже друзья.
+     */
+    boolean addFriendship(Integer id1, Integer id2);
+    
+    /**
+     * Добавить в друзья пачку пар пользователей за один проход по хранилищу: одной транзакцией
+     * или одним ожиданием сброса журнала.
+     *
+     * @param friendships пары пользователей с заданными ID.
+     * @return результат по каждой паре в порядке списка: True - дружба добавлена.
+     * False - пользователей нет в БД или они уже друзья.
+     */
+    boolean[] addFriendships(List<Friendship> friendships);
+    
+    /**
+     * Удалить пользователей из друзей друг друга.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - дружба удалена. False - пользователей нет в БД или они не друзья.
+     */
+    boolean removeFriendship(Integer id1, Integer id2);
+    
+    /**
+     * Получить ID друзей пользователя.
+     *
+     * @param id ID пользователя.
+     * @return ID друзей по возрастанию.
+     */
+    int[] getFriendIds(Integer id);
+    
+    /**
+     * Получить ID общих друзей двух пользователей.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return ID общих друзей по возрастанию.
+     */
+    int[] getCommonFriendIds(Integer id1, Integer id2);
+    
+    /**
+     * Получить ID друзей пользователя, но не больше заданного количества: если друзей больше,
+     * то каждого n-го по возрастанию ID, где n - наименьший шаг, при котором выборка не длиннее limit.
+     *
+     * @param id    ID пользователя.
+     * @param limit наибольший размер выборки, больше 0.
+     * @return ID друзей по возрастанию.
+     */
+    int[] sampleFriendIds(Integer id, int limit);
+    
+    /**
+     * Количество друзей пользователей.
+     *
+     * @param ids ID пользователей.
+     * @return количество друзей в порядке ids; 0 - пользователя нет в БД.
+     */
+    int[] friendCounts(int[] ids);
+    
+    /**
+     * Проверить дружбу двух пользователей.
+     *
+     * @param id1 ID пользователя №1.
+     * @param id2 ID пользователя №2.
+     * @return True - пользователи друзья.
+     */
+    boolean areFriends(Integer id1, Integer id2);
+    
+    /**
+     * Версия пользователей: меняется после каждой записи или удаления пользователя и каждого изменения дружбы.
+     *
+     * @return версия.
+     */
+    long usersVersion();
+    
+    /**
+     * Версия списка друзей пользователя: меняется, когда меняется дружба пользователя или записывается
+     * (удаляется) кто-то из его друзей.
+     *
+     * @param id ID пользователя.
+     * @return версия; -1 - пользователя нет в БД.
+     */
+    long friendsVersion(Integer id);
 }
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Потоки обработки запросов, свойство {@code filmorate.web.threads}:
+ * <p>* platform (по умолчанию) - пул потоков Tomcat ({@code server.tomcat.threads.max}, 200 потоков):
+ * запрос, ожидающий запись лога или журнала хранилища, занимает поток пула, и при 200 таких запросах
+ * остальные ждут в очереди соединений;</p>
+ * <p>* virtual - каждый запрос к контроллерам, в том числе асинхронная часть выгрузок NDJSON, выполняется
+ * в своём виртуальном потоке (нужна Java 21 и новее, иначе приложение не запустится). Ожидающий запрос
+ * освобождает поток ОС, поэтому одновременных запросов может быть столько, сколько соединений принимает
+ * Tomcat ({@code server.tomcat.max-connections}).</p>
+ * <p>Свойство действует только на сервлетном стеке: реактивный API ({@code ru.yandex.practicum.reactive})
+ * не занимает потоки на время ожидания.</p>
+ * <p>Ожидание внутри {@code synchronized} (например, {@code awaitDurable} журнала хранилища при
+ * {@code filmorate.storage.wal.fsync=always}) занимает поток ОС и в виртуальном потоке, до Java 24.</p>
+ */
+@Slf4j
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "filmorate.web.threads", havingValue = "virtual")
+public class RequestThreadsConfiguration {
+    
+    /**
+     * Исполнитель запросов. Закрывается после остановки Tomcat.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService requestExecutor() {
+        log.info("Запросы обрабатываются в виртуальных потоках.");
+        return VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+    }
+    
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer(ExecutorService requestExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+    
+    /**
+     * Исполнитель асинхронных ответов Spring MVC (вместо пула {@code spring.task.execution.*}).
+     */
+    @Bean
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService requestExecutor) {
+        return new TaskExecutorAdapter(requestExecutor);
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.web;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Виртуальные потоки (Java 21+) для сборки под Java 11.
+ * <p>Классы и методы виртуальных потоков появились в Java 21, поэтому вызываются через отражение:
+ * тот же jar работает на Java 11 и 17 с обычными потоками, а на Java 21 и новее может обрабатывать запросы
+ * в виртуальных потоках.</p>
+ */
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Method IS_VIRTUAL = findMethod(Thread.class, "isVirtual");
+    
+    private VirtualThreads() {
+    }
+    
+    /**
+     * Есть ли в JVM виртуальные потоки.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+    
+    /**
+     * Выполняется ли код в виртуальном потоке.
+     *
+     * @param thread проверяемый поток.
+     * @return false, если в JVM нет виртуальных потоков.
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        return (Boolean) invoke(IS_VIRTUAL, thread);
+    }
+    
+    /**
+     * Исполнитель, запускающий каждую задачу в новом виртуальном потоке.
+     *
+     * @param prefix начало имени потоков, к нему добавляется номер потока.
+     * @throws IllegalStateException в JVM нет виртуальных потоков.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Виртуальные потоки есть только в Java 21 и новее, приложение запущено "
+                    + "на Java " + Runtime.version().feature() + ".");
+        }
+        try {
+            Object builder = invoke(OF_VIRTUAL, null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = invoke(builderType.getMethod("name", String.class, long.class), builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) invoke(builderType.getMethod("factory"), builder);
+            return (ExecutorService) invoke(Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class),
+                    null, factory);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Не удалось создать исполнитель в виртуальных потоках.", ex);
+        }
+    }
+    
+    private static Method findMethod(Class<?> type, String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+    
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
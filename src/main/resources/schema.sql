@@ -0,0 +1,46 @@
+-- Схема хранилища в БД (filmorate.storage.type=jdbc).
+
+CREATE TABLE IF NOT EXISTS users
+(
+    user_id  INTEGER PRIMARY KEY,
+    email    VARCHAR(255),
+    login    VARCHAR(255),
+    name     VARCHAR(255),
+    birthday DATE
+);
+
+-- Поиск пользователя по логину и почте при проверке уникальности.
+CREATE INDEX IF NOT EXISTS users_login_idx ON users (login);
+CREATE INDEX IF NOT EXISTS users_email_idx ON users (email);
+
+-- Дружба взаимная: каждая пара хранится двумя строками, поэтому друзья пользователя читаются по первичному ключу.
+CREATE TABLE IF NOT EXISTS friendships
+(
+    user_id   INTEGER NOT NULL REFERENCES users (user_id) ON DELETE CASCADE,
+    friend_id INTEGER NOT NULL REFERENCES users (user_id) ON DELETE CASCADE,
+    PRIMARY KEY (user_id, friend_id)
+);
+
+CREATE TABLE IF NOT EXISTS films
+(
+    film_id      INTEGER PRIMARY KEY,
+    name         VARCHAR(255) NOT NULL,
+    description  VARCHAR(200),
+    release_date DATE,
+    duration     INTEGER,
+    -- Количество лайков меняется вместе с таблицей likes, чтобы популярные фильмы читались по индексу.
+    like_count   INTEGER      NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS films_popularity_idx ON films (like_count DESC, film_id);
+
+-- Лайк хранится и после удаления пользователя, как и в хранилище в памяти.
+CREATE TABLE IF NOT EXISTS likes
+(
+    film_id INTEGER NOT NULL REFERENCES films (film_id) ON DELETE CASCADE,
+    user_id INTEGER NOT NULL,
+    PRIMARY KEY (film_id, user_id)
+);
+
+-- Обратный индекс лайков: фильмы, которым пользователь поставил лайк, для рекомендаций.
+CREATE INDEX IF NOT EXISTS likes_user_idx ON likes (user_id, film_id);
@@ -0,0 +1,38 @@
+package ru.yandex.practicum;
+
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.User;
+
+import java.time.LocalDate;
+
+/**
+ * Корректные фильмы и пользователи для тестов хранилищ: отличаются только ID и названием (логином).
+ */
+public final class TestFixtures {
+    private TestFixtures() {
+    }
+    
+    /**
+     * Фильм, проходящий проверку полей.
+     *
+     * @param id   ID фильма.
+     * @param name название.
+     * @return фильм без лайков.
+     */
+    public static Film film(int id, String name) {
+        return Film.builder().id(id).name(name).description("описание")
+                .releaseDate(LocalDate.of(2000, 1, 1)).duration(90).build();
+    }
+    
+    /**
+     * Пользователь, проходящий проверку полей: почта и имя строятся из логина.
+     *
+     * @param id    ID пользователя.
+     * @param login логин.
+     * @return пользователь без друзей.
+     */
+    public static User user(int id, String login) {
+        return User.builder().id(id).email(login + "@email").login(login).name(login)
+                .birthday(LocalDate.of(1990, 1, 1)).build();
+    }
+}
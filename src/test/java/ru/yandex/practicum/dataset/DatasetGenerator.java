@@ -0,0 +1,239 @@
+package ru.yandex.practicum.dataset;
+
+import ru.yandex.practicum.model.ConcurrentIntSet;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.Friendship;
+import ru.yandex.practicum.model.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Генератор синтетических наборов данных для бенчмарков и нагрузочных тестов.
+ * <p>Набор похож на настоящий:</p>
+ * <p>* популярность фильмов распределена по закону Ципфа, места фильмов перемешаны по ID;</p>
+ * <p>* количество друзей распределено по степенному закону (модель Чанга - Лу с весами Парето):
+ * у немногих пользователей тысячи друзей, у большинства - единицы;</p>
+ * <p>* активные в дружбе пользователи чаще ставят лайки;</p>
+ * <p>* фильмов с каждым годом снимается больше, продолжительность - около полутора-двух часов,
+ * среди фильмов есть короткометражные.</p>
+ * <p>Каждая часть набора строится своим генератором случайных чисел от seed, поэтому набор зависит
+ * только от {@link DatasetSpec}. Запуск с записью в каталог (не тест, surefire его не выполняет):</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.yandex.practicum.dataset.DatasetGenerator -Dexec.args="10000 100000 42 target/dataset"
+ * </pre>
+ * Аргументы: количество фильмов, количество пользователей, seed, каталог для файлов {@link FileDatasetSink}.
+ */
+public class DatasetGenerator {
+    static final LocalDate FIRST_RELEASE = LocalDate.of(1895, 12, 28);
+    static final LocalDate TODAY = LocalDate.of(2024, 12, 31);
+    /**
+     * Средний возраст фильма в годах: фильмов с каждым годом снимается больше.
+     */
+    private static final double MEAN_FILM_AGE = 18;
+    private static final double SHORT_FILM_SHARE = 0.07;
+    /**
+     * Доля лайков от пользователей, выбранных по активности; остальные - от случайных пользователей.
+     */
+    private static final double ACTIVE_LIKE_SHARE = 0.7;
+    
+    private static final String[] ADJECTIVES = {"Тихий", "Последний", "Северный", "Забытый", "Красный", "Долгий",
+            "Невидимый", "Железный", "Летний", "Ночной", "Чужой", "Белый", "Дикий", "Золотой", "Далёкий", "Пятый"};
+    private static final String[] NOUNS = {"берег", "поезд", "город", "ветер", "остров", "свидетель", "рассвет",
+            "горизонт", "маяк", "сад", "путь", "лес", "дом", "след", "шторм", "код"};
+    private static final String[] GENRES = {"драма", "комедия", "триллер", "мелодрама", "фантастика", "детектив",
+            "приключения", "документальный фильм", "мультфильм", "военный фильм"};
+    private static final String[] FIRST_NAMES = {"Александр", "Мария", "Дмитрий", "Анна", "Сергей", "Елена",
+            "Иван", "Ольга", "Михаил", "Наталья", "Андрей", "Татьяна", "Алексей", "Ирина", "Никита", "Дарья"};
+    private static final String[] LAST_NAMES = {"Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров",
+            "Соколов", "Михайлов", "Новиков", "Фёдоров", "Морозов", "Волков", "Алексеев", "Лебедев"};
+    
+    private static final int USERS = 1;
+    private static final int FRIENDSHIPS = 2;
+    private static final int FILMS = 3;
+    private static final int LIKES = 4;
+    
+    private final DatasetSpec spec;
+    
+    public DatasetGenerator(DatasetSpec spec) {
+        this.spec = spec;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        DatasetSpec.DatasetSpecBuilder builder = DatasetSpec.builder();
+        if (args.length > 0) {
+            builder.films(Integer.parseInt(args[0]));
+        }
+        if (args.length > 1) {
+            builder.users(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            builder.seed(Long.parseLong(args[2]));
+        }
+        Path directory = Path.of(args.length > 3 ? args[3] : "target/dataset");
+        DatasetSpec spec = builder.build();
+        long start = System.nanoTime();
+        try (FileDatasetSink sink = new FileDatasetSink(directory)) {
+            new DatasetGenerator(spec).generate(sink);
+        }
+        System.out.printf("Набор %s записан в %s за %d мс.%n", spec, directory.toAbsolutePath(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    /**
+     * Построить набор данных. Пользователи получают ID от 1 до {@link DatasetSpec#getUsers()},
+     * фильмы - от 1 до {@link DatasetSpec#getFilms()}.
+     *
+     * @param sink получатель записей; закрывает его вызывающий.
+     */
+    public void generate(DatasetSink sink) {
+        int users = spec.getUsers();
+        for (int id = 1; id <= users; id++) {
+            sink.user(user(id));
+        }
+        if (users == 0) {
+            //Без пользователей нет ни дружбы, ни лайков.
+            for (int id = 1; id <= spec.getFilms(); id++) {
+                sink.film(film(id, new ConcurrentIntSet(), random(FILMS, id)));
+            }
+            return;
+        }
+        double[] activity = activityWeights();
+        generateFriendships(sink, activity);
+        generateFilms(sink, activity);
+    }
+    
+    /**
+     * Пользователь с ID; возраст - от 14 лет, чаще 20-40.
+     */
+    private User user(int id) {
+        SplittableRandom random = random(USERS, id);
+        String login = "user" + id;
+        int age = 14 + (int) Math.min(76, exponential(random, 17) + random.nextInt(6));
+        return User.builder().id(id).email(login + "@example.com").login(login)
+                .name(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+                .birthday(TODAY.minusYears(age).minusDays(random.nextInt(365)))
+                .build();
+    }
+    
+    /**
+     * Накопленные веса активности пользователей по распределению Парето.
+     * Пользователь для дружбы или лайка выбирается двоичным поиском случайного веса.
+     */
+    private double[] activityWeights() {
+        SplittableRandom random = random(FRIENDSHIPS);
+        double exponent = -1 / (spec.getFriendsAlpha() - 1);
+        double[] cumulative = new double[spec.getUsers()];
+        double total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += Math.pow(1 - random.nextDouble(), exponent);
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+    
+    private void generateFriendships(DatasetSink sink, double[] activity) {
+        SplittableRandom random = random(FRIENDSHIPS, 1);
+        long friendships = Math.round(spec.getUsers() * spec.getFriendsPerUser() / 2);
+        for (long i = 0; i < friendships; i++) {
+            int id1 = activeUser(activity, random);
+            int id2 = activeUser(activity, random);
+            if (id1 != id2) {
+                sink.friendship(new Friendship(id1, id2));
+            }
+        }
+    }
+    
+    private void generateFilms(DatasetSink sink, double[] activity) {
+        int films = spec.getFilms();
+        int users = spec.getUsers();
+        //Место фильма по популярности: перестановка ID, чтобы популярные фильмы не шли подряд.
+        int[] ranks = new int[films];
+        for (int i = 0; i < films; i++) {
+            ranks[i] = i + 1;
+        }
+        SplittableRandom shuffle = random(FILMS);
+        for (int i = films - 1; i > 0; i--) {
+            int j = shuffle.nextInt(i + 1);
+            int swap = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = swap;
+        }
+        double harmonic = 0;
+        for (int rank = 1; rank <= films; rank++) {
+            harmonic += Math.pow(rank, -spec.getZipfExponent());
+        }
+        double scale = films * spec.getLikesPerFilm() / harmonic;
+        int maxLikes = Math.max(1, users / 2);
+        for (int id = 1; id <= films; id++) {
+            SplittableRandom random = random(LIKES, id);
+            double expected = scale * Math.pow(ranks[id - 1], -spec.getZipfExponent());
+            //Дробная часть ожидания разыгрывается: у фильмов из хвоста распределения 0 или 1 лайк.
+            int likes = (int) Math.min(maxLikes, Math.floor(expected) + (random.nextDouble() < expected % 1 ? 1 : 0));
+            ConcurrentIntSet likedBy = new ConcurrentIntSet();
+            for (int attempt = 0; likedBy.size() < likes && attempt < 4 * likes; attempt++) {
+                likedBy.add(random.nextDouble() < ACTIVE_LIKE_SHARE ? activeUser(activity, random)
+                        : random.nextInt(users) + 1);
+            }
+            while (likedBy.size() < likes) {
+                likedBy.add(random.nextInt(users) + 1);
+            }
+            sink.film(film(id, likedBy, random(FILMS, id)));
+        }
+    }
+    
+    private Film film(int id, ConcurrentIntSet likes, SplittableRandom random) {
+        LocalDate release = TODAY.minusDays((long) (exponential(random, MEAN_FILM_AGE) * 365.25));
+        if (release.isBefore(FIRST_RELEASE)) {
+            release = FIRST_RELEASE.plusDays(random.nextInt(365 * 30));
+        }
+        int duration;
+        if (random.nextDouble() < SHORT_FILM_SHARE) {
+            duration = 5 + random.nextInt(36);
+        } else {
+            duration = (int) Math.max(60, Math.min(240, Math.round(105 + 20 * gaussian(random))));
+        }
+        String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)];
+        String genre = GENRES[random.nextInt(GENRES.length)];
+        return Film.builder().id(id).name(name)
+                .description("«" + name + "» (" + release.getYear() + ") - " + genre + ", " + duration + " мин.")
+                .releaseDate(release)
+                .duration(duration)
+                .likes(likes)
+                .build();
+    }
+    
+    private static int activeUser(double[] activity, SplittableRandom random) {
+        int index = Arrays.binarySearch(activity, random.nextDouble() * activity[activity.length - 1]);
+        return Math.min(index >= 0 ? index : -index - 1, activity.length - 1) + 1;
+    }
+    
+    private static double exponential(SplittableRandom random, double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+    
+    private static double gaussian(SplittableRandom random) {
+        //Преобразование Бокса - Мюллера: у SplittableRandom нет nextGaussian.
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+    
+    /**
+     * Генератор части набора: части не зависят друг от друга, поэтому, например, другое количество
+     * друзей не меняет фильмы.
+     */
+    private SplittableRandom random(int part) {
+        return random(part, 0);
+    }
+    
+    /**
+     * Генератор одной записи части набора: запись не зависит от количества записей до неё.
+     */
+    private SplittableRandom random(int part, long record) {
+        return new SplittableRandom(spec.getSeed() * 0x9E3779B97F4A7C15L + part * 0xBF58476D1CE4E5B9L + record);
+    }
+}
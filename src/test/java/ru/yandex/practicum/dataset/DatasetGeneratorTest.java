@@ -0,0 +1,99 @@
+package ru.yandex.practicum.dataset;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetGeneratorTest {
+    DatasetSpec spec = DatasetSpec.builder().films(2000).users(5000).seed(7).build();
+    
+    @Test
+    void sameSeedGivesSameDataset() {
+        FilmStorage films1 = new InMemoryFilmStorage();
+        UserStorage users1 = new InMemoryUserStorage();
+        FilmStorage films2 = new InMemoryFilmStorage();
+        UserStorage users2 = new InMemoryUserStorage();
+        generate(spec, films1, users1);
+        generate(spec, films2, users2);
+        
+        assertEquals(films1.getAllFilms(), films2.getAllFilms(), "Фильмы набора зависят не только от seed.");
+        assertEquals(users1.getAllUsersFromStorage(), users2.getAllUsersFromStorage(),
+                "Пользователи набора зависят не только от seed.");
+        
+        FilmStorage films3 = new InMemoryFilmStorage();
+        generate(spec.toBuilder().seed(8).build(), films3, new InMemoryUserStorage());
+        assertNotEquals(films1.getAllFilms(), films3.getAllFilms(), "Другой seed дал тот же набор.");
+    }
+    
+    @Test
+    void distributionsResembleProduction() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        UserStorage userStorage = new InMemoryUserStorage();
+        generate(spec, filmStorage, userStorage);
+        List<Film> films = filmStorage.getAllFilms();
+        List<User> users = userStorage.getAllUsersFromStorage();
+        assertEquals(spec.getFilms(), films.size());
+        assertEquals(spec.getUsers(), users.size());
+        
+        //Закон Ципфа: первый процент фильмов собирает заметную долю лайков, у большинства фильмов лайков почти нет.
+        long totalLikes = films.stream().mapToLong(film -> film.getLikes().size()).sum();
+        long topLikes = filmStorage.getPopularFilms(spec.getFilms() / 100).stream()
+                .mapToLong(film -> film.getLikes().size()).sum();
+        assertEquals(spec.getFilms() * spec.getLikesPerFilm(), totalLikes, totalLikes * 0.05);
+        assertTrue(topLikes > totalLikes * 0.3, "Популярность фильмов распределена слишком ровно.");
+        assertNotEquals(1, filmStorage.getPopularFilms(1).get(0).getId(), "Места фильмов совпадают с ID.");
+        
+        //Степенной закон: у самых активных пользователей друзей в десятки раз больше среднего.
+        int[] degrees = IntStream.rangeClosed(1, spec.getUsers())
+                .map(id -> userStorage.getFriendIds(id).length).sorted().toArray();
+        double mean = IntStream.of(degrees).average().orElse(0);
+        assertEquals(spec.getFriendsPerUser(), mean, 1.5);
+        assertTrue(degrees[degrees.length - 1] > mean * 20, "Количество друзей распределено слишком ровно.");
+        assertTrue(degrees[degrees.length / 2] < mean, "Медиана количества друзей не меньше среднего.");
+        
+        for (Film film : films) {
+            assertFalse(film.getReleaseDate().isBefore(DatasetGenerator.FIRST_RELEASE));
+            assertFalse(film.getReleaseDate().isAfter(DatasetGenerator.TODAY));
+            assertTrue(film.getDuration() > 0);
+            assertTrue(film.getDescription().length() <= 200);
+        }
+        long recent = films.stream().filter(film -> film.getReleaseDate().getYear() >= 2000).count();
+        assertTrue(recent > films.size() / 2, "Новых фильмов должно быть больше, чем старых.");
+    }
+    
+    @Test
+    void writesNdjsonFiles(@TempDir Path directory) throws IOException {
+        DatasetSpec small = spec.toBuilder().films(100).users(200).build();
+        try (FileDatasetSink sink = new FileDatasetSink(directory)) {
+            new DatasetGenerator(small).generate(sink);
+        }
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        generate(small, filmStorage, null);
+        long likes = filmStorage.getAllFilms().stream().mapToLong(film -> film.getLikes().size()).sum();
+        
+        assertEquals(100, Files.readAllLines(directory.resolve("films.ndjson")).size());
+        assertEquals(200, Files.readAllLines(directory.resolve("users.ndjson")).size());
+        assertEquals(likes, Files.readAllLines(directory.resolve("likes.ndjson")).size());
+        assertTrue(Files.readAllLines(directory.resolve("films.ndjson")).get(0).contains("\"releaseDate\":\""),
+                "Дата выпуска записана не строкой ISO.");
+    }
+    
+    private void generate(DatasetSpec spec, FilmStorage filmStorage, UserStorage userStorage) {
+        try (StorageDatasetSink sink = new StorageDatasetSink(filmStorage, userStorage)) {
+            new DatasetGenerator(spec).generate(sink);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.dataset;
+
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.Friendship;
+import ru.yandex.practicum.model.User;
+
+/**
+ * Получатель набора данных от {@link DatasetGenerator}. Записи приходят в порядке зависимостей:
+ * сначала все пользователи, затем дружба, затем фильмы с лайками.
+ */
+public interface DatasetSink extends AutoCloseable {
+    
+    void user(User user);
+    
+    void friendship(Friendship friendship);
+    
+    /**
+     * Фильм вместе с лайками в {@link Film#getLikes()}.
+     *
+     * @param film фильм.
+     */
+    void film(Film film);
+    
+    /**
+     * Дописать накопленные записи.
+     */
+    @Override
+    void close();
+}
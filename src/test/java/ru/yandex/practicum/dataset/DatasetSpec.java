@@ -0,0 +1,42 @@
+package ru.yandex.practicum.dataset;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Параметры синтетического набора данных. Один и тот же набор параметров с тем же seed
+ * всегда даёт один и тот же набор данных.
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public class DatasetSpec {
+    @Builder.Default
+    private final long seed = 42;
+    @Builder.Default
+    private final int films = 10_000;
+    @Builder.Default
+    private final int users = 100_000;
+    /**
+     * Среднее количество лайков на фильм.
+     */
+    @Builder.Default
+    private final double likesPerFilm = 5;
+    /**
+     * Показатель закона Ципфа для популярности фильмов: у фильма на месте r лайков пропорционально 1 / r^s.
+     */
+    @Builder.Default
+    private final double zipfExponent = 1.0;
+    /**
+     * Среднее количество друзей на пользователя.
+     */
+    @Builder.Default
+    private final double friendsPerUser = 10;
+    /**
+     * Показатель степенного закона для количества друзей: доля пользователей с k друзьями
+     * убывает как k^(-alpha).
+     */
+    @Builder.Default
+    private final double friendsAlpha = 2.5;
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.dataset;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.FilmLike;
+import ru.yandex.practicum.model.Friendship;
+import ru.yandex.practicum.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Запись набора данных в каталог файлами NDJSON, по объекту JSON на строку:
+ * <p>{@code films.ndjson} - фильмы, их можно загрузить через POST /films/import;</p>
+ * <p>{@code likes.ndjson} - пары {@code {"filmId", "userId"}} для PUT /films/likes;</p>
+ * <p>{@code users.ndjson} - пользователи;</p>
+ * <p>{@code friendships.ndjson} - пары {@code {"userId", "friendId"}} для PUT /users/friends.</p>
+ */
+public class FileDatasetSink implements DatasetSink {
+    private final ObjectWriter writer = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build()
+            .writer();
+    private final Writer films;
+    private final Writer likes;
+    private final Writer users;
+    private final Writer friendships;
+    
+    public FileDatasetSink(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        films = open(directory.resolve("films.ndjson"));
+        likes = open(directory.resolve("likes.ndjson"));
+        users = open(directory.resolve("users.ndjson"));
+        friendships = open(directory.resolve("friendships.ndjson"));
+    }
+    
+    @Override
+    public void user(User user) {
+        write(users, user);
+    }
+    
+    @Override
+    public void friendship(Friendship friendship) {
+        write(friendships, friendship);
+    }
+    
+    @Override
+    public void film(Film film) {
+        write(films, film);
+        if (film.getLikes() != null) {
+            film.getLikes().forEachInt(userId -> write(likes, new FilmLike(film.getId(), userId)));
+        }
+    }
+    
+    @Override
+    public void close() {
+        try {
+            films.close();
+            likes.close();
+            users.close();
+            friendships.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    private void write(Writer out, Object value) {
+        try {
+            out.write(writer.writeValueAsString(value));
+            out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    private static Writer open(Path file) throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.dataset;
+
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.Friendship;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запись набора данных прямо в хранилища, минуя проверки сервисов. Дружба записывается пачками
+ * через {@link UserStorage#addFriendships(List)}, фильмы с лайками - пачками через {@link FilmStorage#putAll(List)}.
+ */
+public class StorageDatasetSink implements DatasetSink {
+    private static final int BATCH_SIZE = 10_000;
+    
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final List<Friendship> friendships = new ArrayList<>(BATCH_SIZE);
+    private final List<Film> films = new ArrayList<>(BATCH_SIZE);
+    
+    /**
+     * @param filmStorage хранилище фильмов или null, если фильмы не нужны.
+     * @param userStorage хранилище пользователей или null, если пользователи не нужны.
+     */
+    public StorageDatasetSink(FilmStorage filmStorage, UserStorage userStorage) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+    }
+    
+    @Override
+    public void user(User user) {
+        if (userStorage != null) {
+            userStorage.addToStorage(user);
+        }
+    }
+    
+    @Override
+    public void friendship(Friendship friendship) {
+        if (userStorage == null) {
+            return;
+        }
+        friendships.add(friendship);
+        if (friendships.size() >= BATCH_SIZE) {
+            flushFriendships();
+        }
+    }
+    
+    @Override
+    public void film(Film film) {
+        if (filmStorage == null) {
+            return;
+        }
+        flushFriendships();
+        films.add(film);
+        if (films.size() >= BATCH_SIZE) {
+            flushFilms();
+        }
+    }
+    
+    @Override
+    public void close() {
+        flushFriendships();
+        flushFilms();
+    }
+    
+    private void flushFriendships() {
+        if (!friendships.isEmpty()) {
+            userStorage.addFriendships(friendships);
+            friendships.clear();
+        }
+    }
+    
+    private void flushFilms() {
+        if (!films.isEmpty()) {
+            filmStorage.putAll(films);
+            films.clear();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Два прогона {@link LoadHarness} с одной нагрузкой и разными настройками приложения: базовый и сравниваемый.
+ * <p>Параметры до {@code vs} задают нагрузку и базовые настройки, параметры после {@code vs} добавляются к ним
+ * во втором прогоне. Без {@code vs} сравниваются пул потоков Tomcat и виртуальные потоки
+ * ({@code --filmorate.web.threads=virtual}, нужна Java 21). Запуск (не тест, surefire его не выполняет):</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.yandex.practicum.load.LoadComparison \
+ *     -Dexec.args="rate=2000 maxInFlight=4000 --filmorate.storage.dir=target/load vs --filmorate.web.threads=virtual"
+ * </pre>
+ * Приложение запускается в процессе сравнения, поэтому для виртуальных потоков Maven должен работать на Java 21.
+ */
+public class LoadComparison {
+    private static final String SEPARATOR = "vs";
+    private static final List<String> DEFAULT_CANDIDATE = List.of("--filmorate.web.threads=virtual");
+    
+    public static void main(String[] args) throws InterruptedException {
+        List<String> all = Arrays.asList(args);
+        int separator = all.indexOf(SEPARATOR);
+        List<String> baseline = separator < 0 ? all : all.subList(0, separator);
+        List<String> candidate = new ArrayList<>(baseline);
+        candidate.addAll(separator < 0 ? DEFAULT_CANDIDATE : all.subList(separator + 1, all.size()));
+        
+        LoadReport baselineReport = run("Базовый прогон", baseline);
+        LoadReport candidateReport = run("Сравниваемый прогон", candidate);
+        System.out.println("Базовый прогон: " + baseline);
+        System.out.print(baselineReport);
+        System.out.println("Сравниваемый прогон: " + candidate);
+        System.out.print(candidateReport);
+        System.out.printf("Пропускная способность: %.1f -> %.1f запросов/с, p99: %.2f -> %.2f мс, "
+                        + "p99.9: %.2f -> %.2f мс, ошибок: %d -> %d.%n",
+                baselineReport.getThroughput(), candidateReport.getThroughput(),
+                baselineReport.getLatency().getPercentile(99) / 1000.0,
+                candidateReport.getLatency().getPercentile(99) / 1000.0,
+                baselineReport.getLatency().getPercentile(99.9) / 1000.0,
+                candidateReport.getLatency().getPercentile(99.9) / 1000.0,
+                baselineReport.getErrors(), candidateReport.getErrors());
+    }
+    
+    private static LoadReport run(String name, List<String> args) throws InterruptedException {
+        LoadSpec spec = LoadSpec.parse(args.toArray(new String[0]));
+        System.out.println(name + ": " + spec);
+        return new LoadHarness(spec).run();
+    }
+}
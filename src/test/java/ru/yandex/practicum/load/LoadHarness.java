@@ -0,0 +1,168 @@
+package ru.yandex.practicum.load;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.FilmoRateApplication;
+import ru.yandex.practicum.dataset.DatasetGenerator;
+import ru.yandex.practicum.dataset.DatasetSpec;
+import ru.yandex.practicum.dataset.StorageDatasetSink;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный прогон контроллеров фильмов и пользователей без внешних инструментов.
+ * <p>Запросы из смеси {@link LoadSpec#getMix()} отправляются с постоянной частотой {@link LoadSpec#getRate()}
+ * через асинхронный {@link HttpClient}: расписание не зависит от ответов (открытая модель нагрузки),
+ * а задержки считаются от времени по расписанию (см. {@link LoadReport}). Сначала идёт прогрев, его итоги
+ * отбрасываются, затем замер.</p>
+ * <p>Без {@code url} приложение запускается в том же процессе на свободном порту и заполняется набором данных
+ * из {@link DatasetGenerator}. Внешнее приложение должно быть заполнено заранее, например файлами
+ * {@link ru.yandex.practicum.dataset.FileDatasetSink}. Запуск (не тест, surefire его не выполняет):</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.yandex.practicum.load.LoadHarness -Dexec.args="rate=2000 duration=60"
+ * </pre>
+ * Параметры - см. {@link LoadSpec#parse(String...)}; например, сравнить синхронный и асинхронный лог:
+ * {@code -Dexec.args="rate=300 --filmorate.logging.appender=CONSOLE"}. Два варианта настроек подряд
+ * на одной нагрузке сравнивает {@link LoadComparison}.
+ */
+public class LoadHarness {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    
+    private final LoadSpec spec;
+    private final Operation[] schedule;
+    
+    public LoadHarness(LoadSpec spec) {
+        this.spec = spec;
+        this.schedule = schedule(spec.getMix());
+    }
+    
+    public static void main(String[] args) throws InterruptedException {
+        LoadSpec spec = LoadSpec.parse(args);
+        System.out.println("Нагрузка: " + spec);
+        LoadReport report = new LoadHarness(spec).run();
+        System.out.print(report);
+    }
+    
+    /**
+     * Выполнить прогрев и замер.
+     *
+     * @return итоги замера.
+     */
+    public LoadReport run() throws InterruptedException {
+        ConfigurableApplicationContext context = null;
+        URI base;
+        if (spec.getUrl().isBlank()) {
+            context = startApplication();
+            base = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+        } else {
+            base = URI.create(spec.getUrl());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "load-client");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .executor(executor)
+                .build();
+        try {
+            drive(client, base, spec.getWarmupSeconds(), new SplittableRandom(spec.getSeed() - 1));
+            return drive(client, base, spec.getDurationSeconds(), new SplittableRandom(spec.getSeed()));
+        } finally {
+            executor.shutdownNow();
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+    
+    private ConfigurableApplicationContext startApplication() {
+        List<String> args = new ArrayList<>();
+        //Значение по умолчанию добавляется, только если параметр не задан: повторный параметр Spring склеивает.
+        for (String defaultArg : List.of("--server.port=0", "--filmorate.storage.dir=")) {
+            String name = defaultArg.substring(0, defaultArg.indexOf('=') + 1);
+            if (spec.getApplicationArgs().stream().noneMatch(arg -> arg.startsWith(name))) {
+                args.add(defaultArg);
+            }
+        }
+        args.addAll(spec.getApplicationArgs());
+        ConfigurableApplicationContext context = SpringApplication.run(FilmoRateApplication.class,
+                args.toArray(new String[0]));
+        DatasetSpec dataset = DatasetSpec.builder()
+                .films(spec.getFilms())
+                .users(spec.getUsers())
+                .seed(spec.getSeed())
+                .build();
+        try (StorageDatasetSink sink = new StorageDatasetSink(context.getBean(FilmStorage.class),
+                context.getBean(UserStorage.class))) {
+            new DatasetGenerator(dataset).generate(sink);
+        }
+        return context;
+    }
+    
+    /**
+     * Отправлять запросы по расписанию seconds секунд и дождаться всех ответов.
+     */
+    private LoadReport drive(HttpClient client, URI base, int seconds, SplittableRandom random)
+            throws InterruptedException {
+        LoadReport report = new LoadReport();
+        Semaphore inFlight = new Semaphore(spec.getMaxInFlight());
+        long requests = (long) spec.getRate() * seconds;
+        double interval = 1e9 / spec.getRate();
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long intended = start + (long) (i * interval);
+            for (long wait = intended - System.nanoTime(); wait > 0; wait = intended - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            //Если приложение отстаёт, запросы уходят сразу друг за другом, но время по расписанию не сдвигается.
+            inFlight.acquire();
+            Operation operation = schedule[random.nextInt(schedule.length)];
+            HttpRequest request = operation.request(base, spec, random).timeout(REQUEST_TIMEOUT).build();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                report.record(operation, intended, sent, System.nanoTime(),
+                        response == null ? -1 : response.statusCode());
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(spec.getMaxInFlight());
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+    
+    /**
+     * Таблица операций, в которой каждая встречается столько раз, каков её вес: выбор операции -
+     * случайный элемент таблицы.
+     */
+    private static Operation[] schedule(Map<Operation, Integer> mix) {
+        List<Operation> schedule = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                schedule.add(operation);
+            }
+        });
+        if (schedule.isEmpty()) {
+            throw new IllegalArgumentException("В смеси нагрузки нет ни одной операции: " + mix);
+        }
+        return schedule.toArray(new Operation[0]);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.load;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadHarnessTest {
+    
+    @Test
+    void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(50_000.5, histogram.getMean(), 0.001);
+        assertEquals(50_000, histogram.getPercentile(50), 50_000 / 64.0, "Погрешность медианы больше корзины.");
+        assertEquals(99_000, histogram.getPercentile(99), 99_000 / 64.0, "Погрешность p99 больше корзины.");
+        assertEquals(100_000, histogram.getMax(), 100_000 / 64.0);
+        assertEquals(1, histogram.getPercentile(0.001));
+        for (long value : new long[]{0, 127, 128, 1000, 1 << 20, Long.MAX_VALUE}) {
+            assertTrue(LatencyHistogram.upperBound(LatencyHistogram.index(value)) >= value,
+                    "Верхняя граница корзины меньше значения " + value);
+        }
+    }
+    
+    @Test
+    void runAgainstEmbeddedApplication() throws InterruptedException {
+        LoadSpec spec = LoadSpec.parse("rate=50", "warmup=1", "duration=2", "films=200", "users=300",
+                "mix=POPULAR:2,FILM:2,USER:1,FRIENDS:1,COMMON_FRIENDS:1,LIKE:1");
+        LoadReport report = new LoadHarness(spec).run();
+        
+        assertEquals(100, report.getRequests(), "Прогон отправил не все запросы по расписанию.");
+        assertEquals(0, report.getErrors(), "Приложение ответило ошибкой:\n" + report);
+        assertTrue(report.getThroughput() > 25, "Пропускная способность не похожа на заданную:\n" + report);
+        assertTrue(report.getLatency(Operation.POPULAR).getCount() > 0);
+        assertTrue(report.getLatency(Operation.LIKE).getCount() > 0);
+        assertTrue(report.getLatency().getPercentile(99) >= report.getUncorrectedLatency().getPercentile(50),
+                "Задержка по расписанию меньше задержки от отправки.");
+        assertTrue(report.toString().contains("p99.9"));
+    }
+}
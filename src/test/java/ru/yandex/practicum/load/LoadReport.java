@@ -0,0 +1,107 @@
+package ru.yandex.practicum.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Итоги прогона: пропускная способность, ошибки и задержки.
+ * <p>Задержка считается от времени отправки по расписанию, а не от фактической отправки: если приложение
+ * не успевает и запросы ждут в очереди (или упираются в {@link LoadSpec#getMaxInFlight()}), ожидание входит
+ * в задержку. Так исправляется "скоординированное упущение" - замер не прячет задержки, вызванные самим
+ * замедлением. Задержка от фактической отправки приводится для сравнения.</p>
+ */
+public class LoadReport {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram uncorrectedLatency = new LatencyHistogram();
+    private final Map<Operation, LatencyHistogram> operations = new EnumMap<>(Operation.class);
+    private final LongAdder errors = new LongAdder();
+    private long elapsedNanos;
+    
+    LoadReport() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new LatencyHistogram());
+        }
+    }
+    
+    /**
+     * Учесть ответ.
+     *
+     * @param intended время отправки по расписанию, {@link System#nanoTime()}.
+     * @param sent     время фактической отправки.
+     * @param done     время получения ответа.
+     * @param status   код ответа или -1, если ответа нет.
+     */
+    void record(Operation operation, long intended, long sent, long done, int status) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(done - intended);
+        latency.record(micros);
+        operations.get(operation).record(micros);
+        uncorrectedLatency.record(TimeUnit.NANOSECONDS.toMicros(done - sent));
+        if (status < 200 || status >= 400 && status != 304 || status >= 300 && status < 304) {
+            errors.increment();
+        }
+    }
+    
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    public long getRequests() {
+        return latency.getCount();
+    }
+    
+    public long getErrors() {
+        return errors.sum();
+    }
+    
+    /**
+     * Ответов в секунду от первой отправки до последнего ответа.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getRequests() * 1e9 / elapsedNanos;
+    }
+    
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    
+    public LatencyHistogram getLatency(Operation operation) {
+        return operations.get(operation);
+    }
+    
+    public LatencyHistogram getUncorrectedLatency() {
+        return uncorrectedLatency;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Запросов: %d, ошибок: %d, за %.1f с, %.1f запросов/с.%n",
+                getRequests(), getErrors(), elapsedNanos / 1e9, getThroughput()));
+        report.append(String.format("%-26s%10s", "Задержка, мс", "среднее"));
+        for (double percentile : PERCENTILES) {
+            report.append(String.format("%10s", "p" + (percentile % 1 == 0 ? String.valueOf((int) percentile)
+                    : String.valueOf(percentile))));
+        }
+        report.append(String.format("%10s%n", "max"));
+        appendRow(report, "по расписанию", latency);
+        appendRow(report, "от отправки", uncorrectedLatency);
+        operations.forEach((operation, histogram) -> {
+            if (histogram.getCount() > 0) {
+                appendRow(report, "  " + operation + " (" + histogram.getCount() + ")", histogram);
+            }
+        });
+        return report.toString();
+    }
+    
+    private static void appendRow(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format("%-26s%10.2f", name, histogram.getMean() / 1000));
+        for (double percentile : PERCENTILES) {
+            report.append(String.format("%10.2f", histogram.getPercentile(percentile) / 1000.0));
+        }
+        report.append(String.format("%10.2f%n", histogram.getMax() / 1000.0));
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.load;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного прогона {@link LoadHarness}.
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public class LoadSpec {
+    /**
+     * Адрес приложения, например {@code http://localhost:8080}. Пусто - приложение запускается в том же процессе
+     * на свободном порту и заполняется набором данных из {@link ru.yandex.practicum.dataset.DatasetGenerator}.
+     */
+    @Builder.Default
+    private final String url = "";
+    /**
+     * Целевая частота запросов в секунду. Запросы отправляются по расписанию, не дожидаясь ответов на предыдущие.
+     */
+    @Builder.Default
+    private final int rate = 1000;
+    @Builder.Default
+    private final int warmupSeconds = 5;
+    @Builder.Default
+    private final int durationSeconds = 30;
+    /**
+     * Предел одновременных запросов: когда он достигнут, отправка ждёт, а задержка по расписанию растёт.
+     */
+    @Builder.Default
+    private final int maxInFlight = 512;
+    /**
+     * Количество фильмов и пользователей в наборе данных. Для внешнего приложения - диапазоны ID в запросах.
+     */
+    @Builder.Default
+    private final int films = 10_000;
+    @Builder.Default
+    private final int users = 10_000;
+    @Builder.Default
+    private final long seed = 42;
+    /**
+     * Доли операций в нагрузке: чтение популярных фильмов и фильмов по ID преобладает.
+     */
+    @Builder.Default
+    private final Map<Operation, Integer> mix = defaultMix();
+    /**
+     * Параметры приложения, запускаемого в том же процессе, например {@code --logging.level.root=warn}.
+     */
+    @Builder.Default
+    private final List<String> applicationArgs = List.of();
+    
+    private static Map<Operation, Integer> defaultMix() {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        mix.put(Operation.POPULAR, 35);
+        mix.put(Operation.FILM, 25);
+        mix.put(Operation.USER, 10);
+        mix.put(Operation.FRIENDS, 15);
+        mix.put(Operation.COMMON_FRIENDS, 5);
+        mix.put(Operation.LIKE, 10);
+        return mix;
+    }
+    
+    /**
+     * Разобрать параметры командной строки вида {@code rate=2000 duration=60 mix=POPULAR:50,LIKE:50}.
+     * Параметры, начинающиеся с {@code --}, передаются приложению.
+     */
+    public static LoadSpec parse(String... args) {
+        LoadSpecBuilder builder = builder();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                applicationArgs.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Параметр должен иметь вид ключ=значение: " + arg);
+            }
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(0, separator)) {
+                case "url":
+                    builder.url(value);
+                    break;
+                case "rate":
+                    builder.rate(Integer.parseInt(value));
+                    break;
+                case "warmup":
+                    builder.warmupSeconds(Integer.parseInt(value));
+                    break;
+                case "duration":
+                    builder.durationSeconds(Integer.parseInt(value));
+                    break;
+                case "maxInFlight":
+                    builder.maxInFlight(Integer.parseInt(value));
+                    break;
+                case "films":
+                    builder.films(Integer.parseInt(value));
+                    break;
+                case "users":
+                    builder.users(Integer.parseInt(value));
+                    break;
+                case "seed":
+                    builder.seed(Long.parseLong(value));
+                    break;
+                case "mix":
+                    builder.mix(parseMix(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+            }
+        }
+        return builder.applicationArgs(applicationArgs).build();
+    }
+    
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : value.split(",")) {
+            String[] weight = part.split(":");
+            mix.put(Operation.valueOf(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.load;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.SplittableRandom;
+
+/**
+ * Операция нагрузки - запрос к одному из эндпоинтов {@code FilmController} или {@code UserController}
+ * со случайными ID из набора данных.
+ */
+public enum Operation {
+    /**
+     * GET /films/popular?count=10.
+     */
+    POPULAR {
+        @Override
+        HttpRequest.Builder request(URI base, LoadSpec spec, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/films/popular?count=10")).GET();
+        }
+    },
+    /**
+     * GET /films/{id}.
+     */
+    FILM {
+        @Override
+        HttpRequest.Builder request(URI base, LoadSpec spec, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/films/" + id(random, spec.getFilms()))).GET();
+        }
+    },
+    /**
+     * GET /users/{id}.
+     */
+    USER {
+        @Override
+        HttpRequest.Builder request(URI base, LoadSpec spec, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/users/" + id(random, spec.getUsers()))).GET();
+        }
+    },
+    /**
+     * GET /users/{id}/friends.
+     */
+    FRIENDS {
+        @Override
+        HttpRequest.Builder request(URI base, LoadSpec spec, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/users/" + id(random, spec.getUsers()) + "/friends")).GET();
+        }
+    },
+    /**
+     * GET /users/{id}/friends/common/{otherId}.
+     */
+    COMMON_FRIENDS {
+        @Override
+        HttpRequest.Builder request(URI base, LoadSpec spec, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/users/" + id(random, spec.getUsers())
+                    + "/friends/common/" + id(random, spec.getUsers()))).GET();
+        }
+    },
+    /**
+     * PUT /films/{id}/like/{userId}: повторный лайк того же пользователя ничего не меняет.
+     */
+    LIKE {
+        @Override
+        HttpRequest.Builder request(URI base, LoadSpec spec, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/films/" + id(random, spec.getFilms())
+                    + "/like/" + id(random, spec.getUsers()))).PUT(HttpRequest.BodyPublishers.noBody());
+        }
+    };
+    
+    abstract HttpRequest.Builder request(URI base, LoadSpec spec, SplittableRandom random);
+    
+    private static int id(SplittableRandom random, int bound) {
+        return random.nextInt(Math.max(1, bound)) + 1;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.logging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.zalando.logbook.HttpHeaders;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.Logbook;
+
+import java.io.IOException;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Журнал Logbook с выборкой всех обменов: тело записываемого обмена читается в память целиком
+ * ({@link HttpRequest#withBody()}), а тела потоковой загрузки фильмов и выгрузок всех фильмов
+ * и пользователей - нет.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"filmorate.logging.exchanges.sample-rate=1", "filmorate.storage.dir="})
+class ExchangeLogTest {
+    @Autowired
+    Logbook logbook;
+    
+    @Test
+    void importBodyIsNotBuffered() throws IOException {
+        HttpRequest filmImport = request("POST", "/films/import", "");
+        logbook.process(filmImport);
+        verify(filmImport, never()).withBody();
+        
+        HttpRequest film = request("POST", "/films/1", "");
+        logbook.process(film);
+        verify(film, atLeastOnce()).withBody();
+    }
+    
+    @Test
+    void fullExportBodiesAreNotBuffered() throws IOException {
+        for (String path : new String[]{"/films", "/users"}) {
+            HttpRequest export = request("GET", path, "");
+            logbook.process(export);
+            verify(export, never()).withBody();
+            
+            HttpRequest page = request("GET", path, "after=5&limit=10");
+            logbook.process(page);
+            verify(page, atLeastOnce()).withBody();
+        }
+    }
+    
+    private static HttpRequest request(String method, String path, String query) throws IOException {
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getPath()).thenReturn(path);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getHeaders()).thenReturn(HttpHeaders.empty());
+        when(request.getQuery()).thenReturn(query);
+        when(request.withBody()).thenReturn(request);
+        when(request.withoutBody()).thenReturn(request);
+        return request;
+    }
+}
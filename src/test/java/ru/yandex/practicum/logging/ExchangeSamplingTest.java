@@ -0,0 +1,48 @@
+package ru.yandex.practicum.logging;
+
+import org.junit.jupiter.api.Test;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExchangeSamplingTest {
+    
+    @Test
+    void rateByFirstMatchingPattern() {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        rates.put("/films/popular", 0.0);
+        rates.put("/films/**", 0.5);
+        ExchangeSampling sampling = new ExchangeSampling(1, rates);
+        
+        assertEquals(0.0, sampling.rateFor("/films/popular"));
+        assertEquals(0.5, sampling.rateFor("/films/1/like/2"));
+        assertEquals(1.0, sampling.rateFor("/users/1"), "Путь без шаблона получил не общую долю.");
+    }
+    
+    @Test
+    void samplesShareOfExchanges() {
+        ExchangeSampling sampling = new ExchangeSampling(0.1, Map.of("/films/popular", 0.0, "/users/**", 1.0));
+        HttpRequest popular = request("/films/popular");
+        HttpRequest user = request("/users/1");
+        HttpRequest film = request("/films/1");
+        
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(sampling.test(popular));
+            assertTrue(sampling.test(user));
+            sampled += sampling.test(film) ? 1 : 0;
+        }
+        assertEquals(1000, sampled, 150, "Доля обменов в журнале не совпадает с заданной.");
+    }
+    
+    private static HttpRequest request(String path) {
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getPath()).thenReturn(path);
+        return request;
+    }
+}
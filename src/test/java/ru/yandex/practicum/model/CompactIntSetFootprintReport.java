@@ -0,0 +1,93 @@
+package ru.yandex.practicum.model;
+
+import java.lang.ref.Reference;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Отчёт о расходе памяти на лайки: {@code HashSet<Integer>} против {@link CompactIntSet}.
+ * <p>Синтетический набор: фильмы с распределением популярности по закону Ципфа, лайки от случайных
+ * пользователей. Запуск (не тест, surefire его не выполняет):</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.yandex.practicum.model.CompactIntSetFootprintReport -Dexec.args="10000 1000000 5000000"
+ * </pre>
+ * Аргументы: количество фильмов, количество пользователей, общее количество лайков.
+ * Для точного замера кучи лучше добавить {@code -XX:+UseSerialGC}.
+ */
+public class CompactIntSetFootprintReport {
+    
+    public static void main(String[] args) {
+        int films = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int likes = args.length > 2 ? Integer.parseInt(args[2]) : 5_000_000;
+        
+        System.out.printf("Фильмов: %,d, пользователей: %,d, лайков: %,d%n", films, users, likes);
+        //Сначала компактный вариант: после большого набора HashSet часть кучи освобождается не сразу.
+        long compactBytes = measure(films, users, likes, CompactIntSet::new);
+        long hashSetBytes = measure(films, users, likes, HashSet::new);
+        System.out.printf("HashSet<Integer>: %,d байт (%.1f байт на лайк)%n", hashSetBytes,
+                (double) hashSetBytes / likes);
+        System.out.printf("CompactIntSet:    %,d байт (%.1f байт на лайк)%n", compactBytes,
+                (double) compactBytes / likes);
+        System.out.printf("Экономия: в %.1f раз(а)%n", (double) hashSetBytes / compactBytes);
+    }
+    
+    /**
+     * Размер кучи, занятой множествами лайков всех фильмов.
+     */
+    private static long measure(int films, int users, int likes, Supplier<Set<Integer>> factory) {
+        long before = usedHeap();
+        Object[] sets = new Object[films];
+        Random random = new Random(1);
+        double[] cumulative = zipf(films);
+        for (int i = 0; i < films; i++) {
+            sets[i] = factory.get();
+        }
+        for (int i = 0; i < likes; i++) {
+            @SuppressWarnings("unchecked")
+            Set<Integer> set = (Set<Integer>) sets[pick(cumulative, random.nextDouble())];
+            set.add(random.nextInt(users));
+        }
+        long after = usedHeap();
+        Reference.reachabilityFence(sets);
+        return after - before;
+    }
+    
+    private static double[] zipf(int films) {
+        double[] cumulative = new double[films];
+        double sum = 0;
+        for (int i = 0; i < films; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < films; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+    
+    private static int pick(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
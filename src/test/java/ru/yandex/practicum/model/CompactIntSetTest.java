@@ -0,0 +1,146 @@
+package ru.yandex.practicum.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactIntSetTest {
+    
+    @Test
+    void behavesLikeSortedSetOfIntegers() {
+        Random random = new Random(42);
+        CompactIntSet actual = new CompactIntSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        
+        //Набираем множество до контейнеров (в том числе битовых карт), а потом удаляем обратно до массива.
+        for (int i = 0; i < 60_000; i++) {
+            int value = randomValue(random);
+            assertEquals(expected.add(value), actual.add(value), "Ошибка добавления элемента " + value);
+        }
+        assertSameElements(expected, actual);
+        for (int i = 0; i < 200_000 && !expected.isEmpty(); i++) {
+            int value = i % 3 == 0 ? expected.first() : randomValue(random);
+            assertEquals(expected.remove(value), actual.remove(value), "Ошибка удаления элемента " + value);
+            if (i % 10_000 == 0) {
+                assertSameElements(expected, actual);
+            }
+        }
+        assertSameElements(expected, actual);
+    }
+    
+    @Test
+    void isCompatibleWithSetOfIntegers() {
+        CompactIntSet actual = CompactIntSet.of(5, -3, 0, 70_000);
+        Set<Integer> expected = new HashSet<>(List.of(0, 5, -3, 70_000));
+        
+        assertEquals(expected, actual, "Множество не равно HashSet с теми же элементами.");
+        assertEquals(actual, expected, "HashSet не равен множеству с теми же элементами.");
+        assertEquals(expected.hashCode(), actual.hashCode(), "Хеш-код отличается от хеш-кода HashSet.");
+        assertEquals("[-3, 0, 5, 70000]", actual.toString(), "Элементы перебираются не по возрастанию.");
+        assertFalse(actual.contains("5"), "Множество содержит элемент другого типа.");
+        
+        Iterator<Integer> iterator = actual.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() < 0) {
+                iterator.remove();
+            }
+        }
+        assertEquals(Set.of(0, 5, 70_000), actual, "Ошибка удаления элементов через итератор.");
+        assertSame(actual, CompactIntSet.from(actual), "Компактное множество не должно копироваться.");
+    }
+    
+    @Test
+    void modelConvertsIncomingSets() {
+        User user = User.builder().id(1).idsFriends(new HashSet<>(List.of(2, 3))).build();
+        assertTrue(user.getIdsFriends().contains(2), "Потеряны друзья при создании пользователя через builder.");
+        assertSame(user.getIdsFriends(), user.toBuilder().build().getIdsFriends()
+                , "Копия пользователя должна разделять множество друзей.");
+        
+        Film film = new Film();
+        film.setLikes(new HashSet<>(List.of(7)));
+        assertEquals(Set.of(7), film.getLikes(), "Потеряны лайки при установке множества лайков.");
+        assertNull(Film.builder().id(1).build().getLikes(), "Builder без лайков должен оставлять null.");
+    }
+    
+    @Test
+    void intersectMatchesRetainAll() {
+        Random random = new Random(7);
+        //Пары размеров: слияние массивов, галоп по большому массиву, пересечение контейнеров и битовых карт.
+        int[][] sizes = {{0, 100}, {300, 500}, {10, 1_000}, {3, 50_000}, {2_000, 3_000}, {40_000, 60_000}};
+        for (int[] size : sizes) {
+            CompactIntSet first = new CompactIntSet();
+            CompactIntSet second = new CompactIntSet();
+            while (first.size() < size[0]) {
+                first.add(randomValue(random));
+            }
+            while (second.size() < size[1]) {
+                second.add(randomValue(random));
+            }
+            TreeSet<Integer> expected = new TreeSet<>(first);
+            expected.retainAll(second);
+            
+            List<Integer> actual = new ArrayList<>();
+            for (int value : CompactIntSet.intersect(first, second)) {
+                actual.add(value);
+            }
+            assertEquals(new ArrayList<>(expected), actual
+                    , "Ошибка пересечения множеств размером " + size[0] + " и " + size[1] + ".");
+            assertArrayEquals(CompactIntSet.intersect(first, second), CompactIntSet.intersect(second, first)
+                    , "Пересечение зависит от порядка аргументов.");
+        }
+    }
+    
+    @Test
+    void sampleTakesEveryNthElement() {
+        Random random = new Random(11);
+        CompactIntSet set = new CompactIntSet();
+        //Массив, затем контейнеры-массивы и битовая карта плотного блока.
+        for (int target : new int[]{500, 30_000}) {
+            while (set.size() < target) {
+                set.add(randomValue(random));
+            }
+            int[] all = set.toIntArray();
+            assertArrayEquals(all, set.sample(all.length), "Выборка не длиннее множества должна быть целой.");
+            for (int limit : new int[]{1, 7, 100, all.length - 1}) {
+                int step = (all.length + limit - 1) / limit;
+                int[] expected = new int[(all.length + step - 1) / step];
+                for (int i = 0; i < expected.length; i++) {
+                    expected[i] = all[i * step];
+                }
+                assertArrayEquals(expected, set.sample(limit)
+                        , "Ошибка выборки " + limit + " из " + all.length + " элементов.");
+            }
+        }
+    }
+    
+    private int randomValue(Random random) {
+        //Плотный блок (уходит в битовую карту), несколько разреженных блоков и отрицательные числа.
+        switch (random.nextInt(3)) {
+            case 0:
+                return random.nextInt(10_000);
+            case 1:
+                return random.nextInt(1_000_000);
+            default:
+                return -random.nextInt(100_000);
+        }
+    }
+    
+    private void assertSameElements(TreeSet<Integer> expected, CompactIntSet actual) {
+        assertEquals(expected.size(), actual.size(), "Ошибка размера множества.");
+        List<Integer> actualElements = new ArrayList<>();
+        actual.forEachInt(actualElements::add);
+        assertEquals(new ArrayList<>(expected), actualElements, "Ошибка перебора элементов множества.");
+        for (int i = 0; i < 1_000; i++) {
+            int value = expected.isEmpty() ? i : expected.first() + i;
+            assertEquals(expected.contains(value), actual.contains(value), "Ошибка поиска элемента " + value);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentIntSetTest {
+    
+    @Test
+    void behavesLikeSortedSetOfIntegers() {
+        Random random = new Random(42);
+        ConcurrentIntSet actual = new ConcurrentIntSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(10_000) - 100;
+            if (i % 3 == 0) {
+                assertEquals(expected.remove(value), actual.remove(value), "Ошибка удаления элемента " + value);
+            } else {
+                assertEquals(expected.add(value), actual.add(value), "Ошибка добавления элемента " + value);
+            }
+        }
+        assertEquals(expected.size(), actual.size(), "Счётчик разошёлся с элементами.");
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), actual.toIntArray()
+                , "Элементы перебираются не по возрастанию.");
+        assertEquals(expected, actual);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertSame(actual, ConcurrentIntSet.from(actual), "Потокобезопасное множество не должно копироваться.");
+        assertEquals(Set.of(1, 2), ConcurrentIntSet.from(Set.of(2, 1)));
+        
+        actual.clear();
+        assertEquals(0, actual.size());
+        assertFalse(actual.contains(expected.first()));
+    }
+    
+    @Test
+    void concurrentAddsAndRemovesKeepExactSize() throws Exception {
+        ConcurrentIntSet set = new ConcurrentIntSet();
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = IntStream.range(0, threads).mapToObj(thread -> executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    int value = i * threads + thread;
+                    assertTrue(set.add(value));
+                    if (i % 4 == 0) {
+                        assertTrue(set.remove(value));
+                    }
+                }
+            })).collect(Collectors.toList());
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        
+        int expected = threads * perThread * 3 / 4;
+        assertEquals(expected, set.size(), "Потеряны изменения при параллельной записи.");
+        int[] values = set.toIntArray();
+        assertEquals(expected, values.length);
+        assertTrue(Arrays.stream(values).allMatch(value -> value / threads % 4 != 0));
+    }
+    
+    @Test
+    void closedSetRejectsNewElements() {
+        ConcurrentIntSet set = ConcurrentIntSet.of(1, 2);
+        set.close();
+        
+        assertFalse(set.add(3), "Закрытое множество приняло новый элемент.");
+        assertTrue(set.remove(1), "Из закрытого множества нельзя удалить элемент.");
+        assertEquals(Set.of(2), set);
+    }
+}
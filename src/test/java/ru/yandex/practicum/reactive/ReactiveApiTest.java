@@ -0,0 +1,126 @@
+package ru.yandex.practicum.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.service.FilmService;
+import ru.yandex.practicum.service.UserService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive", "filmorate.storage.dir="})
+class ReactiveApiTest {
+    @Autowired
+    WebTestClient client;
+    @Autowired
+    ApplicationContext context;
+    @Autowired
+    FilmService filmService;
+    @Autowired
+    UserService userService;
+    
+    @Test
+    void filmsLikesAndPopularOnNetty() {
+        assertTrue(context instanceof ReactiveWebServerApplicationContext);
+        assertEquals("NettyWebServer", ((ReactiveWebServerApplicationContext) context).getWebServer()
+                .getClass().getSimpleName(), "Реактивный API запущен не на Netty.");
+        
+        User user = client.post().uri("/users").bodyValue(User.builder().email("fan@example.com").login("fan")
+                        .name("Зритель").birthday(LocalDate.of(1990, 1, 1)).build())
+                .exchange().expectStatus().isOk().expectBody(User.class).returnResult().getResponseBody();
+        Film film = client.post().uri("/films").bodyValue(Film.builder().name("Фильм").description("Описание")
+                        .releaseDate(LocalDate.of(2000, 1, 1)).duration(90).build())
+                .exchange().expectStatus().isOk().expectBody(Film.class).returnResult().getResponseBody();
+        assertNotNull(user);
+        assertNotNull(film);
+        
+        client.put().uri("/films/{id}/like/{userId}", film.getId(), user.getId())
+                .exchange().expectStatus().isOk();
+        client.get().uri("/films/{id}/likes/count", film.getId())
+                .exchange().expectStatus().isOk().expectBody(Integer.class).isEqualTo(1);
+        client.get().uri("/films/popular?count=1")
+                .exchange().expectStatus().isOk().expectBody().jsonPath("$[0].id").isEqualTo(film.getId());
+        
+        String eTag = client.get().uri("/films/{id}", film.getId())
+                .exchange().expectStatus().isOk().returnResult(Film.class).getResponseHeaders().getETag();
+        assertNotNull(eTag, "Нет заголовка ETag.");
+        client.get().uri("/films/{id}", film.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange().expectStatus().isNotModified();
+        
+        client.get().uri("/films/{id}", 100_000).exchange().expectStatus().isNotFound();
+        client.get().uri("/films/{id}", "abc").exchange().expectStatus().isBadRequest();
+        client.get().uri("/films?limit=0").exchange().expectStatus().isBadRequest();
+    }
+    
+    @Test
+    void friendsAndStreamedLists() {
+        int[] ids = new int[3];
+        for (int i = 0; i < ids.length; i++) {
+            String login = "friend" + i;
+            ids[i] = client.post().uri("/users").bodyValue(User.builder().email(login + "@example.com").login(login)
+                            .name("Друг").birthday(LocalDate.of(1990, 1, 1)).build())
+                    .exchange().expectStatus().isOk().expectBody(User.class).returnResult().getResponseBody().getId();
+        }
+        client.put().uri("/users/{id}/friends/{friendId}", ids[0], ids[2]).exchange().expectStatus().isOk();
+        client.put().uri("/users/{id}/friends/{friendId}", ids[1], ids[2]).exchange().expectStatus().isOk();
+        
+        client.get().uri("/users/{id}/friends", ids[0])
+                .exchange().expectStatus().isOk().expectBody().jsonPath("$[0].id").isEqualTo(ids[2]);
+        client.get().uri("/users/{id}/friends/common/{otherId}", ids[0], ids[1])
+                .exchange().expectStatus().isOk().expectBody().jsonPath("$.length()").isEqualTo(1);
+        client.get().uri("/users/{id}/friends/suggestions", ids[0])
+                .exchange().expectStatus().isOk().expectBody().jsonPath("$[0].id").isEqualTo(ids[1]);
+        
+        List<User> all = client.get().uri("/users").exchange().expectStatus().isOk()
+                .expectBodyList(User.class).returnResult().getResponseBody();
+        List<User> streamed = client.get().uri("/users").accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(User.class).getResponseBody().collectList().block();
+        assertNotNull(all);
+        assertTrue(all.size() >= ids.length);
+        assertEquals(all, streamed, "Выгрузка NDJSON не совпадает с массивом JSON.");
+        
+        client.get().uri("/users/{id}/recommendations", ids[0])
+                .exchange().expectStatus().isOk().expectBody().jsonPath("$.length()").isEqualTo(0);
+        client.get().uri("/users/{id}/recommendations?count=0", ids[0]).exchange().expectStatus().isBadRequest();
+        
+        client.get().uri("/users?limit=2").exchange().expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.LINK, link -> assertTrue(link.contains("after="), link))
+                .expectBody().jsonPath("$.length()").isEqualTo(2);
+    }
+    
+    @Test
+    void fullListsMatchServletListsWithZeroId() {
+        client.post().uri("/films").bodyValue(Film.builder().id(0).name("Фильм 0").description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1)).duration(90).build()).exchange().expectStatus().isOk();
+        client.post().uri("/users").bodyValue(User.builder().id(0).email("zero@example.com").login("zero")
+                .name("Нулевой").birthday(LocalDate.of(1990, 1, 1)).build()).exchange().expectStatus().isOk();
+        
+        //Массив GET /films и GET /users в реактивном API собирается из перебора хранилища, в сервлетном - из списка.
+        List<Integer> films = client.get().uri("/films").exchange().expectStatus().isOk()
+                .expectBodyList(Film.class).returnResult().getResponseBody().stream()
+                .map(Film::getId).collect(Collectors.toList());
+        assertTrue(films.contains(0), "Фильм с ID = 0 пропал из списка всех фильмов.");
+        assertEquals(filmService.getAllFilms().stream().map(Film::getId).sorted().collect(Collectors.toList()),
+                films, "Список всех фильмов расходится с сервлетным API.");
+        List<Integer> users = client.get().uri("/users").exchange().expectStatus().isOk()
+                .expectBodyList(User.class).returnResult().getResponseBody().stream()
+                .map(User::getId).collect(Collectors.toList());
+        assertTrue(users.contains(0), "Пользователь с ID = 0 пропал из списка всех пользователей.");
+        assertEquals(userService.getAllUsers().stream().map(User::getId).sorted().collect(Collectors.toList()),
+                users, "Список всех пользователей расходится с сервлетным API.");
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.exception.ValidateException;
+import ru.yandex.practicum.model.BatchReport;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmImportServiceTest {
+    FilmStorage filmStorage = new InMemoryFilmStorage();
+    FilmService filmService = new FilmService(filmStorage, new InMemoryUserStorage());
+    FilmImportService importService = new FilmImportService(filmService, filmStorage,
+            Jackson2ObjectMapperBuilder.json().build());
+    
+    @Test
+    void importNdjsonReportsErrorsByLine() throws IOException {
+        String body = film(null, "фильм без ID") + "\n"
+                + "\n"
+                + "{\"name\": \"оборванная строка\"\n"
+                + film(10, "фильм с ID") + "\n"
+                + film(11, " ") + "\n"
+                + "{\"id\": 12, \"name\": \"фильм\", \"duration\": \"долгий\"}\n"
+                + film(10, "обновлённый фильм");
+        
+        BatchReport report = importService.importNdjson(stream(body));
+        
+        assertEquals(6, report.getProcessed(), "Пустая строка посчитана записью.");
+        assertEquals(3, report.getSucceeded());
+        assertEquals(3, report.getFailed());
+        assertEquals(List.of(3L, 5L, 6L), report.getErrors().stream().map(BatchReport.RecordError::getRecord)
+                .collect(Collectors.toList()), "Ошибки привязаны не к тем строкам.");
+        assertEquals(2, filmStorage.getAllFilms().size());
+        assertEquals("обновлённый фильм", filmStorage.getFilmById(10).getName());
+    }
+    
+    @Test
+    void importJsonArrayInBatches() throws IOException {
+        int count = FilmImportService.BATCH_SIZE * 2 + 10;
+        StringBuilder body = new StringBuilder("[");
+        for (int id = 1; id <= count; id++) {
+            body.append(id > 1 ? "," : "").append(film(id, "фильм " + id));
+        }
+        body.append(",{\"id\": 1, \"name\": \"фильм\", \"releaseDate\": \"вчера\"}]");
+        
+        BatchReport report = importService.importJsonArray(stream(body.toString()));
+        
+        assertEquals(count, report.getSucceeded());
+        assertEquals(1, report.getFailed());
+        assertEquals(count + 1, report.getErrors().get(0).getRecord());
+        assertEquals(count, filmStorage.getAllFilms().size());
+        assertTrue(report.getPerSecond() > 0, "Не рассчитана скорость загрузки.");
+        assertThrows(ValidateException.class, () -> importService.importJsonArray(stream(film(1, "не массив"))));
+    }
+    
+    private String film(Integer id, String name) {
+        return "{" + (id == null ? "" : "\"id\": " + id + ", ") + "\"name\": \"" + name + "\", "
+                + "\"releaseDate\": \"2000-01-01\", \"duration\": 90}";
+    }
+    
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
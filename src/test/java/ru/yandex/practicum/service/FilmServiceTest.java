@@ -1,11 +1,16 @@
 package ru.yandex.practicum.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.yandex.practicum.exception.NotFoundRecordInBD;
 import ru.yandex.practicum.exception.ValidateException;
+import ru.yandex.practicum.model.BatchReport;
 import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.FilmLike;
+import ru.yandex.practicum.model.User;
 import ru.yandex.practicum.storage.film.FilmStorage;
 import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
 import ru.yandex.practicum.storage.user.InMemoryUserStorage;
@@ -14,6 +19,10 @@ import ru.yandex.practicum.storage.user.UserStorage;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -66,6 +75,9 @@ class FilmServiceTest {
                 , "Ошибка тестирования при пустом 'name'.");
         assertThrows(ValidateException.class, () -> filmService.createFilm(filmNameIsBlank)
                 , "Ошибка тестирования при 'login', состоящем только из пробелов.");
+        assertThrows(ValidateException.class, () -> filmService.createFilm(filmIsCorrectly.toBuilder().id(4)
+                        .name("ф".repeat(FilmService.MAX_NAME_LENGTH + 1)).build())
+                , "Ошибка тестирования при 'name' длиннее столбца в БД.");
         
         expectedFilmList.add(filmNameIsCorrectly);
         myAssertEqualsList(expectedFilmList, filmService.getAllFilms()
@@ -212,6 +224,162 @@ class FilmServiceTest {
         
     }
     
+    @Test
+    void getPopularFilm() {
+        for (int id = 1; id <= 4; id++) {
+            filmService.createFilm(filmIsCorrectly.toBuilder().id(id).name("фильм " + id).build());
+            inMemoryUserStorage.addToStorage(User.builder().id(id).login("login" + id).email("email@" + id).build());
+        }
+        //Фильм №3 - два лайка, фильмы №2 и №4 - по одному, фильм №1 - без лайков.
+        filmService.addLikeForFilm(3, 1);
+        filmService.addLikeForFilm(3, 2);
+        filmService.addLikeForFilm(4, 1);
+        filmService.addLikeForFilm(2, 3);
+        filmService.addLikeForFilm(2, 3); //повторный лайк не учитывается.
+        
+        assertEquals(List.of(3, 2, 4, 1), filmIds(filmService.getPopularFilm(null))
+                , "Ошибка сортировки популярных фильмов: при равенстве лайков фильмы идут по возрастанию ID.");
+        assertEquals(List.of(3, 2), filmIds(filmService.getPopularFilm(2))
+                , "Ошибка ограничения размера списка популярных фильмов.");
+        
+        //После удаления лайков фильм №3 опускается в конец списка.
+        filmService.deleteLikeForFilm(3, 1);
+        filmService.deleteLikeForFilm(3, 2);
+        assertThrows(NotFoundRecordInBD.class, () -> filmService.deleteLikeForFilm(3, 2)
+                , "Ошибка тестирования удаления лайка, который пользователь не ставил.");
+        assertEquals(List.of(2, 4, 1, 3), filmIds(filmService.getPopularFilm(10))
+                , "Ошибка обновления индекса популярности после удаления лайков.");
+        
+        //Обновление фильма не сбрасывает его лайки.
+        filmService.updateFilm(filmIsCorrectly.toBuilder().id(4).name("новое название").build());
+        assertEquals(List.of(2, 4), filmIds(filmService.getPopularFilm(2))
+                , "Ошибка обновления фильма: потеряны лайки.");
+    }
+    
+    @Test
+    void getFilmsPage() {
+        for (int id = 1; id <= 7; id++) {
+            filmService.createFilm(filmIsCorrectly.toBuilder().id(id).name("фильм " + id).build());
+        }
+        inMemoryFilmStorage.removeFromLibrary(inMemoryFilmStorage.getFilmById(4));
+        
+        assertEquals(List.of(1, 2, 3), filmIds(filmService.getFilmsPage(null, 3))
+                , "Ошибка выдачи первой страницы фильмов.");
+        assertEquals(List.of(5, 6, 7), filmIds(filmService.getFilmsPage(3, 3))
+                , "Ошибка выдачи страницы после курсора: удалённый фильм не пропущен.");
+        assertEquals(List.of(), filmIds(filmService.getFilmsPage(7, 3))
+                , "Ошибка выдачи страницы после последнего фильма.");
+        assertEquals(6, filmService.getFilmsPage(0, null).size()
+                , "Ошибка выдачи страницы размера по умолчанию.");
+        assertThrows(ValidateException.class, () -> filmService.getFilmsPage(0, 0)
+                , "Ошибка тестирования страницы нулевого размера.");
+        
+        //ID задаёт и клиент: нулевые и отрицательные ID есть на первой странице и после отрицательного курсора.
+        filmService.createFilm(filmIsCorrectly.toBuilder().id(0).name("фильм 0").build());
+        filmService.createFilm(filmIsCorrectly.toBuilder().id(Integer.MIN_VALUE).name("фильм min").build());
+        assertEquals(List.of(Integer.MIN_VALUE, 0, 1), filmIds(filmService.getFilmsPage(null, 3))
+                , "Ошибка выдачи первой страницы с неположительными ID.");
+        assertEquals(List.of(0, 1), filmIds(filmService.getFilmsPage(-1, 2))
+                , "Ошибка выдачи страницы после отрицательного курсора.");
+        //Курсор Integer.MIN_VALUE - обычный ID: фильм с этим ID на следующую страницу не попадает.
+        assertEquals(List.of(0), filmIds(filmService.getFilmsPage(Integer.MIN_VALUE, 1))
+                , "Ошибка выдачи страницы после курсора Integer.MIN_VALUE.");
+    }
+    
+    @Test
+    void streamAllFilms() {
+        int count = 2 * FilmStorage.STREAM_PAGE_SIZE + 1;
+        //Перебор начинается с наименьшего ID, а не после нуля.
+        for (int id = -1; id <= count; id++) {
+            inMemoryFilmStorage.createInStorage(filmIsCorrectly.toBuilder().id(id).name("фильм " + id).build());
+        }
+        inMemoryFilmStorage.removeFromLibrary(inMemoryFilmStorage.getFilmById(FilmStorage.STREAM_PAGE_SIZE));
+        
+        List<Integer> streamed;
+        try (Stream<Film> films = filmService.streamAllFilms()) {
+            streamed = films.map(Film::getId).collect(Collectors.toList());
+        }
+        List<Integer> expected = IntStream.rangeClosed(-1, count).filter(id -> id != FilmStorage.STREAM_PAGE_SIZE)
+                .boxed().collect(Collectors.toList());
+        assertEquals(expected, streamed, "Ошибка перебора фильмов по страницам.");
+    }
+    
+    @Test
+    void addLikes() {
+        inMemoryUserStorage.addToStorage(User.builder().id(1).email("1@email").login("login1")
+                .birthday(LocalDate.of(2000, 1, 1)).build());
+        inMemoryUserStorage.addToStorage(User.builder().id(2).email("2@email").login("login2")
+                .birthday(LocalDate.of(2000, 1, 1)).build());
+        List<FilmLike> likes = new ArrayList<>();
+        for (int id = 1; id <= FilmService.BULK_BATCH_SIZE; id++) {
+            filmService.createFilm(filmIsCorrectly.toBuilder().id(id).build());
+            likes.add(new FilmLike(id, 1));
+        }
+        likes.add(new FilmLike(2, 2));
+        likes.add(new FilmLike(2, 1));
+        likes.add(new FilmLike(FilmService.BULK_BATCH_SIZE + 1, 1));
+        likes.add(new FilmLike(null, 1));
+        likes.add(new FilmLike(1, 99));
+        
+        BatchReport report = filmService.addLikes(likes);
+        
+        assertEquals(likes.size(), report.getProcessed());
+        assertEquals(FilmService.BULK_BATCH_SIZE + 1, report.getSucceeded(), "Ошибка подсчёта поставленных лайков.");
+        assertEquals(List.of(1002L, 1003L, 1004L, 1005L), report.getErrors().stream()
+                .map(BatchReport.RecordError::getRecord).sorted().collect(Collectors.toList())
+                , "Отклонены не те пары.");
+        assertEquals(List.of(2, 1), filmIds(filmService.getPopularFilm(2))
+                , "Лайки пачки не попали в индекс популярности.");
+        assertEquals(Set.of(1, 2), inMemoryFilmStorage.getFilmById(2).getLikes());
+    }
+    
+    @Test
+    void filmVersions() {
+        filmService.createFilm(filmIsCorrectly.toBuilder().id(1).build());
+        filmService.createFilm(filmIsCorrectly.toBuilder().id(2).build());
+        long filmsVersion = filmService.getFilmsVersion();
+        long filmVersion = filmService.getFilmVersion(1);
+        
+        filmService.addLikes(List.of());
+        inMemoryFilmStorage.addLike(1, 10);
+        assertEquals(filmsVersion, filmService.getFilmsVersion(), "Лайк изменил версию библиотеки.");
+        assertEquals(filmVersion, filmService.getFilmVersion(1), "Лайк изменил версию фильма.");
+        
+        filmService.updateFilm(filmIsCorrectly.toBuilder().id(2).name("новое название").build());
+        assertNotEquals(filmsVersion, filmService.getFilmsVersion()
+                , "Обновление фильма не изменило версию библиотеки.");
+        assertEquals(filmVersion, filmService.getFilmVersion(1), "Обновление другого фильма изменило версию фильма.");
+        
+        filmService.updateFilm(filmIsCorrectly.toBuilder().id(1).name("новое название").build());
+        assertNotEquals(filmVersion, filmService.getFilmVersion(1), "Обновление фильма не изменило его версию.");
+        
+        inMemoryFilmStorage.removeFromLibrary(inMemoryFilmStorage.getFilmById(1));
+        assertEquals(-1, filmService.getFilmVersion(1), "Удалённый фильм сохранил версию.");
+    }
+    
+    @Test
+    void likeCounters() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        FilmService service = new FilmService(inMemoryFilmStorage, inMemoryUserStorage, registry);
+        inMemoryUserStorage.addToStorage(User.builder().id(1).email("1@email").login("login1")
+                .birthday(LocalDate.of(2000, 1, 1)).build());
+        service.createFilm(filmIsCorrectly.toBuilder().id(1).build());
+        service.createFilm(filmIsCorrectly.toBuilder().id(2).build());
+        
+        service.addLikeForFilm(1, 1);
+        service.addLikeForFilm(1, 1);
+        service.addLikes(List.of(new FilmLike(2, 1), new FilmLike(3, 1)));
+        service.deleteLikeForFilm(1, 1);
+        
+        assertEquals(2, registry.get("filmorate.likes").tag("change", "added").counter().count(),
+                "Повторный или отклонённый лайк учтён как поставленный.");
+        assertEquals(1, registry.get("filmorate.likes").tag("change", "removed").counter().count());
+    }
+    
+    private List<Integer> filmIds(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+    
     /**
      * Метод сравнения списков.
      *
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.TestFixtures.film;
+
+class PopularFilmsCacheTest {
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    FilmStorage filmStorage = new InMemoryFilmStorage();
+    PopularFilmsCache cache = new PopularFilmsCache(filmStorage, objectMapper);
+    
+    @Test
+    void likesThatKeepOrderDoNotInvalidateCache() throws IOException {
+        for (int id = 1; id <= 150; id++) {
+            filmStorage.createInStorage(film(id, "фильм " + id));
+        }
+        for (int id = 1; id <= 100; id++) {
+            for (int userId = 1; userId <= 3; userId++) {
+                filmStorage.addLike(id, userId);
+            }
+        }
+        assertPopular(10);
+        assertPopular(10);
+        assertStats(1, 1);
+        
+        //Фильм за пределами первых мест не обогнал ни одного фильма из них.
+        filmStorage.addLike(150, 1);
+        //Фильм на первом месте остался первым.
+        filmStorage.addLike(1, 4);
+        assertPopular(10);
+        assertStats(2, 1);
+        
+        filmStorage.addLike(150, 2);
+        filmStorage.addLike(150, 3);
+        filmStorage.addLike(150, 4);
+        assertPopular(10);
+        assertStats(2, 2);
+    }
+    
+    @Test
+    void changesOfPopularFilmsInvalidateCache() throws IOException {
+        for (int id = 1; id <= 3; id++) {
+            filmStorage.createInStorage(film(id, "фильм " + id));
+        }
+        assertPopular(null);
+        filmStorage.addLike(3, 1);
+        assertPopular(null);
+        assertStats(0, 2);
+        
+        filmStorage.updateInStorage(film(3, "новое название"));
+        assertPopular(null);
+        assertStats(0, 3);
+        
+        filmStorage.removeFromLibrary(filmStorage.getFilmById(2));
+        assertPopular(null);
+        assertPopular(null);
+        assertStats(1, 4);
+        
+        assertPopular(FilmStorage.POPULAR_VERSION_DEPTH + 1);
+        assertEquals(1, cache.getStats().getBypasses(), "Запрос за пределами кеша не посчитан.");
+    }
+    
+    /**
+     * Ответ кеша совпадает со списком, прочитанным из хранилища.
+     */
+    private void assertPopular(Integer count) throws IOException {
+        int size = count == null ? PopularFilmsCache.DEFAULT_COUNT : count;
+        assertEquals(objectMapper.writeValueAsString(filmStorage.getPopularFilms(size)),
+                new String(cache.getPopularFilms(count), StandardCharsets.UTF_8), "Кеш выдал устаревший список.");
+    }
+    
+    private void assertStats(long hits, long misses) {
+        assertEquals(hits, cache.getStats().getHits(), "Неверное количество попаданий в кеш.");
+        assertEquals(misses, cache.getStats().getMisses(), "Неверное количество промахов кеша.");
+    }
+}
@@ -0,0 +1,227 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.exception.NotFoundRecordInBD;
+import ru.yandex.practicum.exception.ValidateException;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommendationServiceTest {
+    FilmStorage filmStorage = new InMemoryFilmStorage();
+    UserService userService = new UserService(new InMemoryUserStorage());
+    RecommendationService recommendations = new RecommendationService(filmStorage, userService);
+    
+    @Test
+    void recommendsFilmsOfSimilarUsers() {
+        createUsers(6);
+        createFilms(6);
+        like(1, 1, 2, 3);
+        like(2, 1, 2, 3, 4);
+        like(3, 1, 5);
+        like(4, 6);
+        like(5, 1, 2, 6);
+        
+        //Второй пользователь похож на первого сильнее пятого, у третьего с первым только один общий фильм.
+        assertEquals(List.of(4, 6), ids(recommendations.getRecommendations(1, null)));
+        assertEquals(List.of(4), ids(recommendations.getRecommendations(1, 1)));
+        //Ни с кем нет двух общих фильмов: соседи - пользователи с одним общим фильмом.
+        assertEquals(List.of(2, 3, 6, 4), ids(recommendations.getRecommendations(3, null)));
+        assertEquals(List.of(1, 2), ids(recommendations.getRecommendations(4, null)));
+        assertEquals(List.of(), recommendations.getRecommendations(6, null));
+    }
+    
+    @Test
+    void inverseIndexFollowsLikesAndRemovedFilms() {
+        createUsers(2);
+        createFilms(3);
+        like(1, 1, 2);
+        like(2, 1, 2, 3);
+        assertArrayEquals(new int[]{1, 2, 3}, filmStorage.likedFilmIds(2));
+        assertArrayEquals(new int[]{2, 3}, filmStorage.likedFilmCounts(new int[]{1, 2}));
+        
+        filmStorage.removeLike(2, 2);
+        filmStorage.removeFromLibrary(filmStorage.getFilmById(3));
+        assertArrayEquals(new int[]{1}, filmStorage.likedFilmIds(2));
+        assertArrayEquals(new int[]{1, 2}, filmStorage.likerIds(1));
+        assertEquals(List.of(2), ids(recommendations.getRecommendations(2, null)));
+        assertEquals(List.of(), recommendations.getRecommendations(1, null));
+    }
+    
+    @Test
+    void rejectsUnknownUserAndBadCount() {
+        createUsers(1);
+        assertThrows(NotFoundRecordInBD.class, () -> recommendations.getRecommendations(100, null));
+        assertThrows(ValidateException.class, () -> recommendations.getRecommendations(1, 0));
+        assertThrows(ValidateException.class, () -> recommendations.getRecommendations(1,
+                RecommendationService.MAX_COUNT + 1));
+    }
+    
+    @Test
+    void splitSearchFindsSameNeighboursAsFullScan() {
+        int users = 12_000;
+        int films = 60;
+        SplittableRandom random = new SplittableRandom(7);
+        createFilms(films);
+        for (int userId = 1; userId <= users; userId++) {
+            for (int filmId = 1; filmId <= films; filmId++) {
+                if (random.nextInt(3) == 0) {
+                    filmStorage.addLike(filmId, userId);
+                }
+            }
+        }
+        int[] liked = filmStorage.likedFilmIds(1);
+        int[][] likers = new int[liked.length][];
+        double[] weights = new double[liked.length];
+        for (int i = 0; i < liked.length; i++) {
+            likers[i] = filmStorage.likerIds(liked[i]);
+            weights[i] = 1 + random.nextInt(3);
+        }
+        assertTrue(Arrays.stream(likers).mapToInt(ids -> ids.length).sum() > SimilarUsers.LEAF_LIKES);
+        
+        double[] overlap = new double[users + 1];
+        int[] common = new int[users + 1];
+        for (int i = 0; i < liked.length; i++) {
+            for (int userId : likers[i]) {
+                overlap[userId] += weights[i];
+                common[userId]++;
+            }
+        }
+        common[1] = 0;
+        int[] counts = filmStorage.likedFilmCounts(IntStream.rangeClosed(0, users).toArray());
+        List<Integer> expected = IntStream.rangeClosed(1, users).boxed()
+                .filter(userId -> common[userId] >= RecommendationService.MIN_COMMON_FILMS)
+                .sorted((a, b) -> {
+                    int bySimilarity = Double.compare(overlap[b] / Math.sqrt(counts[b]),
+                            overlap[a] / Math.sqrt(counts[a]));
+                    return bySimilarity != 0 ? bySimilarity : Integer.compare(a, b);
+                })
+                .limit(RecommendationService.NEIGHBOURS)
+                .collect(Collectors.toList());
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SimilarUsers.Neighbours neighbours = pool.invoke(new SimilarUsers(filmStorage, likers, weights, 1,
+                    RecommendationService.NEIGHBOURS, RecommendationService.MIN_COMMON_FILMS));
+            assertEquals(expected, Arrays.stream(neighbours.top).map(n -> n.userId).collect(Collectors.toList()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    void sparseUserIdsAreSearchedWithoutDenseArrays() {
+        int[][] likers = {{5, 1_000_000, 2_000_000_000}, {5, 7, 2_000_000_000}};
+        double[] weights = {1, 2};
+        SimilarUsers.Neighbours twoCommon = new SimilarUsers(filmStorage, likers, weights, 7, 10, 2).invoke();
+        assertEquals(List.of(5, 2_000_000_000),
+                Arrays.stream(twoCommon.top).map(n -> n.userId).collect(Collectors.toList()));
+        SimilarUsers.Neighbours oneCommon = new SimilarUsers(filmStorage, likers, weights, 7, 2, 1).invoke();
+        assertEquals(List.of(5, 2_000_000_000),
+                Arrays.stream(oneCommon.top).map(n -> n.userId).collect(Collectors.toList()));
+        assertEquals(3.0, oneCommon.top[0].similarity);
+    }
+    
+    @Test
+    void filmsWithNegativeIdsAreScannedByLikeCount() {
+        createUsers(2);
+        for (int id : new int[]{-1, 1, 2}) {
+            filmStorage.createInStorage(Film.builder().id(id).name("фильм " + id).description("описание")
+                    .releaseDate(LocalDate.of(2000, 1, 1)).duration(90).build());
+        }
+        like(1, -1, 1);
+        like(2, 1, 2);
+        for (int userId = 1_000; userId < 1_000 + RecommendationService.MAX_SCANNED_LIKES - 1; userId++) {
+            filmStorage.addLike(-1, userId);
+        }
+        
+        //Редкий фильм 1 просматривается раньше популярного фильма -1, на который не хватает границы.
+        assertEquals(List.of(2), ids(recommendations.getRecommendations(1, null)));
+    }
+    
+    @Test
+    void minIntIdIsScored() {
+        createUsers(2);
+        for (int id : new int[]{Integer.MIN_VALUE, 1, 2}) {
+            filmStorage.createInStorage(Film.builder().id(id).name("фильм " + id).description("описание")
+                    .releaseDate(LocalDate.of(2000, 1, 1)).duration(90).build());
+        }
+        like(1, 1, 2);
+        like(2, Integer.MIN_VALUE, 1, 2);
+        assertEquals(List.of(Integer.MIN_VALUE), ids(recommendations.getRecommendations(1, null)));
+        
+        Scores scores = new Scores(1);
+        for (int i = 0; i < 100; i++) {
+            scores.add(Integer.MIN_VALUE, 1);
+        }
+        scores.add(0, 2);
+        assertEquals(2, scores.size());
+        assertEquals(100.0, scores.get(Integer.MIN_VALUE));
+        assertEquals(0.0, scores.get(Integer.MAX_VALUE));
+        assertArrayEquals(new int[]{Integer.MIN_VALUE}, scores.keys(3));
+        assertEquals(List.of(Integer.MIN_VALUE, 0),
+                Arrays.stream(scores.keys()).sorted().boxed().collect(Collectors.toList()));
+    }
+    
+    @Test
+    void neighboursAreSearchedOutsideCommonPool() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        filmStorage = new InMemoryFilmStorage() {
+            @Override
+            public int[] likedFilmCounts(int[] userIds) {
+                threads.add(Thread.currentThread().getName());
+                return super.likedFilmCounts(userIds);
+            }
+        };
+        recommendations = new RecommendationService(filmStorage, userService);
+        try {
+            createUsers(2);
+            createFilms(3);
+            like(1, 1, 2);
+            like(2, 1, 2, 3);
+            assertEquals(List.of(3), ids(recommendations.getRecommendations(1, null)));
+            assertFalse(threads.isEmpty());
+            assertTrue(threads.stream().allMatch(name -> name.startsWith("recommendations-")), threads.toString());
+        } finally {
+            recommendations.stop();
+        }
+    }
+    
+    private void createUsers(int count) {
+        for (int i = 1; i <= count; i++) {
+            userService.addToStorage(User.builder().email("user" + i + "@example.com").login("user" + i)
+                    .name("Пользователь " + i).birthday(LocalDate.of(1990, 1, 1)).build());
+        }
+    }
+    
+    private void createFilms(int count) {
+        for (int id = 1; id <= count; id++) {
+            filmStorage.createInStorage(Film.builder().id(id).name("фильм " + id).description("описание")
+                    .releaseDate(LocalDate.of(2000, 1, 1)).duration(90).build());
+        }
+    }
+    
+    private void like(int userId, int... filmIds) {
+        for (int filmId : filmIds) {
+            filmStorage.addLike(filmId, userId);
+        }
+    }
+    
+    private static List<Integer> ids(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+}
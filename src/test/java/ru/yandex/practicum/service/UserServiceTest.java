@@ -3,7 +3,10 @@ package ru.yandex.practicum.service;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.exception.NotFoundRecordInBD;
 import ru.yandex.practicum.exception.ValidateException;
+import ru.yandex.practicum.model.BatchReport;
+import ru.yandex.practicum.model.Friendship;
 import ru.yandex.practicum.model.User;
 import ru.yandex.practicum.storage.user.InMemoryUserStorage;
 import ru.yandex.practicum.storage.user.UserStorage;
@@ -12,6 +15,8 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -85,6 +90,16 @@ class UserServiceTest {
                 , "Ошибка тестирования при пустом 'login'.");
         assertThrows(ValidateException.class, () -> userService.addToStorage(userLoginIsBlank)
                 , "Ошибка тестирования при 'login', состоящем только из пробелов.");
+        String tooLong = "l".repeat(UserService.MAX_TEXT_LENGTH + 1);
+        assertThrows(ValidateException.class, () -> userService.addToStorage(userIsCorrectly.toBuilder()
+                        .login(tooLong).build())
+                , "Ошибка тестирования при 'login' длиннее столбца в БД.");
+        assertThrows(ValidateException.class, () -> userService.addToStorage(userIsCorrectly.toBuilder()
+                        .email(tooLong + "@email").build())
+                , "Ошибка тестирования при 'email' длиннее столбца в БД.");
+        assertThrows(ValidateException.class, () -> userService.addToStorage(userIsCorrectly.toBuilder()
+                        .name(tooLong).build())
+                , "Ошибка тестирования при 'name' длиннее столбца в БД.");
         
         expectedUserList.add(userIsCorrectly);
         assertEquals(expectedUserList, userService.getAllUsers()
@@ -361,7 +376,32 @@ class UserServiceTest {
                 , "Ошибка тестирования удаления из друзей: Количество друзей друга №2 не равно нулю.");
     }
     
-    
+    @Test
+    void updateInStorageWithLoginChange() {
+        User user = userService.addToStorage(userIsCorrectly.toBuilder().id(1).login("old_login")
+                .email("old@email").build());
+        
+        //Меняем логин и почту у существующего пользователя.
+        userService.updateInStorage(user.toBuilder().login("new_login").email("new@email").build());
+        assertEquals(1, inMemoryUserStorage.getUserByLogin("new_login").getId()
+                , "Ошибка тестирования поиска пользователя по новому логину.");
+        assertEquals(1, inMemoryUserStorage.getUserByEmail("new@email").getId()
+                , "Ошибка тестирования поиска пользователя по новой почте.");
+        assertNull(inMemoryUserStorage.getUserByLogin("old_login")
+                , "Старый логин пользователя остался в индексе.");
+        assertNull(inMemoryUserStorage.getUserByEmail("old@email")
+                , "Старая почта пользователя осталась в индексе.");
+        
+        //Старый логин свободен: пользователь с ним добавляется как новый.
+        User newUser = userService.addToStorage(userIsCorrectly.toBuilder().id(2).login("old_login").build());
+        assertEquals(2, newUser.getId(), "Ошибка тестирования добавления пользователя со старым логином.");
+        assertEquals(2, userService.getAllUsers().size()
+                , "Ошибка сравнения количества пользователей после смены логина.");
+        
+        userService.removeFromStorage(newUser);
+        assertNull(inMemoryUserStorage.getUserByLogin("old_login")
+                , "Логин удалённого пользователя остался в индексе.");
+    }
     
     
     /**
@@ -377,4 +417,198 @@ class UserServiceTest {
                 , message);
     }
     
-}
\ No newline at end of file
+    
+    @Test
+    void getCommonFriendsAndFriendsAfterRemove() {
+        for (int id = 1; id <= 5; id++) {
+            userService.addToStorage(userIsCorrectly.toBuilder().id(id).login("login" + id)
+                    .email("email" + id + "@email").build());
+        }
+        //У пользователей №1 и №2 общие друзья №3 и №5.
+        userService.addEachOtherAsFriends(1, 5);
+        userService.addEachOtherAsFriends(1, 3);
+        userService.addEachOtherAsFriends(1, 4);
+        userService.addEachOtherAsFriends(2, 5);
+        userService.addEachOtherAsFriends(2, 3);
+        assertEquals(List.of(3, 5), userIds(userService.getCommonFriends(1, 2))
+                , "Ошибка тестирования поиска общих друзей.");
+        assertEquals(List.of(3, 4, 5), userIds(userService.getUserFriends(1))
+                , "Ошибка тестирования выдачи друзей пользователя.");
+        
+        //Обновление пользователя не теряет его друзей, удаление пользователя убирает его из друзей.
+        userService.updateInStorage(userService.getUserById(3).toBuilder().name("new name").build());
+        assertEquals(List.of(3, 5), userIds(userService.getCommonFriends(1, 2))
+                , "После обновления пользователя потеряны его друзья.");
+        userService.removeFromStorage(userService.getUserById(5));
+        assertEquals(List.of(3), userIds(userService.getCommonFriends(1, 2))
+                , "Удалённый пользователь остался в списке общих друзей.");
+        assertEquals(List.of(3, 4), userIds(userService.getUserFriends(1))
+                , "Удалённый пользователь остался в списке друзей.");
+    }
+    
+    @Test
+    void getUsersPage() {
+        for (int id = 1; id <= 5; id++) {
+            userService.addToStorage(userIsCorrectly.toBuilder().id(id).email(id + "@email").login("login" + id)
+                    .build());
+        }
+        
+        assertEquals(List.of(1, 2), userIds(userService.getUsersPage(null, 2))
+                , "Ошибка выдачи первой страницы пользователей.");
+        assertEquals(List.of(3, 4), userIds(userService.getUsersPage(2, 2))
+                , "Ошибка выдачи страницы после курсора.");
+        assertEquals(List.of(5), userIds(userService.getUsersPage(4, 2))
+                , "Ошибка выдачи неполной последней страницы.");
+        assertThrows(ValidateException.class, () -> userService.getUsersPage(0, Paging.MAX_LIMIT + 1)
+                , "Ошибка тестирования слишком большой страницы.");
+        
+        userService.addToStorage(userIsCorrectly.toBuilder().id(0).email("0@email").login("login0").build());
+        assertEquals(List.of(0, 1), userIds(userService.getUsersPage(null, 2))
+                , "Пользователь с ID = 0 не попал на первую страницу.");
+        try (Stream<User> users = userService.streamAllUsers()) {
+            assertEquals(List.of(0, 1, 2, 3, 4, 5), users.map(User::getId).collect(Collectors.toList())
+                    , "Пользователь с ID = 0 не попал в перебор всех пользователей.");
+        }
+    }
+    
+    @Test
+    void addFriendships() {
+        for (int id = 1; id <= 3; id++) {
+            userService.addToStorage(userIsCorrectly.toBuilder().id(id).email(id + "@email").login("login" + id)
+                    .build());
+        }
+        
+        BatchReport report = userService.addFriendships(List.of(new Friendship(1, 2), new Friendship(1, 3),
+                new Friendship(2, 1), new Friendship(1, 99), new Friendship(3, null)));
+        
+        assertEquals(5, report.getProcessed());
+        assertEquals(2, report.getSucceeded(), "Ошибка подсчёта добавленных дружб.");
+        assertEquals(List.of(3L, 4L, 5L), report.getErrors().stream().map(BatchReport.RecordError::getRecord).sorted()
+                .collect(Collectors.toList()), "Отклонены не те пары.");
+        assertEquals(List.of(2, 3), userIds(userService.getUserFriends(1)), "Дружба пачки не записана.");
+        assertEquals(List.of(1), userIds(userService.getUserFriends(3))
+                , "Дружба пачки записана только в одну сторону.");
+    }
+    
+    @Test
+    void friendsVersions() {
+        for (int id = 1; id <= 4; id++) {
+            userService.addToStorage(userIsCorrectly.toBuilder().id(id).email(id + "@email").login("login" + id)
+                    .build());
+        }
+        inMemoryUserStorage.addFriendship(1, 2);
+        long version1 = userService.getFriendsVersion(1);
+        long version3 = userService.getFriendsVersion(3);
+        
+        inMemoryUserStorage.addFriendship(3, 4);
+        assertEquals(version1, userService.getFriendsVersion(1), "Чужая дружба изменила версию списка друзей.");
+        assertNotEquals(version3, userService.getFriendsVersion(3), "Дружба не изменила версию списка друзей.");
+        
+        //Друг пользователя 1 обновлён: его данные есть в списке друзей пользователя 1.
+        userService.updateInStorage(userIsCorrectly.toBuilder().id(2).email("2@email").login("newLogin").build());
+        assertNotEquals(version1, userService.getFriendsVersion(1), "Обновление друга не изменило версию списка.");
+        
+        version3 = userService.getFriendsVersion(3);
+        inMemoryUserStorage.removeFromStorage(inMemoryUserStorage.getUserById(4));
+        assertNotEquals(version3, userService.getFriendsVersion(3), "Удаление друга не изменило версию списка.");
+        assertEquals(-1, userService.getFriendsVersion(4), "Удалённый пользователь сохранил версию списка друзей.");
+    }
+    
+    @Test
+    void getFriendSuggestions() {
+        for (int id = 1; id <= 8; id++) {
+            userService.addToStorage(userIsCorrectly.toBuilder().id(id).email(id + "@email").login("login" + id)
+                    .build());
+        }
+        //Друзья №1: №2, №3, №4. Общих друзей с №5 и №6 - по два, с №7 - один; №3 и №4 уже друзья №1.
+        userService.addEachOtherAsFriends(1, 2);
+        userService.addEachOtherAsFriends(1, 3);
+        userService.addEachOtherAsFriends(1, 4);
+        userService.addEachOtherAsFriends(2, 5);
+        userService.addEachOtherAsFriends(2, 6);
+        userService.addEachOtherAsFriends(3, 4);
+        userService.addEachOtherAsFriends(3, 5);
+        userService.addEachOtherAsFriends(4, 6);
+        userService.addEachOtherAsFriends(4, 7);
+        
+        assertEquals(List.of(5, 6, 7), userIds(userService.getFriendSuggestions(1, null))
+                , "Ошибка порядка рекомендуемых друзей.");
+        assertEquals(List.of(5), userIds(userService.getFriendSuggestions(1, 1))
+                , "Ошибка размера списка рекомендуемых друзей.");
+        assertEquals(List.of(1, 3, 6), userIds(userService.getFriendSuggestions(7, null))
+                , "Ошибка рекомендации друзей единственного друга.");
+        assertEquals(List.of(), userService.getFriendSuggestions(8, null)
+                , "Пользователю без друзей рекомендованы друзья.");
+        assertThrows(NotFoundRecordInBD.class, () -> userService.getFriendSuggestions(99, null));
+        assertThrows(ValidateException.class, () -> userService.getFriendSuggestions(1, 0));
+        assertThrows(ValidateException.class, () -> userService.getFriendSuggestions(1,
+                UserService.SUGGESTIONS_MAX_COUNT + 1));
+    }
+    
+    @Test
+    void getFriendSuggestionsOfUserWithManyFriends() {
+        int friends = 3 * UserService.MAX_SAMPLED_FRIENDS;
+        for (int id = 1; id <= friends + 3; id++) {
+            userService.addToStorage(userIsCorrectly.toBuilder().id(id).email(id + "@email").login("login" + id)
+                    .build());
+        }
+        for (int id = 2; id <= friends + 1; id++) {
+            userService.addEachOtherAsFriends(1, id);
+        }
+        //Из друзей №1 перебирается каждый третий; дружба кандидатов-друзей проверяется в хранилище.
+        for (int id = 2; id <= 61; id++) {
+            userService.addEachOtherAsFriends(friends + 2, id);
+            userService.addEachOtherAsFriends(id, id + 3);
+        }
+        for (int id = 2; id <= 31; id++) {
+            userService.addEachOtherAsFriends(friends + 3, id);
+        }
+        
+        assertEquals(List.of(friends + 2, friends + 3), userIds(userService.getFriendSuggestions(1, null))
+                , "Друзья пользователя попали в рекомендуемые друзья или потерян кандидат.");
+    }
+    
+    @Test
+    void getFriendSuggestionsOfUserWithThinnedSample() {
+        int friends = UserService.MAX_SAMPLED_FRIENDS * 3 / 2;
+        for (int id = 1; id <= friends + 2; id++) {
+            userService.addToStorage(userIsCorrectly.toBuilder().id(id).email(id + "@email").login("login" + id)
+                    .build());
+        }
+        for (int id = 2; id <= friends + 1; id++) {
+            userService.addEachOtherAsFriends(1, id);
+        }
+        //Выборка из каждого второго друга короче MAX_SAMPLED_FRIENDS, но содержит не всех друзей №1.
+        for (int id = 2; id <= 61; id++) {
+            userService.addEachOtherAsFriends(id, id + 1);
+            userService.addEachOtherAsFriends(friends + 2, id);
+        }
+        
+        List<Integer> suggestions = userIds(userService.getFriendSuggestions(1, UserService.SUGGESTIONS_MAX_COUNT));
+        assertEquals(List.of(friends + 2), suggestions, "Друзья пользователя попали в рекомендуемые друзья.");
+    }
+    
+    @Test
+    void getFriendSuggestionsWithNegativeIds() {
+        for (int id = -3; id <= 2; id++) {
+            userService.addToStorage(userIsCorrectly.toBuilder().id(id).email(id + "@email").login("login" + id)
+                    .build());
+        }
+        //Друзья №0: №-3 и №1. Общих друзей с №2 - два, с №-2 и №-1 - по одному.
+        userService.addEachOtherAsFriends(0, -3);
+        userService.addEachOtherAsFriends(0, 1);
+        userService.addEachOtherAsFriends(-3, -1);
+        userService.addEachOtherAsFriends(-3, 2);
+        userService.addEachOtherAsFriends(1, 2);
+        userService.addEachOtherAsFriends(1, -2);
+        
+        assertEquals(List.of(2, -2, -1), userIds(userService.getFriendSuggestions(0, null))
+                , "Ошибка порядка рекомендуемых друзей с отрицательными ID.");
+    }
+    
+    private List<Integer> userIds(List<User> users) {
+        List<Integer> ids = new ArrayList<>();
+        users.forEach(user -> ids.add(user.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+    
+    @TempDir
+    Path storageDir;
+    
+    @Test
+    void nextIdStartsFromOneAndSkipsSeededIds() {
+        IdGenerator idGenerator = new IdGenerator();
+        assertEquals(1, idGenerator.nextId(), "Выдача ID должна начинаться с единицы.");
+        assertEquals(2, idGenerator.nextId());
+        
+        //ID, пришедшие в обход генератора, больше не выдаются.
+        idGenerator.seed(10);
+        idGenerator.seed(5);
+        assertEquals(11, idGenerator.nextId(), "Генератор выдал ID, уже занятый в хранилище.");
+    }
+    
+    @Test
+    void nextIdIsUniqueUnderConcurrency() throws InterruptedException {
+        IdGenerator idGenerator = new IdGenerator(storageDir.resolve("films.hi"), 10);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    ids.add(idGenerator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS), "Потоки теста не завершились.");
+        
+        assertEquals(8_000, ids.size(), "Генератор выдал повторяющиеся ID.");
+        assertEquals(8_000, idGenerator.getLastId(), "Генератор пропустил ID внутри работающего блока.");
+    }
+    
+    @Test
+    void nextIdContinuesAfterRestart() {
+        IdGenerator beforeRestart = IdGenerator.inDirectory(storageDir.toString(), "users");
+        int lastIssued = 0;
+        for (int i = 0; i < 1_500; i++) {
+            lastIssued = beforeRestart.nextId();
+        }
+        beforeRestart.seed(1_700);
+        
+        IdGenerator afterRestart = IdGenerator.inDirectory(storageDir.toString(), "users");
+        int next = afterRestart.nextId();
+        assertTrue(next > 1_700 && next > lastIssued, "После перезапуска выдан уже использованный ID = " + next);
+        assertEquals(2 * IdGenerator.DEFAULT_BLOCK_SIZE + 1, next
+                , "После перезапуска выдача должна продолжаться со следующего блока.");
+    }
+}
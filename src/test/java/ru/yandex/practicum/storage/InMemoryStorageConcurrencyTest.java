@@ -0,0 +1,229 @@
+package ru.yandex.practicum.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.TestFixtures.film;
+import static ru.yandex.practicum.TestFixtures.user;
+
+/**
+ * Нагрузочные тесты хранилищ в памяти: несколько потоков одновременно пишут и читают одни и те же таблицы.
+ */
+class InMemoryStorageConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int RECORDS_PER_THREAD = 5_000;
+    
+    FilmStorage inMemoryFilmStorage;
+    UserStorage inMemoryUserStorage;
+    ExecutorService executor;
+    
+    @BeforeEach
+    void setUp() {
+        inMemoryFilmStorage = new InMemoryFilmStorage();
+        inMemoryUserStorage = new InMemoryUserStorage();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "Потоки теста не завершились.");
+    }
+    
+    @Test
+    void concurrentCreateFilmsLosesNothing() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                int id = thread * RECORDS_PER_THREAD + i;
+                inMemoryFilmStorage.createInStorage(film(id, "фильм " + id));
+            }
+        });
+        
+        assertEquals(THREADS * RECORDS_PER_THREAD, inMemoryFilmStorage.getAllFilms().size()
+                , "При параллельном добавлении фильмов часть записей потеряна.");
+        for (int id = 0; id < THREADS * RECORDS_PER_THREAD; id++) {
+            assertNotNull(inMemoryFilmStorage.getFilmById(id), "Не найден фильм с ID = " + id + ".");
+        }
+    }
+    
+    @Test
+    void concurrentUpdateAndReadOfSameFilm() throws Exception {
+        inMemoryFilmStorage.createInStorage(film(1, "исходное название"));
+        
+        runConcurrently(thread -> {
+            for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                if (thread % 2 == 0) {
+                    inMemoryFilmStorage.updateInStorage(film(1, "название " + thread + "-" + i));
+                } else {
+                    Film film = inMemoryFilmStorage.getFilmById(1);
+                    assertNotNull(film, "Читатель не увидел обновляемый фильм.");
+                    assertEquals(1, film.getId());
+                    inMemoryFilmStorage.getAllFilms();
+                }
+            }
+        });
+        
+        assertEquals(1, inMemoryFilmStorage.getAllFilms().size()
+                , "Обновление одного и того же фильма породило лишние записи.");
+    }
+    
+    @Test
+    void concurrentCreateAndRemoveFilms() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                int id = thread * RECORDS_PER_THREAD + i;
+                Film film = film(id, "фильм " + id);
+                inMemoryFilmStorage.createInStorage(film);
+                if (i % 2 == 0) {
+                    assertSame(film, inMemoryFilmStorage.removeFromLibrary(film)
+                            , "Не удалён только что добавленный фильм с ID = " + id + ".");
+                }
+            }
+        });
+        
+        assertEquals(THREADS * RECORDS_PER_THREAD / 2, inMemoryFilmStorage.getAllFilms().size()
+                , "После параллельного добавления и удаления осталось неверное количество фильмов.");
+    }
+    
+    @Test
+    void concurrentLikesKeepPopularityIndexConsistent() throws Exception {
+        int filmCount = 10;
+        for (int id = 1; id <= filmCount; id++) {
+            inMemoryFilmStorage.createInStorage(film(id, "фильм " + id));
+        }
+        
+        //Поток с номером N ставит лайки фильмам с ID от 1 до N + 1, а потом снимает лайк фильму №1.
+        runConcurrently(thread -> {
+            for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                int userId = thread * RECORDS_PER_THREAD + i;
+                for (int filmId = 1; filmId <= thread + 1; filmId++) {
+                    assertTrue(inMemoryFilmStorage.addLike(filmId, userId), "Лайк не поставлен.");
+                }
+                assertTrue(inMemoryFilmStorage.removeLike(1, userId), "Лайк не удалён.");
+                inMemoryFilmStorage.getPopularFilms(3);
+            }
+        });
+        
+        List<Film> popular = inMemoryFilmStorage.getPopularFilms(filmCount);
+        assertEquals(filmCount, popular.size(), "В индексе популярности потеряны фильмы.");
+        //Фильм №K (K >= 2) получил лайки от потоков с номерами K - 1 и выше.
+        int[] expectedIds = {2, 3, 4, 5, 6, 7, 8, 1, 9, 10};
+        for (int i = 0; i < filmCount; i++) {
+            Film film = popular.get(i);
+            assertEquals(expectedIds[i], film.getId(), "Нарушен порядок фильмов в индексе популярности.");
+            int expectedLikes = film.getId() == 1 || film.getId() > THREADS
+                    ? 0 : (THREADS - film.getId() + 1) * RECORDS_PER_THREAD;
+            assertEquals(expectedLikes, film.getLikes() == null ? 0 : film.getLikes().size()
+                    , "Потеряны лайки фильма с ID = " + film.getId() + ".");
+        }
+    }
+    
+    @Test
+    void concurrentLikesOfOneFilmKeepExactCount() throws Exception {
+        inMemoryFilmStorage.createInStorage(film(1, "популярный фильм"));
+        inMemoryFilmStorage.createInStorage(film(2, "фильм"));
+        inMemoryFilmStorage.addLike(2, -1);
+        
+        //Все потоки ставят лайки одному фильму; каждый второй лайк сразу снимается.
+        runConcurrently(thread -> {
+            for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                int userId = thread * RECORDS_PER_THREAD + i;
+                assertTrue(inMemoryFilmStorage.addLike(1, userId), "Лайк не поставлен.");
+                assertFalse(inMemoryFilmStorage.addLike(1, userId), "Повторный лайк поставлен.");
+                if (i % 2 == 1) {
+                    assertTrue(inMemoryFilmStorage.removeLike(1, userId), "Лайк не удалён.");
+                }
+            }
+        });
+        
+        int expectedLikes = THREADS * RECORDS_PER_THREAD / 2;
+        assertEquals(expectedLikes, inMemoryFilmStorage.likeCount(1), "Счётчик лайков разошёлся с лайками.");
+        assertEquals(expectedLikes, inMemoryFilmStorage.getFilmById(1).getLikes().toIntArray().length);
+        assertEquals(-1, inMemoryFilmStorage.likeCount(3), "Посчитаны лайки несуществующего фильма.");
+        assertEquals(1, inMemoryFilmStorage.getPopularFilms(1).get(0).getId()
+                , "Индекс популярности не пересчитан после лайков.");
+    }
+    
+    @Test
+    void concurrentAddUsersLosesNothing() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                int id = thread * RECORDS_PER_THREAD + i;
+                inMemoryUserStorage.addToStorage(user(id, "login" + id));
+                assertNotNull(inMemoryUserStorage.getUserById(id), "Не найден пользователь с ID = " + id + ".");
+            }
+        });
+        
+        assertEquals(THREADS * RECORDS_PER_THREAD, inMemoryUserStorage.getAllUsersFromStorage().size()
+                , "При параллельном добавлении пользователей часть записей потеряна.");
+    }
+    
+    @Test
+    void concurrentUpdateAndRemoveUsers() throws Exception {
+        for (int id = 0; id < THREADS * RECORDS_PER_THREAD; id++) {
+            inMemoryUserStorage.addToStorage(user(id, "login" + id));
+        }
+        
+        runConcurrently(thread -> {
+            for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                int id = thread * RECORDS_PER_THREAD + i;
+                User updated = user(id, "new_login" + id);
+                inMemoryUserStorage.updateInStorage(updated);
+                if (i % 2 == 1) {
+                    assertSame(updated, inMemoryUserStorage.removeFromStorage(updated)
+                            , "Не удалён только что обновлённый пользователь с ID = " + id + ".");
+                }
+            }
+        });
+        
+        assertEquals(THREADS * RECORDS_PER_THREAD / 2, inMemoryUserStorage.getAllUsersFromStorage().size()
+                , "После параллельного обновления и удаления осталось неверное количество пользователей.");
+        assertNull(inMemoryUserStorage.getUserById(null), "Поиск по ID = null должен возвращать null.");
+    }
+    
+    /**
+     * Запуск задачи одновременно во всех потоках теста.
+     * Потоки стартуют по общему сигналу, исключения из потоков пробрасываются в тест.
+     *
+     * @param task задача, получающая номер потока.
+     */
+    private void runConcurrently(ThreadTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            final int number = thread;
+            Callable<Void> callable = () -> {
+                start.await();
+                task.run(number);
+                return null;
+            };
+            futures.add(executor.submit(callable));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
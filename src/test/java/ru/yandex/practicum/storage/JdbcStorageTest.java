@@ -0,0 +1,208 @@
+package ru.yandex.practicum.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.FilmLike;
+import ru.yandex.practicum.model.Friendship;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.film.FilmDbStorage;
+import ru.yandex.practicum.storage.film.FilmStorage;
+import ru.yandex.practicum.storage.user.UserDbStorage;
+import ru.yandex.practicum.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.TestFixtures.film;
+import static ru.yandex.practicum.TestFixtures.user;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "filmorate.storage.type=jdbc",
+        "spring.datasource.url=jdbc:h2:mem:jdbc-storage-test;DB_CLOSE_DELAY=-1"})
+class JdbcStorageTest {
+    
+    @Autowired
+    FilmStorage filmStorage;
+    @Autowired
+    UserStorage userStorage;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+    
+    @Test
+    void storageTypeSelectsJdbcBackend() {
+        assertTrue(filmStorage instanceof FilmDbStorage, "Свойство filmorate.storage.type не выбрало хранилище в БД.");
+        assertTrue(userStorage instanceof UserDbStorage, "Свойство filmorate.storage.type не выбрало хранилище в БД.");
+    }
+    
+    @Test
+    void filmsLikesAndPopularity() {
+        for (int id = 1; id <= 3; id++) {
+            filmStorage.createInStorage(film(id, "фильм " + id));
+        }
+        assertTrue(filmStorage.addLike(2, 10));
+        assertTrue(filmStorage.addLike(2, 11));
+        assertTrue(filmStorage.addLike(3, 10));
+        assertFalse(filmStorage.addLike(3, 10), "Повторный лайк записан.");
+        assertFalse(filmStorage.addLike(99, 10), "Записан лайк несуществующему фильму.");
+        assertEquals(List.of(2, 3, 1), ids(filmStorage.getPopularFilms(10)), "Нарушен порядок популярных фильмов.");
+        assertEquals(List.of(2, 3), ids(filmStorage.getFilmsPage(1, 5)), "Ошибка выдачи страницы фильмов.");
+        assertEquals(List.of(1, 2, 3), ids(filmStorage.streamAllFilms().collect(Collectors.toList())),
+                "Ошибка перебора фильмов.");
+        assertArrayEquals(new int[]{2, 3}, filmStorage.likedFilmIds(10), "Ошибка обратного индекса лайков.");
+        assertArrayEquals(new int[]{10, 11}, filmStorage.likerIds(2));
+        assertArrayEquals(new int[]{2, 1, 0}, filmStorage.likedFilmCounts(new int[]{10, 11, 12}));
+        
+        //Обновление фильма не теряет лайки.
+        Film updated = filmStorage.updateInStorage(film(2, "новое название"));
+        assertEquals(Set.of(10, 11), updated.getLikes());
+        assertEquals("новое название", filmStorage.getFilmById(2).getName());
+        
+        assertTrue(filmStorage.removeLike(2, 10));
+        assertTrue(filmStorage.removeLike(2, 11));
+        assertFalse(filmStorage.removeLike(2, 11), "Удалён несуществующий лайк.");
+        assertEquals(List.of(3), ids(filmStorage.getPopularFilms(1)));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE film_id = 2", Integer.class),
+                "Счётчик лайков разошёлся с таблицей лайков.");
+        
+        assertNotNull(filmStorage.removeFromLibrary(filmStorage.getFilmById(3)));
+        assertNull(filmStorage.getFilmById(3));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class),
+                "Лайки удалённого фильма остались в БД.");
+        assertEquals(4, filmStorage.generateId(), "ID выдан без учёта фильмов в БД.");
+    }
+    
+    @Test
+    void putAllUpdatesAndInsertsFilms() {
+        filmStorage.createInStorage(film(1, "фильм 1"));
+        assertTrue(filmStorage.addLike(1, 10));
+        Film liked = film(3, "фильм 3").toBuilder().likes(Set.of(10)).build();
+        
+        filmStorage.putAll(List.of(film(1, "новое название"), film(2, "фильм 2"), liked, film(2, "фильм 2, повтор")));
+        
+        assertEquals(List.of(1, 2, 3), ids(filmStorage.getAllFilms()));
+        assertEquals("новое название", filmStorage.getFilmById(1).getName());
+        assertEquals(Set.of(10), filmStorage.getFilmById(1).getLikes(), "Обновление пачкой потеряло лайки.");
+        assertEquals("фильм 2, повтор", filmStorage.getFilmById(2).getName(), "Записан не последний вариант фильма.");
+        assertEquals(Set.of(10), filmStorage.getFilmById(3).getLikes());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE film_id = 3", Integer.class),
+                "Счётчик лайков разошёлся с таблицей лайков.");
+        
+        boolean[] added = filmStorage.addLikes(List.of(new FilmLike(1, 10), new FilmLike(1, 11), new FilmLike(1, 11),
+                new FilmLike(2, 10), new FilmLike(99, 10)));
+        assertArrayEquals(new boolean[]{false, true, false, true, false}, added);
+        assertEquals(List.of(1, 2, 3), ids(filmStorage.getPopularFilms(3)), "Пачка лайков не изменила популярность.");
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE film_id = 1", Integer.class),
+                "Счётчик лайков разошёлся с таблицей лайков.");
+    }
+    
+    @Test
+    void usersFriendsAndCommonFriends() {
+        for (int id = 1; id <= 4; id++) {
+            userStorage.addToStorage(user(id, "login" + id));
+        }
+        assertTrue(userStorage.addFriendship(1, 2));
+        assertTrue(userStorage.addFriendship(1, 3));
+        assertTrue(userStorage.addFriendship(4, 2));
+        assertTrue(userStorage.addFriendship(4, 3));
+        assertFalse(userStorage.addFriendship(2, 1), "Повторно добавлена существующая дружба.");
+        assertFalse(userStorage.addFriendship(1, 99), "Добавлена дружба с несуществующим пользователем.");
+        
+        assertArrayEquals(new int[]{2, 3}, userStorage.getFriendIds(1));
+        assertArrayEquals(new int[]{1, 4}, userStorage.getFriendIds(2), "Дружба записана только в одну сторону.");
+        assertArrayEquals(new int[]{2, 3}, userStorage.getCommonFriendIds(1, 4));
+        assertArrayEquals(new int[]{2}, userStorage.sampleFriendIds(1, 1), "Ошибка выборки каждого n-го друга.");
+        assertArrayEquals(new int[]{1, 4}, userStorage.sampleFriendIds(2, 5));
+        assertArrayEquals(new int[]{2, 2, 0}, userStorage.friendCounts(new int[]{1, 2, 99}));
+        assertTrue(userStorage.areFriends(1, 2));
+        assertFalse(userStorage.areFriends(1, 4));
+        assertEquals(List.of(3, 1), ids(userStorage.getUsersByIds(new int[]{3, 99, 1})));
+        assertEquals(List.of(2, 3), ids(userStorage.getUsersPage(1, 2)), "Ошибка выдачи страницы пользователей.");
+        assertEquals(Set.of(2, 3), userStorage.getUserById(1).getIdsFriends());
+        assertEquals(2, userStorage.getUserByLogin("login2").getId());
+        assertEquals(3, userStorage.getUserByEmail("login3@email").getId());
+        
+        //Обновление пользователя не теряет друзей.
+        User updated = userStorage.updateInStorage(user(1, "newLogin"));
+        assertEquals(Set.of(2, 3), updated.getIdsFriends());
+        assertNull(userStorage.getUserByLogin("login1"));
+        
+        assertTrue(userStorage.removeFriendship(3, 1));
+        assertFalse(userStorage.removeFriendship(3, 1), "Удалена несуществующая дружба.");
+        assertArrayEquals(new int[]{2}, userStorage.getCommonFriendIds(1, 4));
+        
+        assertNotNull(userStorage.removeFromStorage(userStorage.getUserById(2)));
+        assertArrayEquals(new int[0], userStorage.getFriendIds(1), "Удалённый пользователь остался в друзьях.");
+        assertEquals(List.of(1, 3, 4), ids(userStorage.getAllUsersFromStorage()));
+        
+        assertArrayEquals(new boolean[]{true, false, false, false}, userStorage.addFriendships(List.of(
+                new Friendship(1, 3), new Friendship(3, 1), new Friendship(1, 2), new Friendship(4, 3))));
+        assertArrayEquals(new int[]{1, 4}, userStorage.getFriendIds(3));
+        assertArrayEquals(new int[]{3}, userStorage.getFriendIds(1), "Дружба пачки записана не в обе стороны.");
+    }
+    
+    @Test
+    void pagesStartFromLowestId() {
+        for (int id : new int[]{Integer.MIN_VALUE, -1, 0, 1}) {
+            filmStorage.createInStorage(film(id, "фильм " + id));
+            userStorage.addToStorage(user(id, "login" + (id == Integer.MIN_VALUE ? "min" : id)));
+        }
+        assertEquals(List.of(Integer.MIN_VALUE, -1, 0), ids(filmStorage.getFilmsPage(null, 3)));
+        assertEquals(List.of(0, 1), ids(filmStorage.getFilmsPage(-1, 3)));
+        assertEquals(List.of(-1), ids(filmStorage.getFilmsPage(Integer.MIN_VALUE, 1)));
+        assertEquals(List.of(Integer.MIN_VALUE, -1), ids(userStorage.getUsersPage(null, 2)));
+    }
+    
+    @Test
+    void concurrentCreatesWithSameIdDoNotFail() throws Exception {
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int id = 1; id <= 20; id++) {
+                int recordId = id;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < threads; thread++) {
+                    String name = "поток " + thread;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        filmStorage.createInStorage(film(recordId, name));
+                        userStorage.addToStorage(user(recordId, "login" + recordId));
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(20, filmStorage.getAllFilms().size(), "Одновременное создание задвоило фильмы.");
+        assertEquals(20, userStorage.userCount(), "Одновременное создание задвоило пользователей.");
+    }
+    
+    private List<Integer> ids(List<?> entities) {
+        return entities.stream()
+                .map(entity -> entity instanceof Film ? ((Film) entity).getId() : ((User) entity).getId())
+                .collect(Collectors.toList());
+    }
+}
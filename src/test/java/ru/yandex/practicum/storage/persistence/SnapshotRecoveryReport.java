@@ -0,0 +1,99 @@
+package ru.yandex.practicum.storage.persistence;
+
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Отчёт о времени восстановления хранилища после перезапуска: только журнал против снимка с хвостом журнала.
+ * Запуск (не тест, surefire его не выполняет):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.yandex.practicum.storage.persistence.SnapshotRecoveryReport \
+ *     -Dexec.args="1000000 1000000 5000000 2000000"
+ * </pre>
+ * Аргументы: количество фильмов, количество пользователей, количество лайков, количество пар друзей.
+ */
+public class SnapshotRecoveryReport {
+    
+    public static void main(String[] args) throws IOException {
+        int films = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int likes = args.length > 2 ? Integer.parseInt(args[2]) : 5_000_000;
+        int friendships = args.length > 3 ? Integer.parseInt(args[3]) : 2_000_000;
+        Path dir = Files.createTempDirectory("filmorate-recovery");
+        PersistenceSettings settings = new PersistenceSettings(dir.toString(), FsyncPolicy.NEVER, 0, 0);
+        try {
+            System.out.printf("Фильмов: %,d, пользователей: %,d, лайков: %,d, пар друзей: %,d%n",
+                    films, users, likes, friendships);
+            InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(settings);
+            InMemoryUserStorage userStorage = new InMemoryUserStorage(settings);
+            fill(filmStorage, userStorage, films, users, likes, friendships);
+            filmStorage.close();
+            userStorage.close();
+            System.out.printf("Журнал: %,d байт, восстановление: %,d мс%n", size(dir, ".wal"), restart(settings));
+            
+            filmStorage = new InMemoryFilmStorage(settings);
+            userStorage = new InMemoryUserStorage(settings);
+            long start = System.nanoTime();
+            filmStorage.writeSnapshot();
+            userStorage.writeSnapshot();
+            System.out.printf("Запись снимков: %,d мс%n", (System.nanoTime() - start) / 1_000_000);
+            filmStorage.close();
+            userStorage.close();
+            System.out.printf("Снимки: %,d байт, восстановление: %,d мс%n", size(dir, ".snapshot"), restart(settings));
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+    
+    private static void fill(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage,
+                             int films, int users, int likes, int friendships) {
+        Random random = new Random(1);
+        for (int id = 1; id <= films; id++) {
+            filmStorage.createInStorage(Film.builder().id(id).name("фильм " + id).description("описание")
+                    .releaseDate(LocalDate.of(2000, 1, 1)).duration(90).build());
+        }
+        for (int id = 1; id <= users; id++) {
+            userStorage.addToStorage(User.builder().id(id).email("user" + id + "@email").login("user" + id)
+                    .name("user" + id).birthday(LocalDate.of(1990, 1, 1)).build());
+        }
+        for (int i = 0; i < likes; i++) {
+            filmStorage.addLike(1 + random.nextInt(films), 1 + random.nextInt(users));
+        }
+        for (int i = 0; i < friendships; i++) {
+            userStorage.addFriendship(1 + random.nextInt(users), 1 + random.nextInt(users));
+        }
+    }
+    
+    /**
+     * Время запуска хранилищ на файлах каталога.
+     */
+    private static long restart(PersistenceSettings settings) {
+        long start = System.nanoTime();
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(settings);
+        InMemoryUserStorage userStorage = new InMemoryUserStorage(settings);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        filmStorage.close();
+        userStorage.close();
+        return elapsed;
+    }
+    
+    private static long size(Path dir, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+    }
+}
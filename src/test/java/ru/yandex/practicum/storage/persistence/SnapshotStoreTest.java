@@ -0,0 +1,178 @@
+package ru.yandex.practicum.storage.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.model.User;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.TestFixtures.film;
+import static ru.yandex.practicum.TestFixtures.user;
+
+class SnapshotStoreTest {
+    
+    @TempDir
+    Path storageDir;
+    
+    @Test
+    void snapshotAndLogTailRestoreState() throws IOException {
+        PersistenceSettings settings = settings();
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(settings);
+        InMemoryUserStorage userStorage = new InMemoryUserStorage(settings);
+        for (int id = 1; id <= 3; id++) {
+            filmStorage.createInStorage(film(id, "фильм " + id));
+            userStorage.addToStorage(user(id, "login" + id));
+        }
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(1, 2);
+        userStorage.addFriendship(1, 2);
+        userStorage.addFriendship(1, 3);
+        filmStorage.writeSnapshot();
+        userStorage.writeSnapshot();
+        
+        //Хвост журнала после снимка.
+        filmStorage.removeLike(1, 2);
+        filmStorage.addLike(3, 2);
+        filmStorage.removeFromLibrary(filmStorage.getFilmById(2));
+        userStorage.removeFromStorage(userStorage.getUserById(3));
+        userStorage.addFriendship(2, 1);
+        filmStorage.close();
+        userStorage.close();
+        
+        assertEquals(List.of("films-00000000000000000002.snapshot", "films-00000000000000000002.wal"),
+                files("films-"), "Сегменты журнала, вошедшие в снимок, не удалены.");
+        
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage(settings);
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage(settings);
+        assertEquals(filmState(filmStorage), filmState(restoredFilms), "Снимок и журнал не восстановили фильмы.");
+        assertEquals(userState(userStorage), userState(restoredUsers),
+                "Снимок и журнал не восстановили пользователей.");
+        assertEquals(Set.of(1), restoredFilms.getFilmById(1).getLikes(), "Потеряно удаление лайка после снимка.");
+        assertArrayEquals(new int[]{2}, restoredUsers.getFriendIds(1), "Удалённый после снимка друг остался в списке.");
+        restoredFilms.close();
+        restoredUsers.close();
+    }
+    
+    @Test
+    void snapshotsDuringConcurrentChangesRestoreExactState() throws Exception {
+        PersistenceSettings settings = settings();
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(settings);
+        InMemoryUserStorage userStorage = new InMemoryUserStorage(settings);
+        for (int id = 1; id <= 200; id++) {
+            filmStorage.createInStorage(film(id, "фильм " + id));
+            userStorage.addToStorage(user(id, "login" + id));
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            final Random random = new Random(thread);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    int id1 = 1 + random.nextInt(200);
+                    int id2 = 1 + random.nextInt(200);
+                    switch (random.nextInt(6)) {
+                        case 0:
+                            filmStorage.addLike(id1, id2);
+                            break;
+                        case 1:
+                            filmStorage.removeLike(id1, id2);
+                            break;
+                        case 2:
+                            userStorage.addFriendship(id1, id2);
+                            break;
+                        case 3:
+                            userStorage.removeFriendship(id1, id2);
+                            break;
+                        case 4:
+                            //Пересоздание пользователя: удаление вместе с друзьями и добавление заново.
+                            User user = userStorage.getUserById(id1);
+                            if (user != null) {
+                                userStorage.removeFromStorage(user);
+                            }
+                            userStorage.addToStorage(user(id1, "login" + id1));
+                            break;
+                        default:
+                            filmStorage.updateInStorage(film(id1, "фильм " + id1 + "-" + i));
+                    }
+                }
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            while (writing.get()) {
+                filmStorage.writeSnapshot();
+                userStorage.writeSnapshot();
+            }
+        }));
+        for (Future<?> future : futures.subList(0, 4)) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        futures.get(4).get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+        filmStorage.close();
+        userStorage.close();
+        
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage(settings);
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage(settings);
+        assertEquals(filmState(filmStorage), filmState(restoredFilms)
+                , "Снимки, записанные во время изменений, и журнал не восстановили фильмы.");
+        assertEquals(userState(userStorage), userState(restoredUsers)
+                , "Снимки, записанные во время изменений, и журнал не восстановили пользователей.");
+        restoredFilms.close();
+        restoredUsers.close();
+    }
+    
+    private PersistenceSettings settings() {
+        return new PersistenceSettings(storageDir.toString(), FsyncPolicy.NEVER, 0, 0);
+    }
+    
+    private List<String> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(storageDir)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix))
+                    .sorted().collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Фильмы в виде «ID → название и лайки» для сравнения состояний хранилища.
+     * Пустое множество лайков создаётся лениво и в журнал не попадает, поэтому равно отсутствующему.
+     */
+    private Map<Integer, String> filmState(InMemoryFilmStorage storage) {
+        Map<Integer, String> state = new TreeMap<>();
+        storage.getAllFilms().forEach(film -> state.put(film.getId(), film.getName() + " "
+                + Objects.requireNonNullElse(film.getLikes(), Set.of())));
+        return state;
+    }
+    
+    /**
+     * Пользователи в виде «ID → логин и друзья» для сравнения состояний хранилища.
+     * Пустой список друзей создаётся лениво и в журнал не попадает, поэтому равен отсутствующему.
+     */
+    private Map<Integer, String> userState(InMemoryUserStorage storage) {
+        Map<Integer, String> state = new TreeMap<>();
+        storage.getAllUsersFromStorage().forEach(user -> state.put(user.getId(), user.getLogin() + " "
+                + Objects.requireNonNullElse(user.getIdsFriends(), Set.of())));
+        return state;
+    }
+}
@@ -0,0 +1,144 @@
+package ru.yandex.practicum.storage.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.model.Film;
+import ru.yandex.practicum.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.TestFixtures.film;
+import static ru.yandex.practicum.TestFixtures.user;
+
+class WriteAheadLogTest {
+    
+    @TempDir
+    Path storageDir;
+    
+    @Test
+    void restartRestoresFilmsAndUsers() {
+        PersistenceSettings settings = settings(FsyncPolicy.ALWAYS);
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(settings);
+        InMemoryUserStorage userStorage = new InMemoryUserStorage(settings);
+        for (int id = 1; id <= 4; id++) {
+            filmStorage.createInStorage(film(id, "фильм " + id));
+            userStorage.addToStorage(user(id, "login" + id));
+        }
+        filmStorage.addLike(2, 1);
+        filmStorage.addLike(2, 3);
+        filmStorage.addLike(3, 1);
+        filmStorage.removeLike(2, 3);
+        filmStorage.updateInStorage(film(2, "новое название"));
+        filmStorage.removeFromLibrary(filmStorage.getFilmById(4));
+        userStorage.addFriendship(1, 2);
+        userStorage.addFriendship(1, 3);
+        userStorage.addFriendship(2, 3);
+        userStorage.addFriendship(3, 4);
+        userStorage.removeFriendship(2, 3);
+        userStorage.updateInStorage(user(3, "new_login3"));
+        userStorage.removeFromStorage(userStorage.getUserById(4));
+        filmStorage.close();
+        userStorage.close();
+        
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage(settings);
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage(settings);
+        assertEquals(3, restoredFilms.getAllFilms().size(), "После перезапуска неверное количество фильмов.");
+        assertEquals("новое название", restoredFilms.getFilmById(2).getName(), "Потеряно обновление фильма.");
+        assertEquals(Set.of(1), restoredFilms.getFilmById(2).getLikes(), "Потеряны изменения лайков фильма.");
+        assertEquals(List.of(2, 3, 1), filmIds(restoredFilms.getPopularFilms(10))
+                , "После перезапуска нарушен индекс популярности.");
+        
+        assertNull(restoredUsers.getUserById(4), "Удалённый пользователь восстановлен после перезапуска.");
+        assertNull(restoredUsers.getUserByLogin("login3"), "Старый логин пользователя остался в индексе.");
+        assertEquals(3, restoredUsers.getUserByLogin("new_login3").getId(), "Потеряно обновление пользователя.");
+        assertArrayEquals(new int[]{2, 3}, restoredUsers.getFriendIds(1), "Потеряны друзья пользователя.");
+        assertArrayEquals(new int[]{1}, restoredUsers.getFriendIds(3)
+                , "Удалённый пользователь остался в друзьях после перезапуска.");
+        restoredFilms.close();
+        restoredUsers.close();
+    }
+    
+    @Test
+    void tornTailIsDiscarded() throws IOException {
+        PersistenceSettings settings = settings(FsyncPolicy.NEVER);
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(settings);
+        filmStorage.createInStorage(film(1, "фильм 1"));
+        filmStorage.addLike(1, 10);
+        filmStorage.addLike(1, 20);
+        filmStorage.close();
+        
+        //Обрезаем последнюю запись, как при сбое посреди записи.
+        Path log = storageDir.resolve(String.format("films-%020d.wal", 1));
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        InMemoryFilmStorage restored = new InMemoryFilmStorage(settings);
+        assertEquals(Set.of(10), restored.getFilmById(1).getLikes(), "Ошибка применения журнала с обрезанным концом.");
+        
+        //Новые записи дописываются после последней целой записи.
+        restored.addLike(1, 30);
+        restored.close();
+        InMemoryFilmStorage restoredAgain = new InMemoryFilmStorage(settings);
+        assertEquals(Set.of(10, 30), restoredAgain.getFilmById(1).getLikes()
+                , "Потеряны записи, добавленные после отброшенного конца журнала.");
+        restoredAgain.close();
+    }
+    
+    @Test
+    void concurrentChangesSurviveRestart() throws Exception {
+        PersistenceSettings settings = settings(FsyncPolicy.ALWAYS);
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(settings);
+        for (int id = 1; id <= 8; id++) {
+            filmStorage.createInStorage(film(id, "фильм " + id));
+        }
+        //Фильм №K получает лайки от K * 100 пользователей из разных потоков.
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            final int number = thread;
+            futures.add(executor.submit(() -> {
+                for (int filmId = 1; filmId <= 8; filmId++) {
+                    for (int userId = number; userId < filmId * 100; userId += 8) {
+                        assertTrue(filmStorage.addLike(filmId, userId), "Лайк не поставлен.");
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        filmStorage.close();
+        
+        InMemoryFilmStorage restored = new InMemoryFilmStorage(settings);
+        assertEquals(List.of(8, 7, 6, 5, 4, 3, 2, 1), filmIds(restored.getPopularFilms(10))
+                , "После перезапуска нарушен порядок популярных фильмов.");
+        for (int id = 1; id <= 8; id++) {
+            assertEquals(id * 100, restored.getFilmById(id).getLikes().size()
+                    , "После перезапуска потеряны лайки фильма с ID = " + id + ".");
+        }
+        restored.close();
+    }
+    
+    private PersistenceSettings settings(FsyncPolicy fsyncPolicy) {
+        return new PersistenceSettings(storageDir.toString(), fsyncPolicy, 10, 0);
+    }
+    
+    private List<Integer> filmIds(List<Film> films) {
+        List<Integer> ids = new ArrayList<>();
+        films.forEach(film -> ids.add(film.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsTest {
+    
+    @Test
+    void supportDependsOnJavaVersion() throws Exception {
+        boolean java21 = Runtime.version().feature() >= 21;
+        assertEquals(java21, VirtualThreads.isSupported());
+        assertFalse(VirtualThreads.isVirtual(Thread.currentThread()), "Поток теста JUnit - виртуальный.");
+        if (!java21) {
+            assertThrows(IllegalStateException.class, () -> VirtualThreads.newThreadPerTaskExecutor("test-"));
+            return;
+        }
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        try {
+            Future<Thread> thread = executor.submit(Thread::currentThread);
+            assertTrue(VirtualThreads.isVirtual(thread.get()), "Задача выполнена не в виртуальном потоке.");
+            assertEquals("test-0", thread.get().getName());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}